@@ -0,0 +1,70 @@
+package net.pkhapps.idispatchx.cad.adapter.primary.metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import net.pkhapps.idispatchx.cad.application.handler.EntityLockManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Javalin handler that returns the currently held locks and the most contended lock keys as JSON.
+ * <p>
+ * The response contains {@code heldLocks}, each with its key, holder thread, hold time and number of
+ * waiting threads, longest held first, and {@code hotKeys}, each with its key, number of contended
+ * acquisitions and total wait time, most contended first. Times are in nanoseconds. The number of hot keys
+ * is limited by the {@code limit} parameter (default {@value #DEFAULT_LIMIT}), and passing {@code reset=true}
+ * forgets the hot keys after they have been read. The wait and hold time histograms per lock type are
+ * reported by {@link MetricsHandler}.
+ * <p>
+ * Usage:
+ * <pre>
+ * app.get("/metrics/locks", new LockDiagnosticsHandler(lockManager));
+ * </pre>
+ */
+public final class LockDiagnosticsHandler implements Handler {
+
+    private static final String LIMIT_PARAM = "limit";
+    private static final String RESET_PARAM = "reset";
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final EntityLockManager lockManager;
+
+    /**
+     * Creates a new lock diagnostics handler.
+     *
+     * @param lockManager the lock manager to report
+     */
+    public LockDiagnosticsHandler(EntityLockManager lockManager) {
+        this.lockManager = Objects.requireNonNull(lockManager, "lockManager must not be null");
+    }
+
+    @Override
+    public void handle(Context ctx) {
+        var limitParam = ctx.queryParam(LIMIT_PARAM);
+        var limit = limitParam == null ? DEFAULT_LIMIT : Math.max(0, Integer.parseInt(limitParam));
+        var heldLocks = lockManager.heldLocks().stream()
+                .map(lock -> Map.<String, Object>of(
+                        "type", lock.key().type(),
+                        "id", lock.key().id(),
+                        "holder", lock.holder(),
+                        "heldFor", lock.heldFor().toNanos(),
+                        "waiting", lock.waiting()))
+                .toList();
+        var hotKeys = lockManager.hotKeys(limit).stream()
+                .map(key -> Map.<String, Object>of(
+                        "type", key.key().type(),
+                        "id", key.key().id(),
+                        "contentions", key.contentions(),
+                        "totalWait", key.totalWait().toNanos()))
+                .toList();
+        if (Boolean.parseBoolean(ctx.queryParam(RESET_PARAM))) {
+            lockManager.resetHotKeys();
+        }
+        var response = new LinkedHashMap<String, Object>();
+        response.put("heldLocks", heldLocks);
+        response.put("hotKeys", hotKeys);
+        ctx.json(response);
+    }
+}
@@ -0,0 +1,44 @@
+package net.pkhapps.idispatchx.cad.adapter.primary.metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+
+import java.util.Objects;
+
+/**
+ * Javalin handler that returns the recorded histograms as JSON.
+ * <p>
+ * The response maps each histogram name to its count, mean, p50, p99, p999 and max, for example
+ * {@code {"wal.fsync": {"unit": "ns", "count": 1520, "p50": 180223, ...}}}. Passing {@code reset=true}
+ * clears the histograms after they have been read, so that a scraper can report each interval separately.
+ * <p>
+ * Usage:
+ * <pre>
+ * app.get("/metrics", new MetricsHandler(metricsRegistry));
+ * </pre>
+ */
+public final class MetricsHandler implements Handler {
+
+    private static final String RESET_PARAM = "reset";
+
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * Creates a new metrics handler.
+     *
+     * @param metricsRegistry the registry to report
+     */
+    public MetricsHandler(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = Objects.requireNonNull(metricsRegistry, "metricsRegistry must not be null");
+    }
+
+    @Override
+    public void handle(Context ctx) {
+        var snapshot = metricsRegistry.snapshot();
+        if (Boolean.parseBoolean(ctx.queryParam(RESET_PARAM))) {
+            metricsRegistry.reset();
+        }
+        ctx.json(snapshot);
+    }
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package net.pkhapps.idispatchx.cad.adapter.primary.metrics;
+
+import org.jspecify.annotations.NullMarked;
@@ -0,0 +1,65 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.BinaryFrames;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.BinaryValueSerializer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Binary snapshot format, using the same frames as the binary WAL format (see {@link BinaryFrames}):
+ * <pre>
+ * int    payload length (big-endian)
+ * int    CRC32C of the payload
+ * varint aggregate type code
+ * ...    aggregate record components, see {@link BinaryValueSerializer}
+ * </pre>
+ */
+final class BinarySnapshotCodec implements SnapshotCodec {
+
+    private final SnapshotTypes aggregateTypes;
+    private final BinaryValueSerializer serializer;
+
+    /**
+     * Creates a codec for the given aggregate types.
+     *
+     * @param aggregateTypes the registry of aggregate types that can be stored in snapshots
+     * @throws IllegalArgumentException if an aggregate type has a component type that cannot be serialized
+     */
+    BinarySnapshotCodec(SnapshotTypes aggregateTypes) {
+        this.aggregateTypes = Objects.requireNonNull(aggregateTypes, "aggregateTypes must not be null");
+        this.serializer = new BinaryValueSerializer(aggregateTypes.recordTypes());
+    }
+
+    @Override
+    public void encode(Object aggregate, FrameOutputBuffer out) throws IOException {
+        var aggregateType = aggregateTypes.typeOf(aggregate);
+        var start = BinaryFrames.beginFrame(out);
+        BinaryValueSerializer.writeVarInt(out, aggregateType.code());
+        serializer.writeRecord(aggregate, out);
+        BinaryFrames.endFrame(out, start);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        return BinaryFrames.frameLength(buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer frame) {
+        try {
+            var payload = BinaryFrames.payloadOf(frame);
+            var aggregateType = aggregateTypes.typeOfCode(BinaryValueSerializer.readVarInt(payload));
+            var aggregate = serializer.readRecord(aggregateType.type(), payload);
+            if (payload.hasRemaining()) {
+                throw new IllegalArgumentException(payload.remaining() + " trailing bytes");
+            }
+            return aggregate;
+        } catch (RuntimeException e) {
+            throw new SnapshotReadException("corrupt snapshot record: " + e.getMessage(), e);
+        }
+    }
+}
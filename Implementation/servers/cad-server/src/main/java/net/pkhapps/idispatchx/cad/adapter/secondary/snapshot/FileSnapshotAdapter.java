@@ -0,0 +1,620 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.Directories;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameReader;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.RemovedAggregate;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotPort;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotReadException;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriteException;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriter;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * File-backed implementation of the {@link SnapshotPort}.
+ * <p>
+ * Each snapshot is a single file of framed aggregate records in the format of the WAL (see
+ * {@link SnapshotCodec}), named after the sequence number of the last WAL entry it includes. Aggregates are
+ * encoded and written as they arrive and decoded and delivered as they are read when the snapshot is loaded,
+ * so the adapter only ever buffers a small, bounded amount of the state.
+ * <p>
+ * A delta snapshot is stored in the same format, in a file named after both its own sequence number and
+ * that of the previous snapshot it is based on. Loading the latest snapshot follows these references back
+ * to the nearest full snapshot and reads the files of the chain from there on. At equal sequence numbers,
+ * a full snapshot is preferred over a delta, so that a chain is never longer than necessary.
+ * <p>
+ * A snapshot is written to a temporary file that is synced and atomically renamed when the snapshot is
+ * committed. Temporary files left behind by a crash are deleted when the adapter is created.
+ * <p>
+ * If configured with more than one shard, a snapshot is instead split into that many shard files, with the
+ * aggregates distributed over them in rotation, and a manifest listing the shards and their sizes. The
+ * shards are renamed to their final names first, and the snapshot becomes visible when the manifest is
+ * atomically renamed; shards without a manifest are deleted like temporary files. Since every aggregate
+ * occurs at most once in a snapshot, the shards can be loaded in any order, and they are decoded in
+ * parallel on a fork-join pool so that loading a large snapshot uses every core. Snapshots with and without
+ * shards can be loaded regardless of the configuration.
+ */
+public final class FileSnapshotAdapter implements SnapshotPort {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSnapshotAdapter.class);
+
+    private static final String FILE_NAME_PREFIX = "snapshot-";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String SHARD_SUFFIX = ".shard-";
+    private static final int SEQUENCE_DIGITS = 20;
+    static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+    // The previous sequence number of a full snapshot
+    private static final long FULL = -1;
+
+    private final Path directory;
+    private final String extension;
+    private final SnapshotCodec codec;
+    private final int shards;
+
+    /**
+     * Creates the adapter, creating the snapshot directory if it does not exist.
+     *
+     * @param config         the snapshot configuration
+     * @param aggregateTypes the registry of aggregate types that can be stored in snapshots
+     * @throws SnapshotWriteException if the snapshot directory cannot be prepared
+     */
+    public FileSnapshotAdapter(FileSnapshotConfig config, SnapshotTypes aggregateTypes) {
+        Objects.requireNonNull(config, "config must not be null");
+        Objects.requireNonNull(aggregateTypes, "aggregateTypes must not be null");
+        this.directory = config.directory();
+        this.extension = config.format().fileExtension();
+        this.codec = SnapshotCodec.forFormat(config.format(), aggregateTypes);
+        this.shards = config.shards();
+        try {
+            Files.createDirectories(directory);
+            deleteTemporaryFiles();
+            deleteOrphanShards();
+        } catch (IOException e) {
+            throw new SnapshotWriteException("could not open snapshot directory " + directory, e);
+        }
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var fileName = file.getFileName().toString();
+                if (fileName.startsWith(FILE_NAME_PREFIX) && fileName.endsWith(TEMP_FILE_SUFFIX)) {
+                    // Left behind by a crash before the snapshot was committed
+                    log.info("Deleting incomplete snapshot {}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the shards of snapshots that have no manifest, either because the snapshot was not committed
+     * before a crash or because it has been purged.
+     */
+    private void deleteOrphanShards() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var fileName = file.getFileName().toString();
+                var shardSuffix = fileName.lastIndexOf(SHARD_SUFFIX);
+                if (fileName.startsWith(FILE_NAME_PREFIX) && shardSuffix > 0 && !Files.exists(
+                        directory.resolve(fileName.substring(0, shardSuffix) + MANIFEST_SUFFIX))) {
+                    log.info("Deleting shard without manifest {}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the file name of the snapshot up to the given sequence number.
+     *
+     * @param upToSequence the sequence number of the last WAL entry included in the snapshot
+     * @param extension    the file extension of the snapshot format
+     * @return the file name, zero-padded so that snapshots sort by name
+     */
+    static String fileName(long upToSequence, String extension) {
+        var digits = Long.toString(upToSequence);
+        return FILE_NAME_PREFIX + "0".repeat(Math.max(0, SEQUENCE_DIGITS - digits.length())) + digits
+                + "." + extension;
+    }
+
+    /**
+     * Returns the file name of the delta snapshot up to the given sequence number.
+     *
+     * @param upToSequence     the sequence number of the last WAL entry included in the snapshot
+     * @param previousSequence the sequence number of the snapshot that the delta is based on
+     * @param extension        the file extension of the snapshot format
+     * @return the file name, zero-padded so that snapshots sort by name
+     */
+    static String deltaFileName(long upToSequence, long previousSequence, String extension) {
+        var fullName = fileName(upToSequence, extension);
+        var digits = Long.toString(previousSequence);
+        return fullName.substring(0, FILE_NAME_PREFIX.length() + SEQUENCE_DIGITS) + "-"
+                + "0".repeat(Math.max(0, SEQUENCE_DIGITS - digits.length())) + digits + "." + extension;
+    }
+
+    /**
+     * Returns the sequence number encoded in the given full snapshot file name.
+     *
+     * @param fileName  the file name
+     * @param extension the file extension of the snapshot format
+     * @return the sequence number, or -1 if the name is not the name of a full snapshot
+     */
+    static long parseSequence(String fileName, String extension) {
+        var suffix = "." + extension;
+        if (!fileName.startsWith(FILE_NAME_PREFIX) || !fileName.endsWith(suffix)) {
+            return -1;
+        }
+        return parseDigits(fileName.substring(FILE_NAME_PREFIX.length(), fileName.length() - suffix.length()));
+    }
+
+    /**
+     * Returns the sequence numbers encoded in the given delta snapshot file name.
+     *
+     * @param fileName  the file name
+     * @param extension the file extension of the snapshot format
+     * @return the sequence number of the delta and of the snapshot it is based on, or null if the name is
+     * not the name of a delta snapshot
+     */
+    static long @Nullable [] parseDeltaSequences(String fileName, String extension) {
+        var suffix = "." + extension;
+        if (!fileName.startsWith(FILE_NAME_PREFIX) || !fileName.endsWith(suffix)) {
+            return null;
+        }
+        var sequences = fileName.substring(FILE_NAME_PREFIX.length(), fileName.length() - suffix.length());
+        if (sequences.length() != 2 * SEQUENCE_DIGITS + 1 || sequences.charAt(SEQUENCE_DIGITS) != '-') {
+            return null;
+        }
+        var upToSequence = parseDigits(sequences.substring(0, SEQUENCE_DIGITS));
+        var previousSequence = parseDigits(sequences.substring(SEQUENCE_DIGITS + 1));
+        // A delta is always based on an earlier snapshot, which also rules out cycles in the chain
+        if (upToSequence <= 0 || previousSequence <= 0 || previousSequence >= upToSequence) {
+            return null;
+        }
+        return new long[]{upToSequence, previousSequence};
+    }
+
+    private static long parseDigits(String digits) {
+        if (digits.length() != SEQUENCE_DIGITS || !digits.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public SnapshotWriter openSnapshotWriter() {
+        return openWriter(FULL);
+    }
+
+    @Override
+    public SnapshotWriter openDeltaSnapshotWriter(SequenceNumber previousSnapshot) {
+        Objects.requireNonNull(previousSnapshot, "previousSnapshot must not be null");
+        List<SnapshotFile> snapshots;
+        try {
+            snapshots = listSnapshots();
+        } catch (IOException e) {
+            throw new SnapshotWriteException("could not list snapshots in " + directory, e);
+        }
+        if (snapshots.stream().noneMatch(snapshot -> snapshot.upToSequence() == previousSnapshot.value())) {
+            throw new SnapshotWriteException("no snapshot at sequence number " + previousSnapshot.value()
+                    + " to base a delta snapshot on");
+        }
+        return openWriter(previousSnapshot.value());
+    }
+
+    private SnapshotWriter openWriter(long previousSequence) {
+        var writer = new FileSnapshotWriter(previousSequence);
+        try {
+            for (int i = 0; i < shards; i++) {
+                writer.addFile(Files.createTempFile(directory, FILE_NAME_PREFIX, TEMP_FILE_SUFFIX));
+            }
+            return writer;
+        } catch (IOException e) {
+            writer.close();
+            throw new SnapshotWriteException("could not create snapshot in " + directory, e);
+        }
+    }
+
+    @Override
+    public Optional<SequenceNumber> loadLatestSnapshot(Consumer<Object> consumer) {
+        Objects.requireNonNull(consumer, "consumer must not be null");
+        List<SnapshotFile> snapshots;
+        try {
+            snapshots = listSnapshots();
+        } catch (IOException e) {
+            throw new SnapshotReadException("could not list snapshots in " + directory, e);
+        }
+        if (snapshots.isEmpty()) {
+            return Optional.empty();
+        }
+        var latest = snapshots.getLast();
+        var chain = chainOf(latest, bySequence(snapshots));
+        if (chain == null) {
+            throw new SnapshotReadException("snapshot " + latest.path()
+                    + " is based on a snapshot that does not exist");
+        }
+        for (var snapshot : chain) {
+            read(snapshot, consumer);
+        }
+        return Optional.of(new SequenceNumber(latest.upToSequence()));
+    }
+
+    private void read(SnapshotFile snapshot, Consumer<Object> consumer) {
+        if (!snapshot.sharded()) {
+            var count = read(snapshot.path(), -1, consumer);
+            log.info("Loaded {} aggregates from snapshot {}", count, snapshot.path());
+            return;
+        }
+        var shardFiles = readManifest(snapshot.path());
+        long count = 0;
+        try (var pool = new ForkJoinPool(Math.min(shardFiles.size(), Runtime.getRuntime().availableProcessors()))) {
+            var tasks = new ArrayList<ForkJoinTask<Long>>();
+            for (var shard : shardFiles) {
+                tasks.add(pool.submit(() -> read(shard.path(), shard.size(), consumer)));
+            }
+            for (var task : tasks) {
+                count += task.join();
+            }
+        }
+        log.info("Loaded {} aggregates from {} shards of snapshot {}", count, shardFiles.size(), snapshot.path());
+    }
+
+    private List<ShardFile> readManifest(Path manifest) {
+        var shardPrefix = manifest.getFileName().toString();
+        shardPrefix = shardPrefix.substring(0, shardPrefix.length() - MANIFEST_SUFFIX.length()) + SHARD_SUFFIX;
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SnapshotReadException("could not read snapshot manifest " + manifest, e);
+        }
+        var shardFiles = new ArrayList<ShardFile>();
+        for (var line : lines) {
+            var separator = line.indexOf(' ');
+            try {
+                var fileName = line.substring(0, separator);
+                // Shards are always next to the manifest, so the name must not contain a path
+                if (!fileName.startsWith(shardPrefix) || fileName.contains("/") || fileName.contains("\\")) {
+                    throw new IllegalArgumentException("invalid shard file name " + fileName);
+                }
+                shardFiles.add(new ShardFile(directory.resolve(fileName),
+                        Long.parseLong(line.substring(separator + 1))));
+            } catch (RuntimeException e) {
+                throw new SnapshotReadException("corrupt snapshot manifest " + manifest + ": " + e.getMessage(), e);
+            }
+        }
+        if (shardFiles.isEmpty()) {
+            throw new SnapshotReadException("snapshot manifest " + manifest + " lists no shards");
+        }
+        return shardFiles;
+    }
+
+    /**
+     * Reads a snapshot file, or one shard of it, and returns the number of aggregates read.
+     *
+     * @param expectedSize the size of the file recorded in the manifest, or -1 if not sharded
+     */
+    private long read(Path file, long expectedSize, Consumer<Object> consumer) {
+        long count = 0;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (expectedSize >= 0 && channel.size() != expectedSize) {
+                throw new SnapshotReadException("snapshot shard " + file + " has " + channel.size()
+                        + " bytes instead of " + expectedSize);
+            }
+            var reader = new FrameReader(channel, codec, 0, channel.size(), READ_BUFFER_SIZE);
+            for (var frame = reader.nextFrame(); frame != null; frame = reader.nextFrame()) {
+                consumer.accept(codec.decode(frame));
+                count++;
+            }
+            if (reader.hasTrailingBytes() || reader.position() != channel.size()) {
+                throw new SnapshotReadException("snapshot " + file + " has trailing bytes at offset "
+                        + reader.position());
+            }
+        } catch (IOException e) {
+            throw new SnapshotReadException("could not read snapshot " + file, e);
+        } catch (WalReadException e) {
+            // Invalid frame boundaries are reported with the WAL exception type
+            throw new SnapshotReadException("corrupt snapshot " + file + ": " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    @Override
+    public void purgeOlderSnapshots(SequenceNumber keepAfter) {
+        Objects.requireNonNull(keepAfter, "keepAfter must not be null");
+        try {
+            var snapshots = listSnapshots();
+            var bySequence = bySequence(snapshots);
+            var needed = new HashSet<Path>();
+            for (var snapshot : snapshots) {
+                if (snapshot.upToSequence() >= keepAfter.value()) {
+                    var chain = chainOf(snapshot, bySequence);
+                    if (chain != null) {
+                        chain.forEach(link -> needed.add(link.path()));
+                    }
+                }
+            }
+            var purgedShards = false;
+            for (var snapshot : snapshots) {
+                if (snapshot.upToSequence() < keepAfter.value() && !needed.contains(snapshot.path())) {
+                    // The manifest of a sharded snapshot goes first, so that it never lists missing shards
+                    Files.deleteIfExists(snapshot.path());
+                    purgedShards |= snapshot.sharded();
+                    log.debug("Purged snapshot {}", snapshot.path());
+                }
+            }
+            if (purgedShards) {
+                deleteOrphanShards();
+            }
+        } catch (IOException e) {
+            // Old snapshots only take up space; they are retried on the next purge
+            log.warn("Could not purge snapshots older than {}", keepAfter, e);
+        }
+    }
+
+    /**
+     * Returns the snapshots sorted by sequence number, with full snapshots after deltas at equal sequence
+     * numbers.
+     */
+    private List<SnapshotFile> listSnapshots() throws IOException {
+        var snapshots = new ArrayList<SnapshotFile>();
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var fileName = file.getFileName().toString();
+                var sharded = fileName.endsWith(MANIFEST_SUFFIX);
+                if (sharded) {
+                    fileName = fileName.substring(0, fileName.length() - MANIFEST_SUFFIX.length());
+                }
+                var upToSequence = parseSequence(fileName, extension);
+                if (upToSequence > 0) {
+                    snapshots.add(new SnapshotFile(file, upToSequence, FULL, sharded));
+                    continue;
+                }
+                var deltaSequences = parseDeltaSequences(fileName, extension);
+                if (deltaSequences != null) {
+                    snapshots.add(new SnapshotFile(file, deltaSequences[0], deltaSequences[1], sharded));
+                }
+            }
+        }
+        snapshots.sort(Comparator.comparingLong(SnapshotFile::upToSequence)
+                .thenComparing(snapshot -> !snapshot.isDelta()));
+        return snapshots;
+    }
+
+    /**
+     * Returns the preferred snapshot at each sequence number, given the snapshots as returned by
+     * {@link #listSnapshots()}.
+     */
+    private static Map<Long, SnapshotFile> bySequence(List<SnapshotFile> snapshots) {
+        var bySequence = new HashMap<Long, SnapshotFile>();
+        snapshots.forEach(snapshot -> bySequence.put(snapshot.upToSequence(), snapshot));
+        return bySequence;
+    }
+
+    /**
+     * Returns the snapshots needed to load the given snapshot, starting with a full snapshot and ending with
+     * the given snapshot, or null if a snapshot of the chain is missing.
+     */
+    private static @Nullable List<SnapshotFile> chainOf(SnapshotFile snapshot, Map<Long, SnapshotFile> bySequence) {
+        var chain = new ArrayList<SnapshotFile>();
+        chain.add(snapshot);
+        var current = snapshot;
+        while (current.isDelta()) {
+            current = bySequence.get(current.previousSequence());
+            if (current == null) {
+                return null;
+            }
+            chain.add(current);
+        }
+        return chain.reversed();
+    }
+
+    /**
+     * A snapshot file.
+     *
+     * @param path             the path of the file, or of the manifest if the snapshot is sharded
+     * @param upToSequence     the sequence number of the last WAL entry included in the snapshot
+     * @param previousSequence the sequence number of the snapshot that a delta is based on, or {@link #FULL}
+     * @param sharded          whether the snapshot is split into shards listed in a manifest
+     */
+    private record SnapshotFile(Path path, long upToSequence, long previousSequence, boolean sharded) {
+
+        boolean isDelta() {
+            return previousSequence != FULL;
+        }
+    }
+
+    /**
+     * A shard of a snapshot, as listed in its manifest.
+     *
+     * @param path the path of the shard file
+     * @param size the size of the shard file in bytes
+     */
+    private record ShardFile(Path path, long size) {
+    }
+
+    private final class FileSnapshotWriter implements SnapshotWriter {
+
+        private final long previousSequence;
+        // One temporary file, channel and buffer per shard
+        private final List<Path> files = new ArrayList<>();
+        private final List<FileChannel> channels = new ArrayList<>();
+        private final List<FrameOutputBuffer> buffers = new ArrayList<>();
+        // Shards that have been renamed to their final names by a commit that has not completed
+        private final List<Path> committedShards = new ArrayList<>();
+        private int nextShard;
+        private boolean committed;
+        private boolean closed;
+
+        FileSnapshotWriter(long previousSequence) {
+            this.previousSequence = previousSequence;
+        }
+
+        void addFile(Path file) throws IOException {
+            files.add(file);
+            channels.add(FileChannel.open(file, StandardOpenOption.WRITE));
+            buffers.add(new FrameOutputBuffer(FLUSH_THRESHOLD * 2));
+        }
+
+        @Override
+        public void write(Object aggregate) {
+            Objects.requireNonNull(aggregate, "aggregate must not be null");
+            requireOpen();
+            if (previousSequence == FULL && aggregate instanceof RemovedAggregate) {
+                throw new IllegalArgumentException("removed aggregates can only be written to delta snapshots");
+            }
+            var shard = nextShard;
+            var buffer = buffers.get(shard);
+            var start = buffer.size();
+            try {
+                codec.encode(aggregate, buffer);
+                if (buffer.size() >= FLUSH_THRESHOLD) {
+                    flush(shard);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (buffer.size() >= start) {
+                    buffer.truncate(start);
+                }
+                throw new SnapshotWriteException("could not write " + aggregate.getClass().getSimpleName()
+                        + " to snapshot " + files.get(shard), e);
+            }
+            nextShard = (shard + 1) % buffers.size();
+        }
+
+        @Override
+        public void commit(SequenceNumber upToSequence) {
+            Objects.requireNonNull(upToSequence, "upToSequence must not be null");
+            requireOpen();
+            if (previousSequence != FULL && upToSequence.value() <= previousSequence) {
+                throw new IllegalArgumentException("delta snapshot at " + upToSequence.value()
+                        + " must come after its previous snapshot at " + previousSequence);
+            }
+            var target = directory.resolve(previousSequence == FULL
+                    ? fileName(upToSequence.value(), extension)
+                    : deltaFileName(upToSequence.value(), previousSequence, extension));
+            try {
+                var sizes = new long[files.size()];
+                for (int i = 0; i < files.size(); i++) {
+                    flush(i);
+                    sizes[i] = channels.get(i).size();
+                    channels.get(i).force(true);
+                    channels.get(i).close();
+                }
+                if (files.size() == 1) {
+                    Files.move(files.getFirst(), target, StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    target = commitShards(target, sizes);
+                }
+                Directories.sync(directory);
+            } catch (IOException e) {
+                throw new SnapshotWriteException("could not commit snapshot " + target, e);
+            }
+            committed = true;
+            close();
+        }
+
+        /**
+         * Renames the shards to their final names and then commits the snapshot by renaming its manifest.
+         *
+         * @return the path of the manifest
+         */
+        private Path commitShards(Path target, long[] sizes) throws IOException {
+            var manifestLines = new StringBuilder();
+            for (int i = 0; i < files.size(); i++) {
+                var shard = directory.resolve(target.getFileName() + SHARD_SUFFIX + i);
+                Files.move(files.get(i), shard, StandardCopyOption.ATOMIC_MOVE);
+                committedShards.add(shard);
+                manifestLines.append(shard.getFileName()).append(' ').append(sizes[i]).append('\n');
+            }
+            // The shards must be durable under their final names before the manifest refers to them
+            Directories.sync(directory);
+            var manifestFile = Files.createTempFile(directory, FILE_NAME_PREFIX, TEMP_FILE_SUFFIX);
+            files.add(manifestFile);
+            try (var channel = FileChannel.open(manifestFile, StandardOpenOption.WRITE)) {
+                var bytes = StandardCharsets.UTF_8.encode(manifestLines.toString());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            var manifest = directory.resolve(target.getFileName() + MANIFEST_SUFFIX);
+            Files.move(manifestFile, manifest, StandardCopyOption.ATOMIC_MOVE);
+            return manifest;
+        }
+
+        private void flush(int shard) throws IOException {
+            var buffer = buffers.get(shard);
+            var channel = channels.get(shard);
+            var bytes = buffer.asByteBuffer();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            buffer.reset();
+        }
+
+        private void requireOpen() {
+            if (closed || committed) {
+                throw new IllegalStateException("snapshot writer is closed");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (committed) {
+                return;
+            }
+            for (var channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Could not close uncommitted snapshot", e);
+                }
+            }
+            for (var file : files) {
+                deleteUncommitted(file);
+            }
+            committedShards.forEach(this::deleteUncommitted);
+        }
+
+        private void deleteUncommitted(Path file) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete uncommitted snapshot {}", file, e);
+            }
+        }
+    }
+}
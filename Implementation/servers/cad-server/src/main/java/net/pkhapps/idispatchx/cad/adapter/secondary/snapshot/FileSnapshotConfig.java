@@ -0,0 +1,42 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalConfig;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Configuration of the file-backed snapshot adapter.
+ *
+ * @param directory the directory containing the snapshot files
+ * @param format    the record format, the same as that of the WAL per ADR-0006
+ * @param shards    the number of shard files to split each snapshot into, so that it can be loaded in
+ *                  parallel; 1 stores each snapshot as a single file
+ */
+public record FileSnapshotConfig(Path directory, FileWalConfig.Format format, int shards) {
+
+    /**
+     * Creates a snapshot configuration with validation.
+     *
+     * @param directory the directory containing the snapshot files
+     * @param format    the record format
+     * @param shards    the number of shard files per snapshot, must be positive
+     */
+    public FileSnapshotConfig {
+        Objects.requireNonNull(directory, "directory must not be null");
+        Objects.requireNonNull(format, "format must not be null");
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive, got " + shards);
+        }
+    }
+
+    /**
+     * Creates a configuration that stores each snapshot as a single file.
+     *
+     * @param directory the directory containing the snapshot files
+     * @param format    the record format
+     */
+    public FileSnapshotConfig(Path directory, FileWalConfig.Format format) {
+        this(directory, format, 1);
+    }
+}
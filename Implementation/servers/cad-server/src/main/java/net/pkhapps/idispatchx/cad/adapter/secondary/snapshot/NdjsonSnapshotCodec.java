@@ -0,0 +1,56 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.NdjsonFrames;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Text snapshot format: one JSON object per line of the form {@code {"type":"...","aggregate":{...}}},
+ * framed like the records of the text WAL format (see {@link NdjsonFrames}).
+ */
+final class NdjsonSnapshotCodec implements SnapshotCodec {
+
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_AGGREGATE = "aggregate";
+
+    private final SnapshotTypes aggregateTypes;
+    private final ObjectMapper objectMapper = NdjsonFrames.createObjectMapper();
+
+    NdjsonSnapshotCodec(SnapshotTypes aggregateTypes) {
+        this.aggregateTypes = Objects.requireNonNull(aggregateTypes, "aggregateTypes must not be null");
+    }
+
+    @Override
+    public void encode(Object aggregate, FrameOutputBuffer out) throws IOException {
+        var typeName = aggregateTypes.typeOf(aggregate).name();
+        try (var generator = objectMapper.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField(FIELD_TYPE, typeName);
+            generator.writeFieldName(FIELD_AGGREGATE);
+            objectMapper.writeValue(generator, aggregate);
+            generator.writeEndObject();
+        }
+        out.write(NdjsonFrames.NEWLINE);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        return NdjsonFrames.frameLength(buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer frame) {
+        try {
+            var root = NdjsonFrames.readTree(objectMapper, frame);
+            var type = aggregateTypes.typeOfName(NdjsonFrames.requireField(root, FIELD_TYPE).asText()).type();
+            return objectMapper.treeToValue(NdjsonFrames.requireField(root, FIELD_AGGREGATE), type);
+        } catch (IOException | RuntimeException e) {
+            throw new SnapshotReadException("corrupt snapshot record: " + e.getMessage(), e);
+        }
+    }
+}
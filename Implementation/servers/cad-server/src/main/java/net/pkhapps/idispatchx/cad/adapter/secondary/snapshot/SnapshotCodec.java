@@ -0,0 +1,51 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameCodec;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameReader;
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalConfig;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the aggregates stored in a snapshot file, one frame per aggregate.
+ * <p>
+ * Snapshots use the same formats as the WAL, per ADR-0006, and the same framing, so a snapshot file is
+ * read with a {@link FrameReader} like a WAL segment.
+ */
+interface SnapshotCodec extends FrameCodec {
+
+    /**
+     * Creates the codec for the given format.
+     *
+     * @param format         the record format
+     * @param aggregateTypes the registry of aggregate types that can be stored in snapshots
+     * @return the codec
+     */
+    static SnapshotCodec forFormat(FileWalConfig.Format format, SnapshotTypes aggregateTypes) {
+        return switch (format) {
+            case TEXT -> new NdjsonSnapshotCodec(aggregateTypes);
+            case BINARY -> new BinarySnapshotCodec(aggregateTypes);
+        };
+    }
+
+    /**
+     * Writes the complete frame of the given aggregate to the output buffer.
+     *
+     * @param aggregate the aggregate to encode, of a registered type
+     * @param out       the buffer to write to
+     * @throws IOException if the aggregate cannot be encoded
+     */
+    void encode(Object aggregate, FrameOutputBuffer out) throws IOException;
+
+    /**
+     * Decodes a complete frame.
+     *
+     * @param frame a buffer containing exactly one frame between its position and limit
+     * @return the decoded aggregate
+     * @throws SnapshotReadException if the frame is corrupt or contains an unknown aggregate type
+     */
+    Object decode(ByteBuffer frame);
+}
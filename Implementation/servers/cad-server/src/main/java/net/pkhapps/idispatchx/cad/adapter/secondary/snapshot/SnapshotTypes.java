@@ -0,0 +1,174 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.RemovedAggregate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Registry of the aggregate types that can be stored in snapshots.
+ * <p>
+ * Like {@link net.pkhapps.idispatchx.cad.adapter.secondary.wal.WalEventTypes}, every type is registered
+ * under a stable type name (used by the text format) and a stable numeric type code (used by the binary
+ * format), so that classes can be renamed or moved without breaking existing snapshots. Aggregates are stored as records; a source whose aggregates are
+ * mutable entities copies them into records when they are captured.
+ * <p>
+ * Every registry contains {@link RemovedAggregate}, which marks removals in delta snapshots, under the
+ * reserved type code {@value #REMOVED_TYPE_CODE} and type name {@value #REMOVED_TYPE_NAME}.
+ */
+public final class SnapshotTypes {
+
+    /**
+     * The type code reserved for {@link RemovedAggregate}.
+     */
+    public static final int REMOVED_TYPE_CODE = 0;
+
+    /**
+     * The type name reserved for {@link RemovedAggregate}.
+     */
+    public static final String REMOVED_TYPE_NAME = "removed";
+
+    private final Map<Class<? extends Record>, AggregateType> byType;
+    private final Map<String, AggregateType> byName;
+    private final Map<Integer, AggregateType> byCode;
+
+    private SnapshotTypes(Map<Class<? extends Record>, AggregateType> byType) {
+        this.byType = Map.copyOf(byType);
+        var byName = new HashMap<String, AggregateType>();
+        var byCode = new HashMap<Integer, AggregateType>();
+        byType.values().forEach(aggregateType -> {
+            byName.put(aggregateType.name(), aggregateType);
+            byCode.put(aggregateType.code(), aggregateType);
+        });
+        this.byName = Map.copyOf(byName);
+        this.byCode = Map.copyOf(byCode);
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the registration of the type of the given aggregate.
+     *
+     * @param aggregate the aggregate
+     * @return the registered aggregate type
+     * @throws IllegalArgumentException if the aggregate type has not been registered
+     */
+    AggregateType typeOf(Object aggregate) {
+        var aggregateType = byType.get(aggregate.getClass());
+        if (aggregateType == null) {
+            throw new IllegalArgumentException("unregistered aggregate type: " + aggregate.getClass().getName());
+        }
+        return aggregateType;
+    }
+
+    /**
+     * Returns the aggregate type registered under the given type name.
+     *
+     * @param typeName the type name
+     * @return the registered aggregate type
+     * @throws IllegalArgumentException if no aggregate type has been registered under the name
+     */
+    AggregateType typeOfName(String typeName) {
+        var aggregateType = byName.get(typeName);
+        if (aggregateType == null) {
+            throw new IllegalArgumentException("unknown aggregate type name: " + typeName);
+        }
+        return aggregateType;
+    }
+
+    /**
+     * Returns the aggregate type registered under the given type code.
+     *
+     * @param typeCode the type code
+     * @return the registered aggregate type
+     * @throws IllegalArgumentException if no aggregate type has been registered under the code
+     */
+    AggregateType typeOfCode(int typeCode) {
+        var aggregateType = byCode.get(typeCode);
+        if (aggregateType == null) {
+            throw new IllegalArgumentException("unknown aggregate type code: " + typeCode);
+        }
+        return aggregateType;
+    }
+
+    /**
+     * Returns the classes of all registered aggregate types.
+     */
+    List<Class<? extends Record>> recordTypes() {
+        return List.copyOf(byType.keySet());
+    }
+
+    /**
+     * A registered aggregate type.
+     *
+     * @param code the stable numeric type code
+     * @param name the stable type name
+     * @param type the aggregate record class
+     */
+    record AggregateType(int code, String name, Class<? extends Record> type) {
+    }
+
+    /**
+     * Builder for {@link SnapshotTypes}.
+     */
+    public static final class Builder {
+
+        private final Map<Class<? extends Record>, AggregateType> byType = new HashMap<>();
+
+        private Builder() {
+            byType.put(RemovedAggregate.class, new AggregateType(REMOVED_TYPE_CODE, REMOVED_TYPE_NAME,
+                    RemovedAggregate.class));
+        }
+
+        /**
+         * Registers an aggregate type.
+         *
+         * @param typeCode the stable numeric type code written by the binary format, must not be negative
+         * @param typeName the stable type name written by the text format
+         * @param type     the aggregate record type
+         * @return this builder
+         * @throws IllegalArgumentException if the code, name or type is already registered or reserved
+         */
+        public Builder register(int typeCode, String typeName, Class<? extends Record> type) {
+            Objects.requireNonNull(typeName, "typeName must not be null");
+            Objects.requireNonNull(type, "type must not be null");
+            if (typeCode < 0) {
+                throw new IllegalArgumentException("typeCode must not be negative, got " + typeCode);
+            }
+            if (typeName.isBlank()) {
+                throw new IllegalArgumentException("typeName must not be blank");
+            }
+            for (var existing : byType.values()) {
+                if (existing.code() == typeCode) {
+                    throw new IllegalArgumentException("type code already registered: " + typeCode);
+                }
+                if (existing.name().equals(typeName)) {
+                    throw new IllegalArgumentException("type name already registered: " + typeName);
+                }
+            }
+            if (byType.containsKey(type)) {
+                throw new IllegalArgumentException("aggregate type already registered: " + type.getName());
+            }
+            byType.put(type, new AggregateType(typeCode, typeName, type));
+            return this;
+        }
+
+        /**
+         * Builds the registry.
+         *
+         * @return the registry
+         */
+        public SnapshotTypes build() {
+            return new SnapshotTypes(byType);
+        }
+    }
+}
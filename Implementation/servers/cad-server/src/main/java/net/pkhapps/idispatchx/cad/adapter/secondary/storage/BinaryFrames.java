@@ -0,0 +1,106 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Length-prefixed frames with a checksum, used by the binary WAL and snapshot formats.
+ * <p>
+ * Each frame consists of an 8-byte header followed by the payload:
+ * <pre>
+ * int    payload length (big-endian, 1..MAX_PAYLOAD_SIZE)
+ * int    CRC32C of the payload
+ * ...    payload
+ * </pre>
+ * A length of zero is never written and marks the end of the data in a preallocated file.
+ */
+public final class BinaryFrames {
+
+    /**
+     * Size of the frame header preceding the payload.
+     */
+    public static final int HEADER_SIZE = 8;
+
+    /**
+     * Largest accepted payload. Anything larger is treated as a corrupt length field.
+     */
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    private BinaryFrames() {
+    }
+
+    /**
+     * Reserves space for the header of a new frame.
+     *
+     * @param out the buffer to write to
+     * @return the offset of the frame in the buffer, to be passed to {@link #endFrame(FrameOutputBuffer, int)}
+     */
+    public static int beginFrame(FrameOutputBuffer out) {
+        var start = out.size();
+        out.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+        return start;
+    }
+
+    /**
+     * Fills in the header of a frame once its payload has been written.
+     *
+     * @param out   the buffer containing the frame
+     * @param start the offset returned by {@link #beginFrame(FrameOutputBuffer)}
+     * @throws IOException if the payload is too large
+     */
+    public static void endFrame(FrameOutputBuffer out, int start) throws IOException {
+        var length = out.size() - start - HEADER_SIZE;
+        if (length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("record too large: " + length + " bytes");
+        }
+        var bytes = out.asByteBuffer();
+        var crc = new CRC32C();
+        crc.update(bytes.slice(start + HEADER_SIZE, length));
+        bytes.putInt(start, length);
+        bytes.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Implements {@link FrameCodec#frameLength(ByteBuffer)} for length-prefixed frames.
+     */
+    public static int frameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < Integer.BYTES) {
+            return -1;
+        }
+        var length = buffer.getInt(buffer.position());
+        if (length == 0) {
+            return FrameCodec.END_OF_DATA;
+        }
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new WalReadException("invalid record length: " + length);
+        }
+        var frameLength = HEADER_SIZE + length;
+        return buffer.remaining() >= frameLength ? frameLength : -1;
+    }
+
+    /**
+     * Verifies the length and checksum of a complete frame and returns its payload.
+     *
+     * @param frame a buffer containing exactly one frame between its position and limit
+     * @return the payload
+     * @throws IllegalArgumentException if the frame is corrupt
+     */
+    public static ByteBuffer payloadOf(ByteBuffer frame) {
+        var position = frame.position();
+        var length = frame.getInt(position);
+        if (length != frame.remaining() - HEADER_SIZE) {
+            throw new IllegalArgumentException("length mismatch: header says " + length
+                    + ", frame has " + (frame.remaining() - HEADER_SIZE));
+        }
+        var payload = frame.slice(position + HEADER_SIZE, length);
+        var crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != frame.getInt(position + 4)) {
+            throw new IllegalArgumentException("checksum mismatch");
+        }
+        return payload;
+    }
+}
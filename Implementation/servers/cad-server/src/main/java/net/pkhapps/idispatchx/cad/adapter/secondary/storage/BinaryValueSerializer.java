@@ -0,0 +1,647 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.domain.model.shared.TimeOrderedIdGenerator;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compact binary serialization of record values, used by the binary WAL and snapshot formats.
+ * <p>
+ * Record components are written in declaration order without field names or type information.
+ * Integers use variable-length (zig-zag) encoding, {@link Instant}s are written as epoch seconds and
+ * nanoseconds, and {@link EventId}s and {@link CommandId}s are written as 16 raw bytes. Every
+ * reference-typed value is preceded by a presence byte, so nullable components need no annotations.
+ * <p>
+ * Because nothing but the values is written, the layout of a record is part of the storage format:
+ * components must not be reordered, enum constants must only be appended, and subtypes of sealed
+ * interfaces must only be appended to the {@code permits} clause.
+ * <p>
+ * Serializers are built eagerly for a fixed set of root record types and are immutable afterwards,
+ * so a single instance may be used by several threads.
+ */
+public final class BinaryValueSerializer {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Map<Class<?>, RecordSerializer> recordSerializers = new HashMap<>();
+
+    /**
+     * Creates a serializer for the given root record types.
+     *
+     * @param rootTypes the record types that can be written and read
+     * @throws IllegalArgumentException if a record (transitively) contains an unsupported component type
+     */
+    public BinaryValueSerializer(Iterable<Class<? extends Record>> rootTypes) {
+        rootTypes.forEach(this::recordSerializer);
+    }
+
+    /**
+     * Writes all components of the given record.
+     *
+     * @param record the record, whose type must be one of the root types
+     * @param out    the buffer to write to
+     * @throws IOException if the record cannot be written
+     */
+    public void writeRecord(Object record, FrameOutputBuffer out) throws IOException {
+        requireRootSerializer(record.getClass()).write(record, out);
+    }
+
+    /**
+     * Reads a record of the given type.
+     *
+     * @param type the record type, must be one of the root types
+     * @param in   the buffer to read from
+     * @return the record
+     * @throws IllegalArgumentException                  if the data is invalid
+     * @throws java.nio.BufferUnderflowException if the data is truncated
+     */
+    public <T> T readRecord(Class<T> type, ByteBuffer in) {
+        return type.cast(requireRootSerializer(type).read(in));
+    }
+
+    private RecordSerializer requireRootSerializer(Class<?> type) {
+        var serializer = recordSerializers.get(type);
+        if (serializer == null) {
+            throw new IllegalArgumentException("not a root type: " + type.getName());
+        }
+        return serializer;
+    }
+
+    // --- Resolution of value serializers ---
+
+    private ValueSerializer serializerFor(Type type, String context) {
+        if (type instanceof ParameterizedType parameterized && parameterized.getRawType() == List.class) {
+            var elementType = parameterized.getActualTypeArguments()[0];
+            return nullable(new ListSerializer(serializerFor(elementType, context)));
+        }
+        if (!(type instanceof Class<?> clazz)) {
+            throw new IllegalArgumentException("unsupported type " + type + " in " + context);
+        }
+        if (clazz.isPrimitive()) {
+            return primitiveSerializer(clazz, context);
+        }
+        var boxed = boxedSerializer(clazz);
+        if (boxed != null) {
+            return nullable(boxed);
+        }
+        if (clazz == String.class) {
+            return nullable(STRING);
+        }
+        if (clazz == Instant.class) {
+            return nullable(INSTANT);
+        }
+        if (clazz == UUID.class) {
+            return nullable(UUID_VALUE);
+        }
+        if (clazz == EventId.class) {
+            return nullable(new IdSerializer<>(EventId::mostSignificantBits, EventId::leastSignificantBits,
+                    EventId::new));
+        }
+        if (clazz == CommandId.class) {
+            return nullable(new IdSerializer<>(CommandId::mostSignificantBits, CommandId::leastSignificantBits,
+                    CommandId::new));
+        }
+        if (clazz == SequenceNumber.class) {
+            return nullable(SEQUENCE_NUMBER);
+        }
+        if (clazz.isEnum()) {
+            return nullable(new EnumSerializer(clazz.getEnumConstants()));
+        }
+        if (clazz.isRecord()) {
+            return nullable(recordSerializer(clazz));
+        }
+        if (clazz.isSealed()) {
+            return nullable(sealedSerializer(clazz, context));
+        }
+        throw new IllegalArgumentException("unsupported type " + clazz.getName() + " in " + context);
+    }
+
+    private RecordSerializer recordSerializer(Class<?> type) {
+        var existing = recordSerializers.get(type);
+        if (existing != null) {
+            return existing;
+        }
+        var serializer = new RecordSerializer(type);
+        // Register before resolving the components to support recursive record types
+        recordSerializers.put(type, serializer);
+        serializer.resolveComponents();
+        return serializer;
+    }
+
+    private ValueSerializer sealedSerializer(Class<?> type, String context) {
+        var permitted = type.getPermittedSubclasses();
+        var subtypes = new RecordSerializer[permitted.length];
+        for (int i = 0; i < permitted.length; i++) {
+            if (!permitted[i].isRecord()) {
+                throw new IllegalArgumentException("permitted subclass " + permitted[i].getName()
+                        + " of " + type.getName() + " is not a record in " + context);
+            }
+            subtypes[i] = recordSerializer(permitted[i]);
+        }
+        return new SealedSerializer(subtypes);
+    }
+
+    private static ValueSerializer primitiveSerializer(Class<?> type, String context) {
+        var serializer = boxedSerializer(type);
+        if (serializer == null) {
+            throw new IllegalArgumentException("unsupported type " + type.getName() + " in " + context);
+        }
+        return serializer;
+    }
+
+    private static @Nullable ValueSerializer boxedSerializer(Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == byte.class || type == Byte.class) {
+            return BYTE;
+        } else if (type == short.class || type == Short.class) {
+            return SHORT;
+        } else if (type == char.class || type == Character.class) {
+            return CHAR;
+        } else if (type == int.class || type == Integer.class) {
+            return INT;
+        } else if (type == long.class || type == Long.class) {
+            return LONG;
+        } else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        } else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        }
+        return null;
+    }
+
+    private static ValueSerializer nullable(ValueSerializer serializer) {
+        return new NullableSerializer(serializer);
+    }
+
+    // --- Variable-length integers ---
+
+    /**
+     * Writes an unsigned variable-length integer, seven bits per byte, least significant group first.
+     */
+    public static void writeVarLong(FrameOutputBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads an integer written by {@link #writeVarLong(FrameOutputBuffer, long)}.
+     *
+     * @throws IllegalArgumentException if the integer is malformed
+     */
+    public static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed variable-length integer");
+    }
+
+    /**
+     * Writes an int as an unsigned variable-length integer.
+     */
+    public static void writeVarInt(FrameOutputBuffer out, int value) {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt(FrameOutputBuffer, int)}.
+     *
+     * @throws IllegalArgumentException if the integer is malformed or out of range
+     */
+    public static int readVarInt(ByteBuffer in) {
+        var value = readVarLong(in);
+        if ((value & ~0xFFFFFFFFL) != 0) {
+            throw new IllegalArgumentException("variable-length integer out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    static void writeSignedVarLong(FrameOutputBuffer out, long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(ByteBuffer in) {
+        var value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeLong(FrameOutputBuffer out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    // --- Value serializers ---
+
+    private interface ValueSerializer {
+        void write(@Nullable Object value, FrameOutputBuffer out) throws IOException;
+
+        @Nullable Object read(ByteBuffer in);
+    }
+
+    private static final ValueSerializer BOOLEAN = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            out.write((Boolean) value ? 1 : 0);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return in.get() != 0;
+        }
+    };
+
+    private static final ValueSerializer BYTE = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            out.write((Byte) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return in.get();
+        }
+    };
+
+    private static final ValueSerializer SHORT = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeSignedVarLong(out, (Short) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return (short) readSignedVarLong(in);
+        }
+    };
+
+    private static final ValueSerializer CHAR = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeVarInt(out, (Character) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return (char) readVarInt(in);
+        }
+    };
+
+    private static final ValueSerializer INT = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeSignedVarLong(out, (Integer) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return (int) readSignedVarLong(in);
+        }
+    };
+
+    private static final ValueSerializer LONG = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeSignedVarLong(out, (Long) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return readSignedVarLong(in);
+        }
+    };
+
+    private static final ValueSerializer FLOAT = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            var bits = Float.floatToIntBits((Float) value);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write(bits >>> shift);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return in.getFloat();
+        }
+    };
+
+    private static final ValueSerializer DOUBLE = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeLong(out, Double.doubleToLongBits((Double) value));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return in.getDouble();
+        }
+    };
+
+    private static final ValueSerializer STRING = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            var bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            var length = readVarInt(in);
+            if (length > in.remaining()) {
+                throw new IllegalArgumentException("string length exceeds record: " + length);
+            }
+            if (in.hasArray()) {
+                var string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+                return string;
+            }
+            var bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private static final ValueSerializer INSTANT = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            var instant = (Instant) value;
+            writeSignedVarLong(out, instant.getEpochSecond());
+            writeVarInt(out, instant.getNano());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return Instant.ofEpochSecond(readSignedVarLong(in), readVarInt(in));
+        }
+    };
+
+    private static final ValueSerializer UUID_VALUE = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            var uuid = (UUID) value;
+            writeLong(out, uuid.getMostSignificantBits());
+            writeLong(out, uuid.getLeastSignificantBits());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return new UUID(in.getLong(), in.getLong());
+        }
+    };
+
+    private static final ValueSerializer SEQUENCE_NUMBER = new ValueSerializer() {
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeVarLong(out, ((SequenceNumber) value).value());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return new SequenceNumber(readVarLong(in));
+        }
+    };
+
+    private static final class NullableSerializer implements ValueSerializer {
+
+        private final ValueSerializer delegate;
+
+        NullableSerializer(ValueSerializer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(@Nullable Object value, FrameOutputBuffer out) throws IOException {
+            if (value == null) {
+                out.write(0);
+            } else {
+                out.write(1);
+                delegate.write(value, out);
+            }
+        }
+
+        @Override
+        public @Nullable Object read(ByteBuffer in) {
+            return switch (in.get()) {
+                case 0 -> null;
+                case 1 -> delegate.read(in);
+                default -> throw new IllegalArgumentException("invalid presence marker");
+            };
+        }
+    }
+
+    /**
+     * Identifiers are written as their 16 bytes.
+     */
+    private static final class IdSerializer<T> implements ValueSerializer {
+
+        private final ToLongFunction<T> mostSignificantBits;
+        private final ToLongFunction<T> leastSignificantBits;
+        private final TimeOrderedIdGenerator.Factory<T> factory;
+
+        IdSerializer(ToLongFunction<T> mostSignificantBits, ToLongFunction<T> leastSignificantBits,
+                     TimeOrderedIdGenerator.Factory<T> factory) {
+            this.mostSignificantBits = mostSignificantBits;
+            this.leastSignificantBits = leastSignificantBits;
+            this.factory = factory;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(Object value, FrameOutputBuffer out) {
+            var id = (T) value;
+            writeLong(out, mostSignificantBits.applyAsLong(id));
+            writeLong(out, leastSignificantBits.applyAsLong(id));
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            return factory.create(in.getLong(), in.getLong());
+        }
+    }
+
+    private static final class EnumSerializer implements ValueSerializer {
+
+        private final Object[] constants;
+
+        EnumSerializer(Object[] constants) {
+            this.constants = constants;
+        }
+
+        @Override
+        public void write(Object value, FrameOutputBuffer out) {
+            writeVarInt(out, ((Enum<?>) value).ordinal());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            var ordinal = readVarInt(in);
+            if (ordinal < 0 || ordinal >= constants.length) {
+                throw new IllegalArgumentException("invalid enum ordinal: " + ordinal);
+            }
+            return constants[ordinal];
+        }
+    }
+
+    private static final class ListSerializer implements ValueSerializer {
+
+        private final ValueSerializer elementSerializer;
+
+        ListSerializer(ValueSerializer elementSerializer) {
+            this.elementSerializer = elementSerializer;
+        }
+
+        @Override
+        public void write(Object value, FrameOutputBuffer out) throws IOException {
+            var list = (List<?>) value;
+            writeVarInt(out, list.size());
+            for (var element : list) {
+                elementSerializer.write(element, out);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            var size = readVarInt(in);
+            // Every element takes at least one byte
+            if (size > in.remaining()) {
+                throw new IllegalArgumentException("list size exceeds record: " + size);
+            }
+            var elements = new @Nullable Object[size];
+            for (int i = 0; i < size; i++) {
+                elements[i] = elementSerializer.read(in);
+            }
+            return Arrays.asList(elements);
+        }
+    }
+
+    private static final class SealedSerializer implements ValueSerializer {
+
+        private final RecordSerializer[] subtypes;
+
+        SealedSerializer(RecordSerializer[] subtypes) {
+            this.subtypes = subtypes;
+        }
+
+        @Override
+        public void write(Object value, FrameOutputBuffer out) throws IOException {
+            for (int i = 0; i < subtypes.length; i++) {
+                if (subtypes[i].type == value.getClass()) {
+                    writeVarInt(out, i);
+                    subtypes[i].write(value, out);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("unsupported subtype: " + value.getClass().getName());
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            var index = readVarInt(in);
+            if (index < 0 || index >= subtypes.length) {
+                throw new IllegalArgumentException("invalid subtype index: " + index);
+            }
+            return subtypes[index].read(in);
+        }
+    }
+
+    private final class RecordSerializer implements ValueSerializer {
+
+        private final Class<?> type;
+        private final RecordComponent[] components;
+        private final MethodHandle[] accessors;
+        private final MethodHandle constructor;
+        private ValueSerializer[] componentSerializers = new ValueSerializer[0];
+
+        RecordSerializer(Class<?> type) {
+            this.type = type;
+            this.components = type.getRecordComponents();
+            this.accessors = new MethodHandle[components.length];
+            var parameterTypes = new Class<?>[components.length];
+            try {
+                for (int i = 0; i < components.length; i++) {
+                    var accessor = components[i].getAccessor();
+                    accessor.setAccessible(true);
+                    accessors[i] = LOOKUP.unreflect(accessor)
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                    parameterTypes[i] = components[i].getType();
+                }
+                var canonicalConstructor = type.getDeclaredConstructor(parameterTypes);
+                canonicalConstructor.setAccessible(true);
+                this.constructor = LOOKUP.unreflectConstructor(canonicalConstructor)
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalArgumentException("cannot access record " + type.getName(), e);
+            }
+        }
+
+        void resolveComponents() {
+            var serializers = new ValueSerializer[components.length];
+            for (int i = 0; i < components.length; i++) {
+                serializers[i] = serializerFor(components[i].getGenericType(),
+                        type.getName() + "." + components[i].getName());
+            }
+            componentSerializers = serializers;
+        }
+
+        @Override
+        public void write(Object value, FrameOutputBuffer out) throws IOException {
+            Objects.requireNonNull(value, "value must not be null");
+            for (int i = 0; i < accessors.length; i++) {
+                @Nullable Object componentValue;
+                try {
+                    componentValue = (Object) accessors[i].invokeExact(value);
+                } catch (Throwable e) {
+                    throw new IOException("cannot read component " + components[i].getName()
+                            + " of " + type.getName(), e);
+                }
+                componentSerializers[i].write(componentValue, out);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer in) {
+            var arguments = new @Nullable Object[componentSerializers.length];
+            for (int i = 0; i < componentSerializers.length; i++) {
+                arguments[i] = componentSerializers[i].read(in);
+            }
+            try {
+                return (Object) constructor.invokeExact(arguments);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("cannot construct " + type.getName() + ": " + e.getMessage(), e);
+            } catch (Throwable e) {
+                throw new IllegalStateException("cannot construct " + type.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File system operations on the directories of the storage adapters.
+ */
+public final class Directories {
+
+    private static final Logger log = LoggerFactory.getLogger(Directories.class);
+
+    private Directories() {
+    }
+
+    /**
+     * Makes the creation, renaming and deletion of files in the directory durable.
+     *
+     * @param directory the directory to sync
+     */
+    public static void sync(Path directory) {
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on all platforms (e.g. Windows); the rename itself is still atomic
+            log.debug("Could not sync directory {}", directory, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Detects the boundaries of the frames that records are stored in, so that {@link FrameReader} can
+ * split a file into frames without decoding them.
+ * <p>
+ * Files may be preallocated with zeros, so every codec must recognize zero bytes at a frame boundary as
+ * the end of the written data.
+ */
+public interface FrameCodec {
+
+    /**
+     * Returned by {@link #frameLength(ByteBuffer)} when the buffer is positioned at the zero padding
+     * that follows the last written frame.
+     */
+    int END_OF_DATA = 0;
+
+    /**
+     * Returns the length of the frame starting at the current position of the buffer, without
+     * consuming any bytes. Must be thread-safe.
+     *
+     * @param buffer the buffer containing zero or more frames
+     * @return the length of the frame, {@link #END_OF_DATA} if the buffer is positioned at the end of the
+     * written data, or -1 if the buffer does not contain a complete frame
+     * @throws net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException if the frame boundary cannot be
+     *                                                                          determined because the data is corrupt
+     */
+    int frameLength(ByteBuffer buffer);
+}
@@ -0,0 +1,37 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A growable, reusable output buffer for encoding WAL and snapshot records.
+ * <p>
+ * Unlike {@link ByteArrayOutputStream#toByteArray()}, {@link #asByteBuffer()} exposes the
+ * encoded bytes without copying them, and {@link #truncate(int)} allows discarding a record
+ * that failed to encode halfway through.
+ */
+public final class FrameOutputBuffer extends ByteArrayOutputStream {
+
+    public FrameOutputBuffer(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Discards everything written after the given size.
+     *
+     * @param size the size to truncate to, must not exceed the current size
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > count) {
+            throw new IllegalArgumentException("size out of range: " + size);
+        }
+        count = size;
+    }
+
+    /**
+     * Returns a buffer view of the bytes written so far. The view is invalidated by further writes.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+}
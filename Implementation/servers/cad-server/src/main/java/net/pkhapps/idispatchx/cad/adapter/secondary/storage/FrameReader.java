@@ -0,0 +1,149 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+/**
+ * Reads consecutive frames from a region of a WAL or snapshot file using buffered positional reads.
+ * <p>
+ * The reader does not decode frames; it only uses the codec to find frame boundaries.
+ * Reading stops at the end of the region or at the zero padding that marks the end of the
+ * written data in a preallocated segment. Bytes at the end of the region that do not form a
+ * complete frame are reported through {@link #hasTrailingBytes()}, which typically indicates
+ * a write torn by a crash.
+ */
+public final class FrameReader {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final FrameCodec codec;
+    private final long limit;
+    private ByteBuffer buffer;
+    private long bufferOffset;
+    private long readOffset;
+    private long frameOffset;
+    private boolean endOfRegion;
+    private boolean endOfData;
+
+    /**
+     * Creates a reader for the region {@code [start, limit)} of the given channel.
+     *
+     * @param channel the channel to read from, not closed by the reader
+     * @param codec   the codec used to detect frame boundaries
+     * @param start   the file offset of the first frame
+     * @param limit   the file offset at which reading stops
+     */
+    public FrameReader(FileChannel channel, FrameCodec codec, long start, long limit) {
+        this(channel, codec, start, limit, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader for the region {@code [start, limit)} of the given channel with the given initial
+     * buffer size. Larger buffers mean fewer, larger reads when streaming through a whole segment.
+     *
+     * @param channel    the channel to read from, not closed by the reader
+     * @param codec      the codec used to detect frame boundaries
+     * @param start      the file offset of the first frame
+     * @param limit      the file offset at which reading stops
+     * @param bufferSize the initial size of the read buffer
+     */
+    public FrameReader(FileChannel channel, FrameCodec codec, long start, long limit, int bufferSize) {
+        this.channel = Objects.requireNonNull(channel, "channel must not be null");
+        this.codec = Objects.requireNonNull(codec, "codec must not be null");
+        if (start < 0 || start > limit) {
+            throw new IllegalArgumentException("invalid region: [" + start + ", " + limit + ")");
+        }
+        this.limit = limit;
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1, got " + bufferSize);
+        }
+        this.buffer = ByteBuffer.allocate(bufferSize).flip();
+        this.bufferOffset = start;
+        this.readOffset = start;
+        this.frameOffset = start;
+    }
+
+    /**
+     * Returns the next complete frame.
+     * <p>
+     * The returned buffer is a view into the reader's internal buffer and is only valid
+     * until the next call to this method.
+     *
+     * @return the next frame, or null if the region contains no more complete frames or the end of the
+     * written data has been reached
+     * @throws IOException if reading fails
+     * @throws net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException if a frame boundary cannot be determined
+     */
+    public @Nullable ByteBuffer nextFrame() throws IOException {
+        while (!endOfData) {
+            if (buffer.hasRemaining()) {
+                int length = codec.frameLength(buffer);
+                if (length == FrameCodec.END_OF_DATA) {
+                    endOfData = true;
+                    return null;
+                }
+                if (length > 0) {
+                    var position = buffer.position();
+                    frameOffset = bufferOffset + position;
+                    buffer.position(position + length);
+                    return buffer.slice(position, length);
+                }
+            }
+            if (endOfRegion) {
+                return null;
+            }
+            fill();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the file offset of the frame most recently returned by {@link #nextFrame()}.
+     */
+    public long frameOffset() {
+        return frameOffset;
+    }
+
+    /**
+     * Returns the file offset immediately after the frame most recently returned by {@link #nextFrame()}.
+     */
+    public long position() {
+        return bufferOffset + buffer.position();
+    }
+
+    /**
+     * Returns true if the end of the region has been reached and there are bytes left that do not
+     * form a complete frame.
+     */
+    public boolean hasTrailingBytes() {
+        return !endOfData && endOfRegion && buffer.hasRemaining();
+    }
+
+    private void fill() throws IOException {
+        bufferOffset += buffer.position();
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            // A single frame is larger than the buffer
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+        }
+        var toRead = limit - readOffset;
+        if (toRead < buffer.remaining()) {
+            buffer.limit(buffer.position() + (int) toRead);
+        }
+        var read = toRead == 0 ? -1 : channel.read(buffer, readOffset);
+        if (read < 0) {
+            endOfRegion = true;
+        } else {
+            readOffset += read;
+            if (readOffset >= limit) {
+                endOfRegion = true;
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,110 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Newline-terminated JSON frames, used by the text WAL and snapshot formats.
+ * <p>
+ * Identifiers and timestamps are written as plain strings to keep the files readable during development
+ * and debugging.
+ */
+public final class NdjsonFrames {
+
+    /**
+     * The byte that terminates every frame.
+     */
+    public static final byte NEWLINE = '\n';
+
+    private NdjsonFrames() {
+    }
+
+    /**
+     * Creates an object mapper that writes identifiers and timestamps as plain strings.
+     */
+    public static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
+                .registerModule(createModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static SimpleModule createModule() {
+        var module = new SimpleModule("storage");
+        addStringMapping(module, Instant.class, Instant::toString, Instant::parse);
+        addStringMapping(module, EventId.class, EventId::toString, EventId::fromString);
+        addStringMapping(module, CommandId.class, CommandId::toString, CommandId::fromString);
+        return module;
+    }
+
+    private static <T> void addStringMapping(SimpleModule module, Class<T> type,
+                                             Function<T, String> toString, Function<String, T> fromString) {
+        module.addSerializer(type, new JsonSerializer<>() {
+            @Override
+            public void serialize(T value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                generator.writeString(toString.apply(value));
+            }
+        });
+        module.addDeserializer(type, new JsonDeserializer<>() {
+            @Override
+            public T deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                return fromString.apply(parser.getValueAsString());
+            }
+        });
+    }
+
+    /**
+     * Implements {@link FrameCodec#frameLength(ByteBuffer)} for newline-terminated frames.
+     */
+    public static int frameLength(ByteBuffer buffer) {
+        if (buffer.hasRemaining() && buffer.get(buffer.position()) == 0) {
+            return FrameCodec.END_OF_DATA;
+        }
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == NEWLINE) {
+                return i - buffer.position() + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a newline-terminated frame.
+     */
+    public static JsonNode readTree(ObjectMapper objectMapper, ByteBuffer frame) throws IOException {
+        if (frame.hasArray()) {
+            return objectMapper.readTree(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        }
+        var bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return objectMapper.readTree(bytes);
+    }
+
+    /**
+     * Returns the value of a field that must be present and not null.
+     *
+     * @throws IllegalArgumentException if the field is missing or null
+     */
+    public static JsonNode requireField(JsonNode root, String name) {
+        var node = root.get(name);
+        if (node == null || node.isNull()) {
+            throw new IllegalArgumentException("missing field: " + name);
+        }
+        return node;
+    }
+}
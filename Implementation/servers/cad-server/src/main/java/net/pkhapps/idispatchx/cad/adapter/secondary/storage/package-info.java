@@ -0,0 +1,4 @@
+@NullMarked
+package net.pkhapps.idispatchx.cad.adapter.secondary.storage;
+
+import org.jspecify.annotations.NullMarked;
@@ -0,0 +1,77 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.BinaryFrames;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.BinaryValueSerializer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Binary WAL format: length-prefixed frames with a per-record checksum, see {@link BinaryFrames}.
+ * <p>
+ * Each frame consists of an 8-byte header followed by the payload:
+ * <pre>
+ * int    payload length (big-endian, 1..MAX_PAYLOAD_SIZE)
+ * int    CRC32C of the payload
+ * varint sequence number
+ * byte   flags (bit 0: more records of the same batch follow)
+ * varint event type code
+ * ...    event record components, see {@link BinaryValueSerializer}
+ * </pre>
+ * A length of zero is never written and marks the end of the data in a preallocated segment.
+ */
+final class BinaryWalRecordCodec implements WalRecordCodec {
+
+    private static final int FLAG_MORE = 0x01;
+
+    private final WalEventTypes eventTypes;
+    private final BinaryValueSerializer serializer;
+
+    /**
+     * Creates a codec for the given event types.
+     *
+     * @param eventTypes the registry of event types that can be stored in the WAL
+     * @throws IllegalArgumentException if an event type has a component type that cannot be serialized
+     */
+    BinaryWalRecordCodec(WalEventTypes eventTypes) {
+        this.eventTypes = Objects.requireNonNull(eventTypes, "eventTypes must not be null");
+        this.serializer = new BinaryValueSerializer(eventTypes.recordTypes());
+    }
+
+    @Override
+    public void encode(WalRecord record, FrameOutputBuffer out) throws IOException {
+        var eventType = eventTypes.typeOf(record.event());
+        var start = BinaryFrames.beginFrame(out);
+        BinaryValueSerializer.writeVarLong(out, record.sequenceNumber().value());
+        out.write(record.endOfBatch() ? 0 : FLAG_MORE);
+        BinaryValueSerializer.writeVarInt(out, eventType.code());
+        serializer.writeRecord(record.event(), out);
+        BinaryFrames.endFrame(out, start);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        return BinaryFrames.frameLength(buffer);
+    }
+
+    @Override
+    public WalRecord decode(ByteBuffer frame) {
+        try {
+            var payload = BinaryFrames.payloadOf(frame);
+            var sequenceNumber = new SequenceNumber(BinaryValueSerializer.readVarLong(payload));
+            var flags = payload.get();
+            var eventType = eventTypes.typeOfCode(BinaryValueSerializer.readVarInt(payload));
+            var event = serializer.readRecord(eventType.type(), payload);
+            if (payload.hasRemaining()) {
+                throw new IllegalArgumentException(payload.remaining() + " trailing bytes");
+            }
+            return new WalRecord(sequenceNumber, event, (flags & FLAG_MORE) == 0);
+        } catch (RuntimeException e) {
+            throw new WalReadException("corrupt WAL record: " + e.getMessage(), e);
+        }
+    }
+}
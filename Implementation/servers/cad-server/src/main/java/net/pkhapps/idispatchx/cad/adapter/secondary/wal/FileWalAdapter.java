@@ -0,0 +1,165 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalWriteException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * File-backed implementation of the {@link WalPort} with group commit.
+ * <p>
+ * Concurrent writes from command handlers are collected into commit groups by a {@link GroupCommitter},
+ * so that a single sync makes a whole group durable. Each caller still blocks until its own events
+ * have been synced, preserving the WAL-before-state guarantee.
+ * <p>
+ * The WAL is stored as preallocated segment files (see {@link WalLog}). On open, incomplete records and
+ * batches at the end of the active segment (left behind by a crash) are discarded. Truncation removes
+ * whole segments only.
+ * <p>
+ * Replay reads, decodes and delivers events in a pipeline (see {@link WalReplayer}); the consumer is
+ * still called on the replaying thread, one event at a time and in sequence order.
+ * <p>
+ * A warm standby follows the WAL of the active server with a {@link FileWalFollower} and opens it for
+ * writing through {@link FileWalFollower#takeOver()} on failover.
+ */
+public final class FileWalAdapter implements WalPort, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileWalAdapter.class);
+
+    private final FileWalConfig config;
+    private final WalRecordCodec codec;
+    private final WalLog wal;
+    private final GroupCommitter committer;
+    private final WalReplayer replayer;
+
+    /**
+     * Opens the WAL in the configured directory, creating it if it does not exist.
+     *
+     * @param config     the WAL configuration
+     * @param eventTypes the registry of event types that can be stored in the WAL
+     * @throws WalReadException if the existing WAL cannot be opened or contains corrupt records in strict mode
+     */
+    public FileWalAdapter(FileWalConfig config, WalEventTypes eventTypes) {
+        this(config, eventTypes, new MetricsRegistry());
+    }
+
+    /**
+     * Opens the WAL in the configured directory, creating it if it does not exist, and records the
+     * latencies of the write path into the {@code wal.*} histograms of the given registry.
+     *
+     * @param config          the WAL configuration
+     * @param eventTypes      the registry of event types that can be stored in the WAL
+     * @param metricsRegistry the registry to record metrics into
+     * @throws WalReadException if the existing WAL cannot be opened or contains corrupt records in strict mode
+     */
+    public FileWalAdapter(FileWalConfig config, WalEventTypes eventTypes, MetricsRegistry metricsRegistry) {
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        Objects.requireNonNull(eventTypes, "eventTypes must not be null");
+        this.codec = WalRecordCodec.forFormat(config.format(), eventTypes);
+        try {
+            Files.createDirectories(config.directory());
+            this.wal = WalLog.open(config, codec);
+        } catch (IOException e) {
+            throw new WalReadException("could not open WAL in " + config.directory(), e);
+        }
+        this.committer = new GroupCommitter(wal, codec, config.maxGroupSize(),
+                Objects.requireNonNull(metricsRegistry, "metricsRegistry must not be null"));
+        this.replayer = new WalReplayer(codec, config.corruptionMode(), WalReplayer.defaultDecoderThreads(),
+                WalReplayer.DEFAULT_CHUNK_SIZE);
+        log.info("Opened WAL in {} with {} segments at sequence number {}", config.directory(),
+                wal.segments().size(), wal.lastSequence());
+    }
+
+    @Override
+    public SequenceNumber write(DomainEvent event) {
+        Objects.requireNonNull(event, "event must not be null");
+        return await(committer.submit(List.of(event)));
+    }
+
+    @Override
+    public SequenceNumber writeBatch(List<? extends DomainEvent> events) {
+        Objects.requireNonNull(events, "events must not be null");
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("events must not be empty");
+        }
+        return await(committer.submit(List.copyOf(events)));
+    }
+
+    @Override
+    public void replayFrom(SequenceNumber from, Consumer<DomainEvent> consumer) {
+        Objects.requireNonNull(from, "from must not be null");
+        replayAfter(from.value(), consumer);
+    }
+
+    @Override
+    public void replay(Consumer<DomainEvent> consumer) {
+        replayAfter(0, consumer);
+    }
+
+    private void replayAfter(long after, Consumer<DomainEvent> consumer) {
+        Objects.requireNonNull(consumer, "consumer must not be null");
+        replayer.replay(wal.segments(), after, consumer);
+    }
+
+    @Override
+    public void truncate(SequenceNumber upTo) {
+        Objects.requireNonNull(upTo, "upTo must not be null");
+        await(committer.submitExclusive(walLog -> walLog.truncate(upTo.value())));
+    }
+
+    @Override
+    public SequenceNumber currentSequence() {
+        var lastSequence = wal.lastSequence();
+        return lastSequence == 0 ? SequenceNumber.start() : new SequenceNumber(lastSequence);
+    }
+
+    @Override
+    public long bytesWritten() {
+        return wal.bytesAppended();
+    }
+
+    /**
+     * Returns the sequence number of the last record that has been synced to disk, or 0 if the WAL is empty.
+     */
+    long lastSequence() {
+        return wal.lastSequence();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Rethrow with the caller's stack trace, keeping the writer thread's exception as the cause
+            if (e.getCause() instanceof WalWriteException cause) {
+                throw new WalWriteException(cause.getMessage(), cause);
+            }
+            throw new WalWriteException("WAL operation failed", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the WAL after all pending writes have been committed.
+     */
+    @Override
+    public void close() {
+        committer.close();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not close WAL in " + config.directory(), e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Configuration of the file-backed WAL adapter.
+ *
+ * @param directory      the directory containing the WAL files
+ * @param format         the record format, selected at startup per ADR-0006
+ * @param corruptionMode how corrupt entries are handled during replay, per ADR-0006
+ * @param maxGroupSize   the maximum number of write requests committed with a single sync
+ * @param segmentSize    the preallocated size of a WAL segment file in bytes
+ */
+public record FileWalConfig(
+        Path directory,
+        Format format,
+        CorruptionMode corruptionMode,
+        int maxGroupSize,
+        long segmentSize
+) {
+
+    /**
+     * Default maximum number of write requests per commit group.
+     */
+    public static final int DEFAULT_MAX_GROUP_SIZE = 256;
+
+    /**
+     * Default size of a WAL segment file.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Smallest allowed size of a WAL segment file.
+     */
+    public static final long MIN_SEGMENT_SIZE = 4 * 1024;
+
+    /**
+     * Creates a WAL configuration with validation.
+     *
+     * @param directory      the directory containing the WAL files
+     * @param format         the record format
+     * @param corruptionMode how corrupt entries are handled during replay
+     * @param maxGroupSize   the maximum number of write requests committed with a single sync
+     * @param segmentSize    the preallocated size of a WAL segment file in bytes
+     */
+    public FileWalConfig {
+        Objects.requireNonNull(directory, "directory must not be null");
+        Objects.requireNonNull(format, "format must not be null");
+        Objects.requireNonNull(corruptionMode, "corruptionMode must not be null");
+        if (maxGroupSize < 1) {
+            throw new IllegalArgumentException("maxGroupSize must be at least 1, got " + maxGroupSize);
+        }
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE + ", got " + segmentSize);
+        }
+    }
+
+    /**
+     * Creates a configuration with default settings for the given directory and format.
+     *
+     * @param directory the directory containing the WAL files
+     * @param format    the record format
+     * @return the configuration
+     */
+    public static FileWalConfig of(Path directory, Format format) {
+        return new FileWalConfig(directory, format, CorruptionMode.STRICT, DEFAULT_MAX_GROUP_SIZE,
+                DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * The on-disk record format.
+     */
+    public enum Format {
+        /**
+         * Newline-delimited JSON, for development and debugging.
+         */
+        TEXT("ndjson"),
+        /**
+         * Compact length-prefixed binary records with checksums, for production.
+         */
+        BINARY("bin");
+
+        private final String fileExtension;
+
+        Format(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        /**
+         * Returns the extension of the WAL files written in this format.
+         */
+        public String fileExtension() {
+            return fileExtension;
+        }
+    }
+
+    /**
+     * How corrupt WAL entries are handled during replay.
+     */
+    public enum CorruptionMode {
+        /**
+         * Halt immediately on the first corrupt WAL entry.
+         */
+        STRICT,
+        /**
+         * Log a warning, skip corrupt entries, and continue replay.
+         */
+        LENIENT
+    }
+}
@@ -0,0 +1,548 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameReader;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.clock.ClockPort;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows a WAL written by another server, for a warm standby.
+ * <p>
+ * The follower reads the segment files of the leader's WAL directory read-only and hands every new event
+ * to the consumer as soon as the batch it belongs to is complete and the leader has synced it, as published
+ * in the {@link WalSyncMarker}. Incomplete or unsynced batches at the end of the active segment, which the
+ * leader is still writing, are left alone and picked up on the next read. Changes are detected with a
+ * {@link WatchService} on the directory. Since change notifications are not available on all file systems
+ * (such as most network file systems), the directory is also polled, with an interval that grows while the
+ * WAL is idle and drops back as soon as new records appear.
+ * <p>
+ * On failover, {@link #takeOver()} stops following, opens the WAL for writing and replays only the records
+ * that the follower had not applied yet. Since only synced events are applied, the standby never gets ahead
+ * of what survives a crash of the leader.
+ */
+public final class FileWalFollower implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileWalFollower.class);
+
+    /**
+     * Polling interval right after a change has been seen.
+     */
+    static final long MIN_POLL_INTERVAL_MILLIS = 2;
+
+    /**
+     * Polling interval when the WAL has been idle for a while.
+     */
+    static final long MAX_POLL_INTERVAL_MILLIS = 250;
+
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    private final FileWalConfig config;
+    private final WalEventTypes eventTypes;
+    private final WalRecordCodec codec;
+    private final ClockPort clock;
+    private final Consumer<DomainEvent> consumer;
+    private final String extension;
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+    private @Nullable Thread followerThread;
+    private @Nullable WatchService watchService;
+    private volatile @Nullable Exception failure;
+
+    // State of the reading position, only accessed by the thread that reads the WAL
+    private @Nullable WalSegment segment;
+    private @Nullable FileChannel channel;
+    private long position;
+    private boolean incompleteTail;
+    private boolean truncated;
+    private boolean awaitingSync;
+    private long syncedSequence;
+
+    // Progress, published to lag()
+    private volatile long appliedSequence;
+    private volatile long observedSequence;
+    private volatile @Nullable Instant lastAppliedTimestamp;
+    private volatile @Nullable Instant pendingSince;
+
+    /**
+     * Creates a follower for the WAL in the configured directory. The follower does not read anything
+     * until {@link #start()} is called.
+     *
+     * @param config     the configuration of the leader's WAL
+     * @param eventTypes the registry of event types that can be stored in the WAL
+     * @param clock      the clock used to measure the replication lag
+     * @param from       the sequence number after which events are applied, typically that of the snapshot
+     *                   the standby was initialized from, or null to apply the whole WAL
+     * @param consumer   receives each event in order; called on the follower thread until {@link #takeOver()}
+     */
+    public FileWalFollower(FileWalConfig config, WalEventTypes eventTypes, ClockPort clock,
+                           @Nullable SequenceNumber from, Consumer<DomainEvent> consumer) {
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.eventTypes = Objects.requireNonNull(eventTypes, "eventTypes must not be null");
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.consumer = Objects.requireNonNull(consumer, "consumer must not be null");
+        this.codec = WalRecordCodec.forFormat(config.format(), eventTypes);
+        this.extension = config.format().fileExtension();
+        this.appliedSequence = from == null ? 0 : from.value();
+        this.observedSequence = appliedSequence;
+    }
+
+    /**
+     * Starts following the WAL on a background thread.
+     *
+     * @throws IllegalStateException if the follower has already been started or stopped
+     */
+    public synchronized void start() {
+        if (followerThread != null || stopSignal.getCount() == 0) {
+            throw new IllegalStateException("follower has already been started");
+        }
+        try {
+            var watchService = config.directory().getFileSystem().newWatchService();
+            config.directory().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            this.watchService = watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.info("Change notification not available for {}, polling only", config.directory(), e);
+        }
+        followerThread = Thread.ofPlatform()
+                .name("wal-follower")
+                .daemon(true)
+                .start(this::follow);
+    }
+
+    private void follow() {
+        var interval = MIN_POLL_INTERVAL_MILLIS;
+        try {
+            while (stopSignal.getCount() > 0) {
+                var applied = catchUp();
+                interval = applied > 0 ? MIN_POLL_INTERVAL_MILLIS : Math.min(interval * 2, MAX_POLL_INTERVAL_MILLIS);
+                if (awaitChange(interval)) {
+                    interval = MIN_POLL_INTERVAL_MILLIS;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            log.error("Stopped following the WAL in {}", config.directory(), e);
+        }
+    }
+
+    /**
+     * Waits until the directory changes or the interval has elapsed.
+     *
+     * @return true if a change was notified
+     */
+    private boolean awaitChange(long intervalMillis) throws InterruptedException {
+        var watchService = this.watchService;
+        if (watchService == null) {
+            stopSignal.await(intervalMillis, TimeUnit.MILLISECONDS);
+            return false;
+        }
+        var key = watchService.poll(intervalMillis, TimeUnit.MILLISECONDS);
+        var changed = false;
+        while (key != null) {
+            changed |= !key.pollEvents().isEmpty();
+            key.reset();
+            key = watchService.poll();
+        }
+        return changed;
+    }
+
+    /**
+     * Applies all complete batches that the leader has synced since the last call.
+     * Must not be called while the follower is running in the background.
+     *
+     * @return the number of applied events
+     * @throws IOException      if the WAL cannot be read
+     * @throws WalReadException if the WAL contains corrupt records in strict mode, or if records the
+     *                          follower has not applied yet have already been truncated
+     */
+    int catchUp() throws IOException {
+        if (segment == null && !openFirstSegment()) {
+            return 0;
+        }
+        var synced = WalSyncMarker.read(config.directory());
+        if (synced > syncedSequence) {
+            syncedSequence = synced;
+        }
+        var applied = 0;
+        while (true) {
+            applied += readSegment();
+            if (awaitingSync) {
+                return applied;
+            }
+            var next = nextSegment();
+            if (next == null) {
+                return applied;
+            }
+            if (!truncated) {
+                // The leader syncs a segment before it starts the next one, so the rest of it is there by now
+                applied += readSegment();
+                if (awaitingSync) {
+                    // Synced, but the sync marker has not caught up yet
+                    return applied;
+                }
+            }
+            if (truncated) {
+                if (next.firstSequence() > appliedSequence + 1) {
+                    // The leader truncated records the follower had not applied yet
+                    throw truncatedPast(appliedSequence);
+                }
+            } else {
+                if (incompleteTail) {
+                    onCorruption("incomplete or corrupt WAL data at offset " + position + " in " + segment
+                            + " before segment " + next);
+                }
+                if (next.firstSequence() > appliedSequence + 1) {
+                    onCorruption("WAL records " + (appliedSequence + 1) + " to " + (next.firstSequence() - 1)
+                            + " are missing before segment " + next);
+                }
+            }
+            openSegment(next, 0);
+        }
+    }
+
+    private boolean openFirstSegment() throws IOException {
+        var segments = listSegments();
+        if (segments.isEmpty()) {
+            return false;
+        }
+        observe(segments.getLast().firstSequence() - 1);
+        var after = appliedSequence;
+        @Nullable WalSegment first = null;
+        for (var candidate : segments) {
+            if (candidate.firstSequence() <= after + 1) {
+                first = candidate;
+            }
+        }
+        if (first == null) {
+            throw truncatedPast(after);
+        }
+        openSegment(first, 0);
+        if (first.firstSequence() <= after) {
+            position = WalReplayer.seek(Objects.requireNonNull(channel), codec, first.path(), after, channel.size());
+        }
+        log.info("Following WAL in {} from segment {} after sequence number {}", config.directory(), first, after);
+        return true;
+    }
+
+    private WalReadException truncatedPast(long sequence) {
+        return new WalReadException("the WAL in " + config.directory() + " has been truncated past sequence number "
+                + sequence + ", the standby must be initialized from a newer snapshot");
+    }
+
+    private void openSegment(WalSegment next, long start) throws IOException {
+        var newChannel = FileChannel.open(next.path(), StandardOpenOption.READ);
+        closeChannel();
+        segment = next;
+        channel = newChannel;
+        position = start;
+        incompleteTail = false;
+        truncated = false;
+        log.debug("Following WAL segment {}", next);
+    }
+
+    /**
+     * Reads the current segment from the end of the last applied batch and applies all complete batches,
+     * stopping at the first batch beyond the sync marker.
+     * <p>
+     * The leader may truncate the segment while it is being read, recycling the file for a new segment, so
+     * anything unexpected found after the segment has disappeared is discarded as truncation rather than
+     * reported as corruption. Whether records were lost is decided when moving to the next segment.
+     */
+    private int readSegment() throws IOException {
+        var channel = Objects.requireNonNull(this.channel);
+        awaitingSync = false;
+        if (checkTruncated()) {
+            return 0;
+        }
+        var reader = new FrameReader(channel, codec, position, Math.max(position, channel.size()),
+                READ_BUFFER_SIZE);
+        var batch = new ArrayList<DomainEvent>();
+        var batchSequence = appliedSequence;
+        var applied = 0;
+        var framingLost = false;
+        var corrupt = false;
+        while (true) {
+            ByteBuffer frame;
+            try {
+                frame = reader.nextFrame();
+            } catch (WalReadException e) {
+                // Either a write in progress or corruption; decided once the next segment exists
+                framingLost = true;
+                break;
+            }
+            if (frame == null) {
+                break;
+            }
+            WalRecord record;
+            try {
+                record = codec.decode(frame);
+            } catch (WalReadException e) {
+                if (!corrupt) {
+                    corrupt = true;
+                    log.debug("Unreadable WAL record at offset {} in {}", reader.frameOffset(), segment, e);
+                }
+                continue;
+            }
+            if (corrupt) {
+                if (checkTruncated()) {
+                    return applied;
+                }
+                // A valid record follows the corrupt one, so this is not a write in progress
+                onCorruption("corrupt WAL record before offset " + reader.frameOffset() + " in " + segment);
+                corrupt = false;
+            }
+            var sequence = record.sequenceNumber().value();
+            if (sequence > batchSequence) {
+                if (sequence != batchSequence + 1) {
+                    if (checkTruncated()) {
+                        return applied;
+                    }
+                    onCorruption("expected WAL record " + (batchSequence + 1) + " but found " + sequence
+                            + " at offset " + reader.frameOffset() + " in " + segment);
+                }
+                if (batch.isEmpty()) {
+                    pendingSince = record.event().timestamp();
+                }
+                batch.add(record.event());
+                batchSequence = sequence;
+                observe(sequence);
+            }
+            if (record.endOfBatch()) {
+                if (batchSequence > syncedSequence && !batch.isEmpty()) {
+                    // Not synced yet and could still be lost in a crash of the leader
+                    awaitingSync = true;
+                    break;
+                }
+                for (var event : batch) {
+                    consumer.accept(event);
+                }
+                applied += batch.size();
+                if (!batch.isEmpty()) {
+                    lastAppliedTimestamp = batch.getLast().timestamp();
+                    batch.clear();
+                }
+                appliedSequence = batchSequence;
+                pendingSince = null;
+                position = reader.position();
+            }
+        }
+        incompleteTail = !awaitingSync
+                && (framingLost || corrupt || position < reader.position() || reader.hasTrailingBytes());
+        if (incompleteTail) {
+            // Unless the leftover of a truncated segment
+            checkTruncated();
+        }
+        return applied;
+    }
+
+    /**
+     * Checks whether the leader has removed the current segment, and if so, stops reading it.
+     */
+    private boolean checkTruncated() {
+        if (!truncated && !Files.exists(Objects.requireNonNull(segment).path())) {
+            log.debug("WAL segment {} has been truncated by the leader", segment);
+            truncated = true;
+            incompleteTail = false;
+            pendingSince = null;
+        }
+        return truncated;
+    }
+
+    private void onCorruption(String message) {
+        if (config.corruptionMode() == FileWalConfig.CorruptionMode.STRICT) {
+            throw new WalReadException(message);
+        }
+        log.warn("Ignoring {}", message);
+    }
+
+    /**
+     * Returns the segment following the current one, if the leader has started it.
+     */
+    private @Nullable WalSegment nextSegment() throws IOException {
+        var segments = listSegments();
+        if (segments.isEmpty()) {
+            return null;
+        }
+        observe(segments.getLast().firstSequence() - 1);
+        var current = Objects.requireNonNull(segment).firstSequence();
+        for (var candidate : segments) {
+            if (candidate.firstSequence() > current) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private List<WalSegment> listSegments() throws IOException {
+        var segments = new ArrayList<WalSegment>();
+        try (var files = Files.list(config.directory())) {
+            for (var file : files.toList()) {
+                var firstSequence = WalSegment.parseFirstSequence(file.getFileName().toString(), extension);
+                if (firstSequence > 0) {
+                    segments.add(new WalSegment(file, firstSequence, 0));
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(WalSegment::firstSequence));
+        return segments;
+    }
+
+    private void observe(long sequence) {
+        if (sequence > observedSequence) {
+            observedSequence = sequence;
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last applied record, or 0 if no record has been applied.
+     */
+    long appliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns how far the standby is behind the records the leader has written, as far as the follower
+     * has seen them.
+     * <p>
+     * The time lag is measured from the timestamp of the oldest event that has been seen but not applied,
+     * or from the last applied event while the follower is still working through a backlog. It is zero
+     * when the follower has caught up.
+     *
+     * @return the current replication lag
+     */
+    public Lag lag() {
+        var records = Math.max(0, observedSequence - appliedSequence);
+        if (records == 0) {
+            return new Lag(0, Duration.ZERO);
+        }
+        var since = pendingSince;
+        if (since == null) {
+            since = lastAppliedTimestamp;
+        }
+        if (since == null) {
+            return new Lag(records, Duration.ZERO);
+        }
+        var time = Duration.between(since, clock.now());
+        return new Lag(records, time.isNegative() ? Duration.ZERO : time);
+    }
+
+    /**
+     * Stops following and opens the WAL for writing, for when the standby takes over from the leader.
+     * <p>
+     * Opening the WAL discards any incomplete records the leader left behind. The records written after
+     * the last one the follower applied are then replayed to the consumer on the calling thread, which is
+     * typically only a handful.
+     *
+     * @return the opened WAL, owned by the caller
+     * @throws WalReadException if the follower failed, if the WAL cannot be opened, or if the WAL ends before
+     *                          the last event the follower applied, which means that the storage lost synced data
+     */
+    public FileWalAdapter takeOver() {
+        stop();
+        var cause = failure;
+        if (cause != null) {
+            throw new WalReadException("the standby stopped following the WAL in " + config.directory(), cause);
+        }
+        var applied = appliedSequence;
+        var wal = new FileWalAdapter(config, eventTypes);
+        try {
+            var lastSequence = wal.lastSequence();
+            if (lastSequence < applied) {
+                throw new WalReadException("the standby has applied events up to sequence number " + applied
+                        + " but the WAL in " + config.directory() + " ends at " + lastSequence);
+            }
+            if (applied == 0) {
+                wal.replay(consumer);
+            } else {
+                wal.replayFrom(new SequenceNumber(applied), consumer);
+            }
+            log.info("Took over WAL in {} at sequence number {}, replayed {} records", config.directory(),
+                    lastSequence, lastSequence - applied);
+            return wal;
+        } catch (RuntimeException e) {
+            wal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops following the WAL without taking over.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private synchronized void stop() {
+        stopSignal.countDown();
+        var watchService = this.watchService;
+        try {
+            if (watchService != null) {
+                // Wakes up the follower thread
+                watchService.close();
+            }
+        } catch (IOException e) {
+            log.debug("Could not close watch service", e);
+        }
+        var thread = followerThread;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        var channel = this.channel;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Could not close WAL segment {}", segment, e);
+            }
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Replication lag of a standby.
+     *
+     * @param records the number of records the leader has written that have not been applied yet
+     * @param time    the age of the oldest event that has not been applied yet
+     */
+    public record Lag(long records, Duration time) {
+
+        public Lag {
+            if (records < 0) {
+                throw new IllegalArgumentException("records must not be negative, got " + records);
+            }
+            Objects.requireNonNull(time, "time must not be null");
+        }
+    }
+}
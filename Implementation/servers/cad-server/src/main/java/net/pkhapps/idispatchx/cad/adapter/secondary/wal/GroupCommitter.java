@@ -0,0 +1,315 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.application.metrics.Histogram;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalWriteException;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Collects concurrent write requests into commit groups that are written and synced together.
+ * <p>
+ * A single writer thread owns the {@link WalLog}. It takes the first pending request, adds all other
+ * requests that have arrived in the meantime (up to the maximum group size), assigns their sequence
+ * numbers, appends them with one write and syncs them with one {@link java.nio.channels.FileChannel#force}.
+ * If the group does not fit into the active segment, the requests that fit are written first and the rest
+ * go into a new segment; a single request is never split between segments.
+ * Every caller in the group is then released at once. While a group is being synced, new requests
+ * queue up and form the next group, so the number of syncs per second stays bounded by the disk while
+ * the number of events per sync grows with the load.
+ * <p>
+ * If writing or syncing fails, the state of the file is unknown. The committer then fails the whole group
+ * and rejects all further requests; recovery happens when the WAL is reopened.
+ * <p>
+ * The time requests wait in the queue, the time spent encoding, writing and syncing each group, and the
+ * group sizes are recorded into the {@code wal.*} histograms of a {@link MetricsRegistry} and as
+ * {@link WalGroupCommitEvent}s.
+ */
+final class GroupCommitter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitter.class);
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final WalLog wal;
+    private final WalRecordCodec codec;
+    private final int maxGroupSize;
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final FrameOutputBuffer buffer = new FrameOutputBuffer(INITIAL_BUFFER_SIZE);
+    private final List<Append> group = new ArrayList<>();
+    private final Thread writerThread;
+    private volatile boolean stopped = false;
+    private volatile @Nullable IOException failure;
+    private final Histogram queueWait;
+    private final Histogram serialization;
+    private final Histogram writeTime;
+    private final Histogram fsync;
+    private final Histogram groupSize;
+
+    GroupCommitter(WalLog wal, WalRecordCodec codec, int maxGroupSize, MetricsRegistry metricsRegistry) {
+        this.wal = Objects.requireNonNull(wal, "wal must not be null");
+        this.codec = Objects.requireNonNull(codec, "codec must not be null");
+        if (maxGroupSize < 1) {
+            throw new IllegalArgumentException("maxGroupSize must be at least 1, got " + maxGroupSize);
+        }
+        this.maxGroupSize = maxGroupSize;
+        Objects.requireNonNull(metricsRegistry, "metricsRegistry must not be null");
+        this.queueWait = metricsRegistry.timer("wal.queue-wait");
+        this.serialization = metricsRegistry.timer("wal.serialization");
+        this.writeTime = metricsRegistry.timer("wal.write");
+        this.fsync = metricsRegistry.timer("wal.fsync");
+        this.groupSize = metricsRegistry.histogram("wal.group-size", "requests");
+        this.writerThread = Thread.ofPlatform()
+                .name("wal-writer")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    /**
+     * Submits events to be written atomically in the next commit group.
+     *
+     * @param events the events to write, must not be empty
+     * @return a future completed with the sequence number of the last event once the events are synced
+     */
+    CompletableFuture<SequenceNumber> submit(List<? extends DomainEvent> events) {
+        var append = new Append(events, new CompletableFuture<>(), System.nanoTime());
+        enqueue(append, append.result());
+        return append.result();
+    }
+
+    /**
+     * Submits an action that needs exclusive access to the WAL, such as truncation.
+     * The action runs on the writer thread between two commit groups.
+     *
+     * @param action the action to run
+     * @return a future completed when the action has run
+     */
+    CompletableFuture<@Nullable Void> submitExclusive(FileAction action) {
+        var exclusive = new Exclusive(action, new CompletableFuture<>());
+        enqueue(exclusive, exclusive.result());
+        return exclusive.result();
+    }
+
+    private void enqueue(Task task, CompletableFuture<?> result) {
+        if (stopped) {
+            result.completeExceptionally(new WalWriteException("WAL is closed"));
+            return;
+        }
+        queue.add(task);
+        if (stopped) {
+            // The writer may have stopped before seeing the task; completing twice is harmless
+            result.completeExceptionally(new WalWriteException("WAL is closed"));
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                var task = queue.take();
+                switch (task) {
+                    case Stop stop -> {
+                        return;
+                    }
+                    case Exclusive exclusive -> runExclusive(exclusive);
+                    case Append append -> commitGroup(append);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            Task task;
+            while ((task = queue.poll()) != null) {
+                reject(task, new WalWriteException("WAL is closed"));
+            }
+        }
+    }
+
+    private void runExclusive(Exclusive exclusive) {
+        var currentFailure = failure;
+        if (currentFailure != null) {
+            exclusive.result().completeExceptionally(unavailable(currentFailure));
+            return;
+        }
+        try {
+            exclusive.action().run(wal);
+            exclusive.result().complete(null);
+        } catch (IOException e) {
+            exclusive.result().completeExceptionally(new WalWriteException("WAL operation failed", e));
+        } catch (RuntimeException e) {
+            exclusive.result().completeExceptionally(e);
+        }
+    }
+
+    private void commitGroup(Append first) {
+        var commitEvent = new WalGroupCommitEvent();
+        commitEvent.begin();
+        var started = System.nanoTime();
+        group.clear();
+        group.add(first);
+        queueWait.record(started - first.enqueued());
+        while (group.size() < maxGroupSize && queue.peek() instanceof Append next) {
+            queue.remove();
+            group.add(next);
+            queueWait.record(started - next.enqueued());
+        }
+        groupSize.record(group.size());
+
+        var currentFailure = failure;
+        if (currentFailure != null) {
+            group.forEach(append -> append.result().completeExceptionally(unavailable(currentFailure)));
+            return;
+        }
+
+        buffer.reset();
+        var sequence = wal.lastSequence();
+        var lastSequences = new long[group.size()];
+        var offsets = new int[group.size()];
+        for (int i = 0; i < group.size(); i++) {
+            var append = group.get(i);
+            var mark = buffer.size();
+            var sequenceMark = sequence;
+            offsets[i] = mark;
+            try {
+                var events = append.events();
+                for (int e = 0; e < events.size(); e++) {
+                    var record = new WalRecord(new SequenceNumber(++sequence), events.get(e), e == events.size() - 1);
+                    codec.encode(record, buffer);
+                }
+                lastSequences[i] = sequence;
+            } catch (IOException | RuntimeException e) {
+                // Only this request is rejected, the rest of the group is still committed
+                buffer.truncate(mark);
+                sequence = sequenceMark;
+                lastSequences[i] = 0;
+                append.result().completeExceptionally(new WalWriteException("could not encode event", e));
+            }
+        }
+        if (sequence == wal.lastSequence()) {
+            return;
+        }
+        var encoded = System.nanoTime();
+        var events = sequence - wal.lastSequence();
+
+        long written;
+        long synced;
+        try {
+            write(offsets, lastSequences);
+            written = System.nanoTime();
+            wal.force(sequence);
+            synced = System.nanoTime();
+        } catch (IOException e) {
+            log.error("WAL write failed, rejecting all further writes", e);
+            failure = e;
+            for (int i = 0; i < group.size(); i++) {
+                if (lastSequences[i] != 0) {
+                    group.get(i).result().completeExceptionally(unavailable(e));
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            if (lastSequences[i] != 0) {
+                group.get(i).result().complete(new SequenceNumber(lastSequences[i]));
+            }
+        }
+
+        serialization.record(encoded - started);
+        writeTime.record(written - encoded);
+        fsync.record(synced - written);
+        if (commitEvent.shouldCommit()) {
+            commitEvent.requests = group.size();
+            commitEvent.events = events;
+            commitEvent.bytes = buffer.size();
+            commitEvent.queueWait = started - first.enqueued();
+            commitEvent.serialization = encoded - started;
+            commitEvent.write = written - encoded;
+            commitEvent.fsync = synced - written;
+            commitEvent.commit();
+        }
+    }
+
+    private void write(int[] offsets, long[] lastSequences) throws IOException {
+        var data = buffer.asByteBuffer();
+        var chunkStart = 0;
+        var firstSequence = wal.lastSequence() + 1;
+        for (int i = 0; i < group.size(); i++) {
+            if (lastSequences[i] == 0) {
+                continue;
+            }
+            var requestEnd = i + 1 < group.size() ? offsets[i + 1] : data.limit();
+            if (requestEnd - chunkStart > wal.remainingCapacity()) {
+                // Write what fits into the active segment and start a new one with this request
+                wal.append(data.slice(chunkStart, offsets[i] - chunkStart));
+                chunkStart = offsets[i];
+                wal.rollOver(firstSequence);
+            }
+            wal.indexRecord(firstSequence, offsets[i] - chunkStart);
+            firstSequence = lastSequences[i] + 1;
+        }
+        wal.append(data.slice(chunkStart, data.limit() - chunkStart));
+    }
+
+    private static WalWriteException unavailable(IOException cause) {
+        return new WalWriteException("WAL is unavailable after a write failure", cause);
+    }
+
+    private static void reject(Task task, WalWriteException exception) {
+        switch (task) {
+            case Append append -> append.result().completeExceptionally(exception);
+            case Exclusive exclusive -> exclusive.result().completeExceptionally(exception);
+            case Stop stop -> {
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread after all previously submitted requests have been committed.
+     * Requests submitted after this call are rejected.
+     */
+    @Override
+    public void close() {
+        if (stopped) {
+            return;
+        }
+        queue.add(new Stop());
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An action that requires exclusive access to the WAL.
+     */
+    @FunctionalInterface
+    interface FileAction {
+        void run(WalLog wal) throws IOException;
+    }
+
+    private sealed interface Task permits Append, Exclusive, Stop {
+    }
+
+    private record Append(List<? extends DomainEvent> events, CompletableFuture<SequenceNumber> result,
+                          long enqueued) implements Task {
+    }
+
+    private record Exclusive(FileAction action, CompletableFuture<@Nullable Void> result) implements Task {
+    }
+
+    private record Stop() implements Task {
+    }
+}
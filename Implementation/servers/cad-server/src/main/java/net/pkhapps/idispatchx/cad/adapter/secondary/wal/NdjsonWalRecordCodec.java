@@ -0,0 +1,69 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.NdjsonFrames;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Text WAL format: one JSON object per line.
+ * <p>
+ * Each line has the form {@code {"seq":1,"type":"...","event":{...}}}, with an additional
+ * {@code "more":true} on every record of a batch except the last. Identifiers and timestamps
+ * are written as plain strings to keep the file readable during development and debugging.
+ */
+final class NdjsonWalRecordCodec implements WalRecordCodec {
+
+    private static final String FIELD_SEQUENCE = "seq";
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_MORE = "more";
+    private static final String FIELD_EVENT = "event";
+
+    private final WalEventTypes eventTypes;
+    private final ObjectMapper objectMapper;
+
+    NdjsonWalRecordCodec(WalEventTypes eventTypes) {
+        this.eventTypes = Objects.requireNonNull(eventTypes, "eventTypes must not be null");
+        this.objectMapper = NdjsonFrames.createObjectMapper();
+    }
+
+    @Override
+    public void encode(WalRecord record, FrameOutputBuffer out) throws IOException {
+        try (var generator = objectMapper.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField(FIELD_SEQUENCE, record.sequenceNumber().value());
+            generator.writeStringField(FIELD_TYPE, eventTypes.typeOf(record.event()).name());
+            if (!record.endOfBatch()) {
+                generator.writeBooleanField(FIELD_MORE, true);
+            }
+            generator.writeFieldName(FIELD_EVENT);
+            objectMapper.writeValue(generator, record.event());
+            generator.writeEndObject();
+        }
+        out.write(NdjsonFrames.NEWLINE);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        return NdjsonFrames.frameLength(buffer);
+    }
+
+    @Override
+    public WalRecord decode(ByteBuffer frame) {
+        try {
+            var root = NdjsonFrames.readTree(objectMapper, frame);
+            var sequenceNumber = new SequenceNumber(NdjsonFrames.requireField(root, FIELD_SEQUENCE).asLong());
+            var type = eventTypes.typeOfName(NdjsonFrames.requireField(root, FIELD_TYPE).asText()).type();
+            var event = objectMapper.treeToValue(NdjsonFrames.requireField(root, FIELD_EVENT), type);
+            var more = root.path(FIELD_MORE).asBoolean(false);
+            return new WalRecord(sequenceNumber, event, !more);
+        } catch (IOException | RuntimeException e) {
+            throw new WalReadException("corrupt WAL record: " + e.getMessage(), e);
+        }
+    }
+}
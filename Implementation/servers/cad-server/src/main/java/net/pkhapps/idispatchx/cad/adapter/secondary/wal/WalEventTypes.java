@@ -0,0 +1,163 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Registry of the domain event types that can be stored in the WAL.
+ * <p>
+ * Every event type is registered under a stable type name (used by the text format) and a stable
+ * numeric type code (used by the binary format). These are written to the WAL instead of the Java
+ * class name, so that classes can be renamed or moved without breaking replay of existing WAL files.
+ */
+public final class WalEventTypes {
+
+    private final Map<Class<? extends DomainEvent>, EventType> byType;
+    private final Map<String, EventType> byName;
+    private final Map<Integer, EventType> byCode;
+
+    private WalEventTypes(Map<Class<? extends DomainEvent>, EventType> byType) {
+        this.byType = Map.copyOf(byType);
+        var byName = new HashMap<String, EventType>();
+        var byCode = new HashMap<Integer, EventType>();
+        byType.values().forEach(eventType -> {
+            byName.put(eventType.name(), eventType);
+            byCode.put(eventType.code(), eventType);
+        });
+        this.byName = Map.copyOf(byName);
+        this.byCode = Map.copyOf(byCode);
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the registration of the type of the given event.
+     *
+     * @param event the event
+     * @return the registered event type
+     * @throws IllegalArgumentException if the event type has not been registered
+     */
+    EventType typeOf(DomainEvent event) {
+        var eventType = byType.get(event.getClass());
+        if (eventType == null) {
+            throw new IllegalArgumentException("unregistered event type: " + event.getClass().getName());
+        }
+        return eventType;
+    }
+
+    /**
+     * Returns the event type registered under the given type name.
+     *
+     * @param typeName the type name
+     * @return the registered event type
+     * @throws IllegalArgumentException if no event type has been registered under the name
+     */
+    EventType typeOfName(String typeName) {
+        var eventType = byName.get(typeName);
+        if (eventType == null) {
+            throw new IllegalArgumentException("unknown event type name: " + typeName);
+        }
+        return eventType;
+    }
+
+    /**
+     * Returns the event type registered under the given type code.
+     *
+     * @param typeCode the type code
+     * @return the registered event type
+     * @throws IllegalArgumentException if no event type has been registered under the code
+     */
+    EventType typeOfCode(int typeCode) {
+        var eventType = byCode.get(typeCode);
+        if (eventType == null) {
+            throw new IllegalArgumentException("unknown event type code: " + typeCode);
+        }
+        return eventType;
+    }
+
+    /**
+     * Returns the classes of all registered event types.
+     */
+    List<Class<? extends Record>> recordTypes() {
+        return byType.keySet().stream()
+                .<Class<? extends Record>>map(type -> type.asSubclass(Record.class))
+                .toList();
+    }
+
+    /**
+     * A registered event type.
+     *
+     * @param code the stable numeric type code
+     * @param name the stable type name
+     * @param type the event record class
+     */
+    record EventType(int code, String name, Class<? extends DomainEvent> type) {
+    }
+
+    /**
+     * Builder for {@link WalEventTypes}.
+     */
+    public static final class Builder {
+
+        private final Map<Class<? extends DomainEvent>, EventType> byType = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Registers an event type.
+         *
+         * @param typeCode the stable numeric type code written by the binary format, must not be negative
+         * @param typeName the stable type name written by the text format
+         * @param type     the event type, must be a record
+         * @return this builder
+         * @throws IllegalArgumentException if the code, name or type is already registered, or the type is not a record
+         */
+        public Builder register(int typeCode, String typeName, Class<? extends DomainEvent> type) {
+            Objects.requireNonNull(typeName, "typeName must not be null");
+            Objects.requireNonNull(type, "type must not be null");
+            if (typeCode < 0) {
+                throw new IllegalArgumentException("typeCode must not be negative, got " + typeCode);
+            }
+            if (typeName.isBlank()) {
+                throw new IllegalArgumentException("typeName must not be blank");
+            }
+            if (!type.isRecord()) {
+                throw new IllegalArgumentException("event type must be a record: " + type.getName());
+            }
+            for (var existing : byType.values()) {
+                if (existing.code() == typeCode) {
+                    throw new IllegalArgumentException("type code already registered: " + typeCode);
+                }
+                if (existing.name().equals(typeName)) {
+                    throw new IllegalArgumentException("type name already registered: " + typeName);
+                }
+            }
+            if (byType.containsKey(type)) {
+                throw new IllegalArgumentException("event type already registered: " + type.getName());
+            }
+            byType.put(type, new EventType(typeCode, typeName, type));
+            return this;
+        }
+
+        /**
+         * Builds the registry.
+         *
+         * @return the registry
+         */
+        public WalEventTypes build() {
+            return new WalEventTypes(byType);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded for every commit group written to the WAL.
+ */
+@Name("net.pkhapps.idispatchx.cad.WalGroupCommit")
+@Label("WAL Group Commit")
+@Category({"iDispatchX", "CAD Server"})
+@Description("A group of write requests written and synced to the WAL together")
+@StackTrace(false)
+final class WalGroupCommitEvent extends Event {
+
+    @Label("Requests")
+    int requests;
+
+    @Label("Events")
+    long events;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Oldest Queue Wait")
+    @Timespan
+    long queueWait;
+
+    @Label("Serialization")
+    @Timespan
+    long serialization;
+
+    @Label("Write")
+    @Timespan
+    long write;
+
+    @Label("Sync")
+    @Timespan
+    long fsync;
+}
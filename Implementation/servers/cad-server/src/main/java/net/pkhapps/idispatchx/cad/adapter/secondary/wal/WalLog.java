@@ -0,0 +1,354 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.Directories;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameReader;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The WAL as a sequence of fixed-size segment files.
+ * <p>
+ * Records are appended to the last (active) segment. When a write does not fit into the remaining
+ * space, the active segment is synced and a preallocated spare from the {@link WalSegmentPool} becomes
+ * the new active segment. Writes never span two segments, so a batch is always contained in one file.
+ * A write larger than a whole segment gets a fresh segment that is extended beyond its preallocated size.
+ * <p>
+ * Truncation removes whole segments and returns them to the pool, so it never rewrites any data.
+ * <p>
+ * All mutating methods must be called from a single thread (the {@link GroupCommitter} writer thread).
+ * {@link #segments()} and {@link #lastSequence()} may be read from any thread and only ever cover data
+ * that has been synced to disk.
+ */
+final class WalLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WalLog.class);
+
+    private final Path directory;
+    private final String extension;
+    private final long segmentSize;
+    private final WalSegmentPool pool;
+    private final WalSyncMarker syncMarker;
+    private volatile List<WalSegment> segments;
+    private volatile long lastSequence;
+    private volatile long bytesAppended;
+    private WalSegment active;
+    private FileChannel channel;
+    private WalSegmentIndex index;
+    private long writePosition;
+
+    private WalLog(Path directory, String extension, long segmentSize, WalSegmentPool pool,
+                   WalSyncMarker syncMarker, List<WalSegment> segments, FileChannel channel, WalSegmentIndex index,
+                   long writePosition, long lastSequence) {
+        this.directory = directory;
+        this.extension = extension;
+        this.segmentSize = segmentSize;
+        this.pool = pool;
+        this.syncMarker = syncMarker;
+        this.segments = List.copyOf(segments);
+        this.active = segments.getLast();
+        this.channel = channel;
+        this.index = index;
+        this.writePosition = writePosition;
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * Opens the WAL in the configured directory, creating the first segment if there is none.
+     * <p>
+     * The active segment is scanned to find the last sequence number. Any incomplete record or batch at
+     * its end, left behind by a crash during a write, is overwritten with zeros. Earlier segments were
+     * synced before the next one was started and are only verified when they are replayed. The last
+     * sequence number is then published in the {@link WalSyncMarker}.
+     *
+     * @param config the WAL configuration
+     * @param codec  the codec of the WAL format
+     * @return the opened WAL
+     * @throws IOException      if the WAL cannot be opened or read
+     * @throws WalReadException if a corrupt record is encountered in strict mode
+     */
+    static WalLog open(FileWalConfig config, WalRecordCodec codec) throws IOException {
+        Objects.requireNonNull(config, "config must not be null");
+        Objects.requireNonNull(codec, "codec must not be null");
+        var directory = config.directory();
+        var extension = config.format().fileExtension();
+
+        var pool = new WalSegmentPool(directory, extension, config.segmentSize());
+        try {
+            var segments = listSegments(directory, extension);
+            if (segments.isEmpty()) {
+                var path = directory.resolve(WalSegment.fileName(1, extension));
+                pool.take(path);
+                segments.add(new WalSegment(path, 1, 0));
+            }
+            var active = segments.getLast();
+            var channel = FileChannel.open(active.path(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                var recovery = recover(channel, active, codec, config.corruptionMode());
+                active.setReadLimit(recovery.size());
+                var syncMarker = WalSyncMarker.open(directory);
+                try {
+                    syncMarker.write(recovery.lastSequence());
+                    var index = WalSegmentIndex.open(active.path(), recovery.size());
+                    return new WalLog(directory, extension, config.segmentSize(), pool, syncMarker, segments,
+                            channel, index, recovery.size(), recovery.lastSequence());
+                } catch (IOException | RuntimeException e) {
+                    syncMarker.close();
+                    throw e;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+    }
+
+    private static List<WalSegment> listSegments(Path directory, String extension) throws IOException {
+        var segments = new ArrayList<WalSegment>();
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var fileName = file.getFileName().toString();
+                var firstSequence = WalSegment.parseFirstSequence(fileName, extension);
+                if (firstSequence > 0) {
+                    segments.add(new WalSegment(file, firstSequence, Files.size(file)));
+                } else if (WalSegmentIndex.segmentFileName(fileName) instanceof String segment
+                        && WalSegment.parseFirstSequence(segment, extension) > 0) {
+                    if (!Files.exists(file.resolveSibling(segment))) {
+                        // Left behind by a crash during truncation
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(WalSegment::firstSequence));
+        return segments;
+    }
+
+    private static Recovery recover(FileChannel channel, WalSegment segment, WalRecordCodec codec,
+                                    FileWalConfig.CorruptionMode corruptionMode) throws IOException {
+        var size = channel.size();
+        var reader = new FrameReader(channel, codec, 0, size);
+        long validSize = 0;
+        long lastSequence = segment.firstSequence() - 1;
+        long corruptOffset = -1;
+        @Nullable WalReadException corruption = null;
+        var framingLost = false;
+        while (true) {
+            ByteBuffer frame;
+            try {
+                frame = reader.nextFrame();
+            } catch (WalReadException e) {
+                log.warn("Unreadable WAL data at offset {} in {}", reader.position(), segment.path(), e);
+                framingLost = true;
+                break;
+            }
+            if (frame == null) {
+                break;
+            }
+            WalRecord record;
+            try {
+                record = codec.decode(frame);
+            } catch (WalReadException e) {
+                if (corruption == null) {
+                    corruption = e;
+                    corruptOffset = reader.frameOffset();
+                }
+                continue;
+            }
+            if (corruption != null) {
+                // A valid record follows the corrupt one, so this is not the remains of a torn write
+                if (corruptionMode == FileWalConfig.CorruptionMode.STRICT) {
+                    throw new WalReadException("corrupt WAL record at offset " + corruptOffset
+                            + " in " + segment.path(), corruption);
+                }
+                log.warn("Skipping corrupt WAL record at offset {} in {}", corruptOffset, segment.path(), corruption);
+                corruption = null;
+            }
+            if (record.endOfBatch()) {
+                validSize = reader.position();
+                lastSequence = record.sequenceNumber().value();
+            }
+        }
+        if (framingLost || validSize < reader.position() || reader.hasTrailingBytes()) {
+            log.warn("Discarding incomplete WAL data after offset {} in {}", validSize, segment.path());
+            WalSegmentPool.zeroFill(channel, validSize, size);
+            channel.force(false);
+        }
+        return new Recovery(validSize, lastSequence);
+    }
+
+    /**
+     * Returns the segments of the WAL, oldest first. The returned list is an immutable snapshot.
+     * <p>
+     * Segments removed by a concurrent {@link #truncate(long)} are recycled, so readers must not
+     * run concurrently with truncation.
+     */
+    List<WalSegment> segments() {
+        return segments;
+    }
+
+    /**
+     * Returns the sequence number of the last record that has been synced to disk, or 0 if the WAL is empty.
+     */
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the number of bytes that can be appended before the active segment is full.
+     * May be negative if the active segment has been extended beyond the segment size.
+     */
+    long remainingCapacity() {
+        return segmentSize - writePosition;
+    }
+
+    /**
+     * Notes the position of a record that is about to be appended, for the sparse index of the
+     * active segment.
+     *
+     * @param sequence the sequence number of the record
+     * @param distance the distance in bytes of the start of its frame from the current end of the segment
+     */
+    void indexRecord(long sequence, long distance) {
+        index.add(sequence, writePosition + distance);
+    }
+
+    /**
+     * Appends the given bytes to the active segment without syncing them.
+     *
+     * @param data the bytes to append
+     * @throws IOException if writing fails
+     */
+    void append(ByteBuffer data) throws IOException {
+        var appended = 0L;
+        while (data.hasRemaining()) {
+            var written = channel.write(data, writePosition);
+            writePosition += written;
+            appended += written;
+        }
+        bytesAppended += appended;
+    }
+
+    /**
+     * Returns the number of bytes appended since the WAL was opened. May be read from any thread, and
+     * may include bytes that have not been synced yet.
+     */
+    long bytesAppended() {
+        return bytesAppended;
+    }
+
+    /**
+     * Syncs the active segment and starts a new one, unless the active segment is still empty.
+     *
+     * @param firstSequence the sequence number of the first record that will be appended to the new segment
+     * @throws IOException if syncing or creating the segment fails
+     */
+    void rollOver(long firstSequence) throws IOException {
+        if (writePosition == 0) {
+            return;
+        }
+        channel.force(false);
+        active.setReadLimit(writePosition);
+        flushIndex();
+
+        var path = directory.resolve(WalSegment.fileName(firstSequence, extension));
+        pool.take(path);
+        var newChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var newIndex = WalSegmentIndex.create(path);
+        channel.close();
+        index.close();
+        channel = newChannel;
+        index = newIndex;
+        writePosition = 0;
+        active = new WalSegment(path, firstSequence, 0);
+        var newSegments = new ArrayList<>(segments);
+        newSegments.add(active);
+        segments = List.copyOf(newSegments);
+        log.debug("Started WAL segment {}", active);
+    }
+
+    /**
+     * Syncs all appended bytes to disk and makes them visible to readers, including followers reading the
+     * {@link WalSyncMarker}.
+     *
+     * @param lastSequence the sequence number of the last appended record
+     * @throws IOException if syncing fails
+     */
+    void force(long lastSequence) throws IOException {
+        // The segment was preallocated, so a data-only sync has no file metadata to flush
+        // unless a write extended it beyond the segment size. Torn writes are detected on open.
+        channel.force(false);
+        active.setReadLimit(writePosition);
+        this.lastSequence = lastSequence;
+        flushIndex();
+        try {
+            syncMarker.write(lastSequence);
+        } catch (IOException e) {
+            // Followers keep waiting at the previous sequence number until the next sync
+            log.warn("Could not write WAL sync marker in {}", directory, e);
+        }
+    }
+
+    private void flushIndex() {
+        try {
+            index.flush();
+        } catch (IOException e) {
+            // The index is only a hint; replay falls back to scanning the segment
+            log.warn("Could not write WAL segment index of {}", active, e);
+        }
+    }
+
+    /**
+     * Removes all segments that only contain records up to and including the given sequence number.
+     * <p>
+     * Records up to the sequence number that share a segment with later records are kept. The active
+     * segment is never removed, which also preserves the sequence number across restarts.
+     *
+     * @param upTo the sequence number up to which records may be removed
+     * @throws IOException if a segment cannot be removed
+     */
+    void truncate(long upTo) throws IOException {
+        var current = segments;
+        int removed = 0;
+        while (removed < current.size() - 1 && current.get(removed + 1).firstSequence() - 1 <= upTo) {
+            removed++;
+        }
+        if (removed == 0) {
+            return;
+        }
+        segments = List.copyOf(current.subList(removed, current.size()));
+        for (int i = 0; i < removed; i++) {
+            var path = current.get(i).path();
+            pool.recycle(path);
+            WalSegmentIndex.delete(path);
+        }
+        Directories.sync(directory);
+        log.debug("Truncated WAL up to sequence number {}, removed {} segments", upTo, removed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (pool; syncMarker; var activeIndex = index) {
+            channel.close();
+        }
+    }
+
+    private record Recovery(long size, long lastSequence) {
+    }
+}
@@ -0,0 +1,25 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+
+import java.util.Objects;
+
+/**
+ * A single entry in the WAL.
+ * <p>
+ * Events written with {@link net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort#writeBatch} are stored
+ * as consecutive records where every record except the last has {@code endOfBatch} set to false. A batch
+ * that is not terminated by an end-of-batch record was torn by a crash and is discarded on recovery.
+ *
+ * @param sequenceNumber the sequence number of the record
+ * @param event          the domain event
+ * @param endOfBatch     true if this is the last (or only) record of a write
+ */
+public record WalRecord(SequenceNumber sequenceNumber, DomainEvent event, boolean endOfBatch) {
+
+    public WalRecord {
+        Objects.requireNonNull(sequenceNumber, "sequenceNumber must not be null");
+        Objects.requireNonNull(event, "event must not be null");
+    }
+}
@@ -0,0 +1,56 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameCodec;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes {@link WalRecord}s, including the framing that separates records in a WAL file.
+ * <p>
+ * Decoding is split in two steps so that cheap frame boundary detection can be done separately
+ * from the more expensive work of validating and deserializing the frame contents.
+ * <p>
+ * Codecs are used by several threads at once: {@link #frameLength(ByteBuffer)} and
+ * {@link #decode(ByteBuffer)} must be thread-safe. {@link #encode(WalRecord, FrameOutputBuffer)} is
+ * only called by the writer thread.
+ * <p>
+ * WAL segments are preallocated with zeros, so every codec must recognize zero bytes at a frame
+ * boundary as the end of the written data.
+ */
+public interface WalRecordCodec extends FrameCodec {
+
+    /**
+     * Creates the codec for the given format.
+     *
+     * @param format     the record format
+     * @param eventTypes the registry of event types that can be stored in the WAL
+     * @return the codec
+     */
+    static WalRecordCodec forFormat(FileWalConfig.Format format, WalEventTypes eventTypes) {
+        return switch (format) {
+            case TEXT -> new NdjsonWalRecordCodec(eventTypes);
+            case BINARY -> new BinaryWalRecordCodec(eventTypes);
+        };
+    }
+
+    /**
+     * Writes the complete frame of the given record to the output buffer.
+     *
+     * @param record the record to encode
+     * @param out    the buffer to write to
+     * @throws IOException if the record cannot be encoded
+     */
+    void encode(WalRecord record, FrameOutputBuffer out) throws IOException;
+
+    /**
+     * Decodes a complete frame.
+     *
+     * @param frame a buffer containing exactly one frame between its position and limit
+     * @return the decoded record
+     * @throws WalReadException if the frame is corrupt or contains an unknown event type
+     */
+    WalRecord decode(ByteBuffer frame);
+}
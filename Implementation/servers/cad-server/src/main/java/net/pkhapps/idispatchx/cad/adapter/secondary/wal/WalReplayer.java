@@ -0,0 +1,313 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameReader;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Replays WAL segments through a three-stage pipeline.
+ * <ol>
+ *     <li>A reader thread streams the raw frames of the segments with large sequential reads and
+ *     groups them into chunks.</li>
+ *     <li>A pool of decoder threads verifies and decodes the chunks in parallel.</li>
+ *     <li>The calling thread takes the decoded chunks in the order they were read and hands the
+ *     events to the consumer, so the consumer sees the events strictly in sequence order and on
+ *     a single thread.</li>
+ * </ol>
+ * The number of chunks in flight is bounded, so a slow consumer slows down reading instead of
+ * filling up memory. If any stage fails, the other stages are stopped and the exception is rethrown
+ * to the caller.
+ */
+final class WalReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(WalReplayer.class);
+
+    /**
+     * Approximate number of frame bytes decoded by a single task.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+    private static final CompletableFuture<List<DomainEvent>> END = CompletableFuture.completedFuture(List.of());
+
+    private final WalRecordCodec codec;
+    private final FileWalConfig.CorruptionMode corruptionMode;
+    private final int decoderThreads;
+    private final int chunkSize;
+
+    /**
+     * Creates a replayer.
+     *
+     * @param codec          the codec of the WAL format, whose decoding must be thread-safe
+     * @param corruptionMode how corrupt records are handled
+     * @param decoderThreads the number of decoder threads, at least 1
+     * @param chunkSize      the approximate number of frame bytes decoded by a single task, at least 1
+     */
+    WalReplayer(WalRecordCodec codec, FileWalConfig.CorruptionMode corruptionMode, int decoderThreads,
+                int chunkSize) {
+        this.codec = Objects.requireNonNull(codec, "codec must not be null");
+        this.corruptionMode = Objects.requireNonNull(corruptionMode, "corruptionMode must not be null");
+        if (decoderThreads < 1) {
+            throw new IllegalArgumentException("decoderThreads must be at least 1, got " + decoderThreads);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1, got " + chunkSize);
+        }
+        this.decoderThreads = decoderThreads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the default number of decoder threads, leaving room for the reader and the applier.
+     */
+    static int defaultDecoderThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+    }
+
+    /**
+     * Delivers all events with a sequence number greater than {@code after} to the consumer, in order.
+     *
+     * @param segments the segments of the WAL, oldest first
+     * @param after    the sequence number after which events are delivered
+     * @param consumer receives each event in order, on the calling thread
+     * @throws WalReadException if the WAL cannot be read or contains corrupt records in strict mode
+     */
+    void replay(List<WalSegment> segments, long after, Consumer<DomainEvent> consumer) {
+        Objects.requireNonNull(segments, "segments must not be null");
+        Objects.requireNonNull(consumer, "consumer must not be null");
+        var queue = new ArrayBlockingQueue<CompletableFuture<List<DomainEvent>>>(2 * decoderThreads + 2);
+        var decoders = Executors.newFixedThreadPool(decoderThreads, Thread.ofPlatform()
+                .name("wal-replay-decoder-", 0)
+                .daemon(true)
+                .factory());
+        var reader = Thread.ofPlatform()
+                .name("wal-replay-reader")
+                .daemon(true)
+                .start(() -> read(segments, after, queue, decoders));
+        try {
+            while (true) {
+                var chunk = queue.take();
+                if (chunk == END) {
+                    return;
+                }
+                for (var event : await(chunk)) {
+                    consumer.accept(event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WalReadException("interrupted while replaying the WAL", e);
+        } finally {
+            // Unblock and stop the reader if the replay ended early
+            reader.interrupt();
+            queue.clear();
+            decoders.shutdownNow();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static List<DomainEvent> await(CompletableFuture<List<DomainEvent>> chunk) {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new WalReadException("could not replay the WAL", e.getCause());
+        }
+    }
+
+    // --- Reader stage ---
+
+    private void read(List<WalSegment> segments, long after, BlockingQueue<CompletableFuture<List<DomainEvent>>> queue,
+                      ExecutorService decoders) {
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                // Skip segments that only contain records up to the starting point
+                if (i + 1 < segments.size() && segments.get(i + 1).firstSequence() - 1 <= after) {
+                    continue;
+                }
+                readSegment(segments.get(i), after, queue, decoders);
+            }
+            queue.put(END);
+        } catch (InterruptedException e) {
+            // The replay was aborted by the applier
+        } catch (IOException | RuntimeException e) {
+            var failure = e instanceof WalReadException walReadException
+                    ? walReadException
+                    : new WalReadException("could not read the WAL", e);
+            try {
+                queue.put(CompletableFuture.failedFuture(failure));
+            } catch (InterruptedException interrupted) {
+                // The replay was aborted by the applier
+            }
+        }
+    }
+
+    private void readSegment(WalSegment segment, long after, BlockingQueue<CompletableFuture<List<DomainEvent>>> queue,
+                             ExecutorService decoders) throws IOException, InterruptedException {
+        var limit = segment.readLimit();
+        try (var channel = FileChannel.open(segment.path(), StandardOpenOption.READ)) {
+            var start = segment.firstSequence() > after ? 0 : seek(channel, codec, segment.path(), after, limit);
+            var reader = new FrameReader(channel, codec, start, limit, READ_BUFFER_SIZE);
+            var chunk = new Chunk(segment, chunkSize);
+            while (true) {
+                ByteBuffer frame;
+                try {
+                    frame = reader.nextFrame();
+                } catch (WalReadException e) {
+                    if (corruptionMode == FileWalConfig.CorruptionMode.STRICT) {
+                        throw new WalReadException("unreadable WAL data at offset " + reader.position()
+                                + " in " + segment.path(), e);
+                    }
+                    log.warn("Skipping unreadable rest of WAL segment {} from offset {}", segment.path(),
+                            reader.position(), e);
+                    break;
+                }
+                if (frame == null) {
+                    break;
+                }
+                if (chunk.isFull()) {
+                    publish(chunk, after, queue, decoders);
+                    chunk = new Chunk(segment, chunkSize);
+                }
+                chunk.add(frame, reader.frameOffset());
+            }
+            if (!chunk.isEmpty()) {
+                publish(chunk, after, queue, decoders);
+            }
+        } catch (IOException e) {
+            throw new WalReadException("could not read WAL segment " + segment.path(), e);
+        }
+    }
+
+    /**
+     * Uses the sparse index to find where to start reading, and verifies that a record that is not
+     * past the starting point really begins there. Falls back to the start of the segment otherwise.
+     *
+     * @param channel     the open channel of the segment
+     * @param codec       the codec of the WAL format
+     * @param segmentPath the path of the segment file
+     * @param after       the sequence number after which records are needed
+     * @param limit       the file offset up to which the segment can be read
+     * @return the file offset at which to start reading
+     * @throws IOException if reading fails
+     */
+    static long seek(FileChannel channel, WalRecordCodec codec, Path segmentPath, long after, long limit)
+            throws IOException {
+        var offset = WalSegmentIndex.find(segmentPath, after, limit);
+        if (offset == 0) {
+            return 0;
+        }
+        try {
+            var frame = new FrameReader(channel, codec, offset, limit).nextFrame();
+            if (frame != null && codec.decode(frame).sequenceNumber().value() <= after + 1) {
+                return offset;
+            }
+        } catch (WalReadException e) {
+            // Fall through
+        }
+        log.debug("Ignoring stale index entry at offset {} of {}", offset, segmentPath);
+        return 0;
+    }
+
+    private void publish(Chunk chunk, long after, BlockingQueue<CompletableFuture<List<DomainEvent>>> queue,
+                         ExecutorService decoders) throws InterruptedException {
+        queue.put(CompletableFuture.supplyAsync(() -> decode(chunk, after), decoders));
+    }
+
+    // --- Decoder stage ---
+
+    private List<DomainEvent> decode(Chunk chunk, long after) {
+        var events = new ArrayList<DomainEvent>(chunk.frameCount);
+        var data = ByteBuffer.wrap(chunk.data);
+        var frameStart = 0;
+        for (int i = 0; i < chunk.frameCount; i++) {
+            var frameEnd = chunk.frameEnds[i];
+            try {
+                var record = codec.decode(data.slice(frameStart, frameEnd - frameStart));
+                if (record.sequenceNumber().value() > after) {
+                    events.add(record.event());
+                }
+            } catch (WalReadException e) {
+                if (corruptionMode == FileWalConfig.CorruptionMode.STRICT) {
+                    throw new WalReadException("corrupt WAL record at offset " + chunk.frameOffsets[i]
+                            + " in " + chunk.segment.path(), e);
+                }
+                log.warn("Skipping corrupt WAL record at offset {} in {}", chunk.frameOffsets[i],
+                        chunk.segment.path(), e);
+            }
+            frameStart = frameEnd;
+        }
+        return events;
+    }
+
+    /**
+     * Frames copied out of the read buffer, to be decoded by a single task.
+     */
+    private static final class Chunk {
+
+        private static final int INITIAL_FRAME_CAPACITY = 256;
+
+        private final WalSegment segment;
+        private final int capacity;
+        private byte[] data;
+        private int size;
+        private int frameCount;
+        private int[] frameEnds = new int[INITIAL_FRAME_CAPACITY];
+        private long[] frameOffsets = new long[INITIAL_FRAME_CAPACITY];
+
+        Chunk(WalSegment segment, int capacity) {
+            this.segment = segment;
+            this.capacity = capacity;
+            this.data = new byte[capacity];
+        }
+
+        boolean isEmpty() {
+            return frameCount == 0;
+        }
+
+        boolean isFull() {
+            return size >= capacity;
+        }
+
+        void add(ByteBuffer frame, long offset) {
+            var length = frame.remaining();
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+            }
+            if (frameCount == frameEnds.length) {
+                frameEnds = Arrays.copyOf(frameEnds, frameCount * 2);
+                frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+            }
+            frame.get(data, size, length);
+            size += length;
+            frameEnds[frameCount] = size;
+            frameOffsets[frameCount] = offset;
+            frameCount++;
+        }
+    }
+}
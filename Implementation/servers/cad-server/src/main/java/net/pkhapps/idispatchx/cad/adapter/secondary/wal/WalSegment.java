@@ -0,0 +1,112 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A segment file of the WAL.
+ * <p>
+ * Segments have a fixed, preallocated size and are named after the sequence number of their first
+ * record, so the sequence range covered by a segment is known without reading it: it ends right before
+ * the first sequence number of the next segment. The unused part of a segment is filled with zeros,
+ * which the codecs recognize as the end of the written data.
+ * <p>
+ * The read limit may be read from any thread and only ever covers data that has been synced to disk.
+ */
+final class WalSegment {
+
+    private static final String FILE_NAME_PREFIX = "wal-";
+    private static final int SEQUENCE_DIGITS = 20;
+
+    private final Path path;
+    private final long firstSequence;
+    private volatile long readLimit;
+
+    /**
+     * Creates a segment.
+     *
+     * @param path          the path of the segment file
+     * @param firstSequence the sequence number of the first record in the segment, at least 1
+     * @param readLimit     the file offset up to which the segment can be read
+     */
+    WalSegment(Path path, long firstSequence, long readLimit) {
+        this.path = Objects.requireNonNull(path, "path must not be null");
+        if (firstSequence < 1) {
+            throw new IllegalArgumentException("firstSequence must be at least 1, got " + firstSequence);
+        }
+        this.firstSequence = firstSequence;
+        this.readLimit = readLimit;
+    }
+
+    /**
+     * Returns the file name of the segment starting at the given sequence number.
+     *
+     * @param firstSequence the sequence number of the first record in the segment
+     * @param extension     the file extension of the WAL format
+     * @return the file name, zero-padded so that segments sort by name
+     */
+    static String fileName(long firstSequence, String extension) {
+        var digits = Long.toString(firstSequence);
+        return FILE_NAME_PREFIX + "0".repeat(Math.max(0, SEQUENCE_DIGITS - digits.length())) + digits
+                + "." + extension;
+    }
+
+    /**
+     * Returns the first sequence number encoded in the given segment file name.
+     *
+     * @param fileName  the file name
+     * @param extension the file extension of the WAL format
+     * @return the first sequence number, or -1 if the name is not the name of a segment
+     */
+    static long parseFirstSequence(String fileName, String extension) {
+        var suffix = "." + extension;
+        if (!fileName.startsWith(FILE_NAME_PREFIX) || !fileName.endsWith(suffix)) {
+            return -1;
+        }
+        var digits = fileName.substring(FILE_NAME_PREFIX.length(), fileName.length() - suffix.length());
+        if (digits.length() != SEQUENCE_DIGITS || !digits.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        try {
+            var firstSequence = Long.parseLong(digits);
+            return firstSequence >= 1 ? firstSequence : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the path of the segment file.
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Returns the sequence number of the first record in the segment.
+     */
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Returns the file offset up to which the segment contains synced data. Readers must not read past it.
+     */
+    long readLimit() {
+        return readLimit;
+    }
+
+    /**
+     * Publishes newly synced data to readers. Only called by the writer thread.
+     *
+     * @param readLimit the new read limit
+     */
+    void setReadLimit(long readLimit) {
+        this.readLimit = readLimit;
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName().toString();
+    }
+}
@@ -0,0 +1,217 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sparse index of a WAL segment, mapping sequence numbers to file offsets.
+ * <p>
+ * The index file sits next to its segment and consists of fixed-size entries of two big-endian longs:
+ * the sequence number of a record and the file offset at which its frame starts. An entry is added
+ * whenever at least {@link #INTERVAL} bytes have been written since the previous one, so a reader can
+ * binary search the index and start reading at most that many bytes before the record it needs.
+ * <p>
+ * The index is only a hint. It is written after the records it points to have been synced, but is not
+ * synced itself; readers ignore entries beyond the synced data and verify the record found at an offset
+ * before trusting it.
+ */
+final class WalSegmentIndex implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WalSegmentIndex.class);
+
+    /**
+     * Minimum number of bytes between two index entries.
+     */
+    static final long INTERVAL = 4 * 1024;
+
+    private static final String FILE_EXTENSION = ".idx";
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+    private static final int INITIAL_PENDING_ENTRIES = 16;
+
+    private final FileChannel channel;
+    private long size;
+    private long lastOffset;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_PENDING_ENTRIES * ENTRY_SIZE);
+
+    private WalSegmentIndex(FileChannel channel, long size, long lastOffset) {
+        this.channel = channel;
+        this.size = size;
+        this.lastOffset = lastOffset;
+    }
+
+    /**
+     * Returns the path of the index file of the given segment.
+     *
+     * @param segmentPath the path of the segment file
+     * @return the path of the index file
+     */
+    static Path pathFor(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the name of the segment file that an index file belongs to.
+     *
+     * @param fileName the file name
+     * @return the file name of the segment, or null if the name is not the name of an index file
+     */
+    static @Nullable String segmentFileName(String fileName) {
+        return fileName.endsWith(FILE_EXTENSION)
+                ? fileName.substring(0, fileName.length() - FILE_EXTENSION.length())
+                : null;
+    }
+
+    /**
+     * Opens the index of a segment for appending, discarding any entries that point beyond the given
+     * size of the valid segment data.
+     *
+     * @param segmentPath the path of the segment file
+     * @param validSize   the size of the valid data in the segment
+     * @return the index
+     * @throws IOException if the index file cannot be opened
+     */
+    static WalSegmentIndex open(Path segmentPath, long validSize) throws IOException {
+        var channel = FileChannel.open(pathFor(segmentPath), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            var entries = ByteBuffer.allocate(Math.toIntExact(channel.size() / ENTRY_SIZE * ENTRY_SIZE));
+            while (entries.hasRemaining() && channel.read(entries, entries.position()) >= 0) {
+                // Read the whole index
+            }
+            entries.flip();
+            long lastSequence = 0;
+            long lastOffset = 0;
+            while (entries.remaining() >= ENTRY_SIZE) {
+                var sequence = entries.getLong(entries.position());
+                var offset = entries.getLong(entries.position() + Long.BYTES);
+                if (sequence <= lastSequence || offset <= lastOffset || offset >= validSize) {
+                    break;
+                }
+                lastSequence = sequence;
+                lastOffset = offset;
+                entries.position(entries.position() + ENTRY_SIZE);
+            }
+            long size = entries.position();
+            if (size < channel.size()) {
+                channel.truncate(size);
+            }
+            return new WalSegmentIndex(channel, size, lastOffset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an empty index for a new segment, replacing any existing index file.
+     *
+     * @param segmentPath the path of the segment file
+     * @return the index
+     * @throws IOException if the index file cannot be created
+     */
+    static WalSegmentIndex create(Path segmentPath) throws IOException {
+        var channel = FileChannel.open(pathFor(segmentPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new WalSegmentIndex(channel, 0, 0);
+    }
+
+    /**
+     * Records that the frame of the given sequence number starts at the given offset, if the previous
+     * entry is far enough behind. The entry is kept in memory until {@link #flush()} is called.
+     *
+     * @param sequence the sequence number of the record
+     * @param offset   the file offset of the frame of the record
+     */
+    void add(long sequence, long offset) {
+        if (offset - lastOffset < INTERVAL) {
+            return;
+        }
+        if (!pending.hasRemaining()) {
+            pending = ByteBuffer.allocate(pending.capacity() * 2).put(pending.flip());
+        }
+        pending.putLong(sequence).putLong(offset);
+        lastOffset = offset;
+    }
+
+    /**
+     * Writes the pending entries to the index file, without syncing it.
+     * Must only be called once the records the entries point to have been synced.
+     *
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        while (pending.hasRemaining()) {
+            size += channel.write(pending, size);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Returns the offset at which to start reading a segment to find all records after the given
+     * sequence number.
+     *
+     * @param segmentPath the path of the segment file
+     * @param after       the sequence number after which records are needed
+     * @param readLimit   the offset up to which the segment contains synced data
+     * @return the offset of a frame with a sequence number of at most {@code after + 1}, or 0 if
+     * the index contains no such entry or cannot be read
+     */
+    static long find(Path segmentPath, long after, long readLimit) {
+        try (var channel = FileChannel.open(pathFor(segmentPath), StandardOpenOption.READ)) {
+            var entries = channel.size() / ENTRY_SIZE;
+            if (entries == 0) {
+                return 0;
+            }
+            var index = channel.map(FileChannel.MapMode.READ_ONLY, 0, entries * ENTRY_SIZE);
+            // Find the last entry with sequence <= after + 1 and an offset within the synced data
+            long low = 0;
+            long high = entries - 1;
+            long found = -1;
+            while (low <= high) {
+                var middle = (low + high) >>> 1;
+                var position = (int) (middle * ENTRY_SIZE);
+                if (index.getLong(position) <= after + 1 && index.getLong(position + Long.BYTES) < readLimit) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return found < 0 ? 0 : index.getLong((int) (found * ENTRY_SIZE) + Long.BYTES);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            log.debug("Could not read WAL segment index of {}", segmentPath, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Deletes the index file of the given segment, if it exists.
+     *
+     * @param segmentPath the path of the segment file
+     * @throws IOException if the index file cannot be deleted
+     */
+    static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(pathFor(segmentPath));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
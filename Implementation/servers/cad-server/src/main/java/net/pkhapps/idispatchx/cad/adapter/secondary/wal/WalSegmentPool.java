@@ -0,0 +1,264 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.Directories;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of preallocated, zero-filled spare files that become WAL segments.
+ * <p>
+ * Writing into a preallocated file never changes its size, so a data-only sync does not have to flush
+ * file system metadata. Spares are prepared by a background thread so that a rollover only costs a
+ * rename. Segments removed by truncation are zero-filled and returned to the pool instead of being
+ * deleted, reusing their disk blocks.
+ * <p>
+ * A spare is written under a temporary name and only renamed to its final name once it has been
+ * completely zero-filled and synced. Temporary files left behind by a crash are deleted on open.
+ */
+final class WalSegmentPool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WalSegmentPool.class);
+
+    /**
+     * Number of spares the pool tries to keep ready.
+     */
+    static final int MIN_SPARE_SEGMENTS = 1;
+
+    /**
+     * Maximum number of spares kept in the pool. Recycled segments beyond this are deleted.
+     */
+    static final int MAX_SPARE_SEGMENTS = 2;
+
+    private static final String SPARE_PREFIX = "spare-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(1024 * 1024).asReadOnlyBuffer();
+
+    private final Path directory;
+    private final String extension;
+    private final long segmentSize;
+    private final Deque<Path> spares = new ArrayDeque<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final ExecutorService preparer;
+    private int pending;
+    private boolean closed;
+
+    /**
+     * Opens the pool, adopting the spares already present in the directory.
+     *
+     * @param directory   the WAL directory
+     * @param extension   the file extension of the WAL format
+     * @param segmentSize the size of a segment
+     * @throws IOException if the directory cannot be read
+     */
+    WalSegmentPool(Path directory, String extension, long segmentSize) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        this.extension = Objects.requireNonNull(extension, "extension must not be null");
+        this.segmentSize = segmentSize;
+        var suffix = "." + extension;
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                if (!name.startsWith(SPARE_PREFIX)) {
+                    continue;
+                }
+                if (name.endsWith(suffix + TEMP_SUFFIX)) {
+                    Files.delete(file);
+                } else if (name.endsWith(suffix)) {
+                    adoptSpare(file, name.substring(SPARE_PREFIX.length(), name.length() - suffix.length()));
+                }
+            }
+        }
+        this.preparer = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+                .name("wal-preallocator")
+                .daemon(true)
+                .factory());
+        replenish();
+    }
+
+    private void adoptSpare(Path file, String id) throws IOException {
+        try {
+            nextId.accumulateAndGet(Long.parseLong(id) + 1, Math::max);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (Files.size(file) == segmentSize) {
+            spares.add(file);
+        } else {
+            // Left over from a different segment size
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Turns a spare into a new segment file, allocating one synchronously if no spare is ready.
+     *
+     * @param target the path of the new segment
+     * @throws IOException if the segment cannot be created
+     */
+    void take(Path target) throws IOException {
+        @Nullable Path spare;
+        synchronized (this) {
+            spare = spares.poll();
+        }
+        if (spare == null) {
+            log.debug("No preallocated WAL segment available, allocating {} synchronously", target.getFileName());
+            spare = allocate();
+        }
+        Files.move(spare, target, StandardCopyOption.ATOMIC_MOVE);
+        Directories.sync(directory);
+        replenish();
+    }
+
+    /**
+     * Returns a segment that is no longer needed to the pool. The segment is renamed immediately and
+     * zero-filled in the background, or deleted if the pool is already full.
+     *
+     * @param segment the path of the segment file
+     * @throws IOException if the segment cannot be renamed or deleted
+     */
+    void recycle(Path segment) throws IOException {
+        synchronized (this) {
+            if (closed || spares.size() + pending >= MAX_SPARE_SEGMENTS) {
+                Files.delete(segment);
+                return;
+            }
+            pending++;
+        }
+        var id = nextId.getAndIncrement();
+        var temp = tempPath(id);
+        try {
+            Files.move(segment, temp, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            prepared(null);
+            throw e;
+        }
+        preparer.execute(() -> {
+            @Nullable Path spare = null;
+            try {
+                try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    channel.truncate(segmentSize);
+                    zeroFill(channel, 0, segmentSize);
+                    channel.force(true);
+                }
+                spare = sparePath(id);
+                Files.move(temp, spare, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Could not recycle WAL segment {}", temp, e);
+                deleteQuietly(temp);
+            } finally {
+                prepared(spare);
+            }
+        });
+    }
+
+    private void replenish() {
+        synchronized (this) {
+            if (closed || spares.size() + pending >= MIN_SPARE_SEGMENTS) {
+                return;
+            }
+            pending++;
+        }
+        preparer.execute(() -> {
+            @Nullable Path spare = null;
+            try {
+                spare = allocate();
+            } catch (IOException e) {
+                log.warn("Could not preallocate WAL segment", e);
+            } finally {
+                prepared(spare);
+            }
+        });
+    }
+
+    private synchronized void prepared(@Nullable Path spare) {
+        pending--;
+        if (spare != null) {
+            spares.add(spare);
+        }
+    }
+
+    private Path allocate() throws IOException {
+        var id = nextId.getAndIncrement();
+        var temp = tempPath(id);
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            zeroFill(channel, 0, segmentSize);
+            channel.force(true);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+        var spare = sparePath(id);
+        Files.move(temp, spare, StandardCopyOption.ATOMIC_MOVE);
+        return spare;
+    }
+
+    private Path sparePath(long id) {
+        return directory.resolve(SPARE_PREFIX + id + "." + extension);
+    }
+
+    private Path tempPath(long id) {
+        return directory.resolve(SPARE_PREFIX + id + "." + extension + TEMP_SUFFIX);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete {}", path, e);
+        }
+    }
+
+    /**
+     * Writes zeros to the given region of a file.
+     *
+     * @param channel the channel to write to
+     * @param from    the first file offset to overwrite
+     * @param to      the file offset at which to stop
+     * @throws IOException if writing fails
+     */
+    static void zeroFill(FileChannel channel, long from, long to) throws IOException {
+        var position = from;
+        while (position < to) {
+            var zeros = ZEROS.duplicate();
+            zeros.limit((int) Math.min(zeros.capacity(), to - position));
+            while (zeros.hasRemaining()) {
+                position += channel.write(zeros, position);
+            }
+        }
+    }
+
+    /**
+     * Waits for background preparation to finish. Spares that are still being prepared are
+     * completed; their temporary files would otherwise be cleaned up on the next open.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        preparer.shutdown();
+        try {
+            if (!preparer.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Timed out waiting for WAL segment preallocation to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The sequence number of the last record the writer of a WAL has synced to disk, published in a small file
+ * in the WAL directory for a {@link FileWalFollower}.
+ * <p>
+ * The file holds the sequence number as a big-endian long followed by its bitwise complement, so that a
+ * reader can tell a value from a write in progress. It is rewritten in place after every sync but not
+ * synced itself: it is written only after the records it covers have been synced, so a value that is lost
+ * or stale is lower than the synced records, never higher.
+ */
+final class WalSyncMarker implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WalSyncMarker.class);
+
+    static final String FILE_NAME = "wal-synced.seq";
+
+    private static final int SIZE = 2 * Long.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+    private WalSyncMarker(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the marker in the given WAL directory for writing, creating it if it does not exist.
+     *
+     * @param directory the WAL directory
+     * @return the marker
+     * @throws IOException if the marker file cannot be opened
+     */
+    static WalSyncMarker open(Path directory) throws IOException {
+        return new WalSyncMarker(FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Publishes the sequence number of the last synced record, without syncing the marker.
+     * Must only be called once the records up to the sequence number have been synced.
+     *
+     * @param sequence the sequence number of the last synced record
+     * @throws IOException if writing fails
+     */
+    void write(long sequence) throws IOException {
+        buffer.clear();
+        buffer.putLong(sequence).putLong(~sequence).flip();
+        var position = 0L;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Reads the sequence number published in the given WAL directory.
+     *
+     * @param directory the WAL directory
+     * @return the sequence number of the last record the writer has synced, or -1 if no valid sequence number
+     * could be read, for instance because the writer is rewriting the marker at the same time
+     */
+    static long read(Path directory) {
+        try (var channel = FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+                // Read the whole marker
+            }
+            if (buffer.hasRemaining()) {
+                return -1;
+            }
+            var sequence = buffer.getLong(0);
+            return buffer.getLong(Long.BYTES) == ~sequence && sequence >= 0 ? sequence : -1;
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            log.debug("Could not read WAL sync marker in {}", directory, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
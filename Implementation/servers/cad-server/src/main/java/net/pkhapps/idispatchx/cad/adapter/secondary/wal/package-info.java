@@ -0,0 +1,4 @@
+@NullMarked
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import org.jspecify.annotations.NullMarked;
@@ -0,0 +1,116 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.command.Command;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Abstract base class for command handlers whose commands produce several events, such as dispatching
+ * multiple units to an incident.
+ * <p>
+ * Follows the same WAL-before-state pattern as {@link CommandHandler}, but all events of a command are
+ * written with a single {@link WalPort#writeBatch(List)}. They are therefore synced together and either
+ * all or none of them survive a crash. The mutations are applied in order once the batch is durable.
+ *
+ * @param <C> the command type
+ * @param <R> the result type
+ */
+public abstract class BatchCommandHandler<C extends Command, R> {
+
+    private final CommandPipeline pipeline;
+    private final CommandPipeline.Steps<C, R> steps = new CommandPipeline.Steps<>() {
+        @Override
+        public LockScope determineLockScope(C command) {
+            return BatchCommandHandler.this.determineLockScope(command);
+        }
+
+        @Override
+        public List<? extends PendingMutation<? extends DomainEvent>> prepareExecution(C command) {
+            return List.copyOf(BatchCommandHandler.this.prepareExecution(command));
+        }
+
+        @Override
+        public R buildResult(C command, List<DomainEvent> events) {
+            return BatchCommandHandler.this.buildResult(command, events);
+        }
+    };
+
+    protected BatchCommandHandler(WalPort walPort, EntityLockManager lockManager) {
+        this(walPort, lockManager, new MetricsRegistry());
+    }
+
+    /**
+     * Creates a handler that records the duration of each phase of handling a command into the
+     * {@code command.*} histograms of the given registry.
+     */
+    protected BatchCommandHandler(WalPort walPort, EntityLockManager lockManager, MetricsRegistry metricsRegistry) {
+        this(walPort, lockManager, metricsRegistry, null);
+    }
+
+    /**
+     * Creates a handler that runs each command on the partition of its lock scope, see
+     * {@link PartitionedExecutor}, instead of on the calling thread.
+     *
+     * @param partitions the partitions to run on, or null to run on the calling thread
+     */
+    protected BatchCommandHandler(WalPort walPort, EntityLockManager lockManager, MetricsRegistry metricsRegistry,
+                               @Nullable PartitionedExecutor partitions) {
+        this.pipeline = new CommandPipeline(walPort, lockManager, metricsRegistry, partitions);
+    }
+
+    /**
+     * Handles the command with proper locking and WAL ordering.
+     *
+     * @param command the command to handle
+     * @return the result of handling the command
+     * @throws LockTimeoutException if the locks could not be acquired within the lock manager's timeout
+     */
+    public final R handle(C command) {
+        return pipeline.handle(command, steps);
+    }
+
+    /**
+     * Handles the command asynchronously, like {@link CommandHandler#handleAsync(Command)}.
+     *
+     * @param command the command to handle
+     * @return a future completed with the result, or exceptionally if the command is rejected or the WAL
+     * write fails
+     */
+    public final CompletableFuture<R> handleAsync(C command) {
+        return pipeline.handleAsync(command, steps);
+    }
+
+    /**
+     * Determines the lock scope for the command, covering every aggregate that any of the
+     * mutations changes.
+     *
+     * @param command the command being handled
+     * @return the lock scope
+     */
+    protected abstract LockScope determineLockScope(C command);
+
+    /**
+     * Prepares the execution by validating the command and creating the pending mutations.
+     * <p>
+     * This method must NOT modify any state. The mutations are applied in the returned order,
+     * each one seeing the changes of the ones before it.
+     *
+     * @param command the command being handled
+     * @return the pending mutations, at least one
+     */
+    protected abstract List<? extends PendingMutation<? extends DomainEvent>> prepareExecution(C command);
+
+    /**
+     * Builds the result after successful execution.
+     *
+     * @param command the command that was handled
+     * @param events  the events that were written to WAL, in order
+     * @return the result
+     */
+    protected abstract R buildResult(C command, List<DomainEvent> events);
+}
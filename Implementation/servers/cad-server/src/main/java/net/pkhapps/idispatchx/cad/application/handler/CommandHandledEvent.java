@@ -0,0 +1,43 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * JFR event recorded for every successfully handled command, breaking its duration down into phases.
+ */
+@Name("net.pkhapps.idispatchx.cad.CommandHandled")
+@Label("Command Handled")
+@Category({"iDispatchX", "CAD Server"})
+@Description("A command handled by a command handler")
+@StackTrace(false)
+final class CommandHandledEvent extends Event {
+
+    @Label("Command Type")
+    @Nullable String commandType;
+
+    @Label("Events")
+    int events;
+
+    @Label("Lock Wait")
+    @Timespan
+    long lockWait;
+
+    @Label("Prepare")
+    @Timespan
+    long prepare;
+
+    @Label("WAL Write")
+    @Timespan
+    long walWrite;
+
+    @Label("Apply")
+    @Timespan
+    long apply;
+}
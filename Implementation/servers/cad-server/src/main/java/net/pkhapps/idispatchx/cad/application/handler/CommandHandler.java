@@ -1,10 +1,13 @@
 package net.pkhapps.idispatchx.cad.application.handler;
 
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
 import net.pkhapps.idispatchx.cad.domain.command.Command;
 import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
 import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
 
-import java.util.Objects;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Abstract base class for command handlers that enforces the WAL-before-state pattern.
@@ -17,18 +20,60 @@ import java.util.Objects;
  *   <li>Applies the state mutation only after WAL confirms durability</li>
  *   <li>Returns the result</li>
  * </ol>
+ * <p>
+ * {@link #handleAsync(Command)} runs the same sequence without blocking the caller, so that many commands
+ * on different aggregates can wait for the same WAL sync.
+ * <p>
+ * Commands that produce more than one event use {@link BatchCommandHandler} instead. Both run the same
+ * sequence; this handler is the case of a single event.
+ * <p>
+ * A handler created with a {@link PartitionedExecutor} runs the same sequence on the partition thread of the
+ * command's lock scope instead of on the caller's thread; the contract is otherwise unchanged.
  *
  * @param <C> the command type
  * @param <R> the result type
  */
 public abstract class CommandHandler<C extends Command, R> {
 
-    private final WalPort walPort;
-    private final EntityLockManager lockManager;
+    private final CommandPipeline pipeline;
+    private final CommandPipeline.Steps<C, R> steps = new CommandPipeline.Steps<>() {
+        @Override
+        public LockScope determineLockScope(C command) {
+            return CommandHandler.this.determineLockScope(command);
+        }
+
+        @Override
+        public List<? extends PendingMutation<? extends DomainEvent>> prepareExecution(C command) {
+            return List.of(CommandHandler.this.prepareExecution(command));
+        }
+
+        @Override
+        public R buildResult(C command, List<DomainEvent> events) {
+            return CommandHandler.this.buildResult(command, events.getFirst());
+        }
+    };
 
     protected CommandHandler(WalPort walPort, EntityLockManager lockManager) {
-        this.walPort = Objects.requireNonNull(walPort, "walPort must not be null");
-        this.lockManager = Objects.requireNonNull(lockManager, "lockManager must not be null");
+        this(walPort, lockManager, new MetricsRegistry());
+    }
+
+    /**
+     * Creates a handler that records the duration of each phase of handling a command into the
+     * {@code command.*} histograms of the given registry.
+     */
+    protected CommandHandler(WalPort walPort, EntityLockManager lockManager, MetricsRegistry metricsRegistry) {
+        this(walPort, lockManager, metricsRegistry, null);
+    }
+
+    /**
+     * Creates a handler that runs each command on the partition of its lock scope, see
+     * {@link PartitionedExecutor}, instead of on the calling thread.
+     *
+     * @param partitions the partitions to run on, or null to run on the calling thread
+     */
+    protected CommandHandler(WalPort walPort, EntityLockManager lockManager, MetricsRegistry metricsRegistry,
+                          @Nullable PartitionedExecutor partitions) {
+        this.pipeline = new CommandPipeline(walPort, lockManager, metricsRegistry, partitions);
     }
 
     /**
@@ -36,25 +81,35 @@ public abstract class CommandHandler<C extends Command, R> {
      *
      * @param command the command to handle
      * @return the result of handling the command
+     * @throws LockTimeoutException if the lock manager has an acquisition timeout and the locks could not be
+     *                              acquired in time; nothing has been written or changed, so the command
+     *                              may be retried
      */
     public final R handle(C command) {
-        Objects.requireNonNull(command, "command must not be null");
-
-        var lockScope = determineLockScope(command);
-
-        try (var lock = lockManager.acquire(lockScope)) {
-            // 1. Validate command and compute pending mutation (NO state change yet)
-            var pendingMutation = prepareExecution(command);
-
-            // 2. Write event to WAL and block until synced to disk
-            walPort.write(pendingMutation.event());
-
-            // 3. ONLY after successful WAL write, apply state mutation
-            pendingMutation.applyMutation().run();
+        return pipeline.handle(command, steps);
+    }
 
-            // 4. Return result
-            return buildResult(command, pendingMutation.event());
-        }
+    /**
+     * Handles the command asynchronously with the same locking and WAL ordering as {@link #handle(Command)}.
+     * <p>
+     * The locks are acquired, the mutation is prepared and the event is queued for the next WAL sync
+     * without blocking the caller. Once the WAL confirms durability, the mutation is applied while the
+     * locks are still held, and the returned future is completed. Commands on different aggregates can
+     * therefore be committed by the same sync, while commands on the same aggregate still run one at a time.
+     * <p>
+     * Commands submitted one after another are not guaranteed to acquire their locks in submission order;
+     * a caller that depends on the order must wait for the previous future to complete.
+     * <p>
+     * With a {@link PartitionedExecutor}, the command is queued to its partition instead, and the future is
+     * completed on the partition thread. Dependent actions that handle further commands must therefore use
+     * the async variants of the {@link CompletableFuture} methods.
+     *
+     * @param command the command to handle
+     * @return a future completed with the result, or exceptionally if the command is rejected or the WAL
+     * write fails
+     */
+    public final CompletableFuture<R> handleAsync(C command) {
+        return pipeline.handleAsync(command, steps);
     }
 
     /**
@@ -0,0 +1,67 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import net.pkhapps.idispatchx.cad.application.metrics.Histogram;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.command.Command;
+
+/**
+ * Records how long the phases of handling a command take, as histograms and as JFR events.
+ * Only successfully handled commands are recorded.
+ */
+final class CommandMetrics {
+
+    private final Histogram lockWait;
+    private final Histogram prepare;
+    private final Histogram walWrite;
+    private final Histogram apply;
+    private final Histogram total;
+
+    CommandMetrics(MetricsRegistry registry) {
+        this.lockWait = registry.timer("command.lock-wait");
+        this.prepare = registry.timer("command.prepare");
+        this.walWrite = registry.timer("command.wal-write");
+        this.apply = registry.timer("command.apply");
+        this.total = registry.timer("command.total");
+    }
+
+    /**
+     * Starts timing a command.
+     *
+     * @return the JFR event to pass to {@link #record}
+     */
+    CommandHandledEvent start() {
+        var event = new CommandHandledEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Records a handled command. All times are {@link System#nanoTime()} values.
+     *
+     * @param event    the event returned by {@link #start()}
+     * @param command  the handled command
+     * @param events   the number of events written to the WAL
+     * @param start    when handling started
+     * @param locked   when the locks had been acquired
+     * @param prepared when the mutation had been prepared
+     * @param written  when the WAL had confirmed durability
+     * @param end      when the mutation had been applied
+     */
+    void record(CommandHandledEvent event, Command command, int events, long start, long locked, long prepared,
+                long written, long end) {
+        lockWait.record(locked - start);
+        prepare.record(prepared - locked);
+        walWrite.record(written - prepared);
+        apply.record(end - written);
+        total.record(end - start);
+        if (event.shouldCommit()) {
+            event.commandType = command.getClass().getSimpleName();
+            event.events = events;
+            event.lockWait = locked - start;
+            event.prepare = prepared - locked;
+            event.walWrite = written - prepared;
+            event.apply = end - written;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.command.Command;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The WAL-before-state sequence shared by {@link CommandHandler} and {@link BatchCommandHandler}: acquire the
+ * locks, prepare the mutations, write their events to the WAL, notify the mutation listeners, apply the
+ * mutations and build the result, recording the duration of each phase.
+ * <p>
+ * The handlers only differ in how many mutations a command prepares, which they adapt to {@link Steps}.
+ */
+final class CommandPipeline {
+
+    /**
+     * Runs each asynchronously handled command on its own virtual thread. The aggregate locks are owned by
+     * the thread that acquired them, so the thread has to stay around until the mutation has been applied;
+     * a virtual thread does so without tying up a platform thread while the WAL is syncing.
+     */
+    private static final Executor ASYNC_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("command-handler-", 0).factory());
+
+    private final WalPort walPort;
+    private final EntityLockManager lockManager;
+    private final CommandMetrics metrics;
+    private final @Nullable PartitionedExecutor partitions;
+
+    /**
+     * The command specific steps of the sequence, implemented by the handlers.
+     *
+     * @param <C> the command type
+     * @param <R> the result type
+     */
+    interface Steps<C extends Command, R> {
+
+        LockScope determineLockScope(C command);
+
+        /**
+         * Prepares the mutations of the command without changing any state.
+         *
+         * @return the pending mutations, at least one
+         */
+        List<? extends PendingMutation<? extends DomainEvent>> prepareExecution(C command);
+
+        R buildResult(C command, List<DomainEvent> events);
+    }
+
+    /**
+     * @param partitions the partitions to run on, or null to run on the calling thread
+     */
+    CommandPipeline(WalPort walPort, EntityLockManager lockManager, MetricsRegistry metricsRegistry,
+                    @Nullable PartitionedExecutor partitions) {
+        this.walPort = Objects.requireNonNull(walPort, "walPort must not be null");
+        this.lockManager = Objects.requireNonNull(lockManager, "lockManager must not be null");
+        this.metrics = new CommandMetrics(Objects.requireNonNull(metricsRegistry,
+                "metricsRegistry must not be null"));
+        this.partitions = partitions;
+    }
+
+    /**
+     * Handles the command on the calling thread, or on its partition if there are partitions.
+     */
+    <C extends Command, R> R handle(C command, Steps<C, R> steps) {
+        Objects.requireNonNull(command, "command must not be null");
+
+        var lockScope = steps.determineLockScope(command);
+        var timing = metrics.start();
+        var start = System.nanoTime();
+        if (partitions != null) {
+            return partitions.execute(lockScope, () -> execute(command, steps, lockScope, timing, start));
+        }
+        return execute(command, steps, lockScope, timing, start);
+    }
+
+    /**
+     * Handles the command on a virtual thread, or queues it to its partition if there are partitions.
+     */
+    <C extends Command, R> CompletableFuture<R> handleAsync(C command, Steps<C, R> steps) {
+        Objects.requireNonNull(command, "command must not be null");
+        if (partitions != null) {
+            var lockScope = steps.determineLockScope(command);
+            var timing = metrics.start();
+            var start = System.nanoTime();
+            return partitions.submit(lockScope, () -> execute(command, steps, lockScope, timing, start));
+        }
+        return CompletableFuture.supplyAsync(() -> handle(command, steps), ASYNC_EXECUTOR);
+    }
+
+    private <C extends Command, R> R execute(C command, Steps<C, R> steps, LockScope lockScope,
+                                             CommandHandledEvent timing, long start) {
+        try (var lock = lockManager.acquire(lockScope)) {
+            var locked = System.nanoTime();
+
+            // 1. Validate command and compute pending mutations (NO state change yet)
+            var pendingMutations = steps.prepareExecution(command);
+            var events = eventsOf(pendingMutations);
+            var prepared = System.nanoTime();
+
+            // 2. Write the events to WAL and block until synced to disk. The events of a command are written
+            // as one batch, so they are synced together and either all or none of them survive a crash.
+            var sequenceNumber = events.size() == 1
+                    ? walPort.write(events.getFirst())
+                    : walPort.writeBatch(events);
+            var written = System.nanoTime();
+            lockManager.beforeMutation(lockScope, sequenceNumber);
+
+            // 3. ONLY after successful WAL write, apply state mutations in order
+            for (var pendingMutation : pendingMutations) {
+                pendingMutation.applyMutation().run();
+            }
+
+            // 4. Return result
+            var result = steps.buildResult(command, events);
+            metrics.record(timing, command, events.size(), start, locked, prepared, written, System.nanoTime());
+            return result;
+        }
+    }
+
+    private static List<DomainEvent> eventsOf(List<? extends PendingMutation<? extends DomainEvent>> mutations) {
+        return switch (mutations.size()) {
+            case 0 -> throw new IllegalStateException("prepareExecution must return at least one pending mutation");
+            case 1 -> List.of(mutations.getFirst().event());
+            default -> {
+                var events = new DomainEvent[mutations.size()];
+                for (int i = 0; i < events.length; i++) {
+                    events[i] = mutations.get(i).event();
+                }
+                yield List.of(events);
+            }
+        };
+    }
+}
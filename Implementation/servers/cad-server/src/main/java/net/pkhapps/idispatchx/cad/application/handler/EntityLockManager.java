@@ -1,9 +1,20 @@
 package net.pkhapps.idispatchx.cad.application.handler;
 
+import net.pkhapps.idispatchx.cad.application.metrics.Histogram;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -11,42 +22,402 @@ import java.util.concurrent.locks.ReentrantLock;
  * <p>
  * Thread-safety for entities is achieved through external synchronization using this manager.
  * Lock keys are sorted before acquisition to ensure consistent ordering and prevent deadlocks.
+ * <p>
+ * The lock of a key only exists while it is held or waited for. Each lock counts the handles that are
+ * holding or acquiring it, and is removed from the table when the count drops to zero, so the table
+ * stays as small as the number of commands in progress, however many aggregates have been locked over
+ * the lifetime of the server.
+ * <p>
+ * Besides the locks themselves, the manager lets background tasks such as snapshots observe the aggregates
+ * without stopping the command handlers: {@link #awaitCurrentHolders()} waits for the commands that are
+ * in progress, and {@link MutationListener}s see every command before it changes its aggregates.
+ * <p>
+ * To make contention visible, for example when dozens of dispatchers work on the same major incident, the
+ * manager records how long contended acquisitions waited in a {@code lock.wait.<type>} histogram and how
+ * long locks were held in a {@code lock.hold.<type>} histogram per {@link LockKey#type()}, tracks the
+ * most contended keys ({@link #hotKeys(int)}), and reports the locks currently held and by which thread
+ * ({@link #heldLocks()}). With an acquisition timeout, a command that cannot get its locks in time fails
+ * with a retriable {@link LockTimeoutException} instead of piling up behind the others.
  */
 public final class EntityLockManager {
 
-    private final ConcurrentHashMap<LockKey, ReentrantLock> locks = new ConcurrentHashMap<>();
+    /**
+     * Number of keys tracked by {@link #hotKeys(int)}.
+     */
+    public static final int HOT_KEY_CAPACITY = 64;
+
+    // Holder counts are striped by thread, so that concurrent commands do not all update the same counter.
+    // Each stripe is padded to its own cache lines.
+    private static final int HOLDER_STRIPES = nextPowerOfTwo(Runtime.getRuntime().availableProcessors());
+    private static final int HOLDER_PADDING = 16;
+    private static final int GENERATION_STRIDE = HOLDER_STRIPES * HOLDER_PADDING;
+
+    private final ConcurrentHashMap<LockKey, LockEntry> locks = new ConcurrentHashMap<>();
+    private final List<MutationListener> mutationListeners = new CopyOnWriteArrayList<>();
+    // Number of open handles per stripe in each of two generations, see awaitCurrentHolders()
+    private final AtomicLongArray holders = new AtomicLongArray(2 * GENERATION_STRIDE);
+    private final ReentrantLock generationLock = new ReentrantLock();
+    private volatile int generation = 0;
+    // The thread in awaitCurrentHolders(), woken up by handles of the previous generation as they close
+    private volatile @Nullable Thread drainer;
+    private final MetricsRegistry metricsRegistry;
+    private final ConcurrentHashMap<String, TypeMetrics> typeMetrics = new ConcurrentHashMap<>();
+    private final HotKeyTracker hotKeys = new HotKeyTracker(HOT_KEY_CAPACITY);
+    private final long acquireTimeoutNanos;
+
+    /**
+     * Creates a lock manager without an acquisition timeout, recording into a registry of its own.
+     */
+    public EntityLockManager() {
+        this(new MetricsRegistry());
+    }
+
+    /**
+     * Creates a lock manager without an acquisition timeout.
+     *
+     * @param metricsRegistry the registry receiving the {@code lock.*} histograms
+     */
+    public EntityLockManager(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = Objects.requireNonNull(metricsRegistry, "metricsRegistry must not be null");
+        this.acquireTimeoutNanos = 0;
+    }
+
+    /**
+     * Creates a lock manager that gives up waiting for a lock after the given timeout.
+     *
+     * @param metricsRegistry the registry receiving the {@code lock.*} histograms
+     * @param acquireTimeout  how long to wait for each lock of a scope before failing with a
+     *                        {@link LockTimeoutException}
+     */
+    public EntityLockManager(MetricsRegistry metricsRegistry, Duration acquireTimeout) {
+        this.metricsRegistry = Objects.requireNonNull(metricsRegistry, "metricsRegistry must not be null");
+        Objects.requireNonNull(acquireTimeout, "acquireTimeout must not be null");
+        if (acquireTimeout.isNegative() || acquireTimeout.isZero()) {
+            throw new IllegalArgumentException("acquireTimeout must be positive, got " + acquireTimeout);
+        }
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
 
     /**
      * Acquires locks for all keys in the given scope.
      * <p>
-     * Keys are sorted before acquisition to prevent deadlocks when multiple
-     * aggregates need to be locked.
+     * Keys are acquired in the sorted order of the scope to prevent deadlocks when multiple
+     * aggregates need to be locked. Scopes of one or two keys, which most commands use, are
+     * acquired without any allocation beyond the handle and the table entries.
      *
      * @param scope the lock scope defining which aggregates to lock
      * @return a handle that releases the locks when closed
+     * @throws LockTimeoutException if an acquisition timeout is configured and a lock could not be
+     *                              acquired in time; no lock of the scope is held in that case
      */
     public LockHandle acquire(LockScope scope) {
         Objects.requireNonNull(scope, "scope must not be null");
+        var keys = scope.keys();
 
-        // Sort keys to ensure consistent ordering (prevents deadlocks)
-        var orderedKeys = scope.keys().stream()
-                .sorted()
-                .toList();
+        var holderSlot = register();
+        try {
+            return switch (keys.size()) {
+                case 1 -> new LockHandle(this, lock(keys.getFirst()), null, null, holderSlot);
+                case 2 -> {
+                    var first = lock(keys.get(0));
+                    try {
+                        yield new LockHandle(this, first, lock(keys.get(1)), null, holderSlot);
+                    } catch (RuntimeException | Error e) {
+                        release(first);
+                        throw e;
+                    }
+                }
+                default -> acquireAll(keys, holderSlot);
+            };
+        } catch (RuntimeException | Error e) {
+            unregister(holderSlot);
+            throw e;
+        }
+    }
 
-        var acquiredLocks = new ArrayList<Lock>();
+    private LockHandle acquireAll(List<LockKey> keys, int holderSlot) {
+        var acquired = new LockEntry[keys.size()];
+        var count = 0;
         try {
-            for (var key : orderedKeys) {
-                var lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
-                lock.lock();
-                acquiredLocks.add(lock);
+            for (var key : keys) {
+                acquired[count] = lock(key);
+                count++;
             }
-            return new LockHandle(acquiredLocks);
-        } catch (Exception e) {
+        } catch (RuntimeException | Error e) {
             // If anything goes wrong during acquisition, release what we have
-            for (int i = acquiredLocks.size() - 1; i >= 0; i--) {
-                acquiredLocks.get(i).unlock();
+            for (int i = count - 1; i >= 0; i--) {
+                release(acquired[i]);
             }
             throw e;
         }
+        return new LockHandle(this, acquired[0], acquired[1], acquired, holderSlot);
+    }
+
+    private LockEntry lock(LockKey key) {
+        var entry = reference(key);
+        try {
+            if (!entry.tryLock()) {
+                lockContended(entry);
+            }
+        } catch (RuntimeException | Error e) {
+            dereference(entry);
+            throw e;
+        }
+        if (entry.getHoldCount() == 1) {
+            entry.lockedAt = System.nanoTime();
+        }
+        return entry;
+    }
+
+    private void lockContended(LockEntry entry) {
+        var start = System.nanoTime();
+        try {
+            if (acquireTimeoutNanos == 0) {
+                entry.lock();
+            } else if (!entry.tryLock(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                var owner = entry.owner();
+                throw new LockTimeoutException(entry.key, owner == null ? null : owner.getName(),
+                        "timed out waiting for lock " + entry.key + " held by "
+                                + (owner == null ? "nobody" : owner.getName()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LockTimeoutException(entry.key, null, "interrupted waiting for lock " + entry.key, e);
+        } finally {
+            var waited = System.nanoTime() - start;
+            metricsFor(entry.key.type()).waitTime().record(waited);
+            hotKeys.record(entry.key, waited);
+        }
+    }
+
+    private TypeMetrics metricsFor(String type) {
+        var metrics = typeMetrics.get(type);
+        if (metrics == null) {
+            metrics = typeMetrics.computeIfAbsent(type, t -> new TypeMetrics(
+                    metricsRegistry.timer("lock.wait." + t), metricsRegistry.timer("lock.hold." + t)));
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the lock of the given key, creating it if needed, and counts a reference to it.
+     */
+    private LockEntry reference(LockKey key) {
+        // compute() runs atomically per key, so the count never races with removal
+        return locks.compute(key, EntityLockManager::addReference);
+    }
+
+    private static LockEntry addReference(LockKey key, @Nullable LockEntry entry) {
+        var e = entry == null ? new LockEntry(key) : entry;
+        e.references++;
+        return e;
+    }
+
+    /**
+     * Removes a reference to the given lock, removing the lock from the table if it was the last one.
+     */
+    private void dereference(LockEntry entry) {
+        locks.computeIfPresent(entry.key, EntityLockManager::removeReference);
+    }
+
+    private static @Nullable LockEntry removeReference(LockKey key, LockEntry entry) {
+        return --entry.references == 0 ? null : entry;
+    }
+
+    /**
+     * Unlocks the given lock and removes the reference held by the unlocking handle. Called by
+     * {@link LockHandle#close()}.
+     */
+    void release(LockEntry entry) {
+        if (entry.getHoldCount() == 1) {
+            metricsFor(entry.key.type()).holdTime().record(System.nanoTime() - entry.lockedAt);
+        }
+        entry.unlock();
+        dereference(entry);
+    }
+
+    /**
+     * Returns the locks that are currently held, longest held first. The result is a best-effort view of a
+     * table that changes while it is read.
+     *
+     * @return the held locks
+     */
+    public List<HeldLock> heldLocks() {
+        var now = System.nanoTime();
+        var held = new ArrayList<HeldLock>();
+        for (var entry : locks.values()) {
+            var owner = entry.owner();
+            if (owner != null) {
+                var heldFor = Duration.ofNanos(Math.max(0, now - entry.lockedAt));
+                held.add(new HeldLock(entry.key, owner.getName(), heldFor, entry.getQueueLength()));
+            }
+        }
+        held.sort(Comparator.comparing(HeldLock::heldFor).reversed());
+        return held;
+    }
+
+    /**
+     * Returns the keys whose locks were most often contended since the manager was created or
+     * {@link #resetHotKeys()} was called, most contended first. At most {@value #HOT_KEY_CAPACITY} keys are
+     * tracked.
+     *
+     * @param limit the maximum number of keys to return
+     * @return the hot keys
+     */
+    public List<HotLockKey> hotKeys(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative, got " + limit);
+        }
+        return hotKeys.top(limit);
+    }
+
+    /**
+     * Forgets the tracked hot keys, for example at the start of a measurement interval.
+     */
+    public void resetHotKeys() {
+        hotKeys.reset();
+    }
+
+    /**
+     * Returns the number of keys currently in the lock table, i.e. the keys that are held or being acquired.
+     */
+    int lockTableSize() {
+        return locks.size();
+    }
+
+    /**
+     * Waits until every lock handle that had been acquired, or was being acquired, when this method was
+     * called has been closed. Handles acquired after the call are not waited for, so new commands keep
+     * running while this method waits.
+     * <p>
+     * Since command handlers write their events while holding the locks, all events that are durable when
+     * this method is called have also been applied when it returns.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitCurrentHolders() throws InterruptedException {
+        generationLock.lockInterruptibly();
+        try {
+            drainer = Thread.currentThread();
+            var previous = generation;
+            var next = 1 - previous;
+            // Only non-empty if an earlier call was interrupted before its holders had closed
+            awaitHolders(next);
+            generation = next;
+            // Handles registered before the switch count into the previous generation until they are closed
+            awaitHolders(previous);
+        } finally {
+            drainer = null;
+            generationLock.unlock();
+        }
+    }
+
+    private void awaitHolders(int of) throws InterruptedException {
+        while (holders(of) > 0) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private long holders(int of) {
+        var sum = 0L;
+        var start = of * GENERATION_STRIDE;
+        for (int i = start; i < start + GENERATION_STRIDE; i += HOLDER_PADDING) {
+            sum += holders.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Counts a new handle into the current generation and returns the slot of the counter, to be passed to
+     * {@link #unregister(int)} when the handle is closed.
+     */
+    private int register() {
+        var stripe = stripeOf(Thread.currentThread());
+        while (true) {
+            var current = generation;
+            var slot = current * GENERATION_STRIDE + stripe * HOLDER_PADDING;
+            holders.getAndIncrement(slot);
+            // The generation is read again after counting, so that awaitCurrentHolders() either sees the count
+            // or the handle sees the switch. In the latter case, it counts into the new generation instead.
+            if (generation == current) {
+                return slot;
+            }
+            unregister(slot);
+        }
+    }
+
+    /**
+     * Removes a handle counted by {@link #register()}. Called by {@link LockHandle#close()}.
+     */
+    void unregister(int slot) {
+        // A handle only ever changes the counter of its own slot, so no stripe is ever observed negative
+        holders.getAndDecrement(slot);
+        if (slot / GENERATION_STRIDE != generation) {
+            var waiting = drainer;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+    }
+
+    private static int stripeOf(Thread thread) {
+        return (int) ((thread.threadId() * 0x9E3779B97F4A7C15L) >>> 32) & (HOLDER_STRIPES - 1);
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Adds a listener that is notified by the command handlers before each mutation.
+     *
+     * @param listener the listener to add
+     */
+    public void addMutationListener(MutationListener listener) {
+        mutationListeners.add(Objects.requireNonNull(listener, "listener must not be null"));
+    }
+
+    /**
+     * Removes a listener added with {@link #addMutationListener(MutationListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeMutationListener(MutationListener listener) {
+        mutationListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the mutation listeners. Called by the command handlers while holding the locks of the scope.
+     */
+    void beforeMutation(LockScope scope, SequenceNumber sequenceNumber) {
+        for (var listener : mutationListeners) {
+            listener.beforeMutation(scope, sequenceNumber);
+        }
+    }
+
+    /**
+     * The lock of a key, with the number of handles holding or acquiring it.
+     */
+    static final class LockEntry extends ReentrantLock {
+
+        private final LockKey key;
+        // Guarded by the table: only changed within compute() for the key
+        private int references;
+        // Written by the holder, read by heldLocks()
+        private volatile long lockedAt;
+
+        private LockEntry(LockKey key) {
+            this.key = key;
+        }
+
+        @Nullable Thread owner() {
+            return getOwner();
+        }
+    }
+
+    private record TypeMetrics(Histogram waitTime, Histogram holdTime) {
     }
 }
@@ -0,0 +1,21 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A lock that is currently held, as reported by {@link EntityLockManager#heldLocks()}.
+ *
+ * @param key     the key of the locked aggregate
+ * @param holder  the name of the thread holding the lock
+ * @param heldFor how long the lock has been held
+ * @param waiting the approximate number of threads waiting for the lock
+ */
+public record HeldLock(LockKey key, String holder, Duration heldFor, int waiting) {
+
+    public HeldLock {
+        Objects.requireNonNull(key, "key must not be null");
+        Objects.requireNonNull(holder, "holder must not be null");
+        Objects.requireNonNull(heldFor, "heldFor must not be null");
+    }
+}
@@ -0,0 +1,79 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most contended lock keys in bounded memory, using the Space-Saving algorithm.
+ * <p>
+ * At most {@code capacity} keys are tracked. When a new key has to be tracked and the tracker is full, the
+ * least contended key is replaced and the new key inherits its count, so a key that is really hot is never
+ * missed, at the cost of overestimating the count of keys that entered late. Only contended acquisitions
+ * are recorded, and those have already waited for a lock, so a monitor is cheap enough here.
+ */
+final class HotKeyTracker {
+
+    private final int capacity;
+    private final Map<LockKey, Counter> counters = new HashMap<>();
+
+    HotKeyTracker(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records a contended acquisition of the given key.
+     *
+     * @param key       the key
+     * @param waitNanos how long the acquisition waited
+     */
+    synchronized void record(LockKey key, long waitNanos) {
+        var counter = counters.get(key);
+        if (counter == null) {
+            counter = new Counter();
+            if (counters.size() >= capacity) {
+                var least = counters.entrySet().stream()
+                        .min(Map.Entry.comparingByValue(Comparator.comparingLong(c -> c.contentions)))
+                        .orElseThrow();
+                counters.remove(least.getKey());
+                counter.contentions = least.getValue().contentions;
+            }
+            counters.put(key, counter);
+        }
+        counter.contentions++;
+        counter.waitNanos += waitNanos;
+    }
+
+    /**
+     * Returns the most contended keys, most contended first.
+     *
+     * @param limit the maximum number of keys to return
+     * @return the keys
+     */
+    synchronized List<HotLockKey> top(int limit) {
+        return counters.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<LockKey, Counter> e) -> e.getValue().contentions)
+                        .reversed())
+                .limit(limit)
+                .map(e -> new HotLockKey(e.getKey(), e.getValue().contentions,
+                        Duration.ofNanos(e.getValue().waitNanos)))
+                .toList();
+    }
+
+    /**
+     * Forgets all tracked keys.
+     */
+    synchronized void reset() {
+        counters.clear();
+    }
+
+    private static final class Counter {
+        long contentions;
+        long waitNanos;
+    }
+}
@@ -0,0 +1,20 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A frequently contended lock key, as reported by {@link EntityLockManager#hotKeys(int)}.
+ *
+ * @param key         the key of the contended aggregate
+ * @param contentions the number of acquisitions that had to wait for the lock; may overestimate the actual
+ *                    number by the count of a less contended key that this one replaced in the tracker
+ * @param totalWait   the total time spent waiting for the lock since the key was tracked
+ */
+public record HotLockKey(LockKey key, long contentions, Duration totalWait) {
+
+    public HotLockKey {
+        Objects.requireNonNull(key, "key must not be null");
+        Objects.requireNonNull(totalWait, "totalWait must not be null");
+    }
+}
@@ -1,8 +1,8 @@
 package net.pkhapps.idispatchx.cad.application.handler;
 
-import java.util.List;
+import org.jspecify.annotations.Nullable;
+
 import java.util.Objects;
-import java.util.concurrent.locks.Lock;
 
 /**
  * A handle to acquired locks that can be released via {@link AutoCloseable}.
@@ -11,11 +11,28 @@ import java.util.concurrent.locks.Lock;
  */
 public final class LockHandle implements AutoCloseable {
 
-    private final List<Lock> locks;
+    private final EntityLockManager manager;
+    // The first two locks are kept in fields, so that the common scopes need no array
+    private final EntityLockManager.LockEntry first;
+    private final EntityLockManager.@Nullable LockEntry second;
+    private final EntityLockManager.LockEntry @Nullable [] all;
+    private final int holderSlot;
     private boolean closed = false;
 
-    LockHandle(List<Lock> locks) {
-        this.locks = Objects.requireNonNull(locks, "locks must not be null");
+    /**
+     * @param first      the first lock
+     * @param second     the second lock, or null if there is only one
+     * @param all        all locks in order of acquisition if there are more than two, otherwise null
+     * @param holderSlot the holder counter the handle was registered with
+     */
+    LockHandle(EntityLockManager manager, EntityLockManager.LockEntry first,
+               EntityLockManager.@Nullable LockEntry second, EntityLockManager.LockEntry @Nullable [] all,
+               int holderSlot) {
+        this.manager = Objects.requireNonNull(manager, "manager must not be null");
+        this.first = Objects.requireNonNull(first, "first must not be null");
+        this.second = second;
+        this.all = all;
+        this.holderSlot = holderSlot;
     }
 
     @Override
@@ -25,8 +42,16 @@ public final class LockHandle implements AutoCloseable {
         }
         closed = true;
         // Release in reverse order
-        for (int i = locks.size() - 1; i >= 0; i--) {
-            locks.get(i).unlock();
+        if (all != null) {
+            for (int i = all.length - 1; i >= 0; i--) {
+                manager.release(all[i]);
+            }
+        } else {
+            if (second != null) {
+                manager.release(second);
+            }
+            manager.release(first);
         }
+        manager.unregister(holderSlot);
     }
 }
@@ -1,5 +1,6 @@
 package net.pkhapps.idispatchx.cad.application.handler;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -7,7 +8,8 @@ import java.util.Objects;
  * Defines the scope of locks to acquire for a command.
  * <p>
  * A scope contains one or more {@link LockKey}s that identify the aggregates
- * that need to be locked before executing a command.
+ * that need to be locked before executing a command. The keys are sorted once, when
+ * the scope is created, into the order in which they are locked.
  */
 public record LockScope(List<LockKey> keys) {
 
@@ -16,7 +18,13 @@ public record LockScope(List<LockKey> keys) {
         if (keys.isEmpty()) {
             throw new IllegalArgumentException("keys must not be empty");
         }
-        keys = List.copyOf(keys); // Defensive copy, immutable
+        if (keys.size() == 1) {
+            keys = List.copyOf(keys); // Defensive copy, immutable
+        } else {
+            var sorted = keys.toArray(new LockKey[0]);
+            Arrays.sort(sorted);
+            keys = List.of(sorted);
+        }
     }
 
     /**
@@ -0,0 +1,45 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Exception thrown when the lock of an aggregate could not be acquired within the timeout configured in the
+ * {@link EntityLockManager}.
+ * <p>
+ * The error is retriable: the command failed before anything was written to the WAL or changed in memory,
+ * so the client may submit it again once the contention has passed.
+ */
+public class LockTimeoutException extends RuntimeException {
+
+    private final LockKey key;
+    private final @Nullable String holder;
+
+    public LockTimeoutException(LockKey key, @Nullable String holder, String message) {
+        super(message);
+        this.key = Objects.requireNonNull(key, "key must not be null");
+        this.holder = holder;
+    }
+
+    public LockTimeoutException(LockKey key, @Nullable String holder, String message, Throwable cause) {
+        super(message, cause);
+        this.key = Objects.requireNonNull(key, "key must not be null");
+        this.holder = holder;
+    }
+
+    /**
+     * Returns the key whose lock could not be acquired.
+     */
+    public LockKey key() {
+        return key;
+    }
+
+    /**
+     * Returns the name of the thread that held the lock when the timeout expired, or null if it had just
+     * been released.
+     */
+    public @Nullable String holder() {
+        return holder;
+    }
+}
@@ -0,0 +1,26 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+
+/**
+ * Listener notified by command handlers after the events of a command have been written to the WAL and
+ * before its mutations are applied.
+ * <p>
+ * The listener runs on the thread handling the command while the locks of the command are still held, so
+ * it is the last point at which the aggregates in the lock scope can be observed as they were before the
+ * command. Listeners add to the latency of every command and must be quick. They must not throw: the
+ * events are already durable, so the mutations have to be applied regardless.
+ *
+ * @see EntityLockManager#addMutationListener(MutationListener)
+ */
+@FunctionalInterface
+public interface MutationListener {
+
+    /**
+     * Called before the mutations of a command are applied.
+     *
+     * @param scope          the lock scope of the command, covering every aggregate that the mutations change
+     * @param sequenceNumber the sequence number of the last event written by the command
+     */
+    void beforeMutation(LockScope scope, SequenceNumber sequenceNumber);
+}
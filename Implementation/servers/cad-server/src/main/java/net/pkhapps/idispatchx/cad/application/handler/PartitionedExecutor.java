@@ -0,0 +1,296 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs commands on a fixed number of single-threaded partitions, as an alternative to letting every caller
+ * thread compete for the aggregate locks.
+ * <p>
+ * Every {@link LockKey} hashes to one partition, and a command runs on the thread of the partition of its
+ * lock scope. Commands on the same partition therefore run one after another on the same thread, which
+ * keeps their aggregates in that core's cache and never hands a contended lock from one thread to another.
+ * The {@link EntityLockManager} locks are still taken inside the partition, so that snapshots and
+ * diagnostics work the same way in both modes, but they are uncontended apart from the short copies made
+ * by a snapshot.
+ * <p>
+ * A command whose scope spans several partitions runs on the lowest of them, after occupying the others in
+ * ascending order: each of them is blocked by a task that waits until the command has completed. Since
+ * every command occupies its partitions in the same order, like the sorted lock keys of a
+ * {@link LockScope}, commands cannot deadlock.
+ * <p>
+ * A partition waits for the WAL sync of each of its commands in turn, so commands on different partitions
+ * share a sync, but commands on the same partition do not. The number of partitions therefore needs to be
+ * large enough to keep the WAL group commit busy, not just the number of cores.
+ * <p>
+ * Command handlers use the executor when it is passed to their constructor; handling a command from a
+ * partition thread is only allowed if the command runs on that same partition.
+ */
+public final class PartitionedExecutor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedExecutor.class);
+
+    private final Partition[] partitions;
+    private final AtomicLong inFlight = new AtomicLong();
+    // Signalled when the last command in flight completes after close() has been called
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Condition idle = idleLock.newCondition();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates and starts the partitions.
+     *
+     * @param partitionCount the number of partitions
+     */
+    public PartitionedExecutor(int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("partitionCount must be at least 1, got " + partitionCount);
+        }
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i);
+        }
+    }
+
+    /**
+     * Returns the number of partitions.
+     */
+    public int partitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Returns the partition that commands on the given key run on.
+     *
+     * @param key the lock key
+     * @return the partition index
+     */
+    int partitionOf(LockKey key) {
+        var hash = key.hashCode();
+        // Spread the high bits, like HashMap, since the partition count is usually small
+        return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+    }
+
+    /**
+     * Returns the distinct partitions of the keys of the given scope, in ascending order.
+     */
+    private int[] partitionsOf(LockScope scope) {
+        var keys = scope.keys();
+        if (keys.size() == 1) {
+            return new int[]{partitionOf(keys.getFirst())};
+        }
+        return keys.stream().mapToInt(this::partitionOf).sorted().distinct().toArray();
+    }
+
+    /**
+     * Runs the task on the partitions of the given scope and waits for its result.
+     * <p>
+     * If called from the thread of the only partition of the scope, the task runs immediately.
+     *
+     * @param scope the lock scope of the command
+     * @param task  the task to run
+     * @param <T>   the result type
+     * @return the result of the task
+     * @throws IllegalStateException      if called from a partition thread that the task would have to wait for
+     * @throws RejectedExecutionException if the executor has been closed
+     */
+    <T> T execute(LockScope scope, Supplier<T> task) {
+        var indexes = partitionsOf(scope);
+        var current = Thread.currentThread();
+        if (indexes.length == 1 && partitions[indexes[0]].thread == current) {
+            return task.get();
+        }
+        for (var partition : partitions) {
+            if (partition.thread == current) {
+                throw new IllegalStateException("cannot handle a command of another partition from "
+                        + current.getName());
+            }
+        }
+        try {
+            return submit(indexes, task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the task to run on the partitions of the given scope.
+     *
+     * @param scope the lock scope of the command
+     * @param task  the task to run
+     * @param <T>   the result type
+     * @return a future completed with the result of the task, or exceptionally with the exception it threw
+     * @throws RejectedExecutionException if the executor has been closed
+     */
+    <T> CompletableFuture<T> submit(LockScope scope, Supplier<T> task) {
+        return submit(partitionsOf(scope), task);
+    }
+
+    private <T> CompletableFuture<T> submit(int[] indexes, Supplier<T> task) {
+        // Counted before checking closed, so that close() either sees the command or rejects it
+        inFlight.incrementAndGet();
+        if (closed) {
+            completed();
+            throw new RejectedExecutionException("executor is closed");
+        }
+        var future = new CompletableFuture<T>();
+        partitions[indexes[0]].queue.add(() -> {
+            try {
+                run(indexes, task, future);
+            } finally {
+                completed();
+            }
+        });
+        return future;
+    }
+
+    private void completed() {
+        if (inFlight.decrementAndGet() == 0 && closed) {
+            idleLock.lock();
+            try {
+                idle.signalAll();
+            } finally {
+                idleLock.unlock();
+            }
+        }
+    }
+
+    private <T> void run(int[] indexes, Supplier<T> task, CompletableFuture<T> future) {
+        var releases = new CountDownLatch[indexes.length - 1];
+        try {
+            for (int i = 1; i < indexes.length; i++) {
+                releases[i - 1] = occupy(partitions[indexes[i]]);
+            }
+            future.complete(task.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            for (var release : releases) {
+                if (release != null) {
+                    release.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks the given partition until the returned latch is counted down.
+     */
+    private static CountDownLatch occupy(Partition partition) {
+        var occupied = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        partition.queue.add(() -> {
+            occupied.countDown();
+            awaitUninterruptibly(release);
+        });
+        awaitUninterruptibly(occupied);
+        return release;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        var interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the partitions after the commands already queued have run. Commands submitted after this call
+     * are rejected.
+     * <p>
+     * If the calling thread is interrupted while waiting, the partitions are stopped without waiting any
+     * longer: the tasks already in their queues still run, but a command that has yet to occupy another
+     * partition may never complete.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        idleLock.lock();
+        try {
+            // The partitions must keep running until queued commands have occupied and released each other
+            while (inFlight.get() > 0) {
+                idle.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            idleLock.unlock();
+            for (var partition : partitions) {
+                partition.queue.add(Partition.STOP);
+            }
+        }
+        for (var partition : partitions) {
+            try {
+                partition.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private final class Partition {
+
+        static final Runnable STOP = () -> {
+        };
+
+        final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        final Thread thread;
+
+        Partition(int index) {
+            thread = Thread.ofPlatform()
+                    .name("command-partition-" + index)
+                    .daemon(true)
+                    .start(this::runTasks);
+        }
+
+        private void runTasks() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    log.warn("Partition thread {} interrupted, stopping", Thread.currentThread().getName());
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Unexpected exception in partition thread", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package net.pkhapps.idispatchx.cad.application.idempotency;
+
+import net.pkhapps.idispatchx.cad.application.snapshot.SnapshotSource;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Remembers the commands that have been processed, so that a retried command is not executed twice.
+ * <p>
+ * Every command that has produced an event is recorded, either by the command handler when it applies the
+ * event, or by WAL replay on startup through {@link #record(DomainEvent)}. A command is forgotten once the
+ * retention period has passed since it was last recorded.
+ * <p>
+ * Snapshots truncate the WAL, usually well within the retention period, so the tracker is also a
+ * {@link SnapshotSource} of the commands it remembers. On startup, it is restored from the snapshot and then
+ * rebuilt further from the {@link DomainEvent#causedBy()} of the events replayed after it, so a command
+ * retried after a failover is recognized for the whole retention period.
+ * <p>
+ * The command IDs are kept as pairs of longs in an open-addressing hash table with linear probing.
+ * {@link #isProcessed(CommandId)} reads the table without locking and without allocating, so that client
+ * retries never wait for the command handlers. Writes are serialized. A slot is never reused within a table:
+ * it goes from empty to used to removed, and the table is rebuilt into a new one when it fills up. The
+ * command ID of a slot is written before the slot is marked as used, so a reader either sees the complete
+ * command ID or an empty slot.
+ * <p>
+ * Expiry is driven by a {@link TimingWheel}, which is advanced to the time of every recorded command and by
+ * {@link #expire(Instant)}, and only visits the command IDs that are due. There is no periodic scan of the
+ * table.
+ * <p>
+ * A command handler checks {@link #isProcessed(CommandId)} in {@code prepareExecution} and records the
+ * command in {@code applyMutation}. Both run under the lock scope of the command, and a retry has the same
+ * scope, so a retry cannot slip in between the check and the record.
+ */
+public final class IdempotencyTracker implements SnapshotSource<ProcessedCommand> {
+
+    /**
+     * The lock type of the commands as a snapshot source. The tracker has its own lock, so no command locks
+     * them.
+     */
+    public static final String LOCK_TYPE = "processed-command";
+
+    /**
+     * The default time a processed command is remembered.
+     */
+    public static final Duration DEFAULT_RETENTION = Duration.ofMinutes(15);
+
+    /**
+     * The default resolution of the expiry.
+     */
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+    private static final int MIN_CAPACITY = 1024;
+
+    private final long tickMillis;
+    private final long retentionTicks;
+    private final TimingWheel<CommandId> wheel = new TimingWheel<>();
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    /**
+     * Creates a tracker with the default retention and tick.
+     */
+    public IdempotencyTracker() {
+        this(DEFAULT_RETENTION, DEFAULT_TICK);
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param retention the time a processed command is remembered after it was last recorded
+     * @param tick      the resolution of the expiry; commands are forgotten within one tick after their
+     *                  retention has passed
+     */
+    public IdempotencyTracker(Duration retention, Duration tick) {
+        Objects.requireNonNull(retention, "retention must not be null");
+        Objects.requireNonNull(tick, "tick must not be null");
+        if (tick.toMillis() < 1) {
+            throw new IllegalArgumentException("tick must be at least 1 ms, got " + tick);
+        }
+        if (retention.compareTo(tick) < 0) {
+            throw new IllegalArgumentException("retention must not be shorter than tick, got " + retention);
+        }
+        this.tickMillis = tick.toMillis();
+        this.retentionTicks = Math.ceilDiv(retention.toMillis(), tickMillis);
+    }
+
+    /**
+     * Returns whether the given command has been processed within the retention period. Never blocks and
+     * never allocates.
+     *
+     * @param commandId the command ID
+     * @return true if the command has been processed
+     */
+    public boolean isProcessed(CommandId commandId) {
+        Objects.requireNonNull(commandId, "commandId must not be null");
+        return table.indexOf(commandId) >= 0;
+    }
+
+    /**
+     * Records that the given command has been processed. Recording a command again extends its retention.
+     *
+     * @param commandId   the command ID
+     * @param processedAt the time the command was processed
+     */
+    public synchronized void record(CommandId commandId, Instant processedAt) {
+        Objects.requireNonNull(commandId, "commandId must not be null");
+        Objects.requireNonNull(processedAt, "processedAt must not be null");
+        var now = tickOf(processedAt);
+        advance(now);
+        var deadline = now + retentionTicks;
+        var index = table.indexOf(commandId);
+        if (index >= 0) {
+            // Already in the wheel; the later deadline is picked up when the key comes due
+            table.deadlines[index] = Math.max(table.deadlines[index], deadline);
+            return;
+        }
+        if (deadline <= wheel.currentTick()) {
+            // Already expired, which can happen when old events are replayed
+            return;
+        }
+        if ((table.used + 1) * 2 > table.capacity()) {
+            rebuild();
+        }
+        table.insert(commandId.mostSignificantBits(), commandId.leastSignificantBits(), deadline);
+        wheel.add(commandId, deadline);
+    }
+
+    /**
+     * Records the command that caused the given event, if any. Used when applying events, both by command
+     * handlers and by WAL replay.
+     *
+     * @param event the event
+     */
+    public void record(DomainEvent event) {
+        Objects.requireNonNull(event, "event must not be null");
+        var causedBy = event.causedBy();
+        if (causedBy != null) {
+            record(causedBy, event.timestamp());
+        }
+    }
+
+    /**
+     * Forgets the commands whose retention has passed by the given time. Commands are also expired whenever
+     * a command is recorded, so this only needs to be called when commands may not be recorded for a while.
+     *
+     * @param now the current time
+     */
+    public synchronized void expire(Instant now) {
+        Objects.requireNonNull(now, "now must not be null");
+        advance(tickOf(now));
+    }
+
+    /**
+     * Returns the number of commands currently remembered.
+     */
+    public synchronized int size() {
+        return table.live;
+    }
+
+    @Override
+    public String lockType() {
+        return LOCK_TYPE;
+    }
+
+    @Override
+    public Class<ProcessedCommand> aggregateType() {
+        return ProcessedCommand.class;
+    }
+
+    /**
+     * Returns false, since commands are recorded by the handlers of other aggregates. A copy may therefore
+     * include a command whose events come after the sequence number of the snapshot, which only means that
+     * it is remembered once more when the events are replayed.
+     */
+    @Override
+    public boolean tracksChanges() {
+        return false;
+    }
+
+    @Override
+    public synchronized Collection<String> ids() {
+        var current = table;
+        var ids = new ArrayList<String>(current.live);
+        for (int i = 0; i < current.capacity(); i++) {
+            if (current.states.get(i) == Table.USED) {
+                ids.add(new CommandId(current.mostSignificantBits[i], current.leastSignificantBits[i]).toString());
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized @Nullable ProcessedCommand copy(String id) {
+        var commandId = CommandId.fromString(id);
+        var index = table.indexOf(commandId);
+        if (index < 0) {
+            return null;
+        }
+        var processedAt = (table.deadlines[index] - retentionTicks) * tickMillis;
+        return new ProcessedCommand(commandId, Instant.ofEpochMilli(processedAt));
+    }
+
+    /**
+     * Remembers a command from a snapshot for the rest of its retention period. A command whose retention has
+     * already passed is ignored, as when it is recorded.
+     */
+    @Override
+    public void restore(ProcessedCommand command) {
+        Objects.requireNonNull(command, "command must not be null");
+        record(command.commandId(), command.processedAt());
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        // The wheel drops the command when it comes due
+        table.remove(CommandId.fromString(id));
+    }
+
+    private long tickOf(Instant instant) {
+        return Math.floorDiv(instant.toEpochMilli(), tickMillis);
+    }
+
+    private void advance(long tick) {
+        var current = table;
+        wheel.advance(tick, key -> {
+            var index = current.indexOf(key);
+            return index < 0 ? Long.MIN_VALUE : current.deadlines[index];
+        }, current::remove);
+    }
+
+    private void rebuild() {
+        var old = table;
+        var capacity = MIN_CAPACITY;
+        while (capacity < old.live * 4) {
+            capacity <<= 1;
+        }
+        var rebuilt = new Table(capacity);
+        for (int i = 0; i < old.capacity(); i++) {
+            if (old.states.get(i) == Table.USED) {
+                rebuilt.insert(old.mostSignificantBits[i], old.leastSignificantBits[i], old.deadlines[i]);
+            }
+        }
+        table = rebuilt;
+    }
+
+    /**
+     * The hash table. The states are read by any thread, followed by the command IDs of used slots; the
+     * deadlines and counters are only accessed under the lock of the tracker.
+     */
+    private static final class Table {
+
+        static final int EMPTY = 0;
+        static final int USED = 1;
+        static final int REMOVED = 2;
+
+        final AtomicIntegerArray states;
+        final long[] mostSignificantBits;
+        final long[] leastSignificantBits;
+        final long[] deadlines;
+        final int mask;
+        int used;
+        int live;
+
+        Table(int capacity) {
+            states = new AtomicIntegerArray(capacity);
+            mostSignificantBits = new long[capacity];
+            leastSignificantBits = new long[capacity];
+            deadlines = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int indexOf(CommandId commandId) {
+            var msb = commandId.mostSignificantBits();
+            var lsb = commandId.leastSignificantBits();
+            // At most half of the slots are used, so the probe always reaches an empty slot
+            for (int i = slotOf(msb, lsb); ; i = (i + 1) & mask) {
+                var state = states.get(i);
+                if (state == EMPTY) {
+                    return -1;
+                }
+                if (state == USED && mostSignificantBits[i] == msb && leastSignificantBits[i] == lsb) {
+                    return i;
+                }
+            }
+        }
+
+        void insert(long msb, long lsb, long deadline) {
+            var i = slotOf(msb, lsb);
+            while (states.get(i) != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            mostSignificantBits[i] = msb;
+            leastSignificantBits[i] = lsb;
+            deadlines[i] = deadline;
+            // Publishes the command ID to readers
+            states.set(i, USED);
+            used++;
+            live++;
+        }
+
+        void remove(CommandId commandId) {
+            var index = indexOf(commandId);
+            if (index >= 0) {
+                states.set(index, REMOVED);
+                live--;
+            }
+        }
+
+        private int slotOf(long msb, long lsb) {
+            // The random low bits of generated IDs and the counter in the high bits both contribute
+            var hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.pkhapps.idispatchx.cad.application.idempotency;
+
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A command remembered by the {@link IdempotencyTracker}, as stored in snapshots.
+ *
+ * @param commandId   the command ID
+ * @param processedAt the time the command was last recorded, from which its retention is counted
+ */
+public record ProcessedCommand(CommandId commandId, Instant processedAt) {
+
+    public ProcessedCommand {
+        Objects.requireNonNull(commandId, "commandId must not be null");
+        Objects.requireNonNull(processedAt, "processedAt must not be null");
+    }
+}
@@ -0,0 +1,136 @@
+package net.pkhapps.idispatchx.cad.application.idempotency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hierarchical timing wheel that tells when keys are due, in constant time per key and tick.
+ * <p>
+ * The wheel has {@value #LEVELS} levels of {@value #BUCKETS} buckets. Level 0 has one bucket per tick; each
+ * bucket of level <i>n</i> spans {@value #BUCKETS}<sup><i>n</i></sup> ticks. A key is placed on the lowest
+ * level whose range covers its deadline, and moved down a level whenever the wheel enters the span of its
+ * bucket, until it reaches level 0 and is handed to the expiry callback in the tick of its deadline. The
+ * wheel therefore never scans keys that are not yet due. Deadlines beyond the range of the top level are
+ * parked in its farthest bucket and placed again when it comes around.
+ * <p>
+ * The wheel does not store deadlines itself. When a key comes due, its current deadline is looked up, so
+ * that a deadline extended after the key was added is honoured by placing the key again.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <K> the type of the keys
+ */
+final class TimingWheel<K> {
+
+    static final int LEVELS = 4;
+    static final int BUCKETS = 64;
+    private static final int BITS = 6;
+    private static final int MASK = BUCKETS - 1;
+
+    private final List<List<K>> buckets = new ArrayList<>(LEVELS * BUCKETS);
+    private long currentTick = Long.MIN_VALUE;
+    private long size;
+
+    TimingWheel() {
+        for (int i = 0; i < LEVELS * BUCKETS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the tick that the wheel has advanced to, or {@link Long#MIN_VALUE} if it has not been started.
+     */
+    long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Adds a key that is due at the given tick. A deadline that has already passed is due at the next tick.
+     *
+     * @param key      the key
+     * @param deadline the tick at which the key is due
+     */
+    void add(K key, long deadline) {
+        if (currentTick == Long.MIN_VALUE) {
+            currentTick = deadline - 1;
+        }
+        size++;
+        var due = Math.max(deadline, currentTick + 1);
+        var delta = due - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (BITS * (level + 1))) {
+                bucket(level, due).add(key);
+                return;
+            }
+        }
+        // Beyond the range of the wheel: park in the farthest bucket of the top level
+        var top = LEVELS - 1;
+        bucket(top, currentTick + ((long) MASK << (BITS * top))).add(key);
+    }
+
+    /**
+     * Advances the wheel to the given tick, passing every key that comes due to the callback.
+     *
+     * @param tick      the tick to advance to; ticks before the current one are ignored
+     * @param deadlines returns the current deadline of a key, or {@link Long#MIN_VALUE} if the key has been
+     *                  removed and is to be dropped
+     * @param expired   receives the keys whose deadline has been reached
+     */
+    void advance(long tick, ToLongFunction<K> deadlines, Consumer<K> expired) {
+        if (currentTick == Long.MIN_VALUE) {
+            currentTick = tick;
+            return;
+        }
+        while (currentTick < tick) {
+            if (size == 0) {
+                // Nothing can come due, so there is no need to step through the ticks
+                currentTick = tick;
+                return;
+            }
+            var t = ++currentTick;
+            // Move keys down from the higher levels first, so that keys due at this tick reach level 0
+            for (int level = LEVELS - 1; level >= 0; level--) {
+                if ((t & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(bucket(level, t), deadlines, expired);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in the wheel.
+     */
+    long size() {
+        return size;
+    }
+
+    private void cascade(List<K> bucket, ToLongFunction<K> deadlines, Consumer<K> expired) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        var keys = List.copyOf(bucket);
+        bucket.clear();
+        size -= keys.size();
+        for (var key : keys) {
+            place(key, deadlines.applyAsLong(key), expired);
+        }
+    }
+
+    private void place(K key, long deadline, Consumer<K> expired) {
+        if (deadline == Long.MIN_VALUE) {
+            // Removed in the meantime
+            return;
+        }
+        if (deadline <= currentTick) {
+            expired.accept(key);
+        } else {
+            add(key, deadline);
+        }
+    }
+
+    private List<K> bucket(int level, long tick) {
+        return buckets.get(level * BUCKETS + (int) ((tick >>> (BITS * level)) & MASK));
+    }
+}
@@ -0,0 +1,141 @@
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non-negative long values with a fixed relative precision, in the style of
+ * HdrHistogram.
+ * <p>
+ * Values below {@value #SUB_BUCKET_COUNT} are counted exactly. Larger values are counted in buckets whose
+ * width grows with the magnitude of the value, so that every recorded value is reported with an error of
+ * at most 1/{@value #HALF_SUB_BUCKET_COUNT} (about 1.6%), over the whole range of {@code long}. Recording
+ * is lock-free and allocation-free, and costs an atomic increment of a single counter, so it can be done
+ * on every command.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = Long.SIZE - SUB_BUCKET_BITS;
+    private static final int COUNTS_LENGTH = SUB_BUCKET_COUNT + BUCKET_COUNT * HALF_SUB_BUCKET_COUNT;
+
+    private final String unit;
+    private final AtomicLongArray counts = new AtomicLongArray(COUNTS_LENGTH);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param unit the unit of the recorded values, such as {@code "ns"}
+     */
+    public Histogram(String unit) {
+        this.unit = Objects.requireNonNull(unit, "unit must not be null");
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        var v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // Keep the top SUB_BUCKET_BITS - 1 bits below the most significant bit
+        var shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        var subBucket = (int) (value >>> shift) - HALF_SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted in the bucket with the given index.
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        var shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+        var top = (long) (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        var highest = ((top + 1) << shift) - 1;
+        // The last bucket extends to Long.MAX_VALUE
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+
+    /**
+     * Returns the unit of the recorded values.
+     */
+    public String unit() {
+        return unit;
+    }
+
+    /**
+     * Returns the count and percentiles of the values recorded so far. Values recorded while the snapshot
+     * is taken may or may not be included.
+     *
+     * @return the snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        var copy = copyCounts();
+        long count = 0;
+        for (var c : copy) {
+            count += c;
+        }
+        if (count == 0) {
+            return new HistogramSnapshot(unit, 0, 0, 0, 0, 0, 0);
+        }
+        var maxValue = max.get();
+        return new HistogramSnapshot(unit, count, sum.sum() / count,
+                Math.min(percentile(copy, count, 0.50), maxValue),
+                Math.min(percentile(copy, count, 0.99), maxValue),
+                Math.min(percentile(copy, count, 0.999), maxValue),
+                maxValue);
+    }
+
+    /**
+     * Returns a copy of the bucket counts, indexed by {@link #indexOf(long)}.
+     */
+    long[] copyCounts() {
+        var copy = new long[COUNTS_LENGTH];
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    static long percentile(long[] counts, long total, double percentile) {
+        var target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return highestValueAt(i);
+            }
+        }
+        return highestValueAt(counts.length - 1);
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,71 @@
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import java.util.Objects;
+
+/**
+ * Follows the values recorded by a {@link Histogram} over consecutive intervals, without resetting it.
+ * <p>
+ * A histogram summarizes everything recorded since it was created or reset, which hides a recent change
+ * in latency behind a long history. Each call to {@link #next()} reports only the values recorded since
+ * the previous call, so that a caller polling at a fixed rate sees the current distribution. The mean and
+ * max of an interval are derived from the bucket counts and share their precision.
+ * <p>
+ * This class is not thread-safe. Recording into the histogram may continue concurrently.
+ */
+public final class HistogramInterval {
+
+    private final Histogram histogram;
+    private long[] previous;
+
+    /**
+     * Creates an interval reader whose first interval starts now.
+     *
+     * @param histogram the histogram to follow
+     */
+    public HistogramInterval(Histogram histogram) {
+        this.histogram = Objects.requireNonNull(histogram, "histogram must not be null");
+        this.previous = histogram.copyCounts();
+    }
+
+    /**
+     * Returns the count and percentiles of the values recorded since the previous call, or since this
+     * reader was created, and starts a new interval. If the histogram has been reset in the meantime, the
+     * interval covers the values recorded since the reset.
+     *
+     * @return the snapshot of the interval
+     */
+    public HistogramSnapshot next() {
+        var current = histogram.copyCounts();
+        var delta = new long[current.length];
+        var wasReset = false;
+        for (int i = 0; i < current.length; i++) {
+            delta[i] = current[i] - previous[i];
+            if (delta[i] < 0) {
+                wasReset = true;
+            }
+        }
+        if (wasReset) {
+            delta = current.clone();
+        }
+        previous = current;
+
+        long count = 0;
+        long sum = 0;
+        var highest = -1;
+        for (int i = 0; i < delta.length; i++) {
+            if (delta[i] > 0) {
+                count += delta[i];
+                sum += delta[i] * Histogram.highestValueAt(i);
+                highest = i;
+            }
+        }
+        if (count == 0) {
+            return new HistogramSnapshot(histogram.unit(), 0, 0, 0, 0, 0, 0);
+        }
+        return new HistogramSnapshot(histogram.unit(), count, sum / count,
+                Histogram.percentile(delta, count, 0.50),
+                Histogram.percentile(delta, count, 0.99),
+                Histogram.percentile(delta, count, 0.999),
+                Histogram.highestValueAt(highest));
+    }
+}
@@ -0,0 +1,25 @@
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import java.util.Objects;
+
+/**
+ * Summary of the values recorded by a {@link Histogram}. Percentiles are reported as the highest value
+ * that is equivalent to the actual percentile within the precision of the histogram.
+ *
+ * @param unit  the unit of the values
+ * @param count the number of recorded values
+ * @param mean  the mean of the recorded values
+ * @param p50   the median
+ * @param p99   the 99th percentile
+ * @param p999  the 99.9th percentile
+ * @param max   the largest recorded value
+ */
+public record HistogramSnapshot(String unit, long count, long mean, long p50, long p99, long p999, long max) {
+
+    public HistogramSnapshot {
+        Objects.requireNonNull(unit, "unit must not be null");
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative, got " + count);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named histograms shared by the components that record into them and the endpoint that reports them.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Unit of histograms recording durations.
+     */
+    public static final String NANOSECONDS = "ns";
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the histogram with the given name, creating it if it does not exist.
+     *
+     * @param name the name of the histogram, such as {@code "wal.fsync"}
+     * @param unit the unit of the recorded values, used if the histogram is created
+     * @return the histogram
+     * @throws IllegalArgumentException if the histogram exists with a different unit
+     */
+    public Histogram histogram(String name, String unit) {
+        Objects.requireNonNull(name, "name must not be null");
+        Objects.requireNonNull(unit, "unit must not be null");
+        var histogram = histograms.computeIfAbsent(name, n -> new Histogram(unit));
+        if (!histogram.unit().equals(unit)) {
+            throw new IllegalArgumentException("histogram " + name + " is recorded in " + histogram.unit()
+                    + ", not " + unit);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns a histogram of durations in nanoseconds, creating it if it does not exist.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public Histogram timer(String name) {
+        return histogram(name, NANOSECONDS);
+    }
+
+    /**
+     * Returns snapshots of all histograms, sorted by name.
+     *
+     * @return the snapshots by histogram name
+     */
+    public Map<String, HistogramSnapshot> snapshot() {
+        var snapshots = new TreeMap<String, HistogramSnapshot>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Clears all histograms, for example at the start of a measurement interval.
+     */
+    public void reset() {
+        histograms.values().forEach(Histogram::reset);
+    }
+}
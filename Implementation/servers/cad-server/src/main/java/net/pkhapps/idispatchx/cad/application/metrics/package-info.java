@@ -0,0 +1,4 @@
+@NullMarked
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import org.jspecify.annotations.NullMarked;
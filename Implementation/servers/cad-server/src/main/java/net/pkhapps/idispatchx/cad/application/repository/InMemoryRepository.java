@@ -0,0 +1,219 @@
+package net.pkhapps.idispatchx.cad.application.repository;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * In-memory repository of mutable aggregates that publishes an immutable view of each aggregate for readers.
+ * <p>
+ * Aggregates are not internally synchronized: command handlers change them while holding their lock in
+ * the {@link net.pkhapps.idispatchx.cad.application.handler.EntityLockManager}, with the lock type
+ * {@link #lockType()} and the ID of the aggregate. Readers such as REST queries and WebSocket pushes must
+ * neither take those locks, which would make every screen refresh compete with the dispatchers' commands,
+ * nor read the aggregates directly, which could show a half-applied change. Instead, every time an
+ * aggregate is saved or updated, the repository creates an immutable view of it and publishes the pair
+ * with a single volatile write. Readers get the latest published view without locking or waiting, and
+ * always see the aggregate as it was between two commands.
+ * <p>
+ * The write methods ({@link #get(String)}, {@link #save(String, Object)}, {@link #update(String, Consumer)}
+ * and {@link #remove(String)}) must be called while holding the lock of the aggregate, typically from the
+ * {@code applyMutation} of a {@link net.pkhapps.idispatchx.cad.application.handler.PendingMutation} or from
+ * WAL replay. An aggregate changed through {@link #get(String)} without saving it keeps its old view.
+ * <p>
+ * Specialized repositories extend this class with query methods. Queries that select aggregates by a
+ * property, such as incidents by state or units by station, use a {@link RepositoryIndex} added in the
+ * constructor with {@link #addIndex(Function)} or {@link #addMultiIndex(Function)}, so that they only visit
+ * the aggregates they return. The indexes are updated by the write methods.
+ *
+ * @param <A> the type of the aggregates
+ * @param <V> the type of the immutable views
+ */
+public class InMemoryRepository<A, V> {
+
+    private final String lockType;
+    private final Function<? super A, ? extends V> viewFactory;
+    private final ConcurrentHashMap<String, Published<A, V>> entries = new ConcurrentHashMap<>();
+    private final List<RepositoryIndex<?, V>> indexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an empty repository.
+     *
+     * @param lockType    the type of the lock keys guarding the aggregates, such as {@code "incident"}
+     * @param viewFactory creates the immutable view of an aggregate; must not return a view that shares
+     *                    mutable state with the aggregate
+     */
+    public InMemoryRepository(String lockType, Function<? super A, ? extends V> viewFactory) {
+        this.lockType = Objects.requireNonNull(lockType, "lockType must not be null");
+        this.viewFactory = Objects.requireNonNull(viewFactory, "viewFactory must not be null");
+    }
+
+    /**
+     * Adds an index with at most one key per aggregate. Must be called before any aggregate is added,
+     * typically from the constructor of a specialized repository.
+     *
+     * @param keyFunction returns the key of a view, or null if the aggregate is not to be indexed
+     * @param <K>         the type of the keys
+     * @return the index
+     * @throws IllegalStateException if the repository is not empty
+     */
+    protected final <K> RepositoryIndex<K, V> addIndex(Function<? super V, ? extends @Nullable K> keyFunction) {
+        Objects.requireNonNull(keyFunction, "keyFunction must not be null");
+        return addMultiIndex(view -> {
+            var key = keyFunction.apply(view);
+            return key == null ? List.of() : List.of(key);
+        });
+    }
+
+    /**
+     * Adds an index with any number of keys per aggregate, such as the units assigned to an incident. Must
+     * be called before any aggregate is added, typically from the constructor of a specialized repository.
+     *
+     * @param keyFunction returns the keys of a view, which may be empty
+     * @param <K>         the type of the keys
+     * @return the index
+     * @throws IllegalStateException if the repository is not empty
+     */
+    protected final <K> RepositoryIndex<K, V> addMultiIndex(
+            Function<? super V, ? extends Collection<? extends K>> keyFunction) {
+        if (!entries.isEmpty()) {
+            throw new IllegalStateException("indexes must be added before any aggregate");
+        }
+        var index = new RepositoryIndex<K, V>(keyFunction);
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Returns the type of the lock keys that guard the aggregates.
+     */
+    public String lockType() {
+        return lockType;
+    }
+
+    /**
+     * Returns the mutable aggregate with the given ID. Must be called while holding its lock.
+     *
+     * @param id the ID of the aggregate
+     * @return the aggregate, or null if there is none
+     */
+    public @Nullable A get(String id) {
+        Objects.requireNonNull(id, "id must not be null");
+        var entry = entries.get(id);
+        return entry == null ? null : entry.aggregate();
+    }
+
+    /**
+     * Adds or replaces the aggregate with the given ID and publishes its view. Must be called while holding
+     * its lock.
+     *
+     * @param id        the ID of the aggregate
+     * @param aggregate the aggregate
+     */
+    public void save(String id, A aggregate) {
+        Objects.requireNonNull(id, "id must not be null");
+        Objects.requireNonNull(aggregate, "aggregate must not be null");
+        publish(id, aggregate);
+    }
+
+    /**
+     * Changes the aggregate with the given ID and publishes its new view. Must be called while holding its
+     * lock.
+     *
+     * @param id       the ID of the aggregate
+     * @param mutation the change to apply to the aggregate
+     * @throws IllegalArgumentException if there is no aggregate with the given ID
+     */
+    public void update(String id, Consumer<? super A> mutation) {
+        Objects.requireNonNull(mutation, "mutation must not be null");
+        var aggregate = get(id);
+        if (aggregate == null) {
+            throw new IllegalArgumentException("no aggregate with ID " + id);
+        }
+        mutation.accept(aggregate);
+        publish(id, aggregate);
+    }
+
+    /**
+     * Removes the aggregate with the given ID and its view. Must be called while holding its lock.
+     *
+     * @param id the ID of the aggregate, which may already be absent
+     */
+    public void remove(String id) {
+        Objects.requireNonNull(id, "id must not be null");
+        var previous = entries.remove(id);
+        if (previous != null) {
+            updateIndexes(id, previous, null);
+        }
+    }
+
+    private void publish(String id, A aggregate) {
+        var published = new Published<>(aggregate, Objects.requireNonNull(viewFactory.apply(aggregate),
+                "viewFactory must not return null"));
+        var previous = entries.put(id, published);
+        updateIndexes(id, previous, published);
+    }
+
+    private void updateIndexes(String id, @Nullable Published<A, V> previous, @Nullable Published<A, V> current) {
+        var previousView = previous == null ? null : previous.view();
+        var currentView = current == null ? null : current.view();
+        for (var index : indexes) {
+            index.update(id, previousView, currentView);
+        }
+    }
+
+    /**
+     * Returns the latest published view of the aggregate with the given ID. Never blocks.
+     *
+     * @param id the ID of the aggregate
+     * @return the view, or empty if there is no aggregate with the given ID
+     */
+    public Optional<V> findView(String id) {
+        Objects.requireNonNull(id, "id must not be null");
+        var entry = entries.get(id);
+        return entry == null ? Optional.empty() : Optional.of(entry.view());
+    }
+
+    /**
+     * Returns the latest published views of all aggregates. Never blocks. The stream is weakly consistent:
+     * every view is as of a single command, but views of different aggregates may be of different points in
+     * time.
+     *
+     * @return the views
+     */
+    public Stream<V> views() {
+        return entries.values().stream().map(Published::view);
+    }
+
+    /**
+     * Returns whether there is an aggregate with the given ID. Never blocks.
+     *
+     * @param id the ID of the aggregate
+     * @return true if the aggregate exists
+     */
+    public boolean existsById(String id) {
+        Objects.requireNonNull(id, "id must not be null");
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Returns the number of aggregates.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * An aggregate with the view that was created of it when it was last saved.
+     */
+    private record Published<A, V>(A aggregate, V view) {
+    }
+}
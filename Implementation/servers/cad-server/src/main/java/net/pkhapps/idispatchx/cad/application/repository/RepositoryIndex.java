@@ -0,0 +1,102 @@
+package net.pkhapps.idispatchx.cad.application.repository;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Secondary index of an {@link InMemoryRepository}, mapping each key to the views of the aggregates that
+ * have it, such as incidents by state or units by station.
+ * <p>
+ * The keys of an aggregate are derived from its view, and the index is updated by the repository whenever
+ * an aggregate is saved, updated or removed, that is, in {@code applyMutation} and during WAL replay. A
+ * query therefore only visits the aggregates it returns, instead of filtering every aggregate.
+ * <p>
+ * Like the views of the repository, the index is read without locking. It is updated right after the view
+ * of an aggregate has been published, so a query may briefly return the previous view of an aggregate that
+ * is being changed, or miss an aggregate that is being added. Every view returned is as of a single command.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the views
+ */
+public final class RepositoryIndex<K, V> {
+
+    private final Function<? super V, ? extends Collection<? extends K>> keyFunction;
+    private final ConcurrentHashMap<K, ConcurrentHashMap<String, V>> entries = new ConcurrentHashMap<>();
+
+    RepositoryIndex(Function<? super V, ? extends Collection<? extends K>> keyFunction) {
+        this.keyFunction = Objects.requireNonNull(keyFunction, "keyFunction must not be null");
+    }
+
+    /**
+     * Returns the views of the aggregates with the given key. Never blocks.
+     *
+     * @param key the key
+     * @return the views, in no particular order
+     */
+    public Stream<V> find(K key) {
+        Objects.requireNonNull(key, "key must not be null");
+        var views = entries.get(key);
+        return views == null ? Stream.empty() : views.values().stream();
+    }
+
+    /**
+     * Returns the number of aggregates with the given key. Never blocks.
+     *
+     * @param key the key
+     * @return the number of aggregates
+     */
+    public int count(K key) {
+        Objects.requireNonNull(key, "key must not be null");
+        var views = entries.get(key);
+        return views == null ? 0 : views.size();
+    }
+
+    /**
+     * Returns the keys that at least one aggregate has. Never blocks.
+     */
+    public Set<K> keys() {
+        return entries.keySet();
+    }
+
+    /**
+     * Moves an aggregate from the keys of its previous view to the keys of its new view. Called by the
+     * repository while holding the lock of the aggregate.
+     *
+     * @param id       the ID of the aggregate
+     * @param previous the previous view, or null if the aggregate was added
+     * @param current  the new view, or null if the aggregate was removed
+     */
+    void update(String id, @Nullable V previous, @Nullable V current) {
+        var previousKeys = previous == null ? List.<K>of() : keysOf(previous);
+        var currentKeys = current == null ? List.<K>of() : keysOf(current);
+        for (var key : previousKeys) {
+            if (!currentKeys.contains(key)) {
+                // Removing the last aggregate removes the key, atomically with respect to additions
+                entries.computeIfPresent(key, (k, views) -> {
+                    views.remove(id);
+                    return views.isEmpty() ? null : views;
+                });
+            }
+        }
+        if (current != null) {
+            for (var key : currentKeys) {
+                entries.compute(key, (k, views) -> {
+                    var result = views == null ? new ConcurrentHashMap<String, V>() : views;
+                    result.put(id, current);
+                    return result;
+                });
+            }
+        }
+    }
+
+    private Collection<? extends K> keysOf(V view) {
+        return Objects.requireNonNull(keyFunction.apply(view), "keyFunction must not return null");
+    }
+}
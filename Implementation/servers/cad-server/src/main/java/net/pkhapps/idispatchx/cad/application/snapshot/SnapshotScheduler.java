@@ -0,0 +1,222 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import net.pkhapps.idispatchx.cad.application.metrics.Histogram;
+import net.pkhapps.idispatchx.cad.application.metrics.HistogramInterval;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when the {@link SnapshotService} takes a periodic snapshot, so that recovery never has to replay
+ * more of the WAL than fits in a configured time budget.
+ * <p>
+ * A fixed interval either snapshots an idle system for nothing or lets a busy one build up a WAL that takes
+ * minutes to replay. Instead, the scheduler checks at a short interval how many entries and bytes have been
+ * written to the WAL since the last snapshot, and estimates how long replaying them would take from the
+ * measured replay rate (see {@link #recordReplay(long, long, Duration)}). A snapshot is due when the estimate
+ * reaches half of the budget, or when the entries or bytes exceed their configured caps.
+ * <p>
+ * A snapshot competes with the command handlers for CPU and disk, so a due snapshot is deferred while the
+ * 99th percentile of the command latency over the last check interval is above the configured threshold,
+ * and is not taken sooner than the minimum interval after the previous one. Once the estimate reaches three
+ * quarters of the budget, the snapshot is taken regardless, leaving the last quarter for the snapshot itself
+ * to complete. The recovery time is thereby bounded by the budget, as long as the snapshot can keep up with
+ * the write rate.
+ * <p>
+ * The checks and snapshots run on a single background thread.
+ */
+public final class SnapshotScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotScheduler.class);
+
+    private final SnapshotService snapshotService;
+    private final WalPort walPort;
+    private final SnapshotSchedulerConfig config;
+    private final HistogramInterval commandLatency;
+    private final Histogram snapshotDuration;
+    private final LongSupplier nanoTime;
+    private volatile double replayRecordsPerSecond;
+    private volatile double replayBytesPerSecond;
+    private volatile long lastSnapshotSequence;
+    private volatile long lastSnapshotBytes;
+    private long lastSnapshotNanos;
+    private @Nullable ScheduledExecutorService executor;
+
+    /**
+     * Creates a new snapshot scheduler. Call {@link #start(Optional)} once recovery has completed.
+     *
+     * @param snapshotService the service that takes the snapshots
+     * @param walPort         the WAL whose growth is tracked
+     * @param metricsRegistry the registry holding the {@code command.total} timer, which also receives the
+     *                        {@code snapshot.duration} timer
+     * @param config          the scheduler configuration
+     */
+    public SnapshotScheduler(SnapshotService snapshotService, WalPort walPort, MetricsRegistry metricsRegistry,
+                             SnapshotSchedulerConfig config) {
+        this(snapshotService, walPort, metricsRegistry, config, System::nanoTime);
+    }
+
+    SnapshotScheduler(SnapshotService snapshotService, WalPort walPort, MetricsRegistry metricsRegistry,
+                      SnapshotSchedulerConfig config, LongSupplier nanoTime) {
+        this.snapshotService = Objects.requireNonNull(snapshotService, "snapshotService must not be null");
+        this.walPort = Objects.requireNonNull(walPort, "walPort must not be null");
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.nanoTime = Objects.requireNonNull(nanoTime, "nanoTime must not be null");
+        Objects.requireNonNull(metricsRegistry, "metricsRegistry must not be null");
+        this.commandLatency = new HistogramInterval(metricsRegistry.timer("command.total"));
+        this.snapshotDuration = metricsRegistry.timer("snapshot.duration");
+        this.replayRecordsPerSecond = config.replayRecordsPerSecond();
+        this.replayBytesPerSecond = config.replayBytesPerSecond();
+        this.lastSnapshotBytes = walPort.bytesWritten();
+        this.lastSnapshotNanos = nanoTime.getAsLong();
+    }
+
+    /**
+     * Records how long a WAL replay took, replacing the estimated replay rate. Called on startup after the
+     * WAL entries following the restored snapshot have been replayed. Replays too short to measure are
+     * ignored.
+     *
+     * @param records the number of WAL entries replayed
+     * @param bytes   the number of WAL bytes replayed
+     * @param elapsed the time the replay took
+     */
+    public void recordReplay(long records, long bytes, Duration elapsed) {
+        Objects.requireNonNull(elapsed, "elapsed must not be null");
+        var seconds = elapsed.toNanos() / 1e9;
+        if (seconds <= 0) {
+            return;
+        }
+        if (records > 0) {
+            replayRecordsPerSecond = records / seconds;
+        }
+        if (bytes > 0) {
+            replayBytesPerSecond = bytes / seconds;
+        }
+        log.info("Measured WAL replay rate of {} entries/s and {} bytes/s", (long) replayRecordsPerSecond,
+                (long) replayBytesPerSecond);
+    }
+
+    /**
+     * Starts checking at the configured interval.
+     *
+     * @param restoredSnapshot the sequence number of the snapshot restored on startup, or empty if there was
+     *                         none, in which case the whole WAL counts towards the budget
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start(Optional<SequenceNumber> restoredSnapshot) {
+        Objects.requireNonNull(restoredSnapshot, "restoredSnapshot must not be null");
+        if (executor != null) {
+            throw new IllegalStateException("already started");
+        }
+        lastSnapshotSequence = restoredSnapshot.map(SequenceNumber::value).orElse(0L);
+        var interval = config.checkInterval().toNanos();
+        executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("snapshot-scheduler")
+                .daemon(true)
+                .factory());
+        executor.scheduleWithFixedDelay(this::checkSafely, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Retried at the next check; the WAL is kept until a snapshot succeeds
+            log.warn("Failed to create snapshot", e);
+        }
+    }
+
+    /**
+     * Returns the estimated time it would take to replay the WAL entries written since the last snapshot.
+     *
+     * @return the estimate
+     */
+    public Duration estimatedReplayTime() {
+        return Duration.ofNanos(estimateReplayNanos(recordsSinceSnapshot(), bytesSinceSnapshot()));
+    }
+
+    /**
+     * Checks whether a snapshot is due and takes it if so. Called at the check interval.
+     *
+     * @return true if a snapshot was taken
+     * @throws InterruptedException if interrupted while taking the snapshot
+     */
+    boolean check() throws InterruptedException {
+        // Read every time, so that the latency is always that of the last interval
+        var latency = commandLatency.next();
+        var records = recordsSinceSnapshot();
+        var bytes = bytesSinceSnapshot();
+        if (records <= 0) {
+            return false;
+        }
+        var budget = config.replayTimeBudget().toNanos();
+        var estimate = estimateReplayNanos(records, bytes);
+        var forced = estimate >= budget / 4 * 3;
+        if (!forced) {
+            var due = estimate >= budget / 2 || records >= config.maxRecords() || bytes >= config.maxBytes();
+            if (!due || nanoTime.getAsLong() - lastSnapshotNanos < config.minInterval().toNanos()) {
+                return false;
+            }
+            if (latency.p99() > config.latencyThreshold().toNanos()) {
+                log.debug("Deferring snapshot while command latency p99 is {} ns", latency.p99());
+                return false;
+            }
+        } else {
+            log.debug("Forcing snapshot with estimated replay time of {} ms", estimate / 1_000_000);
+        }
+        var bytesBefore = walPort.bytesWritten();
+        var start = nanoTime.getAsLong();
+        var sequenceNumber = snapshotService.createPeriodicSnapshot();
+        var end = nanoTime.getAsLong();
+        snapshotDuration.record(end - start);
+        lastSnapshotSequence = sequenceNumber.value();
+        // Bytes written while the snapshot was taken are counted towards the next one, to err on the safe side
+        lastSnapshotBytes = bytesBefore;
+        lastSnapshotNanos = end;
+        return true;
+    }
+
+    private long recordsSinceSnapshot() {
+        return walPort.currentSequence().value() - lastSnapshotSequence;
+    }
+
+    private long bytesSinceSnapshot() {
+        return walPort.bytesWritten() - lastSnapshotBytes;
+    }
+
+    private long estimateReplayNanos(long records, long bytes) {
+        var seconds = Math.max(records / replayRecordsPerSecond, bytes / replayBytesPerSecond);
+        return (long) Math.min(seconds * 1e9, Long.MAX_VALUE);
+    }
+
+    /**
+     * Stops checking. A snapshot in progress is completed first.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Snapshot scheduler did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
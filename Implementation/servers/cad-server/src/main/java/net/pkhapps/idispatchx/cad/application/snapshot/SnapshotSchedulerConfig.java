@@ -0,0 +1,121 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of the {@link SnapshotScheduler}.
+ *
+ * @param replayTimeBudget       the longest time that replaying the WAL after the latest snapshot may take on
+ *                               recovery; a snapshot is taken regardless of load before the estimate exceeds it
+ * @param maxRecords             the number of WAL entries after which a snapshot is due, whatever the estimate
+ * @param maxBytes               the number of WAL bytes after which a snapshot is due, whatever the estimate
+ * @param minInterval            the shortest time between two snapshots that are not forced by the budget
+ * @param checkInterval          how often the WAL growth and command latency are checked
+ * @param latencyThreshold       the 99th percentile of the command latency above which snapshots that are due
+ *                               but not forced by the budget are deferred
+ * @param replayRecordsPerSecond the initial estimate of how many WAL entries are replayed per second, until a
+ *                               replay has been measured
+ * @param replayBytesPerSecond   the initial estimate of how many WAL bytes are replayed per second, until a
+ *                               replay has been measured
+ */
+public record SnapshotSchedulerConfig(
+        Duration replayTimeBudget,
+        long maxRecords,
+        long maxBytes,
+        Duration minInterval,
+        Duration checkInterval,
+        Duration latencyThreshold,
+        double replayRecordsPerSecond,
+        double replayBytesPerSecond
+) {
+
+    /**
+     * Default number of WAL entries after which a snapshot is due.
+     */
+    public static final long DEFAULT_MAX_RECORDS = 1_000_000;
+
+    /**
+     * Default number of WAL bytes after which a snapshot is due.
+     */
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * Default shortest time between two snapshots that are not forced by the budget.
+     */
+    public static final Duration DEFAULT_MIN_INTERVAL = Duration.ofSeconds(30);
+
+    /**
+     * Default time between two checks.
+     */
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Default command latency above which snapshots are deferred.
+     */
+    public static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofMillis(50);
+
+    /**
+     * Default initial estimate of the replay rate in WAL entries per second.
+     */
+    public static final double DEFAULT_REPLAY_RECORDS_PER_SECOND = 100_000;
+
+    /**
+     * Default initial estimate of the replay rate in WAL bytes per second.
+     */
+    public static final double DEFAULT_REPLAY_BYTES_PER_SECOND = 50.0 * 1024 * 1024;
+
+    /**
+     * Creates a scheduler configuration with validation.
+     *
+     * @param replayTimeBudget       the longest time that replaying the WAL may take on recovery
+     * @param maxRecords             the number of WAL entries after which a snapshot is due
+     * @param maxBytes               the number of WAL bytes after which a snapshot is due
+     * @param minInterval            the shortest time between two snapshots that are not forced by the budget
+     * @param checkInterval          how often the WAL growth and command latency are checked
+     * @param latencyThreshold       the command latency above which snapshots are deferred
+     * @param replayRecordsPerSecond the initial estimate of the replay rate in entries per second
+     * @param replayBytesPerSecond   the initial estimate of the replay rate in bytes per second
+     */
+    public SnapshotSchedulerConfig {
+        requirePositive(replayTimeBudget, "replayTimeBudget");
+        requirePositive(checkInterval, "checkInterval");
+        Objects.requireNonNull(minInterval, "minInterval must not be null");
+        if (minInterval.isNegative()) {
+            throw new IllegalArgumentException("minInterval must not be negative, got " + minInterval);
+        }
+        Objects.requireNonNull(latencyThreshold, "latencyThreshold must not be null");
+        if (maxRecords < 1) {
+            throw new IllegalArgumentException("maxRecords must be at least 1, got " + maxRecords);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1, got " + maxBytes);
+        }
+        if (!(replayRecordsPerSecond > 0)) {
+            throw new IllegalArgumentException("replayRecordsPerSecond must be positive, got "
+                    + replayRecordsPerSecond);
+        }
+        if (!(replayBytesPerSecond > 0)) {
+            throw new IllegalArgumentException("replayBytesPerSecond must be positive, got " + replayBytesPerSecond);
+        }
+    }
+
+    private static void requirePositive(Duration duration, String name) {
+        Objects.requireNonNull(duration, name + " must not be null");
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive, got " + duration);
+        }
+    }
+
+    /**
+     * Creates a configuration with default settings for the given replay time budget.
+     *
+     * @param replayTimeBudget the longest time that replaying the WAL may take on recovery
+     * @return the configuration
+     */
+    public static SnapshotSchedulerConfig of(Duration replayTimeBudget) {
+        return new SnapshotSchedulerConfig(replayTimeBudget, DEFAULT_MAX_RECORDS, DEFAULT_MAX_BYTES,
+                DEFAULT_MIN_INTERVAL, DEFAULT_CHECK_INTERVAL, DEFAULT_LATENCY_THRESHOLD,
+                DEFAULT_REPLAY_RECORDS_PER_SECOND, DEFAULT_REPLAY_BYTES_PER_SECOND);
+    }
+}
@@ -0,0 +1,185 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import net.pkhapps.idispatchx.cad.application.handler.EntityLockManager;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.RemovedAggregate;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotPort;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotReadException;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates snapshots of the operational state and purges the WAL entries and snapshots they make obsolete,
+ * per ADR-0006, and restores the state from the latest snapshot on startup.
+ * <p>
+ * Snapshots are taken while commands are being handled. The state is captured aggregate by aggregate with
+ * copy-on-write semantics (see {@link StateCapturer}), so that a snapshot of thousands of aggregates does
+ * not pause the command handlers, yet is consistent with the WAL sequence number it is stored with. The
+ * copies are streamed to the snapshot storage as they are made, and streamed back into the sources when a
+ * snapshot is loaded, so neither direction holds a second copy of the whole state in memory.
+ * <p>
+ * To keep the snapshot I/O proportional to the activity rather than to the size of the state, the service
+ * can write delta snapshots that only contain the aggregates changed since the previous snapshot, with a
+ * full snapshot after every configured number of deltas. The first snapshot after startup is always full,
+ * because the aggregates restored and replayed on startup are not tracked as changes, and so is the first
+ * snapshot after a failed one.
+ */
+public final class SnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    private final WalPort walPort;
+    private final SnapshotPort snapshotPort;
+    private final Map<Class<?>, SnapshotSource<?>> sourcesByType = new HashMap<>();
+    private final Map<String, SnapshotSource<?>> sourcesByLockType = new HashMap<>();
+    private final StateCapturer capturer;
+    private final int deltasPerFullSnapshot;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private @Nullable SequenceNumber previousSnapshot;
+    private int deltasSinceFullSnapshot;
+
+    /**
+     * Creates a new snapshot service.
+     *
+     * @param walPort      the WAL
+     * @param snapshotPort the snapshot storage
+     * @param lockManager  the lock manager used by the command handlers
+     * @param sources      the aggregates to include in snapshots, such as the incidents, calls and unit
+     *                     statuses, each with a different lock type and aggregate type
+     */
+    public SnapshotService(WalPort walPort, SnapshotPort snapshotPort, EntityLockManager lockManager,
+                           List<? extends SnapshotSource<?>> sources) {
+        this(walPort, snapshotPort, lockManager, sources, 0);
+    }
+
+    /**
+     * Creates a new snapshot service that writes delta snapshots between full snapshots.
+     *
+     * @param walPort               the WAL
+     * @param snapshotPort          the snapshot storage
+     * @param lockManager           the lock manager used by the command handlers
+     * @param sources               the aggregates to include in snapshots, each with a different lock type and
+     *                              aggregate type
+     * @param deltasPerFullSnapshot the number of delta snapshots to write after each full snapshot, or 0 to
+     *                              only write full snapshots
+     */
+    public SnapshotService(WalPort walPort, SnapshotPort snapshotPort, EntityLockManager lockManager,
+                           List<? extends SnapshotSource<?>> sources, int deltasPerFullSnapshot) {
+        if (deltasPerFullSnapshot < 0) {
+            throw new IllegalArgumentException("deltasPerFullSnapshot must not be negative, got "
+                    + deltasPerFullSnapshot);
+        }
+        this.deltasPerFullSnapshot = deltasPerFullSnapshot;
+        this.walPort = Objects.requireNonNull(walPort, "walPort must not be null");
+        this.snapshotPort = Objects.requireNonNull(snapshotPort, "snapshotPort must not be null");
+        Objects.requireNonNull(sources, "sources must not be null");
+        for (var source : sources) {
+            if (sourcesByType.put(source.aggregateType(), source) != null) {
+                throw new IllegalArgumentException("duplicate aggregate type: " + source.aggregateType().getName());
+            }
+            sourcesByLockType.put(source.lockType(), source);
+        }
+        this.capturer = new StateCapturer(walPort, Objects.requireNonNull(lockManager,
+                "lockManager must not be null"), sources);
+    }
+
+    /**
+     * Creates a full or delta snapshot of the current operational state, then purges the WAL entries and
+     * older snapshots that it makes obsolete. Called by the snapshot scheduler.
+     * <p>
+     * A delta snapshot is only written if there are WAL entries after the previous snapshot; otherwise the
+     * previous snapshot is already up to date.
+     *
+     * @return the sequence number of the last WAL entry included in the snapshot
+     * @throws net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriteException if the snapshot
+     *                                                                                   cannot be written
+     * @throws InterruptedException if interrupted while capturing the state
+     */
+    public SequenceNumber createPeriodicSnapshot() throws InterruptedException {
+        snapshotLock.lock();
+        try {
+            var start = System.nanoTime();
+            var previous = previousSnapshot;
+            var delta = previous != null && deltasSinceFullSnapshot < deltasPerFullSnapshot;
+            // Cleared until the snapshot has been committed, so that a failure is followed by a full snapshot
+            previousSnapshot = null;
+            StateCapturer.CaptureResult result;
+            try (var writer = delta
+                    ? snapshotPort.openDeltaSnapshotWriter(previous)
+                    : snapshotPort.openSnapshotWriter()) {
+                result = delta ? capturer.captureChanges(writer::write) : capturer.capture(writer::write);
+                if (delta && !result.sequenceNumber().isAfter(previous)) {
+                    // The writer discards the empty delta when closed
+                    previousSnapshot = previous;
+                    log.debug("No changes since snapshot at sequence number {}", previous.value());
+                    return previous;
+                }
+                writer.commit(result.sequenceNumber());
+            }
+            capturer.clearChanges(result);
+            var sequenceNumber = result.sequenceNumber();
+            previousSnapshot = sequenceNumber;
+            deltasSinceFullSnapshot = delta ? deltasSinceFullSnapshot + 1 : 0;
+            log.info("Created {} snapshot at sequence number {} with {} aggregates in {} ms",
+                    delta ? "delta" : "full", sequenceNumber.value(), result.aggregateCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+            purgeAfterSnapshot(sequenceNumber);
+            return sequenceNumber;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Restores the sources from the latest snapshot. Called on startup, before the WAL entries after the
+     * returned sequence number are replayed and before any commands are handled.
+     *
+     * @return the sequence number of the last WAL entry included in the snapshot, or empty if there is no
+     * snapshot
+     * @throws SnapshotReadException if the snapshot cannot be read or contains an aggregate that no source
+     *                               accepts
+     */
+    public Optional<SequenceNumber> restoreLatestSnapshot() {
+        return snapshotPort.loadLatestSnapshot(this::restore);
+    }
+
+    private void restore(Object aggregate) {
+        if (aggregate instanceof RemovedAggregate removed) {
+            var source = sourcesByLockType.get(removed.type());
+            if (source == null) {
+                throw new SnapshotReadException("no source for lock type " + removed.type());
+            }
+            source.remove(removed.id());
+            return;
+        }
+        var source = sourcesByType.get(aggregate.getClass());
+        if (source == null) {
+            throw new SnapshotReadException("no source for aggregate type " + aggregate.getClass().getName());
+        }
+        restore(source, aggregate);
+    }
+
+    private static <T> void restore(SnapshotSource<T> source, Object aggregate) {
+        source.restore(source.aggregateType().cast(aggregate));
+    }
+
+    /**
+     * Purges the WAL entries and snapshots made obsolete by the snapshot with the given sequence number.
+     *
+     * @param snapshotSequence the sequence number of the snapshot that was written
+     */
+    public void purgeAfterSnapshot(SequenceNumber snapshotSequence) {
+        Objects.requireNonNull(snapshotSequence, "snapshotSequence must not be null");
+        walPort.truncate(snapshotSequence);
+        snapshotPort.purgeOlderSnapshots(snapshotSequence);
+    }
+}
@@ -0,0 +1,85 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+
+/**
+ * A collection of aggregates of one type that is included in snapshots, typically a repository.
+ * <p>
+ * Every aggregate is guarded by the {@link net.pkhapps.idispatchx.cad.application.handler.LockKey} with
+ * the type {@link #lockType()} and the ID of the aggregate, and commands that create, change or remove an
+ * aggregate must include that key in their lock scope. A source whose aggregates change without commands
+ * returns false from {@link #tracksChanges()} instead.
+ * <p>
+ * The copies are written to snapshots as they are and handed back to {@link #restore(Object)} when a
+ * snapshot is loaded, so they must be of a type that the snapshot storage can serialize.
+ *
+ * @param <T> the type of the aggregate copies
+ */
+public interface SnapshotSource<T> {
+
+    /**
+     * Returns the type of the lock keys that guard the aggregates, such as {@code "incident"}.
+     */
+    String lockType();
+
+    /**
+     * Returns whether every change to the aggregates is made by a command holding the lock of the aggregate,
+     * so that delta snapshots only need the aggregates that commands have changed.
+     * <p>
+     * A source that is changed without commands, such as telemetry, returns false. Every delta snapshot then
+     * contains all of its aggregates, and a copy may include changes whose events come after the sequence
+     * number of the snapshot, so restoring and then replaying those events must not undo them. Removals
+     * from such a source are not recorded in delta snapshots; an aggregate removed since the last full
+     * snapshot is restored again until the next full snapshot.
+     *
+     * @return true by default
+     */
+    default boolean tracksChanges() {
+        return true;
+    }
+
+    /**
+     * Returns the type of the aggregate copies, used to route the aggregates of a loaded snapshot back to
+     * their source. Every source must have a different type.
+     */
+    Class<T> aggregateType();
+
+    /**
+     * Returns the IDs of the aggregates currently in the source. The returned collection may be weakly
+     * consistent, as long as it contains every aggregate that exists for the whole time it is iterated.
+     */
+    Collection<String> ids();
+
+    /**
+     * Returns a copy of the aggregate with the given ID.
+     * <p>
+     * Called while holding the lock of the aggregate. The copy is serialized to the snapshot later,
+     * while commands keep changing the aggregate, so it must not share any mutable state with it.
+     *
+     * @param id the ID of the aggregate
+     * @return the copy, or null if there is no aggregate with the given ID
+     */
+    @Nullable T copy(String id);
+
+    /**
+     * Adds an aggregate loaded from a snapshot to the source, replacing any aggregate with the same ID. Called
+     * during startup, before any commands are handled.
+     * <p>
+     * When a chain of delta snapshots is loaded, the same aggregate can be restored several times, each
+     * time in a later version. Different aggregates may be restored concurrently from several threads.
+     *
+     * @param aggregate the copy of the aggregate, as returned by {@link #copy(String)} when the snapshot was
+     *                  created
+     */
+    void restore(T aggregate);
+
+    /**
+     * Removes an aggregate that a delta snapshot records as removed. Called during startup, before any
+     * commands are handled, possibly concurrently with {@link #restore(Object)} for other aggregates.
+     *
+     * @param id the ID of the aggregate, which may already be absent
+     */
+    void remove(String id);
+}
@@ -0,0 +1,336 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import net.pkhapps.idispatchx.cad.application.handler.EntityLockManager;
+import net.pkhapps.idispatchx.cad.application.handler.LockKey;
+import net.pkhapps.idispatchx.cad.application.handler.LockScope;
+import net.pkhapps.idispatchx.cad.application.handler.MutationListener;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.RemovedAggregate;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriteException;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Captures a consistent copy of the aggregates of several {@link SnapshotSource}s without stopping the
+ * command handlers.
+ * <p>
+ * The copy is consistent at a WAL sequence number: it contains the effects of every event up to and
+ * including that sequence number and none of the later ones, so that replaying the WAL after it gives the
+ * same state as a full replay. The capture works like a copy-on-write fork of the operational state:
+ * <ol>
+ *   <li>The current WAL sequence number is recorded and the capturer waits until the commands that were in
+ *   progress have released their locks, so that all events up to it have been applied</li>
+ *   <li>The aggregates are copied one at a time, each while holding only its own lock</li>
+ *   <li>A command whose events come after the recorded sequence number copies the aggregates in its lock
+ *   scope that have not been copied yet before changing them, as a {@link MutationListener}</li>
+ * </ol>
+ * A command therefore never waits for more than the copy of a single aggregate, and only pays for copying
+ * the aggregates that it changes while a capture is in progress.
+ * <p>
+ * Copies are handed to a sink as soon as they have been made, so a capture only holds the copies that
+ * commands have made ahead of it rather than a copy of the whole state. The sink is only ever called from
+ * the thread running the capture.
+ * <p>
+ * The capturer also keeps track of the aggregates that commands have changed, so that
+ * {@link #captureChanges(Consumer)} can capture only the aggregates changed since the previous capture for
+ * a delta snapshot. An aggregate stays changed until a capture that includes the change has been stored
+ * and passed to {@link #clearChanges(CaptureResult)}, so a failed snapshot does not lose any changes.
+ * Only changes made through the command handlers are tracked; aggregates restored or replayed on startup
+ * are not. The aggregates of a source that does not {@linkplain SnapshotSource#tracksChanges() track
+ * changes} are all included in every capture.
+ */
+final class StateCapturer {
+
+    private static final Logger log = LoggerFactory.getLogger(StateCapturer.class);
+
+    private final WalPort walPort;
+    private final EntityLockManager lockManager;
+    private final List<SnapshotSource<?>> sources;
+    private final Map<String, SnapshotSource<?>> sourcesByLockType = new HashMap<>();
+    // Sequence number of the last command that changed each aggregate since it was last captured
+    private final ConcurrentHashMap<LockKey, Long> changes = new ConcurrentHashMap<>();
+    private final ReentrantLock captureLock = new ReentrantLock();
+    private volatile @Nullable Capture current;
+
+    /**
+     * Creates a capturer and registers it as a mutation listener of the lock manager.
+     *
+     * @param walPort     the WAL whose sequence numbers the captures are consistent with
+     * @param lockManager the lock manager used by the command handlers that change the sources
+     * @param sources     the sources to capture, each with a different lock type
+     */
+    StateCapturer(WalPort walPort, EntityLockManager lockManager, List<? extends SnapshotSource<?>> sources) {
+        this.walPort = Objects.requireNonNull(walPort, "walPort must not be null");
+        this.lockManager = Objects.requireNonNull(lockManager, "lockManager must not be null");
+        this.sources = List.copyOf(sources);
+        for (var source : this.sources) {
+            if (sourcesByLockType.put(source.lockType(), source) != null) {
+                throw new IllegalArgumentException("duplicate lock type: " + source.lockType());
+            }
+        }
+        lockManager.addMutationListener(this::beforeMutation);
+    }
+
+    /**
+     * Captures the aggregates of all sources, passing each copy to the sink. Only one capture runs at a time.
+     *
+     * @param sink the consumer of the copies, called on the calling thread
+     * @return the sequence number the captured aggregates are consistent with and their number
+     * @throws SnapshotWriteException if an aggregate cannot be copied
+     * @throws InterruptedException   if interrupted while waiting for the commands in progress
+     */
+    CaptureResult capture(Consumer<Object> sink) throws InterruptedException {
+        return capture(sink, false);
+    }
+
+    /**
+     * Captures the aggregates that have been changed since the changes were last cleared, passing each copy
+     * to the sink, and a {@link RemovedAggregate} for each changed aggregate that no longer exists. Only one
+     * capture runs at a time.
+     *
+     * @param sink the consumer of the copies, called on the calling thread
+     * @return the sequence number the captured aggregates are consistent with and their number
+     * @throws SnapshotWriteException if an aggregate cannot be copied
+     * @throws InterruptedException   if interrupted while waiting for the commands in progress
+     */
+    CaptureResult captureChanges(Consumer<Object> sink) throws InterruptedException {
+        return capture(sink, true);
+    }
+
+    /**
+     * Forgets the changes included in a capture once it has been stored, so that later calls to
+     * {@link #captureChanges(Consumer)} do not include them again. Aggregates changed again after the
+     * captured sequence number stay changed.
+     *
+     * @param result the result of the stored capture
+     */
+    void clearChanges(CaptureResult result) {
+        result.changes().forEach(changes::remove);
+    }
+
+    private CaptureResult capture(Consumer<Object> sink, boolean changesOnly) throws InterruptedException {
+        Objects.requireNonNull(sink, "sink must not be null");
+        captureLock.lock();
+        try {
+            var capture = new Capture(sink, changesOnly);
+            current = capture;
+            try {
+                var sequenceNumber = walPort.currentSequence();
+                capture.publishSequence(sequenceNumber.value());
+                lockManager.awaitCurrentHolders();
+                // Every command up to the sequence number has now recorded its changes
+                var captured = new HashMap<LockKey, Long>();
+                changes.forEach((key, changedAt) -> {
+                    if (changedAt <= sequenceNumber.value()) {
+                        captured.put(key, changedAt);
+                    }
+                });
+                if (changesOnly) {
+                    for (var key : captured.keySet()) {
+                        copy(capture, key, sourcesByLockType.get(key.type()));
+                    }
+                    for (var source : sources) {
+                        if (!source.tracksChanges()) {
+                            copyAll(capture, source);
+                        }
+                    }
+                } else {
+                    for (var source : sources) {
+                        copyAll(capture, source);
+                    }
+                }
+                // Aggregates removed during the capture are only known through their pre-images
+                capture.drainAll();
+                capture.throwIfFailed();
+                return new CaptureResult(sequenceNumber, capture.count(), captured);
+            } finally {
+                current = null;
+                // Releases any command still waiting for the sequence number if the capture failed early
+                capture.publishSequence(Long.MAX_VALUE);
+            }
+        } finally {
+            captureLock.unlock();
+        }
+    }
+
+    private void copyAll(Capture capture, SnapshotSource<?> source) {
+        for (var id : source.ids()) {
+            copy(capture, new LockKey(source.lockType(), id), source);
+        }
+    }
+
+    private void copy(Capture capture, LockKey key, SnapshotSource<?> source) {
+        if (!capture.contains(key)) {
+            try (var lock = lockManager.acquire(LockScope.of(key))) {
+                capture.copyIfAbsent(key, source);
+            } catch (RuntimeException e) {
+                throw new SnapshotWriteException("could not copy " + key, e);
+            }
+        }
+        // Outside the lock, so that commands do not wait for the sink
+        capture.drain(key);
+    }
+
+    private void beforeMutation(LockScope scope, SequenceNumber sequenceNumber) {
+        var capture = current;
+        if (capture != null) {
+            var captureSequence = capture.awaitSequence();
+            if (sequenceNumber.value() > captureSequence) {
+                copyBeforeMutation(capture, captureSequence, scope);
+            }
+        }
+        for (var key : scope.keys()) {
+            if (sourcesByLockType.containsKey(key.type())) {
+                changes.merge(key, sequenceNumber.value(), Math::max);
+            }
+        }
+    }
+
+    private void copyBeforeMutation(Capture capture, long captureSequence, LockScope scope) {
+        for (var key : scope.keys()) {
+            var source = sourcesByLockType.get(key.type());
+            if (source != null && !capture.contains(key) && (!capture.changesOnly()
+                    || isChangedUpTo(key, captureSequence))) {
+                try {
+                    capture.copyIfAbsent(key, source);
+                } catch (RuntimeException e) {
+                    log.warn("Could not copy {} before mutation, the snapshot will fail", key, e);
+                    capture.fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the aggregate has a change up to the given sequence number that has not been cleared.
+     * Once a later command has recorded its own change, the aggregate has already been copied by that
+     * command if it had such a change.
+     */
+    private boolean isChangedUpTo(LockKey key, long sequence) {
+        var changedAt = changes.get(key);
+        return changedAt != null && changedAt <= sequence;
+    }
+
+    /**
+     * The result of {@link #capture(Consumer)} and {@link #captureChanges(Consumer)}.
+     *
+     * @param sequenceNumber the sequence number of the last WAL entry included in the capture
+     * @param aggregateCount the number of aggregates, and removed aggregates, passed to the sink
+     * @param changes        the changes included in the capture, by the sequence number of the change
+     */
+    record CaptureResult(SequenceNumber sequenceNumber, long aggregateCount, Map<LockKey, Long> changes) {
+    }
+
+    private static final class Capture {
+
+        // Marks an aggregate that did not exist at the captured sequence number
+        private static final Object ABSENT = new Object();
+        // Marks an aggregate that has been passed to the sink
+        private static final Object DRAINED = new Object();
+
+        private final Consumer<Object> sink;
+        private final boolean changesOnly;
+        private final CountDownLatch sequenceKnown = new CountDownLatch(1);
+        private final ConcurrentHashMap<LockKey, Object> copies = new ConcurrentHashMap<>();
+        private volatile long sequence = Long.MAX_VALUE;
+        private volatile @Nullable RuntimeException failure;
+        private long count;
+
+        Capture(Consumer<Object> sink, boolean changesOnly) {
+            this.sink = sink;
+            this.changesOnly = changesOnly;
+        }
+
+        boolean changesOnly() {
+            return changesOnly;
+        }
+
+        void publishSequence(long sequence) {
+            if (sequenceKnown.getCount() > 0) {
+                this.sequence = sequence;
+                sequenceKnown.countDown();
+            }
+        }
+
+        long awaitSequence() {
+            var interrupted = false;
+            while (true) {
+                try {
+                    sequenceKnown.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return sequence;
+        }
+
+        boolean contains(LockKey key) {
+            return copies.containsKey(key);
+        }
+
+        /**
+         * Copies the aggregate unless it has been copied already. The caller must hold the lock of the key.
+         */
+        void copyIfAbsent(LockKey key, SnapshotSource<?> source) {
+            copies.computeIfAbsent(key, k -> {
+                var copy = source.copy(k.id());
+                return copy == null ? ABSENT : copy;
+            });
+        }
+
+        /**
+         * Passes the copy of the aggregate to the sink unless it has been passed already. When capturing
+         * changes, an aggregate that did not exist is passed as a {@link RemovedAggregate}. Only called by the
+         * capturing thread.
+         */
+        void drain(LockKey key) {
+            // The key stays in the map so that commands do not copy the aggregate again
+            var copy = copies.replace(key, DRAINED);
+            if (copy == ABSENT && changesOnly) {
+                sink.accept(new RemovedAggregate(key.type(), key.id()));
+                count++;
+            } else if (copy != null && copy != ABSENT && copy != DRAINED) {
+                sink.accept(copy);
+                count++;
+            }
+        }
+
+        void drainAll() {
+            for (var key : copies.keySet()) {
+                drain(key);
+            }
+        }
+
+        long count() {
+            return count;
+        }
+
+        void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        void throwIfFailed() {
+            var failure = this.failure;
+            if (failure != null) {
+                throw new SnapshotWriteException("could not copy all aggregates", failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import org.jspecify.annotations.NullMarked;
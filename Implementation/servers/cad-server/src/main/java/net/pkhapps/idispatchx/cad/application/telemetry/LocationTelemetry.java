@@ -0,0 +1,387 @@
+package net.pkhapps.idispatchx.cad.application.telemetry;
+
+import net.pkhapps.idispatchx.cad.application.snapshot.SnapshotSource;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.event.UnitLocationSampledEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.EpochMicros;
+import net.pkhapps.idispatchx.cad.domain.model.unit.UnitStatus;
+import net.pkhapps.idispatchx.cad.port.secondary.clock.ClockPort;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Ingest path for unit location reports, which bypasses the command handlers and writes to the WAL only at
+ * a sampling rate.
+ * <p>
+ * Units report their location every 10–20 seconds. Per the domain specification, coordinates are transient
+ * telemetry that may be sampled or discarded, so handling every report as a command, with its lock, WAL
+ * entry and fsync, would cost much and preserve nothing of value. Instead, {@link #report(String, int, int, long)}
+ * stores the location in a latest-value slot per unit with compare-and-set, keeping the report with the
+ * latest observation time when reports arrive out of order. Readers such as the dispatcher views get the
+ * latest location from {@link #latest(String)} without locking.
+ * <p>
+ * Observation times ahead of the server clock by more than the configured skew are clamped, so that a unit
+ * with a wrong clock cannot keep its later reports from replacing the latest one. Reports of new units are
+ * rejected once the configured number of units have a slot, until a unit is {@linkplain #remove(String) removed}.
+ * <p>
+ * Locations reach the WAL in two ways:
+ * <ul>
+ *   <li>At the flush interval, the latest location of every unit that has moved since it was last written,
+ *   and whose previous location was written at least the sample interval ago, is written as a
+ *   {@link UnitLocationSampledEvent}. All samples of a flush are written as one batch, so they share a single
+ *   sync.</li>
+ *   <li>A command that changes the status of a unit may attach the latest location to its event by calling
+ *   {@link #peekUnsampled(String)} while holding the lock of the unit, and {@link #markSampled(String,
+ *   UnitPosition)} once its event has been written.</li>
+ * </ul>
+ * The latest location of every unit is also included in every snapshot, as a {@link SnapshotSource} whose
+ * aggregates are {@link UnitLocation}s, since the samples before the snapshot are truncated from the WAL. On
+ * startup, the locations are restored from the snapshot and the samples after it are replayed through
+ * {@link #apply(UnitLocationSampledEvent)}. After a failover, a unit's location is therefore at most the
+ * sample interval older than its last report, until the unit reports again.
+ */
+public final class LocationTelemetry implements SnapshotSource<UnitLocation>, AutoCloseable {
+
+    /**
+     * The lock type of the locations as a snapshot source. The locations are not changed by commands, so no
+     * command locks them.
+     */
+    public static final String LOCK_TYPE = "unit-location";
+
+    private static final Logger log = LoggerFactory.getLogger(LocationTelemetry.class);
+
+    private final WalPort walPort;
+    private final ClockPort clock;
+    private final LocationTelemetryConfig config;
+    private final LongSupplier nanoTime;
+    private final long maxClockSkewMicros;
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private @Nullable ScheduledExecutorService executor;
+
+    /**
+     * Creates a new telemetry ingest. Call {@link #start()} to start writing samples to the WAL.
+     *
+     * @param walPort the WAL to write samples to
+     * @param clock   the clock used to timestamp the samples
+     * @param config  the configuration
+     */
+    public LocationTelemetry(WalPort walPort, ClockPort clock, LocationTelemetryConfig config) {
+        this(walPort, clock, config, System::nanoTime);
+    }
+
+    LocationTelemetry(WalPort walPort, ClockPort clock, LocationTelemetryConfig config, LongSupplier nanoTime) {
+        this.walPort = Objects.requireNonNull(walPort, "walPort must not be null");
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        this.nanoTime = Objects.requireNonNull(nanoTime, "nanoTime must not be null");
+        this.maxClockSkewMicros = TimeUnit.NANOSECONDS.toMicros(config.maxClockSkew().toNanos());
+    }
+
+    /**
+     * Records a location report of a unit. Never blocks.
+     *
+     * @param unitId     the ID of the unit
+     * @param latitude   the latitude in micro-degrees (EPSG:4326)
+     * @param longitude  the longitude in micro-degrees (EPSG:4326)
+     * @param observedAt the time the unit determined its location, in microseconds since the epoch; clamped to
+     *                   the current time plus the maximum clock skew
+     * @return true if the report was stored, false if a report observed at the same time or later had
+     * already been stored, or if the unit is new and the maximum number of units has been reached
+     * @throws IllegalArgumentException if the coordinates are out of bounds or the observation time is not set
+     */
+    public boolean report(String unitId, int latitude, int longitude, long observedAt) {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+        UnitStatus.requireValidCoordinates(latitude, longitude);
+        if (observedAt == EpochMicros.NONE) {
+            throw new IllegalArgumentException("observedAt must be set");
+        }
+        var slot = slotOf(unitId);
+        if (slot == null) {
+            return false;
+        }
+        var latestAllowed = EpochMicros.of(clock.now()) + maxClockSkewMicros;
+        var position = new UnitPosition(latitude, longitude, Math.min(observedAt, latestAllowed));
+        while (true) {
+            var current = slot.latest.get();
+            if (current != null && current.observedAt() >= position.observedAt()) {
+                return false;
+            }
+            if (slot.latest.compareAndSet(current, position)) {
+                return true;
+            }
+        }
+    }
+
+    private @Nullable Slot slotOf(String unitId) {
+        var slot = slots.get(unitId);
+        if (slot != null) {
+            return slot;
+        }
+        // Checked before inserting, so concurrent reports of new units may exceed the limit by a few
+        if (slots.size() >= config.maxUnits()) {
+            return null;
+        }
+        return slots.computeIfAbsent(unitId, id -> new Slot());
+    }
+
+    /**
+     * Returns the latest reported location of a unit. Never blocks.
+     *
+     * @param unitId the ID of the unit
+     * @return the location, or empty if the unit has not reported one since startup
+     */
+    public Optional<UnitPosition> latest(String unitId) {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+        var slot = slots.get(unitId);
+        return slot == null ? Optional.empty() : Optional.ofNullable(slot.latest.get());
+    }
+
+    /**
+     * Returns the latest location of a unit if it has not been written to the WAL yet. Called by a command
+     * that changes the status of the unit, while holding its lock, to include the location in its event.
+     * The location is only counted as written when the command passes it to
+     * {@link #markSampled(String, UnitPosition)} after writing its event, so a command that fails leaves it
+     * to the next flush.
+     *
+     * @param unitId the ID of the unit
+     * @return the location, or null if there is none or it has already been written
+     */
+    public @Nullable UnitPosition peekUnsampled(String unitId) {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+        var slot = slots.get(unitId);
+        if (slot == null) {
+            return null;
+        }
+        var latest = slot.latest.get();
+        return latest == null || latest == slot.sampled.get() ? null : latest;
+    }
+
+    /**
+     * Counts a location returned by {@link #peekUnsampled(String)} as written, once the event that includes
+     * it has been written to the WAL. A location observed before the one already counted as written is
+     * ignored.
+     *
+     * @param unitId   the ID of the unit
+     * @param position the location that was written
+     */
+    public void markSampled(String unitId, UnitPosition position) {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+        Objects.requireNonNull(position, "position must not be null");
+        var slot = slots.get(unitId);
+        if (slot != null) {
+            markSampled(slot, position, nanoTime.getAsLong());
+        }
+    }
+
+    private static void markSampled(Slot slot, UnitPosition position, long now) {
+        while (true) {
+            var sampled = slot.sampled.get();
+            if (sampled != null && sampled.observedAt() >= position.observedAt()) {
+                return;
+            }
+            if (slot.sampled.compareAndSet(sampled, position)) {
+                slot.sampledAtNanos = now;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies a sample replayed from the WAL on startup, unless a location observed at the same time or later
+     * has already been restored.
+     *
+     * @param event the replayed sample
+     */
+    public void apply(UnitLocationSampledEvent event) {
+        Objects.requireNonNull(event, "event must not be null");
+        restore(event.unitId(), new UnitPosition(event.latitude(), event.longitude(), event.observedAt()));
+    }
+
+    /**
+     * Stores a location that is already durable as both the latest and the written location of the unit,
+     * keeping any location observed at the same time or later.
+     */
+    private void restore(String unitId, UnitPosition position) {
+        var slot = slots.computeIfAbsent(unitId, id -> new Slot());
+        while (true) {
+            var current = slot.latest.get();
+            if (current != null && current.observedAt() >= position.observedAt()) {
+                return;
+            }
+            if (slot.latest.compareAndSet(current, position)) {
+                markSampled(slot, position, nanoTime.getAsLong());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String lockType() {
+        return LOCK_TYPE;
+    }
+
+    @Override
+    public Class<UnitLocation> aggregateType() {
+        return UnitLocation.class;
+    }
+
+    /**
+     * Returns false, since the locations are changed by reports rather than by commands. Restoring a snapshot
+     * and replaying the samples after it keeps the latest location, so it does not matter that a copy may be
+     * newer than the sequence number of the snapshot.
+     */
+    @Override
+    public boolean tracksChanges() {
+        return false;
+    }
+
+    @Override
+    public Collection<String> ids() {
+        return slots.keySet();
+    }
+
+    /**
+     * Returns the latest location of a unit, whether it has been written to the WAL or not.
+     */
+    @Override
+    public @Nullable UnitLocation copy(String unitId) {
+        var position = latest(unitId).orElse(null);
+        return position == null ? null
+                : new UnitLocation(unitId, position.latitude(), position.longitude(), position.observedAt());
+    }
+
+    @Override
+    public void restore(UnitLocation location) {
+        Objects.requireNonNull(location, "location must not be null");
+        restore(location.unitId(), new UnitPosition(location.latitude(), location.longitude(),
+                location.observedAt()));
+    }
+
+    /**
+     * Forgets the location of a unit, such as when the unit is removed.
+     *
+     * @param unitId the ID of the unit
+     */
+    @Override
+    public void remove(String unitId) {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+        slots.remove(unitId);
+    }
+
+    /**
+     * Starts writing samples at the configured flush interval.
+     *
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            throw new IllegalStateException("already started");
+        }
+        var interval = config.flushInterval().toNanos();
+        executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("location-telemetry")
+                .daemon(true)
+                .factory());
+        executor.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    private void flushSafely() {
+        try {
+            flush(false);
+        } catch (RuntimeException e) {
+            // The samples are not counted as written, so they are retried at the next flush
+            log.warn("Failed to write location samples", e);
+        }
+    }
+
+    /**
+     * Writes the latest location of every unit that has moved since its location was last written, as one
+     * WAL batch.
+     *
+     * @param all true to write every unwritten location, false to skip units whose previous location was
+     *            written less than the sample interval ago
+     * @return the number of locations written
+     */
+    int flush(boolean all) {
+        synchronized (flushLock) {
+            var now = nanoTime.getAsLong();
+            var sampleInterval = config.sampleInterval().toNanos();
+            var slotsToWrite = new ArrayList<Slot>();
+            var positions = new ArrayList<UnitPosition>();
+            var events = new ArrayList<UnitLocationSampledEvent>();
+            var timestamp = clock.now();
+            slots.forEach((unitId, slot) -> {
+                var latest = slot.latest.get();
+                var sampled = slot.sampled.get();
+                if (latest == null || latest == sampled) {
+                    return;
+                }
+                if (!all && sampled != null && now - slot.sampledAtNanos < sampleInterval) {
+                    return;
+                }
+                slotsToWrite.add(slot);
+                positions.add(latest);
+                events.add(new UnitLocationSampledEvent(EventId.generate(), timestamp, null, unitId,
+                        latest.latitude(), latest.longitude(), latest.observedAt()));
+            });
+            if (events.isEmpty()) {
+                return 0;
+            }
+            walPort.writeBatch(events);
+            for (int i = 0; i < slotsToWrite.size(); i++) {
+                // A report that arrived while writing differs from the written position, so it is written later
+                markSampled(slotsToWrite.get(i), positions.get(i), now);
+            }
+            return events.size();
+        }
+    }
+
+    /**
+     * Stops writing samples at the flush interval and writes the locations that have not been written yet.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Location telemetry did not stop in time");
+            }
+            flush(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Failed to write location samples on close", e);
+        }
+    }
+
+    /**
+     * The latest reported location of a unit and the location last written to the WAL.
+     */
+    private static final class Slot {
+        final AtomicReference<@Nullable UnitPosition> latest = new AtomicReference<>();
+        final AtomicReference<@Nullable UnitPosition> sampled = new AtomicReference<>();
+        volatile long sampledAtNanos;
+    }
+}
@@ -0,0 +1,72 @@
+package net.pkhapps.idispatchx.cad.application.telemetry;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration of the {@link LocationTelemetry}.
+ *
+ * @param sampleInterval the shortest time between two locations of the same unit written to the WAL
+ * @param flushInterval  how often the changed locations are collected and written to the WAL
+ * @param maxClockSkew   how far ahead of the server clock an observation time may be before it is clamped
+ * @param maxUnits       the largest number of units whose locations are kept
+ */
+public record LocationTelemetryConfig(Duration sampleInterval, Duration flushInterval, Duration maxClockSkew,
+                                      int maxUnits) {
+
+    /**
+     * Default shortest time between two locations of the same unit written to the WAL.
+     */
+    public static final Duration DEFAULT_SAMPLE_INTERVAL = Duration.ofSeconds(60);
+
+    /**
+     * Default time between two flushes.
+     */
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(5);
+
+    /**
+     * Default largest time an observation may be ahead of the server clock.
+     */
+    public static final Duration DEFAULT_MAX_CLOCK_SKEW = Duration.ofSeconds(30);
+
+    /**
+     * Default largest number of units whose locations are kept.
+     */
+    public static final int DEFAULT_MAX_UNITS = 10_000;
+
+    /**
+     * Creates a telemetry configuration with validation.
+     *
+     * @param sampleInterval the shortest time between two locations of the same unit written to the WAL
+     * @param flushInterval  how often the changed locations are collected and written to the WAL
+     * @param maxClockSkew   how far ahead of the server clock an observation time may be before it is clamped
+     * @param maxUnits       the largest number of units whose locations are kept
+     */
+    public LocationTelemetryConfig {
+        Objects.requireNonNull(sampleInterval, "sampleInterval must not be null");
+        if (sampleInterval.isNegative()) {
+            throw new IllegalArgumentException("sampleInterval must not be negative, got " + sampleInterval);
+        }
+        Objects.requireNonNull(flushInterval, "flushInterval must not be null");
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval must be positive, got " + flushInterval);
+        }
+        Objects.requireNonNull(maxClockSkew, "maxClockSkew must not be null");
+        if (maxClockSkew.isNegative()) {
+            throw new IllegalArgumentException("maxClockSkew must not be negative, got " + maxClockSkew);
+        }
+        if (maxUnits < 1) {
+            throw new IllegalArgumentException("maxUnits must be positive, got " + maxUnits);
+        }
+    }
+
+    /**
+     * Creates a configuration with default settings.
+     *
+     * @return the configuration
+     */
+    public static LocationTelemetryConfig of() {
+        return new LocationTelemetryConfig(DEFAULT_SAMPLE_INTERVAL, DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_CLOCK_SKEW,
+                DEFAULT_MAX_UNITS);
+    }
+}
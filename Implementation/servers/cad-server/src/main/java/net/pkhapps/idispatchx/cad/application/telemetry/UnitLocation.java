@@ -0,0 +1,18 @@
+package net.pkhapps.idispatchx.cad.application.telemetry;
+
+import java.util.Objects;
+
+/**
+ * The latest location of a unit as stored in snapshots by {@link LocationTelemetry}.
+ *
+ * @param unitId     the ID of the unit
+ * @param latitude   the latitude in micro-degrees (EPSG:4326)
+ * @param longitude  the longitude in micro-degrees (EPSG:4326)
+ * @param observedAt the time the unit reported the location, in microseconds since the epoch
+ */
+public record UnitLocation(String unitId, int latitude, int longitude, long observedAt) {
+
+    public UnitLocation {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+    }
+}
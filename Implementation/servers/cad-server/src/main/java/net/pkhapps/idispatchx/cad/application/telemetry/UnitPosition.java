@@ -0,0 +1,11 @@
+package net.pkhapps.idispatchx.cad.application.telemetry;
+
+/**
+ * The latest reported location of a unit.
+ *
+ * @param latitude   the latitude in micro-degrees (EPSG:4326)
+ * @param longitude  the longitude in micro-degrees (EPSG:4326)
+ * @param observedAt the time the unit reported the location, in microseconds since the epoch
+ */
+public record UnitPosition(int latitude, int longitude, long observedAt) {
+}
@@ -1,29 +1,52 @@
 package net.pkhapps.idispatchx.cad.domain.command;
 
+import net.pkhapps.idispatchx.cad.domain.model.shared.TimeOrderedIdGenerator;
+
 import java.util.Objects;
-import java.util.UUID;
 
 /**
- * A unique identifier for a {@link Command}, used for idempotency tracking.
+ * A unique 128-bit identifier for a {@link Command}, used for idempotency tracking.
+ * <p>
+ * Identifiers are kept as two longs and written to the WAL and snapshots in binary form; the canonical UUID
+ * string returned by {@link #toString()} is only used at the JSON boundary. Identifiers created by
+ * {@link #generate()} are time-ordered (UUID version 7), so that they compare in the order they were
+ * generated. Command IDs chosen by clients may be any UUID, so they are not necessarily time-ordered.
+ *
+ * @param mostSignificantBits  the most significant 64 bits
+ * @param leastSignificantBits the least significant 64 bits
  */
-public record CommandId(String value) {
+public record CommandId(long mostSignificantBits, long leastSignificantBits) implements Comparable<CommandId> {
 
-    public CommandId {
-        Objects.requireNonNull(value, "value must not be null");
-        if (value.isBlank()) {
-            throw new IllegalArgumentException("value must not be blank");
-        }
+    /**
+     * Generates a new time-ordered CommandId. Never blocks.
+     */
+    public static CommandId generate() {
+        return TimeOrderedIdGenerator.generate(CommandId::new);
     }
 
     /**
-     * Generates a new random CommandId using UUID.
+     * Parses a CommandId from its canonical UUID string. Any UUID is accepted.
+     *
+     * @param value the UUID string
+     * @return the CommandId
+     * @throws IllegalArgumentException if the value is not a UUID string
      */
-    public static CommandId generate() {
-        return new CommandId(UUID.randomUUID().toString());
+    public static CommandId fromString(String value) {
+        Objects.requireNonNull(value, "value must not be null");
+        return TimeOrderedIdGenerator.parse(value, CommandId::new);
+    }
+
+    @Override
+    public int compareTo(CommandId other) {
+        return TimeOrderedIdGenerator.compare(mostSignificantBits, leastSignificantBits,
+                other.mostSignificantBits, other.leastSignificantBits);
     }
 
+    /**
+     * Returns the canonical UUID string of this CommandId.
+     */
     @Override
     public String toString() {
-        return value;
+        return TimeOrderedIdGenerator.toString(mostSignificantBits, leastSignificantBits);
     }
 }
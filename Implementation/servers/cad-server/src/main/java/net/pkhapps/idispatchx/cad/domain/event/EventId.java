@@ -1,29 +1,52 @@
 package net.pkhapps.idispatchx.cad.domain.event;
 
+import net.pkhapps.idispatchx.cad.domain.model.shared.TimeOrderedIdGenerator;
+
 import java.util.Objects;
-import java.util.UUID;
 
 /**
- * A unique identifier for a {@link DomainEvent}.
+ * A unique 128-bit identifier for a {@link DomainEvent}.
+ * <p>
+ * Identifiers are kept as two longs and written to the WAL and snapshots in binary form; the canonical UUID
+ * string returned by {@link #toString()} is only used at the JSON boundary. Identifiers created by
+ * {@link #generate()} are time-ordered (UUID version 7), so that they compare in the order they were
+ * generated.
+ *
+ * @param mostSignificantBits  the most significant 64 bits
+ * @param leastSignificantBits the least significant 64 bits
  */
-public record EventId(String value) {
+public record EventId(long mostSignificantBits, long leastSignificantBits) implements Comparable<EventId> {
 
-    public EventId {
-        Objects.requireNonNull(value, "value must not be null");
-        if (value.isBlank()) {
-            throw new IllegalArgumentException("value must not be blank");
-        }
+    /**
+     * Generates a new time-ordered EventId. Never blocks.
+     */
+    public static EventId generate() {
+        return TimeOrderedIdGenerator.generate(EventId::new);
     }
 
     /**
-     * Generates a new random EventId using UUID.
+     * Parses an EventId from its canonical UUID string. Any UUID is accepted.
+     *
+     * @param value the UUID string
+     * @return the EventId
+     * @throws IllegalArgumentException if the value is not a UUID string
      */
-    public static EventId generate() {
-        return new EventId(UUID.randomUUID().toString());
+    public static EventId fromString(String value) {
+        Objects.requireNonNull(value, "value must not be null");
+        return TimeOrderedIdGenerator.parse(value, EventId::new);
+    }
+
+    @Override
+    public int compareTo(EventId other) {
+        return TimeOrderedIdGenerator.compare(mostSignificantBits, leastSignificantBits,
+                other.mostSignificantBits, other.leastSignificantBits);
     }
 
+    /**
+     * Returns the canonical UUID string of this EventId.
+     */
     @Override
     public String toString() {
-        return value;
+        return TimeOrderedIdGenerator.toString(mostSignificantBits, leastSignificantBits);
     }
 }
@@ -0,0 +1,37 @@
+package net.pkhapps.idispatchx.cad.domain.event;
+
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A sample of the location telemetry of a unit, written to the WAL at the sampling rate instead of on every
+ * location report. Replaying it restores the latest location of the unit in the location telemetry, unless
+ * the snapshot the replay started from already contains a later one.
+ *
+ * @param eventId    the event ID
+ * @param timestamp  the time the sample was written
+ * @param causedBy   always null, since samples are written by the system
+ * @param unitId     the ID of the unit
+ * @param latitude   the latitude in micro-degrees (EPSG:4326)
+ * @param longitude  the longitude in micro-degrees (EPSG:4326)
+ * @param observedAt the time the unit reported the location, in microseconds since the epoch
+ */
+public record UnitLocationSampledEvent(
+        EventId eventId,
+        Instant timestamp,
+        @Nullable CommandId causedBy,
+        String unitId,
+        int latitude,
+        int longitude,
+        long observedAt
+) implements DomainEvent {
+
+    public UnitLocationSampledEvent {
+        Objects.requireNonNull(eventId, "eventId must not be null");
+        Objects.requireNonNull(timestamp, "timestamp must not be null");
+        Objects.requireNonNull(unitId, "unitId must not be null");
+    }
+}
@@ -0,0 +1,55 @@
+package net.pkhapps.idispatchx.cad.domain.model.shared;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Conversions between {@link Instant}s and timestamps stored as microseconds since the epoch (UTC).
+ * <p>
+ * Frequently changed state keeps its timestamps as {@code long}s, which take no allocation to update and no
+ * more memory than the value itself. Microseconds cover more than ±290,000 years and are as precise as the
+ * system clock on most platforms. {@link #NONE} marks a timestamp that is not set.
+ */
+public final class EpochMicros {
+
+    /**
+     * Marks a timestamp that is not set.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private EpochMicros() {
+    }
+
+    /**
+     * Returns the given instant in microseconds since the epoch, truncating any nanoseconds.
+     *
+     * @param instant the instant
+     * @return the microseconds since the epoch
+     * @throws ArithmeticException if the instant is too far from the epoch
+     */
+    public static long of(Instant instant) {
+        Objects.requireNonNull(instant, "instant must not be null");
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    /**
+     * Returns the current time in microseconds since the epoch.
+     */
+    public static long now() {
+        return of(Instant.now());
+    }
+
+    /**
+     * Returns the instant of the given microseconds since the epoch.
+     *
+     * @param epochMicros the microseconds since the epoch, must not be {@link #NONE}
+     * @return the instant
+     */
+    public static Instant toInstant(long epochMicros) {
+        if (epochMicros == NONE) {
+            throw new IllegalArgumentException("epochMicros must be set");
+        }
+        return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                Math.floorMod(epochMicros, 1_000_000L) * 1_000L);
+    }
+}
@@ -0,0 +1,123 @@
+package net.pkhapps.idispatchx.cad.domain.model.shared;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered 128-bit identifiers in the UUID version 7 layout.
+ * <p>
+ * The most significant 64 bits hold the generation time in epoch milliseconds (48 bits), the version
+ * (4 bits) and a 12-bit counter. They are taken from a single atomic value with compare-and-set, so they
+ * are strictly increasing across all threads: identifiers generated later compare greater, and two
+ * identifiers generated by the same process never share their most significant bits. When more than 4096
+ * identifiers are generated within a millisecond, the counter carries over into the time, which then runs
+ * slightly ahead of the clock until the clock catches up. The least significant 64 bits hold the variant
+ * (2 bits) and 62 random bits from {@link ThreadLocalRandom}, which keep identifiers of different processes
+ * apart without the contention of {@link java.security.SecureRandom}.
+ * <p>
+ * Identifiers are kept as two longs. Their canonical UUID string is only needed at the JSON boundary.
+ */
+public final class TimeOrderedIdGenerator {
+
+    private static final long VERSION = 0x7000L;
+    private static final long COUNTER_MASK = 0x0FFFL;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long RANDOM_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    private static final AtomicLong lastMostSignificantBits = new AtomicLong();
+
+    private TimeOrderedIdGenerator() {
+    }
+
+    /**
+     * Creates an identifier from its two halves.
+     *
+     * @param <T> the type of the identifier
+     */
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create(long mostSignificantBits, long leastSignificantBits);
+    }
+
+    /**
+     * Generates a new identifier. Never blocks.
+     *
+     * @param factory creates the identifier from its two halves
+     * @param <T>     the type of the identifier
+     * @return the identifier
+     */
+    public static <T> T generate(Factory<T> factory) {
+        return factory.create(nextMostSignificantBits(System.currentTimeMillis()),
+                VARIANT | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK));
+    }
+
+    /**
+     * Returns the next most significant bits for the given time, which are greater than any returned before.
+     */
+    static long nextMostSignificantBits(long epochMillis) {
+        var fromClock = (epochMillis << 16) | VERSION;
+        while (true) {
+            var last = lastMostSignificantBits.get();
+            long next;
+            if (fromClock > last) {
+                next = fromClock;
+            } else if ((last & COUNTER_MASK) == COUNTER_MASK) {
+                // Counter exhausted: carry over into the time
+                next = (((last >>> 16) + 1) << 16) | VERSION;
+            } else {
+                next = last + 1;
+            }
+            if (lastMostSignificantBits.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Returns the generation time of an identifier created by this generator, in epoch milliseconds.
+     *
+     * @param mostSignificantBits the most significant bits of the identifier
+     * @return the generation time, or an arbitrary value for identifiers not created by this generator
+     */
+    public static long epochMillis(long mostSignificantBits) {
+        return mostSignificantBits >>> 16;
+    }
+
+    /**
+     * Compares two identifiers in generation order.
+     *
+     * @return a negative number, zero or a positive number as the first identifier is less than, equal to or
+     * greater than the second
+     */
+    public static int compare(long mostSignificantBits1, long leastSignificantBits1,
+                              long mostSignificantBits2, long leastSignificantBits2) {
+        var result = Long.compareUnsigned(mostSignificantBits1, mostSignificantBits2);
+        return result != 0 ? result : Long.compareUnsigned(leastSignificantBits1, leastSignificantBits2);
+    }
+
+    /**
+     * Returns the canonical UUID string of an identifier.
+     */
+    public static String toString(long mostSignificantBits, long leastSignificantBits) {
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    /**
+     * Parses the canonical UUID string of an identifier. Any UUID is accepted, not only those created by this
+     * generator.
+     *
+     * @param value   the UUID string
+     * @param factory creates the identifier from its two halves
+     * @param <T>     the type of the identifier
+     * @return the identifier
+     * @throws IllegalArgumentException if the value is not a UUID string
+     */
+    public static <T> T parse(String value, Factory<T> factory) {
+        if (value.length() != 36) {
+            throw new IllegalArgumentException("not a UUID: " + value);
+        }
+        var uuid = UUID.fromString(value);
+        return factory.create(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,77 @@
+package net.pkhapps.idispatchx.cad.domain.model.unit;
+
+/**
+ * The declared crew composition of a unit: the number of officers, subofficers and crew members.
+ * <p>
+ * {@link UnitStatus} stores staffing packed into a single {@code int} ({@link #pack()}), so that changing
+ * it does not allocate.
+ *
+ * @param officers    the number of officers, 0–{@value #MAX_OFFICERS}
+ * @param subofficers the number of subofficers, 0–{@value #MAX_SUBOFFICERS}
+ * @param crew        the number of crew members, 0–{@value #MAX_CREW}
+ */
+public record Staffing(int officers, int subofficers, int crew) {
+
+    public static final int MAX_OFFICERS = 99;
+    public static final int MAX_SUBOFFICERS = 99;
+    public static final int MAX_CREW = 999;
+
+    private static final int OFFICER_SHIFT = 20;
+    private static final int SUBOFFICER_SHIFT = 10;
+    private static final int FIELD_MASK = 0x3FF;
+
+    public Staffing {
+        requireInRange(officers, MAX_OFFICERS, "officers");
+        requireInRange(subofficers, MAX_SUBOFFICERS, "subofficers");
+        requireInRange(crew, MAX_CREW, "crew");
+    }
+
+    private static void requireInRange(int value, int max, String name) {
+        if (value < 0 || value > max) {
+            throw new IllegalArgumentException(name + " must be between 0 and " + max + ", got " + value);
+        }
+    }
+
+    /**
+     * Creates a staffing.
+     *
+     * @param officers    the number of officers
+     * @param subofficers the number of subofficers
+     * @param crew        the number of crew members
+     * @return the staffing
+     * @throws IllegalArgumentException if a count is negative or too large
+     */
+    public static Staffing of(int officers, int subofficers, int crew) {
+        return new Staffing(officers, subofficers, crew);
+    }
+
+    /**
+     * Returns this staffing packed into a non-negative {@code int}, ten bits per count.
+     */
+    public int pack() {
+        return (officers << OFFICER_SHIFT) | (subofficers << SUBOFFICER_SHIFT) | crew;
+    }
+
+    /**
+     * Unpacks a staffing packed with {@link #pack()}.
+     *
+     * @param packed the packed staffing
+     * @return the staffing
+     * @throws IllegalArgumentException if the value is not a valid packed staffing
+     */
+    public static Staffing unpack(int packed) {
+        if (packed >>> (OFFICER_SHIFT + 10) != 0) {
+            throw new IllegalArgumentException("not a packed staffing: " + packed);
+        }
+        return new Staffing((packed >>> OFFICER_SHIFT) & FIELD_MASK, (packed >>> SUBOFFICER_SHIFT) & FIELD_MASK,
+                packed & FIELD_MASK);
+    }
+
+    /**
+     * Returns the staffing in the officers+subofficers+crew format, such as {@code 1+1+3}.
+     */
+    @Override
+    public String toString() {
+        return officers + "+" + subofficers + "+" + crew;
+    }
+}
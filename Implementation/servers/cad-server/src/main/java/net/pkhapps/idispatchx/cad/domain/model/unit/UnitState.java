@@ -0,0 +1,86 @@
+package net.pkhapps.idispatchx.cad.domain.model.unit;
+
+/**
+ * The operational state of a unit, as tracked by {@link UnitStatus}.
+ * <p>
+ * The allowed transitions are those of the domain specification. They are precomputed into one bitmap per
+ * state, so {@link #canTransitionTo(UnitState)} is a single bit test.
+ * <p>
+ * The ordinals are stored by {@link UnitStatus}, so constants must only be appended.
+ */
+public enum UnitState {
+
+    UNAVAILABLE,
+    AVAILABLE_OVER_RADIO,
+    AVAILABLE_AT_STATION,
+    ASSIGNED_RADIO,
+    ASSIGNED_STATION,
+    DISPATCHING,
+    DISPATCHED,
+    EN_ROUTE,
+    ON_SCENE;
+
+    private static final UnitState[] VALUES = values();
+    private static final int[] TRANSITIONS = new int[VALUES.length];
+
+    static {
+        allow(UNAVAILABLE, AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION);
+        allow(AVAILABLE_OVER_RADIO, ASSIGNED_RADIO, AVAILABLE_AT_STATION, UNAVAILABLE);
+        allow(AVAILABLE_AT_STATION, ASSIGNED_STATION, AVAILABLE_OVER_RADIO, UNAVAILABLE);
+        allow(ASSIGNED_RADIO, AVAILABLE_OVER_RADIO, DISPATCHING);
+        allow(ASSIGNED_STATION, AVAILABLE_AT_STATION, DISPATCHING);
+        allow(DISPATCHING, DISPATCHED, AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, UNAVAILABLE);
+        allow(DISPATCHED, AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, EN_ROUTE, UNAVAILABLE);
+        allow(EN_ROUTE, AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, ON_SCENE, UNAVAILABLE);
+        allow(ON_SCENE, AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, UNAVAILABLE);
+    }
+
+    private static void allow(UnitState from, UnitState... to) {
+        for (var state : to) {
+            TRANSITIONS[from.ordinal()] |= 1 << state.ordinal();
+        }
+    }
+
+    /**
+     * Returns the state with the given ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the state
+     * @throws ArrayIndexOutOfBoundsException if there is no state with the given ordinal
+     */
+    static UnitState ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Returns whether a unit in this state may change to the given state.
+     *
+     * @param target the new state
+     * @return true if the transition is allowed
+     */
+    public boolean canTransitionTo(UnitState target) {
+        return (TRANSITIONS[ordinal()] & (1 << target.ordinal())) != 0;
+    }
+
+    /**
+     * Returns whether a unit in this state may be assigned to an incident.
+     */
+    public boolean isAvailable() {
+        return this == AVAILABLE_OVER_RADIO || this == AVAILABLE_AT_STATION;
+    }
+
+    /**
+     * Returns whether a unit in this state is assigned to an incident but not yet dispatched, and may
+     * therefore be unassigned explicitly.
+     */
+    public boolean isAssigned() {
+        return this == ASSIGNED_RADIO || this == ASSIGNED_STATION;
+    }
+
+    /**
+     * Returns whether a transition to this state clears the incident assignment of the unit.
+     */
+    public boolean unassigns() {
+        return this == AVAILABLE_AT_STATION || this == UNAVAILABLE;
+    }
+}
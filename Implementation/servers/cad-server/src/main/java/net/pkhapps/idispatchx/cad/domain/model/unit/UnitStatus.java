@@ -1,16 +1,366 @@
 package net.pkhapps.idispatchx.cad.domain.model.unit;
 
+import net.pkhapps.idispatchx.cad.domain.model.shared.EpochMicros;
+import net.pkhapps.idispatchx.common.domain.model.Coordinates;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.Objects;
+
 /**
- * Placeholder for the UnitStatus entity.
+ * The current operational state of a unit: its {@link UnitState}, staffing, coordinates and incident
+ * assignment, each with the time it was last changed.
  * <p>
- * UnitStatus tracks the operational state of a unit (available, dispatched, etc.).
- * It has a 1:1 relationship with Unit and is treated as part of the Unit aggregate.
+ * UnitStatus has a 1:1 relationship with Unit and is treated as part of the Unit aggregate. It is the most
+ * frequently changed aggregate: besides state changes, every unit reports its location every 10–20 seconds.
+ * The fields are therefore packed into primitives, so that changing them neither allocates nor leaves
+ * garbage behind:
+ * <ul>
+ *   <li>the state is stored as its ordinal, and transitions are validated with the bitmap of
+ *   {@link UnitState#canTransitionTo(UnitState)},</li>
+ *   <li>timestamps are microseconds since the epoch ({@link EpochMicros}), with {@link EpochMicros#NONE} for
+ *   unset timestamps,</li>
+ *   <li>staffing is packed into an {@code int} ({@link Staffing#pack()}),</li>
+ *   <li>coordinates are EPSG:4326 latitude and longitude in fixed-point micro-degrees, which holds exactly the
+ *   six decimal places allowed by the specification.</li>
+ * </ul>
+ * Value objects such as {@link Instant}, {@link Staffing} and {@link Coordinates.Epsg4326} are only created
+ * by the accessors that return them, for use at the system boundary.
  * <p>
- * TODO: Implement per domain specification.
+ * This class is not thread-safe. It is changed by command handlers and WAL replay while holding the lock of
+ * the unit.
  */
 public final class UnitStatus {
 
-    private UnitStatus() {
-        // Placeholder - implementation pending
+    /**
+     * The number of fixed-point units per degree.
+     */
+    public static final int MICRODEGREES_PER_DEGREE = 1_000_000;
+
+    private static final int MIN_LATITUDE = 58_840_000;
+    private static final int MAX_LATITUDE = 70_090_000;
+    private static final int MIN_LONGITUDE = 19_080_000;
+    private static final int MAX_LONGITUDE = 31_590_000;
+    private static final int NO_STAFFING = -1;
+
+    private final String unitId;
+    private byte state;
+    private long stateChangedAt;
+    private int staffing = NO_STAFFING;
+    private long staffingChangedAt = EpochMicros.NONE;
+    private int latitude;
+    private int longitude;
+    private long coordinatesChangedAt = EpochMicros.NONE;
+    private @Nullable String assignedIncidentId;
+    private long assignedAt = EpochMicros.NONE;
+
+    private UnitStatus(String unitId, UnitState state, long stateChangedAt) {
+        this.unitId = unitId;
+        this.state = (byte) state.ordinal();
+        this.stateChangedAt = stateChangedAt;
+    }
+
+    private UnitStatus(UnitStatus original) {
+        this.unitId = original.unitId;
+        this.state = original.state;
+        this.stateChangedAt = original.stateChangedAt;
+        this.staffing = original.staffing;
+        this.staffingChangedAt = original.staffingChangedAt;
+        this.latitude = original.latitude;
+        this.longitude = original.longitude;
+        this.coordinatesChangedAt = original.coordinatesChangedAt;
+        this.assignedIncidentId = original.assignedIncidentId;
+        this.assignedAt = original.assignedAt;
+    }
+
+    /**
+     * Creates the status of a unit that has been added to the system. The initial state is
+     * {@link UnitState#UNAVAILABLE}.
+     *
+     * @param unitId    the ID of the unit
+     * @param createdAt the time the unit was added, in microseconds since the epoch
+     * @return the status
+     */
+    public static UnitStatus create(String unitId, long createdAt) {
+        Objects.requireNonNull(unitId, "unitId must not be null");
+        if (unitId.isBlank()) {
+            throw new IllegalArgumentException("unitId must not be blank");
+        }
+        requireTimestamp(createdAt, "createdAt");
+        return new UnitStatus(unitId, UnitState.UNAVAILABLE, createdAt);
+    }
+
+    /**
+     * Returns a copy of this status, such as for a snapshot.
+     */
+    public UnitStatus copy() {
+        return new UnitStatus(this);
+    }
+
+    private static void requireTimestamp(long timestamp, String name) {
+        if (timestamp == EpochMicros.NONE) {
+            throw new IllegalArgumentException(name + " must be set");
+        }
+    }
+
+    /**
+     * Returns the ID of the unit.
+     */
+    public String unitId() {
+        return unitId;
+    }
+
+    // --- State ---
+
+    /**
+     * Returns the current state.
+     */
+    public UnitState state() {
+        return UnitState.ofOrdinal(state);
+    }
+
+    /**
+     * Returns the time the state was last changed, in microseconds since the epoch.
+     */
+    public long stateChangedAtMicros() {
+        return stateChangedAt;
+    }
+
+    /**
+     * Returns the time the state was last changed.
+     */
+    public Instant stateChangedAt() {
+        return EpochMicros.toInstant(stateChangedAt);
+    }
+
+    /**
+     * Changes the state. A transition to {@link UnitState#AVAILABLE_AT_STATION} or {@link UnitState#UNAVAILABLE}
+     * also clears the incident assignment.
+     * <p>
+     * The assigned states are entered with {@link #assignTo(String, long)} and left back to an available state
+     * with {@link #unassign(long)} only, so that the assignment always changes together with the state.
+     *
+     * @param target    the new state
+     * @param changedAt the time of the change, in microseconds since the epoch
+     * @throws IllegalArgumentException if the new state is an assigned state
+     * @throws IllegalStateException    if the current state cannot change to the new state, or if the unit is
+     *                                  assigned and the new state is an available state
+     */
+    public void changeState(UnitState target, long changedAt) {
+        Objects.requireNonNull(target, "target must not be null");
+        if (target.isAssigned()) {
+            throw new IllegalArgumentException("unit " + unitId + " can only change to " + target
+                    + " by being assigned");
+        }
+        var current = state();
+        if (current.isAssigned() && target.isAvailable()) {
+            throw new IllegalStateException("unit " + unitId + " can only change from " + current + " to "
+                    + target + " by being unassigned");
+        }
+        transition(target, changedAt);
+    }
+
+    private void transition(UnitState target, long changedAt) {
+        requireTimestamp(changedAt, "changedAt");
+        var current = state();
+        if (!current.canTransitionTo(target)) {
+            throw new IllegalStateException("unit " + unitId + " cannot change from " + current + " to " + target);
+        }
+        state = (byte) target.ordinal();
+        stateChangedAt = changedAt;
+        if (target.unassigns()) {
+            assignedIncidentId = null;
+            assignedAt = EpochMicros.NONE;
+        }
+    }
+
+    // --- Assignment ---
+
+    /**
+     * Returns the ID of the incident the unit is assigned to, or null if it is not assigned.
+     */
+    public @Nullable String assignedIncidentId() {
+        return assignedIncidentId;
+    }
+
+    /**
+     * Returns the time the unit was assigned to its incident, in microseconds since the epoch, or
+     * {@link EpochMicros#NONE} if it is not assigned.
+     */
+    public long assignedAtMicros() {
+        return assignedAt;
+    }
+
+    /**
+     * Assigns the unit to an incident, replacing any previous assignment, and changes the state from
+     * {@link UnitState#AVAILABLE_OVER_RADIO} to {@link UnitState#ASSIGNED_RADIO}, or from
+     * {@link UnitState#AVAILABLE_AT_STATION} to {@link UnitState#ASSIGNED_STATION}.
+     *
+     * @param incidentId the ID of the incident
+     * @param assignedAt the time of the assignment, in microseconds since the epoch
+     * @throws IllegalStateException if the unit is not available
+     */
+    public void assignTo(String incidentId, long assignedAt) {
+        Objects.requireNonNull(incidentId, "incidentId must not be null");
+        requireTimestamp(assignedAt, "assignedAt");
+        var current = state();
+        if (!current.isAvailable()) {
+            throw new IllegalStateException("unit " + unitId + " cannot be assigned in state " + current);
+        }
+        transition(current == UnitState.AVAILABLE_OVER_RADIO ? UnitState.ASSIGNED_RADIO
+                : UnitState.ASSIGNED_STATION, assignedAt);
+        this.assignedIncidentId = incidentId;
+        this.assignedAt = assignedAt;
+    }
+
+    /**
+     * Unassigns the unit from its incident before it has been dispatched, changing the state back from
+     * {@link UnitState#ASSIGNED_RADIO} to {@link UnitState#AVAILABLE_OVER_RADIO}, or from
+     * {@link UnitState#ASSIGNED_STATION} to {@link UnitState#AVAILABLE_AT_STATION}.
+     *
+     * @param unassignedAt the time of the unassignment, in microseconds since the epoch
+     * @throws IllegalStateException if the unit is not in an assigned state
+     */
+    public void unassign(long unassignedAt) {
+        requireTimestamp(unassignedAt, "unassignedAt");
+        var current = state();
+        if (!current.isAssigned()) {
+            throw new IllegalStateException("unit " + unitId + " cannot be unassigned in state " + current);
+        }
+        transition(current == UnitState.ASSIGNED_RADIO ? UnitState.AVAILABLE_OVER_RADIO
+                : UnitState.AVAILABLE_AT_STATION, unassignedAt);
+        assignedIncidentId = null;
+        assignedAt = EpochMicros.NONE;
+    }
+
+    // --- Staffing ---
+
+    /**
+     * Returns whether the unit has declared its staffing.
+     */
+    public boolean hasStaffing() {
+        return staffing != NO_STAFFING;
+    }
+
+    /**
+     * Returns the declared staffing, or null if there is none.
+     */
+    public @Nullable Staffing staffing() {
+        return staffing == NO_STAFFING ? null : Staffing.unpack(staffing);
+    }
+
+    /**
+     * Returns the time the staffing was last changed, in microseconds since the epoch, or
+     * {@link EpochMicros#NONE} if it has never been set.
+     */
+    public long staffingChangedAtMicros() {
+        return staffingChangedAt;
+    }
+
+    /**
+     * Changes the declared staffing.
+     *
+     * @param staffing  the new staffing
+     * @param changedAt the time of the change, in microseconds since the epoch
+     */
+    public void changeStaffing(Staffing staffing, long changedAt) {
+        Objects.requireNonNull(staffing, "staffing must not be null");
+        requireTimestamp(changedAt, "changedAt");
+        this.staffing = staffing.pack();
+        this.staffingChangedAt = changedAt;
+    }
+
+    // --- Coordinates ---
+
+    /**
+     * Returns whether the location of the unit is known.
+     */
+    public boolean hasCoordinates() {
+        return coordinatesChangedAt != EpochMicros.NONE;
+    }
+
+    /**
+     * Returns the latitude in micro-degrees. Only meaningful if {@link #hasCoordinates()}.
+     */
+    public int latitudeMicrodegrees() {
+        return latitude;
+    }
+
+    /**
+     * Returns the longitude in micro-degrees. Only meaningful if {@link #hasCoordinates()}.
+     */
+    public int longitudeMicrodegrees() {
+        return longitude;
+    }
+
+    /**
+     * Returns the coordinates, or null if the location of the unit is not known.
+     */
+    public Coordinates.@Nullable Epsg4326 coordinates() {
+        if (!hasCoordinates()) {
+            return null;
+        }
+        return Coordinates.Epsg4326.of((double) latitude / MICRODEGREES_PER_DEGREE,
+                (double) longitude / MICRODEGREES_PER_DEGREE);
+    }
+
+    /**
+     * Returns the time the coordinates were last changed, in microseconds since the epoch, or
+     * {@link EpochMicros#NONE} if the location of the unit is not known.
+     */
+    public long coordinatesChangedAtMicros() {
+        return coordinatesChangedAt;
+    }
+
+    /**
+     * Checks that the given coordinates are within the bounds of the specification.
+     *
+     * @param latitude  the latitude in micro-degrees (EPSG:4326)
+     * @param longitude the longitude in micro-degrees (EPSG:4326)
+     * @throws IllegalArgumentException if the coordinates are out of bounds
+     */
+    public static void requireValidCoordinates(int latitude, int longitude) {
+        if (latitude < MIN_LATITUDE || latitude > MAX_LATITUDE) {
+            throw new IllegalArgumentException("latitude must be between " + MIN_LATITUDE + " and "
+                    + MAX_LATITUDE + " micro-degrees, got " + latitude);
+        }
+        if (longitude < MIN_LONGITUDE || longitude > MAX_LONGITUDE) {
+            throw new IllegalArgumentException("longitude must be between " + MIN_LONGITUDE + " and "
+                    + MAX_LONGITUDE + " micro-degrees, got " + longitude);
+        }
+    }
+
+    /**
+     * Changes the coordinates.
+     *
+     * @param latitude  the latitude in micro-degrees (EPSG:4326)
+     * @param longitude the longitude in micro-degrees (EPSG:4326)
+     * @param changedAt the time of the change, in microseconds since the epoch
+     * @throws IllegalArgumentException if the coordinates are outside the bounds of the specification
+     */
+    public void changeCoordinates(int latitude, int longitude, long changedAt) {
+        requireValidCoordinates(latitude, longitude);
+        requireTimestamp(changedAt, "changedAt");
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.coordinatesChangedAt = changedAt;
+    }
+
+    /**
+     * Changes the coordinates.
+     *
+     * @param coordinates the new coordinates
+     * @param changedAt   the time of the change, in microseconds since the epoch
+     */
+    public void changeCoordinates(Coordinates.Epsg4326 coordinates, long changedAt) {
+        Objects.requireNonNull(coordinates, "coordinates must not be null");
+        // Exact, since the coordinates have at most six decimal places
+        changeCoordinates((int) Math.round(coordinates.latitude() * MICRODEGREES_PER_DEGREE),
+                (int) Math.round(coordinates.longitude() * MICRODEGREES_PER_DEGREE), changedAt);
+    }
+
+    @Override
+    public String toString() {
+        return "UnitStatus[" + unitId + ", " + state() + "]";
     }
 }
@@ -0,0 +1,20 @@
+package net.pkhapps.idispatchx.cad.port.secondary.snapshot;
+
+import java.util.Objects;
+
+/**
+ * Marks an aggregate that has been removed since the previous snapshot, in a delta snapshot.
+ * <p>
+ * Written with {@link SnapshotWriter#write(Object)} and passed to the consumer of
+ * {@link SnapshotPort#loadLatestSnapshot(java.util.function.Consumer)} like any other aggregate.
+ *
+ * @param type the type of the lock key guarding the aggregate, such as {@code "incident"}
+ * @param id   the ID of the aggregate
+ */
+public record RemovedAggregate(String type, String id) {
+
+    public RemovedAggregate {
+        Objects.requireNonNull(type, "type must not be null");
+        Objects.requireNonNull(id, "id must not be null");
+    }
+}
@@ -3,36 +3,75 @@ package net.pkhapps.idispatchx.cad.port.secondary.snapshot;
 import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Port for snapshot operations.
  * <p>
  * Per ADR-0006, snapshots capture the complete operational state for faster
  * startup recovery. Snapshots use the same format (text/JSON or binary) as the WAL.
+ * <p>
+ * Snapshots are written and read as streams of aggregates, through {@link #openSnapshotWriter()} and
+ * {@link #loadLatestSnapshot(Consumer)}, so that neither creating nor loading a snapshot needs a second
+ * copy of the whole operational state in memory. The aggregates are written as the snapshot record types
+ * registered with the adapter; the mutable domain entities are copied into them when they are captured.
+ * <p>
+ * Besides full snapshots, the port stores delta snapshots that only contain the aggregates changed since
+ * the previous snapshot, opened with {@link #openDeltaSnapshotWriter(SequenceNumber)}. Each delta refers to
+ * its previous snapshot, forming a chain that starts at a full snapshot. Loading the latest snapshot loads
+ * the whole chain, and purging keeps every snapshot that a retained delta depends on.
  */
 public interface SnapshotPort {
 
     /**
-     * Creates a snapshot of the operational state.
+     * Opens a writer for a new snapshot.
      * <p>
-     * The snapshot is written atomically using a temporary file followed by rename.
+     * The snapshot is written atomically using a temporary file followed by rename when the writer is
+     * committed.
      *
-     * @param state          the operational state to snapshot
-     * @param upToSequence   the sequence number of the last WAL entry included
-     * @throws SnapshotWriteException if the snapshot cannot be written
+     * @return the writer, which must be closed by the caller
+     * @throws SnapshotWriteException if the snapshot cannot be created
      */
-    void createSnapshot(OperationalState state, SequenceNumber upToSequence);
+    SnapshotWriter openSnapshotWriter();
 
     /**
-     * Loads the latest valid snapshot.
+     * Opens a writer for a new delta snapshot, containing the aggregates that have been created or changed
+     * after the given previous snapshot, and a {@link RemovedAggregate} for each aggregate that has been
+     * removed.
+     * <p>
+     * The delta is written atomically like a full snapshot, and must be committed with a sequence number
+     * after that of the previous snapshot.
+     *
+     * @param previousSnapshot the sequence number of the snapshot, full or delta, that the delta is based on
+     * @return the writer, which must be closed by the caller
+     * @throws SnapshotWriteException if the previous snapshot does not exist or the delta cannot be created
+     */
+    SnapshotWriter openDeltaSnapshotWriter(SequenceNumber previousSnapshot);
+
+    /**
+     * Reads the latest valid snapshot, passing its aggregates to the consumer.
+     * <p>
+     * If the latest snapshot is a delta, the full snapshot that its chain starts from is read first,
+     * followed by each delta of the chain in order. An aggregate can therefore be passed to the consumer
+     * several times, each time replacing the previous one with the same ID, and removals are passed as
+     * {@link RemovedAggregate}s.
+     * <p>
+     * The only ordering guarantee is between the snapshots of a chain: each one has been passed to the
+     * consumer completely before the next one is read. Within a snapshot, the aggregates are passed in no
+     * particular order, and since a snapshot may be stored in several parts that are read in parallel, the
+     * consumer may be called from several threads at once. Concurrent calls are always for different
+     * aggregates.
      *
-     * @return the latest snapshot, or empty if no snapshot exists
-     * @throws SnapshotReadException if the snapshot exists but cannot be read
+     * @param consumer the consumer of the aggregates
+     * @return the sequence number of the last WAL entry included in the snapshot, or empty if no snapshot exists
+     * @throws SnapshotReadException if the snapshot exists but cannot be read, or a snapshot of its chain is
+     *                               missing
      */
-    Optional<Snapshot> loadLatestSnapshot();
+    Optional<SequenceNumber> loadLatestSnapshot(Consumer<Object> consumer);
 
     /**
-     * Purges snapshots older than the given sequence number.
+     * Purges snapshots older than the given sequence number, except those that a delta snapshot at or after
+     * the sequence number is based on, directly or through other deltas.
      * <p>
      * This is called after a new snapshot is successfully written.
      * Purging is performed asynchronously and must not block normal operations.
@@ -0,0 +1,36 @@
+package net.pkhapps.idispatchx.cad.port.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+
+/**
+ * Writes a snapshot to storage one aggregate at a time, so that the operational state never has to be held
+ * in memory as a whole.
+ * <p>
+ * The snapshot becomes visible atomically when it is committed. A writer that is closed without having
+ * been committed discards everything written to it. Writers are not thread-safe.
+ */
+public interface SnapshotWriter extends AutoCloseable {
+
+    /**
+     * Writes an aggregate to the snapshot. The aggregate may be discarded by the caller afterwards.
+     *
+     * @param aggregate the aggregate to write, or a {@link RemovedAggregate} if this is a delta snapshot
+     * @throws SnapshotWriteException   if the aggregate cannot be written
+     * @throws IllegalArgumentException if a {@link RemovedAggregate} is written to a full snapshot
+     */
+    void write(Object aggregate);
+
+    /**
+     * Makes the snapshot durable and visible.
+     *
+     * @param upToSequence the sequence number of the last WAL entry included in the snapshot
+     * @throws SnapshotWriteException if the snapshot cannot be written
+     */
+    void commit(SequenceNumber upToSequence);
+
+    /**
+     * Releases the resources of the writer, discarding the snapshot unless it has been committed.
+     */
+    @Override
+    void close();
+}
@@ -39,6 +39,7 @@ public interface WalPort {
      *
      * @param from     replay events after this sequence number
      * @param consumer receives each event in order
+     * @throws WalReadException if the WAL cannot be read
      */
     void replayFrom(SequenceNumber from, Consumer<DomainEvent> consumer);
 
@@ -47,12 +48,17 @@ public interface WalPort {
      * Called on startup to reconstruct in-memory state when no snapshot exists.
      *
      * @param consumer receives each event in order
+     * @throws WalReadException if the WAL cannot be read
      */
     void replay(Consumer<DomainEvent> consumer);
 
     /**
      * Truncates WAL entries up to the given sequence number (inclusive).
      * Called after snapshot creation to prevent unbounded WAL growth.
+     * <p>
+     * Implementations may remove entries at a coarser granularity (e.g. whole files) and keep
+     * some entries up to the given sequence number. Recovery must therefore replay from the
+     * snapshot sequence number using {@link #replayFrom(SequenceNumber, Consumer)}.
      *
      * @param upTo truncate all entries up to and including this sequence number
      */
@@ -65,4 +71,13 @@ public interface WalPort {
      * @return the current sequence number
      */
     SequenceNumber currentSequence();
+
+    /**
+     * Returns the total number of bytes written to the WAL since it was opened, including framing.
+     * The value only ever grows; it is not reduced by {@link #truncate(SequenceNumber)}. Callers
+     * compare two readings to learn how much the WAL has grown in between.
+     *
+     * @return the number of bytes written since the WAL was opened
+     */
+    long bytesWritten();
 }
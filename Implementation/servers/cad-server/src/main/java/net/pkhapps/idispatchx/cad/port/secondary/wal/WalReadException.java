@@ -0,0 +1,16 @@
+package net.pkhapps.idispatchx.cad.port.secondary.wal;
+
+/**
+ * Exception thrown when the WAL exists but cannot be read, for example because
+ * a corrupt entry was encountered during replay in strict mode.
+ */
+public class WalReadException extends RuntimeException {
+
+    public WalReadException(String message) {
+        super(message);
+    }
+
+    public WalReadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
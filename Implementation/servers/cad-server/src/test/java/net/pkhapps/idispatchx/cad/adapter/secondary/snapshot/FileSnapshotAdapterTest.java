@@ -0,0 +1,377 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.snapshot;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalConfig;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.RemovedAggregate;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotReadException;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriteException;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSnapshotAdapterTest {
+
+    static final SnapshotTypes AGGREGATE_TYPES = SnapshotTypes.builder()
+            .register(1, "unit", TestUnit.class)
+            .register(2, "incident", TestIncident.class)
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    private FileSnapshotAdapter open(FileWalConfig.Format format) {
+        return new FileSnapshotAdapter(new FileSnapshotConfig(tempDir, format), AGGREGATE_TYPES);
+    }
+
+    private FileSnapshotAdapter openSharded(FileWalConfig.Format format, int shards) {
+        return new FileSnapshotAdapter(new FileSnapshotConfig(tempDir, format, shards), AGGREGATE_TYPES);
+    }
+
+    private static List<Object> aggregates(int count) {
+        var aggregates = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            aggregates.add(new TestUnit("RVS" + i, i % 2 == 0 ? "available" : null,
+                    Instant.parse("2026-01-01T12:00:00Z").plusSeconds(i)));
+            aggregates.add(new TestIncident("incident-" + i, List.of("RVS" + i, "RVS" + (i + 1))));
+        }
+        return aggregates;
+    }
+
+    private static void write(FileSnapshotAdapter adapter, List<Object> aggregates, long upToSequence) {
+        try (var writer = adapter.openSnapshotWriter()) {
+            aggregates.forEach(writer::write);
+            writer.commit(new SequenceNumber(upToSequence));
+        }
+    }
+
+    private static void writeDelta(FileSnapshotAdapter adapter, List<Object> aggregates, long previousSequence,
+                                   long upToSequence) {
+        try (var writer = adapter.openDeltaSnapshotWriter(new SequenceNumber(previousSequence))) {
+            aggregates.forEach(writer::write);
+            writer.commit(new SequenceNumber(upToSequence));
+        }
+    }
+
+    private static List<Object> load(FileSnapshotAdapter adapter, @Nullable SequenceNumber expectedSequence) {
+        var loaded = new ArrayList<Object>();
+        var sequenceNumber = adapter.loadLatestSnapshot(loaded::add);
+        assertEquals(Optional.ofNullable(expectedSequence), sequenceNumber);
+        return loaded;
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileWalConfig.Format.class)
+    void loadLatestSnapshot_streamsAggregatesInWrittenOrder(FileWalConfig.Format format) {
+        var adapter = open(format);
+        // Large enough to be flushed and read in several chunks
+        var aggregates = aggregates(5_000);
+
+        write(adapter, aggregates, 42);
+
+        assertEquals(aggregates, load(open(format), new SequenceNumber(42)));
+    }
+
+    @Test
+    void loadLatestSnapshot_noSnapshot_returnsEmpty() {
+        assertTrue(load(open(FileWalConfig.Format.BINARY), null).isEmpty());
+    }
+
+    @Test
+    void loadLatestSnapshot_severalSnapshots_loadsTheLatest() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(1), 10);
+        write(adapter, aggregates(3), 30);
+        write(adapter, aggregates(2), 20);
+
+        assertEquals(aggregates(3), load(adapter, new SequenceNumber(30)));
+    }
+
+    @Test
+    void close_withoutCommit_leavesNoSnapshotBehind() throws IOException {
+        var adapter = open(FileWalConfig.Format.BINARY);
+
+        try (var writer = adapter.openSnapshotWriter()) {
+            aggregates(10).forEach(writer::write);
+        }
+
+        assertTrue(load(adapter, null).isEmpty());
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void open_deletesTemporaryFilesLeftByCrash() throws IOException {
+        Files.createDirectories(tempDir);
+        Files.write(tempDir.resolve("snapshot-1234567890.tmp"), new byte[]{1, 2, 3});
+
+        open(FileWalConfig.Format.BINARY);
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void write_unregisteredType_throwsAndKeepsEarlierAggregates() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+
+        try (var writer = adapter.openSnapshotWriter()) {
+            writer.write(new TestIncident("incident-1", List.of()));
+            assertThrows(SnapshotWriteException.class, () -> writer.write("not an aggregate"));
+            writer.commit(new SequenceNumber(1));
+        }
+
+        assertEquals(List.of(new TestIncident("incident-1", List.of())), load(adapter, new SequenceNumber(1)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileWalConfig.Format.class)
+    void loadLatestSnapshot_corruptSnapshot_throws(FileWalConfig.Format format) throws IOException {
+        var adapter = open(format);
+        write(adapter, aggregates(10), 5);
+        var file = tempDir.resolve(FileSnapshotAdapter.fileName(5, format.fileExtension()));
+        var bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(file, bytes);
+
+        assertThrows(SnapshotReadException.class, () -> load(adapter, new SequenceNumber(5)));
+    }
+
+    @Test
+    void loadLatestSnapshot_truncatedSnapshot_throws() throws IOException {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(10), 5);
+        var file = tempDir.resolve(FileSnapshotAdapter.fileName(5, "bin"));
+        try (var channel = Files.newByteChannel(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThrows(SnapshotReadException.class, () -> load(adapter, new SequenceNumber(5)));
+    }
+
+    @Test
+    void purgeOlderSnapshots_deletesSnapshotsBeforeSequence() {
+        var adapter = open(FileWalConfig.Format.TEXT);
+        write(adapter, aggregates(1), 10);
+        write(adapter, aggregates(1), 20);
+        write(adapter, aggregates(1), 30);
+
+        adapter.purgeOlderSnapshots(new SequenceNumber(20));
+
+        assertFalse(Files.exists(tempDir.resolve(FileSnapshotAdapter.fileName(10, "ndjson"))));
+        assertTrue(Files.exists(tempDir.resolve(FileSnapshotAdapter.fileName(20, "ndjson"))));
+        assertTrue(Files.exists(tempDir.resolve(FileSnapshotAdapter.fileName(30, "ndjson"))));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileWalConfig.Format.class)
+    void loadLatestSnapshot_deltaChain_streamsBaseFollowedByDeltasInOrder(FileWalConfig.Format format) {
+        var adapter = open(format);
+        var unit = new TestUnit("RVS1", "available", Instant.parse("2026-01-01T12:00:00Z"));
+        var removed = new RemovedAggregate("incident", "incident-0");
+        write(adapter, aggregates(2), 10);
+        writeDelta(adapter, List.of(unit), 10, 20);
+        writeDelta(adapter, List.of(removed), 20, 30);
+
+        var expected = new ArrayList<>(aggregates(2));
+        expected.add(unit);
+        expected.add(removed);
+        assertEquals(expected, load(open(format), new SequenceNumber(30)));
+    }
+
+    @Test
+    void loadLatestSnapshot_fullAndDeltaAtSameSequence_loadsOnlyTheFull() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(1), 10);
+        writeDelta(adapter, aggregates(2), 10, 20);
+        write(adapter, aggregates(3), 20);
+
+        assertEquals(aggregates(3), load(adapter, new SequenceNumber(20)));
+    }
+
+    @Test
+    void loadLatestSnapshot_missingBase_throws() throws IOException {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(1), 10);
+        writeDelta(adapter, aggregates(1), 10, 20);
+        Files.delete(tempDir.resolve(FileSnapshotAdapter.fileName(10, "bin")));
+
+        assertThrows(SnapshotReadException.class, () -> load(adapter, new SequenceNumber(20)));
+    }
+
+    @Test
+    void openDeltaSnapshotWriter_unknownPreviousSnapshot_throws() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(1), 10);
+
+        assertThrows(SnapshotWriteException.class, () -> adapter.openDeltaSnapshotWriter(new SequenceNumber(11)));
+    }
+
+    @Test
+    void commit_deltaNotAfterPreviousSnapshot_throws() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(1), 10);
+
+        try (var writer = adapter.openDeltaSnapshotWriter(new SequenceNumber(10))) {
+            assertThrows(IllegalArgumentException.class, () -> writer.commit(new SequenceNumber(10)));
+        }
+    }
+
+    @Test
+    void write_removedAggregateToFullSnapshot_throws() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+
+        try (var writer = adapter.openSnapshotWriter()) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> writer.write(new RemovedAggregate("incident", "incident-1")));
+        }
+    }
+
+    @Test
+    void purgeOlderSnapshots_keepsChainOfRetainedDeltas() {
+        var adapter = open(FileWalConfig.Format.BINARY);
+        write(adapter, aggregates(1), 5);
+        write(adapter, aggregates(1), 10);
+        writeDelta(adapter, aggregates(1), 10, 20);
+        writeDelta(adapter, aggregates(1), 20, 30);
+
+        adapter.purgeOlderSnapshots(new SequenceNumber(30));
+
+        assertFalse(Files.exists(tempDir.resolve(FileSnapshotAdapter.fileName(5, "bin"))));
+        assertTrue(Files.exists(tempDir.resolve(FileSnapshotAdapter.fileName(10, "bin"))));
+        assertTrue(Files.exists(tempDir.resolve(FileSnapshotAdapter.deltaFileName(20, 10, "bin"))));
+        assertTrue(Files.exists(tempDir.resolve(FileSnapshotAdapter.deltaFileName(30, 20, "bin"))));
+
+        write(adapter, aggregates(1), 40);
+        adapter.purgeOlderSnapshots(new SequenceNumber(40));
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(List.of(FileSnapshotAdapter.fileName(40, "bin")),
+                    files.map(file -> file.getFileName().toString()).toList());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileWalConfig.Format.class)
+    void loadLatestSnapshot_sharded_loadsEveryAggregateOfEveryShard(FileWalConfig.Format format) throws IOException {
+        var adapter = openSharded(format, 4);
+        var aggregates = aggregates(5_000);
+
+        write(adapter, aggregates, 42);
+
+        var manifest = tempDir.resolve(FileSnapshotAdapter.fileName(42, format.fileExtension()) + ".manifest");
+        assertEquals(4, Files.readAllLines(manifest).size());
+        var loaded = Collections.synchronizedList(new ArrayList<Object>());
+        assertEquals(Optional.of(new SequenceNumber(42)), open(format).loadLatestSnapshot(loaded::add));
+        assertEquals(aggregates.size(), loaded.size());
+        assertEquals(new HashSet<>(aggregates), new HashSet<>(loaded));
+    }
+
+    @Test
+    void loadLatestSnapshot_shardedDeltaOnSingleFileBase_loadsChain() {
+        write(open(FileWalConfig.Format.BINARY), aggregates(1), 10);
+        var adapter = openSharded(FileWalConfig.Format.BINARY, 3);
+        var removed = new RemovedAggregate("incident", "incident-0");
+        writeDelta(adapter, List.of(removed), 10, 20);
+
+        var expected = new ArrayList<>(aggregates(1));
+        expected.add(removed);
+        assertEquals(expected, load(adapter, new SequenceNumber(20)));
+    }
+
+    @Test
+    void loadLatestSnapshot_truncatedShard_throws() throws IOException {
+        var adapter = openSharded(FileWalConfig.Format.BINARY, 2);
+        write(adapter, aggregates(10), 5);
+        var shard = tempDir.resolve(FileSnapshotAdapter.fileName(5, "bin") + ".shard-1");
+        try (var channel = Files.newByteChannel(shard, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThrows(SnapshotReadException.class, () -> load(adapter, new SequenceNumber(5)));
+    }
+
+    @Test
+    void open_deletesShardsWithoutManifest() throws IOException {
+        var adapter = openSharded(FileWalConfig.Format.BINARY, 2);
+        write(adapter, aggregates(10), 5);
+        Files.delete(tempDir.resolve(FileSnapshotAdapter.fileName(5, "bin") + ".manifest"));
+
+        assertTrue(load(openSharded(FileWalConfig.Format.BINARY, 2), null).isEmpty());
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void purgeOlderSnapshots_sharded_deletesManifestAndShards() throws IOException {
+        var adapter = openSharded(FileWalConfig.Format.BINARY, 2);
+        write(adapter, aggregates(1), 10);
+        write(adapter, aggregates(1), 20);
+
+        adapter.purgeOlderSnapshots(new SequenceNumber(20));
+
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.allMatch(file -> file.getFileName().toString()
+                    .startsWith(FileSnapshotAdapter.fileName(20, "bin"))));
+        }
+        assertEquals(aggregates(1).size(), load(adapter, new SequenceNumber(20)).size());
+    }
+
+    @Test
+    void close_shardedWithoutCommit_leavesNoSnapshotBehind() throws IOException {
+        var adapter = openSharded(FileWalConfig.Format.BINARY, 3);
+
+        try (var writer = adapter.openSnapshotWriter()) {
+            aggregates(10).forEach(writer::write);
+        }
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void parseDeltaSequences_rejectsOtherFiles() {
+        assertArrayEquals(new long[]{42, 7}, FileSnapshotAdapter.parseDeltaSequences(
+                FileSnapshotAdapter.deltaFileName(42, 7, "bin"), "bin"));
+        assertEquals(-1, FileSnapshotAdapter.parseSequence(FileSnapshotAdapter.deltaFileName(42, 7, "bin"), "bin"));
+        assertNull(FileSnapshotAdapter.parseDeltaSequences(FileSnapshotAdapter.fileName(42, "bin"), "bin"));
+        assertNull(FileSnapshotAdapter.parseDeltaSequences(FileSnapshotAdapter.deltaFileName(7, 42, "bin"), "bin"));
+    }
+
+    @Test
+    void parseSequence_rejectsOtherFiles() {
+        assertEquals(42, FileSnapshotAdapter.parseSequence(FileSnapshotAdapter.fileName(42, "bin"), "bin"));
+        assertEquals(-1, FileSnapshotAdapter.parseSequence(FileSnapshotAdapter.fileName(42, "bin"), "ndjson"));
+        assertEquals(-1, FileSnapshotAdapter.parseSequence("snapshot-123.tmp", "bin"));
+        assertEquals(-1, FileSnapshotAdapter.parseSequence("wal-00000000000000000001.bin", "bin"));
+    }
+
+    // --- Test doubles ---
+
+    record TestUnit(String unitId, @Nullable String status, Instant updatedAt) {
+    }
+
+    record TestIncident(String incidentId, List<String> unitIds) {
+    }
+}
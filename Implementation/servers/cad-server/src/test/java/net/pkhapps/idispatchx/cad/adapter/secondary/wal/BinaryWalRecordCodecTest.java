@@ -0,0 +1,128 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.BinaryFrames;
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryWalRecordCodecTest {
+
+    private static final WalEventTypes EVENT_TYPES = WalEventTypes.builder()
+            .register(1, "test", FileWalAdapterTest.TestEvent.class)
+            .register(2, "composite", CompositeEvent.class)
+            .build();
+
+    private final BinaryWalRecordCodec codec = new BinaryWalRecordCodec(EVENT_TYPES);
+
+    private ByteBuffer encode(WalRecord record) throws IOException {
+        var out = new FrameOutputBuffer(256);
+        codec.encode(record, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static CompositeEvent compositeEvent() {
+        return new CompositeEvent(EventId.generate(), Instant.parse("2026-01-01T12:00:00.123456Z"),
+                CommandId.fromString("0190b6a4-3f2e-4c1a-9d3b-5e6f7a8b9c0d"), Priority.HIGH, 42, -7L, null,
+                List.of(new Point(60.45, 22.27), new Point(-1.5, 0)),
+                new Named("Turku"), new SequenceNumber(123_456));
+    }
+
+    @Test
+    void decode_encodedRecord_roundTrips() throws IOException {
+        var record = new WalRecord(new SequenceNumber(300), FileWalAdapterTest.event("payload"), true);
+
+        assertEquals(record, codec.decode(encode(record)));
+    }
+
+    @Test
+    void decode_nestedComponentTypes_roundTrip() throws IOException {
+        var record = new WalRecord(new SequenceNumber(1), compositeEvent(), false);
+
+        assertEquals(record, codec.decode(encode(record)));
+    }
+
+    @Test
+    void encode_isSeveralTimesSmallerThanText() throws IOException {
+        var record = new WalRecord(new SequenceNumber(1_000_000), FileWalAdapterTest.event("x"), true);
+        var text = new FrameOutputBuffer(256);
+        new NdjsonWalRecordCodec(EVENT_TYPES).encode(record, text);
+
+        var binarySize = encode(record).remaining();
+
+        assertTrue(binarySize * 3 < text.size(), "binary " + binarySize + " bytes, text " + text.size() + " bytes");
+    }
+
+    @Test
+    void frameLength_incompleteFrame_returnsMinusOne() throws IOException {
+        var frame = encode(new WalRecord(new SequenceNumber(1), FileWalAdapterTest.event("a"), true));
+
+        assertEquals(frame.remaining(), codec.frameLength(frame));
+        assertEquals(-1, codec.frameLength(frame.slice(0, frame.remaining() - 1)));
+        assertEquals(-1, codec.frameLength(frame.slice(0, BinaryFrames.HEADER_SIZE - 1)));
+    }
+
+    @Test
+    void frameLength_zeroPadding_returnsEndOfData() {
+        var zeros = ByteBuffer.allocate(64);
+
+        assertEquals(WalRecordCodec.END_OF_DATA, codec.frameLength(zeros));
+    }
+
+    @Test
+    void frameLength_negativeLength_throwsWalReadException() {
+        var garbage = ByteBuffer.allocate(64).putInt(0, -5);
+
+        assertThrows(WalReadException.class, () -> codec.frameLength(garbage));
+    }
+
+    @Test
+    void decode_flippedPayloadBit_throwsWalReadException() throws IOException {
+        var frame = encode(new WalRecord(new SequenceNumber(1), FileWalAdapterTest.event("a"), true));
+        var index = frame.limit() - 1;
+        frame.put(index, (byte) (frame.get(index) ^ 0x01));
+
+        var exception = assertThrows(WalReadException.class, () -> codec.decode(frame));
+        assertTrue(exception.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void constructor_unsupportedComponentType_throwsIllegalArgumentException() {
+        var eventTypes = WalEventTypes.builder().register(1, "unsupported", UnsupportedEvent.class).build();
+
+        assertThrows(IllegalArgumentException.class, () -> new BinaryWalRecordCodec(eventTypes));
+    }
+
+    // --- Test events ---
+
+    enum Priority {LOW, HIGH}
+
+    sealed interface Location permits Point, Named {
+    }
+
+    record Point(double latitude, double longitude) implements Location {
+    }
+
+    record Named(String name) implements Location {
+    }
+
+    record CompositeEvent(EventId eventId, Instant timestamp, @Nullable CommandId causedBy, Priority priority,
+                          int count, Long delta, @Nullable String note, List<Point> route, Location location,
+                          SequenceNumber reference) implements DomainEvent {
+    }
+
+    record UnsupportedEvent(EventId eventId, Instant timestamp, @Nullable CommandId causedBy,
+                            Object payload) implements DomainEvent {
+    }
+}
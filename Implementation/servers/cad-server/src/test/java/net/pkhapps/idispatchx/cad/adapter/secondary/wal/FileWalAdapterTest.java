@@ -0,0 +1,539 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalWriteException;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileWalAdapterTest {
+
+    static final WalEventTypes EVENT_TYPES = WalEventTypes.builder()
+            .register(1, "test", TestEvent.class)
+            .build();
+    static final long SEGMENT_SIZE = FileWalConfig.MIN_SEGMENT_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<FileWalAdapter> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(FileWalAdapter::close);
+    }
+
+    private FileWalAdapter open() {
+        return open(FileWalConfig.CorruptionMode.STRICT);
+    }
+
+    private FileWalAdapter open(FileWalConfig.CorruptionMode corruptionMode) {
+        return open(FileWalConfig.Format.TEXT, corruptionMode);
+    }
+
+    private FileWalAdapter open(FileWalConfig.Format format, FileWalConfig.CorruptionMode corruptionMode) {
+        return open(new FileWalConfig(tempDir, format, corruptionMode, FileWalConfig.DEFAULT_MAX_GROUP_SIZE,
+                SEGMENT_SIZE));
+    }
+
+    private FileWalAdapter open(FileWalConfig config) {
+        var adapter = new FileWalAdapter(config, EVENT_TYPES);
+        opened.add(adapter);
+        return adapter;
+    }
+
+    private void closeAll() {
+        opened.forEach(FileWalAdapter::close);
+        opened.clear();
+    }
+
+    static TestEvent event(String payload) {
+        return new TestEvent(EventId.generate(), Instant.parse("2026-01-01T12:00:00.123456Z"),
+                CommandId.generate(), payload);
+    }
+
+    private static List<DomainEvent> replayAll(FileWalAdapter wal) {
+        var events = new ArrayList<DomainEvent>();
+        wal.replay(events::add);
+        return events;
+    }
+
+    private List<Path> segmentFiles(String extension) throws IOException {
+        try (var files = Files.list(tempDir)) {
+            return files.filter(file -> WalSegment.parseFirstSequence(file.getFileName().toString(), extension) > 0)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path activeTextSegment() throws IOException {
+        return segmentFiles("ndjson").getLast();
+    }
+
+    /**
+     * Returns the written part of the active text segment, without the zero padding.
+     */
+    private String textContent() throws IOException {
+        var content = Files.readString(activeTextSegment(), StandardCharsets.UTF_8);
+        var end = content.indexOf('\0');
+        return end < 0 ? content : content.substring(0, end);
+    }
+
+    /**
+     * Replaces the written part of the active text segment, keeping the segment size.
+     */
+    private void rewriteText(String content) throws IOException {
+        var bytes = content.getBytes(StandardCharsets.UTF_8);
+        try (var channel = FileChannel.open(activeTextSegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), 0);
+            channel.write(ByteBuffer.wrap(new byte[(int) (channel.size() - bytes.length)]), bytes.length);
+        }
+    }
+
+    @Test
+    void write_assignsIncreasingSequenceNumbers() {
+        var wal = open();
+
+        assertEquals(SequenceNumber.start(), wal.currentSequence());
+        assertEquals(new SequenceNumber(1), wal.write(event("a")));
+        assertEquals(new SequenceNumber(2), wal.write(event("b")));
+        assertEquals(new SequenceNumber(2), wal.currentSequence());
+    }
+
+    @Test
+    void write_recordsWritePathMetrics() {
+        var metricsRegistry = new MetricsRegistry();
+        var config = new FileWalConfig(tempDir, FileWalConfig.Format.TEXT, FileWalConfig.CorruptionMode.STRICT,
+                FileWalConfig.DEFAULT_MAX_GROUP_SIZE, SEGMENT_SIZE);
+        try (var wal = new FileWalAdapter(config, EVENT_TYPES, metricsRegistry)) {
+            wal.write(event("a"));
+            wal.writeBatch(List.of(event("b"), event("c")));
+        }
+
+        var snapshot = metricsRegistry.snapshot();
+        assertEquals(2, snapshot.get("wal.queue-wait").count());
+        assertEquals(2, snapshot.get("wal.group-size").count());
+        assertEquals(1, snapshot.get("wal.group-size").max());
+        assertEquals(2, snapshot.get("wal.serialization").count());
+        assertEquals(2, snapshot.get("wal.write").count());
+        assertEquals(2, snapshot.get("wal.fsync").count());
+    }
+
+    @Test
+    void replay_returnsWrittenEventsInOrder() {
+        var wal = open();
+        var first = event("a");
+        var second = event("b");
+        wal.write(first);
+        wal.write(second);
+
+        assertEquals(List.of(first, second), replayAll(wal));
+    }
+
+    @Test
+    void replay_eventWithoutCausedBy_roundTrips() {
+        var wal = open();
+        var event = new TestEvent(EventId.generate(), Instant.now(), null, "system");
+        wal.write(event);
+
+        assertEquals(List.of(event), replayAll(wal));
+    }
+
+    @Test
+    void replayFrom_skipsEventsUpToAndIncludingSequenceNumber() {
+        var wal = open();
+        wal.write(event("a"));
+        var from = wal.write(event("b"));
+        var third = event("c");
+        wal.write(third);
+
+        var events = new ArrayList<DomainEvent>();
+        wal.replayFrom(from, events::add);
+
+        assertEquals(List.of(third), events);
+    }
+
+    @Test
+    void writeBatch_returnsSequenceNumberOfLastEvent() {
+        var wal = open();
+        wal.write(event("a"));
+
+        var last = wal.writeBatch(List.of(event("b"), event("c"), event("d")));
+
+        assertEquals(new SequenceNumber(4), last);
+        assertEquals(4, replayAll(wal).size());
+    }
+
+    @Test
+    void writeBatch_emptyList_throwsIllegalArgumentException() {
+        var wal = open();
+        assertThrows(IllegalArgumentException.class, () -> wal.writeBatch(List.of()));
+    }
+
+    @Test
+    void write_unregisteredEventType_failsOnlyThatWrite() {
+        var wal = open();
+        var unregistered = new OtherEvent(EventId.generate(), Instant.now(), null);
+
+        assertThrows(WalWriteException.class, () -> wal.write(unregistered));
+
+        assertEquals(new SequenceNumber(1), wal.write(event("a")));
+        assertEquals(1, replayAll(wal).size());
+    }
+
+    @Test
+    void write_concurrentWriters_allEventsDurableWithUniqueSequenceNumbers() throws Exception {
+        var wal = open();
+        int threads = 16;
+        int writesPerThread = 50;
+        var sequenceNumbers = Collections.synchronizedList(new ArrayList<SequenceNumber>());
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < writesPerThread; i++) {
+                        sequenceNumbers.add(wal.write(event("x")));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * writesPerThread, new HashSet<>(sequenceNumbers).size());
+        assertEquals(new SequenceNumber(threads * writesPerThread), wal.currentSequence());
+        assertEquals(threads * writesPerThread, replayAll(wal).size());
+    }
+
+    @Test
+    void reopen_continuesFromLastSequenceNumber() {
+        var wal = open();
+        var first = event("a");
+        wal.write(first);
+        closeAll();
+
+        var reopened = open();
+
+        assertEquals(new SequenceNumber(1), reopened.currentSequence());
+        assertEquals(new SequenceNumber(2), reopened.write(event("b")));
+        assertEquals(first, replayAll(reopened).getFirst());
+    }
+
+    @Test
+    void reopen_tornRecordAtEnd_isDiscarded() throws IOException {
+        var wal = open();
+        var first = event("a");
+        wal.write(first);
+        closeAll();
+        rewriteText(textContent() + "{\"seq\":2,\"type\":\"te");
+
+        var reopened = open();
+
+        assertEquals(List.of(first), replayAll(reopened));
+        assertEquals(new SequenceNumber(2), reopened.write(event("b")));
+        assertEquals(2, replayAll(reopened).size());
+    }
+
+    @Test
+    void reopen_incompleteBatchAtEnd_isDiscarded() throws IOException {
+        var wal = open();
+        var first = event("a");
+        wal.write(first);
+        closeAll();
+        // Simulate a crash after the first record of a two-record batch reached the disk
+        var line = textContent();
+        var partialBatch = line.replace("\"seq\":1,", "\"seq\":2,\"more\":true,");
+        rewriteText(line + partialBatch);
+
+        var reopened = open();
+
+        assertEquals(List.of(first), replayAll(reopened));
+        assertEquals(new SequenceNumber(1), reopened.currentSequence());
+    }
+
+    @Test
+    void reopen_corruptRecordInStrictMode_throwsWalReadException() throws IOException {
+        var wal = open();
+        wal.write(event("a"));
+        wal.write(event("b"));
+        closeAll();
+        var lines = textContent().split("\n");
+        rewriteText(lines[0] + "\nnot json\n" + lines[1] + "\n");
+
+        assertThrows(WalReadException.class, this::open);
+    }
+
+    @Test
+    void reopen_corruptRecordInLenientMode_isSkipped() throws IOException {
+        var wal = open();
+        var first = event("a");
+        var second = event("b");
+        wal.write(first);
+        wal.write(second);
+        closeAll();
+        var lines = textContent().split("\n");
+        rewriteText(lines[0] + "\nnot json\n" + lines[1] + "\n");
+
+        var reopened = open(FileWalConfig.CorruptionMode.LENIENT);
+        var third = event("c");
+        reopened.write(third);
+
+        assertEquals(List.of(first, second, third), replayAll(reopened));
+    }
+
+    @Test
+    void reopen_corruptRecordAtEnd_isDiscardedAsTornWrite() throws IOException {
+        var wal = open();
+        var first = event("a");
+        wal.write(first);
+        closeAll();
+        rewriteText(textContent() + "not json\n");
+
+        var reopened = open();
+
+        assertEquals(List.of(first), replayAll(reopened));
+        assertEquals(new SequenceNumber(2), reopened.write(event("b")));
+    }
+
+    @Test
+    void write_moreThanOneSegment_rollsOverToSegmentsNamedByFirstSequenceNumber() throws IOException {
+        var wal = open();
+        var written = new ArrayList<DomainEvent>();
+        for (int i = 0; i < 100; i++) {
+            var event = event("event " + i);
+            written.add(event);
+            wal.write(event);
+        }
+
+        var segments = segmentFiles("ndjson");
+        assertTrue(segments.size() > 2, "expected several segments, got " + segments.size());
+        assertEquals(WalSegment.fileName(1, "ndjson"), segments.getFirst().getFileName().toString());
+        for (var segment : segments) {
+            assertEquals(SEGMENT_SIZE, Files.size(segment));
+        }
+        assertEquals(written, replayAll(wal));
+    }
+
+    @Test
+    void reopen_multipleSegments_continuesFromLastSequenceNumber() {
+        var wal = open();
+        for (int i = 0; i < 100; i++) {
+            wal.write(event("event " + i));
+        }
+        closeAll();
+
+        var reopened = open();
+
+        assertEquals(new SequenceNumber(100), reopened.currentSequence());
+        assertEquals(new SequenceNumber(101), reopened.write(event("b")));
+        assertEquals(101, replayAll(reopened).size());
+    }
+
+    @Test
+    void writeBatch_largerThanSegment_isKeptInOneSegment() throws IOException {
+        var wal = open();
+        wal.write(event("a"));
+        var batch = new ArrayList<DomainEvent>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(event("batch " + i));
+        }
+
+        assertEquals(new SequenceNumber(51), wal.writeBatch(batch));
+
+        var segments = segmentFiles("ndjson");
+        assertEquals(2, segments.size());
+        assertEquals(WalSegment.fileName(2, "ndjson"), segments.getLast().getFileName().toString());
+        assertTrue(Files.size(segments.getLast()) > SEGMENT_SIZE);
+        closeAll();
+        assertEquals(51, replayAll(open()).size());
+    }
+
+    @Test
+    void replayFrom_laterSegment_returnsOnlyFollowingEvents() {
+        var wal = open();
+        var written = new ArrayList<DomainEvent>();
+        for (int i = 0; i < 100; i++) {
+            var event = event("event " + i);
+            written.add(event);
+            wal.write(event);
+        }
+
+        var events = new ArrayList<DomainEvent>();
+        wal.replayFrom(new SequenceNumber(70), events::add);
+
+        assertEquals(written.subList(70, 100), events);
+    }
+
+    @Test
+    void replayFrom_largeSegment_seeksUsingIndex() throws IOException {
+        var wal = open(new FileWalConfig(tempDir, FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT,
+                FileWalConfig.DEFAULT_MAX_GROUP_SIZE, 1024 * 1024));
+        var written = new ArrayList<DomainEvent>();
+        for (int i = 0; i < 500; i++) {
+            var event = event("event " + i);
+            written.add(event);
+            wal.write(event);
+        }
+        var segment = segmentFiles("bin").getFirst();
+        assertTrue(WalSegmentIndex.find(segment, 400, Long.MAX_VALUE) > 0);
+
+        for (var from : List.of(1, 250, 400, 499, 500)) {
+            var events = new ArrayList<DomainEvent>();
+            wal.replayFrom(new SequenceNumber(from), events::add);
+            assertEquals(written.subList(from, 500), events, "from " + from);
+        }
+    }
+
+    @Test
+    void replayFrom_corruptIndex_fallsBackToScanningSegment() throws IOException {
+        var wal = open(new FileWalConfig(tempDir, FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT,
+                FileWalConfig.DEFAULT_MAX_GROUP_SIZE, 1024 * 1024));
+        var written = new ArrayList<DomainEvent>();
+        for (int i = 0; i < 500; i++) {
+            var event = event("event " + i);
+            written.add(event);
+            wal.write(event);
+        }
+        var indexFile = WalSegmentIndex.pathFor(segmentFiles("bin").getFirst());
+        var garbage = ByteBuffer.allocate(16).putLong(0, 2).putLong(8, 12345).array();
+        Files.write(indexFile, garbage);
+
+        var events = new ArrayList<DomainEvent>();
+        wal.replayFrom(new SequenceNumber(400), events::add);
+
+        assertEquals(written.subList(400, 500), events);
+    }
+
+    @Test
+    void truncate_removesSegmentsOnlyContainingEarlierEvents() throws IOException {
+        var wal = open();
+        var written = new ArrayList<DomainEvent>();
+        for (int i = 0; i < 100; i++) {
+            var event = event("event " + i);
+            written.add(event);
+            wal.write(event);
+        }
+        var segmentsBefore = segmentFiles("ndjson");
+        var upTo = new SequenceNumber(70);
+
+        wal.truncate(upTo);
+
+        var segmentsAfter = segmentFiles("ndjson");
+        assertTrue(segmentsAfter.size() < segmentsBefore.size());
+        for (var removed : segmentsBefore.subList(0, segmentsBefore.size() - segmentsAfter.size())) {
+            assertFalse(Files.exists(WalSegmentIndex.pathFor(removed)));
+        }
+        var remaining = replayAll(wal);
+        var firstRemaining = written.indexOf(remaining.getFirst());
+        assertTrue(firstRemaining > 0 && firstRemaining <= 70, "first remaining event " + firstRemaining);
+        assertEquals(written.subList(firstRemaining, 100), remaining);
+        var events = new ArrayList<DomainEvent>();
+        wal.replayFrom(upTo, events::add);
+        assertEquals(written.subList(70, 100), events);
+        assertEquals(new SequenceNumber(100), wal.currentSequence());
+        assertEquals(new SequenceNumber(101), wal.write(event("d")));
+    }
+
+    @Test
+    void truncate_allEvents_keepsSequenceNumberAcrossReopen() {
+        var wal = open();
+        wal.write(event("a"));
+        var upTo = wal.write(event("b"));
+        wal.truncate(upTo);
+        closeAll();
+
+        var reopened = open();
+        var events = new ArrayList<DomainEvent>();
+        reopened.replayFrom(upTo, events::add);
+
+        assertEquals(upTo, reopened.currentSequence());
+        assertEquals(List.of(), events);
+        assertEquals(new SequenceNumber(3), reopened.write(event("c")));
+    }
+
+    @Test
+    void binaryFormat_reopen_replaysBatchesAndContinuesSequence() throws IOException {
+        var wal = open(FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT);
+        var first = event("a");
+        var batch = List.<DomainEvent>of(event("b"), event("c"));
+        wal.write(first);
+        wal.writeBatch(batch);
+        closeAll();
+
+        var reopened = open(FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT);
+
+        assertEquals(List.of(first, batch.get(0), batch.get(1)), replayAll(reopened));
+        assertEquals(new SequenceNumber(4), reopened.write(event("d")));
+        assertEquals(1, segmentFiles("bin").size());
+    }
+
+    @Test
+    void binaryFormat_tornRecordAtEnd_isDiscarded() throws IOException {
+        var wal = open(FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT);
+        var first = event("a");
+        wal.write(first);
+        wal.write(event("b"));
+        closeAll();
+        // Simulate a crash while the second record was being written
+        var path = segmentFiles("bin").getLast();
+        var content = Files.readAllBytes(path);
+        var end = content.length;
+        while (content[end - 1] == 0) {
+            end--;
+        }
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[3]), end - 3);
+        }
+
+        var reopened = open(FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT);
+
+        assertEquals(List.of(first), replayAll(reopened));
+        assertEquals(new SequenceNumber(2), reopened.write(event("c")));
+    }
+
+    @Test
+    void write_afterClose_throwsWalWriteException() {
+        var wal = open();
+        wal.close();
+
+        assertThrows(WalWriteException.class, () -> wal.write(event("a")));
+    }
+
+    record TestEvent(EventId eventId, Instant timestamp, @Nullable CommandId causedBy,
+                     String payload) implements DomainEvent {
+    }
+
+    record OtherEvent(EventId eventId, Instant timestamp, @Nullable CommandId causedBy) implements DomainEvent {
+    }
+}
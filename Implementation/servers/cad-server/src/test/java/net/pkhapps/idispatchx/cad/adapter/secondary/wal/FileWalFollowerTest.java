@@ -0,0 +1,302 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileWalFollowerTest {
+
+    private static final Duration AGE = Duration.ofSeconds(5);
+
+    @TempDir
+    Path tempDir;
+
+    private final List<AutoCloseable> opened = new ArrayList<>();
+    private final List<DomainEvent> applied = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (var closeable : opened.reversed()) {
+            closeable.close();
+        }
+    }
+
+    private FileWalConfig config() {
+        return config(FileWalConfig.CorruptionMode.STRICT);
+    }
+
+    private FileWalConfig config(FileWalConfig.CorruptionMode corruptionMode) {
+        return new FileWalConfig(tempDir, FileWalConfig.Format.TEXT, corruptionMode,
+                FileWalConfig.DEFAULT_MAX_GROUP_SIZE, FileWalConfig.MIN_SEGMENT_SIZE);
+    }
+
+    private FileWalAdapter leader() {
+        var leader = new FileWalAdapter(config(), FileWalAdapterTest.EVENT_TYPES);
+        opened.add(leader);
+        return leader;
+    }
+
+    private FileWalFollower follower(@Nullable SequenceNumber from) {
+        return follower(config(), from);
+    }
+
+    private FileWalFollower follower(FileWalConfig config, @Nullable SequenceNumber from) {
+        var eventTime = FileWalAdapterTest.event("clock").timestamp();
+        var follower = new FileWalFollower(config, FileWalAdapterTest.EVENT_TYPES, () -> eventTime.plus(AGE),
+                from, applied::add);
+        opened.add(follower);
+        return follower;
+    }
+
+    private List<DomainEvent> write(FileWalAdapter leader, int count) {
+        var written = new ArrayList<DomainEvent>();
+        for (int i = 0; i < count; i++) {
+            var event = FileWalAdapterTest.event("event " + i);
+            written.add(event);
+            leader.write(event);
+        }
+        return written;
+    }
+
+    private Path lastSegment() throws IOException {
+        try (var files = Files.list(tempDir)) {
+            return files.filter(file -> WalSegment.parseFirstSequence(file.getFileName().toString(), "ndjson") > 0)
+                    .sorted()
+                    .toList()
+                    .getLast();
+        }
+    }
+
+    /**
+     * Returns the written part of the last segment, without the zero padding.
+     */
+    private String textContent() throws IOException {
+        var content = Files.readString(lastSegment(), StandardCharsets.UTF_8);
+        var end = content.indexOf('\0');
+        return end < 0 ? content : content.substring(0, end);
+    }
+
+    /**
+     * Writes text right after the written part of the last segment, like a leader in the middle of a write.
+     */
+    private void appendText(String text) throws IOException {
+        var offset = textContent().getBytes(StandardCharsets.UTF_8).length;
+        try (var channel = FileChannel.open(lastSegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), offset);
+        }
+    }
+
+    /**
+     * Publishes a sync of the leader, for records written with {@link #appendText(String)}.
+     */
+    private void markSynced(long sequence) throws IOException {
+        try (var marker = WalSyncMarker.open(tempDir)) {
+            marker.write(sequence);
+        }
+    }
+
+    @Test
+    void catchUp_appliesNewEventsIncrementally() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        var written = write(leader, 3);
+
+        assertEquals(3, follower.catchUp());
+        assertEquals(0, follower.catchUp());
+        written.addAll(write(leader, 2));
+        assertEquals(2, follower.catchUp());
+
+        assertEquals(written, applied);
+        assertEquals(5, follower.appliedSequence());
+        assertEquals(new FileWalFollower.Lag(0, Duration.ZERO), follower.lag());
+    }
+
+    @Test
+    void catchUp_acrossSegments_followsRollOvers() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        var written = write(leader, 100);
+        assertEquals(100, follower.catchUp());
+
+        written.addAll(write(leader, 100));
+        assertEquals(100, follower.catchUp());
+
+        assertEquals(written, applied);
+    }
+
+    @Test
+    void catchUp_fromSequenceNumber_skipsEarlierEvents() throws IOException {
+        var written = write(leader(), 100);
+        var follower = follower(new SequenceNumber(70));
+
+        assertEquals(30, follower.catchUp());
+
+        assertEquals(written.subList(70, 100), applied);
+    }
+
+    @Test
+    void catchUp_tornRecordAtEnd_waitsForTheRest() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        var written = write(leader, 1);
+        leader.close();
+        var line = textContent();
+        var next = line.replace("\"seq\":1,", "\"seq\":2,");
+        var half = next.length() / 2;
+        appendText(next.substring(0, half));
+
+        assertEquals(1, follower.catchUp());
+        appendText(next.substring(half));
+        markSynced(2);
+        assertEquals(1, follower.catchUp());
+
+        assertEquals(List.of(written.getFirst(), written.getFirst()), applied);
+    }
+
+    @Test
+    void catchUp_incompleteBatchAtEnd_isNotAppliedAndCountsAsLag() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        write(leader, 1);
+        leader.close();
+        var line = textContent();
+        appendText(line.replace("\"seq\":1,", "\"seq\":2,\"more\":true,"));
+
+        assertEquals(1, follower.catchUp());
+        assertEquals(new FileWalFollower.Lag(1, AGE), follower.lag());
+
+        appendText(line.replace("\"seq\":1,", "\"seq\":3,"));
+        markSynced(3);
+        assertEquals(2, follower.catchUp());
+        assertEquals(3, follower.appliedSequence());
+        assertEquals(new FileWalFollower.Lag(0, Duration.ZERO), follower.lag());
+    }
+
+    @Test
+    void catchUp_unsyncedBatch_isNotAppliedUntilSynced() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        write(leader, 1);
+        leader.close();
+        appendText(textContent().replace("\"seq\":1,", "\"seq\":2,"));
+
+        assertEquals(1, follower.catchUp());
+        assertEquals(1, follower.appliedSequence());
+        assertEquals(new FileWalFollower.Lag(1, AGE), follower.lag());
+
+        markSynced(2);
+        assertEquals(1, follower.catchUp());
+        assertEquals(2, follower.appliedSequence());
+    }
+
+    @Test
+    void catchUp_eventsTruncatedBeforeApplied_throwsWalReadException() throws IOException {
+        var leader = leader();
+        write(leader, 100);
+        leader.truncate(new SequenceNumber(70));
+        var follower = follower(null);
+
+        assertThrows(WalReadException.class, follower::catchUp);
+    }
+
+    @Test
+    void catchUp_segmentTruncatedWhileFollowing_continuesWithNextSegment() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        var written = write(leader, 100);
+        follower.catchUp();
+        written.addAll(write(leader, 100));
+        leader.truncate(new SequenceNumber(100));
+
+        assertEquals(100, follower.catchUp());
+
+        assertEquals(written, applied);
+    }
+
+    @Test
+    void catchUp_unappliedEventsTruncatedWhileFollowing_throwsWalReadExceptionEvenInLenientMode()
+            throws IOException {
+        var leader = leader();
+        var follower = follower(config(FileWalConfig.CorruptionMode.LENIENT), null);
+        write(leader, 5);
+        follower.catchUp();
+        write(leader, 95);
+        leader.truncate(new SequenceNumber(70));
+
+        var exception = assertThrows(WalReadException.class, follower::catchUp);
+        assertTrue(exception.getMessage().contains("truncated past sequence number 5"), exception.getMessage());
+    }
+
+    @Test
+    void takeOver_replaysOnlyEventsNotAppliedYet() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        var written = write(leader, 10);
+        follower.catchUp();
+        written.addAll(write(leader, 5));
+        leader.close();
+        applied.clear();
+
+        var wal = follower.takeOver();
+        opened.add(wal);
+
+        assertEquals(written.subList(10, 15), applied);
+        assertEquals(new SequenceNumber(16), wal.write(FileWalAdapterTest.event("new leader")));
+    }
+
+    @Test
+    void takeOver_unsyncedEventsLostByLeader_continuesAfterLastSyncedEvent() throws IOException {
+        var leader = leader();
+        var follower = follower(null);
+        var written = write(leader, 1);
+        leader.close();
+        var line = textContent();
+        appendText(line.replace("\"seq\":1,", "\"seq\":2,"));
+        follower.catchUp();
+        // Simulate a crash of the leader before the second record was synced
+        try (var channel = FileChannel.open(lastSegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(line.length()), line.length());
+        }
+
+        var wal = follower.takeOver();
+        opened.add(wal);
+
+        assertEquals(written, applied);
+        assertEquals(new SequenceNumber(2), wal.write(FileWalAdapterTest.event("new leader")));
+    }
+
+    @Test
+    void start_followsWritesInBackground() throws InterruptedException {
+        var leader = leader();
+        var follower = follower(null);
+        follower.start();
+
+        var written = write(leader, 50);
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (applied.size() < written.size() && System.nanoTime() < deadline) {
+            Thread.sleep(FileWalFollower.MIN_POLL_INTERVAL_MILLIS);
+        }
+        assertEquals(written, applied);
+        follower.close();
+        assertEquals(new FileWalFollower.Lag(0, Duration.ZERO), follower.lag());
+    }
+}
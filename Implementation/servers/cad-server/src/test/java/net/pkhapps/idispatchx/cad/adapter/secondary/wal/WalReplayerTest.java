@@ -0,0 +1,118 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.BinaryFrames;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalReadException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalReplayerTest {
+
+    private static final int EVENT_COUNT = 300;
+
+    @TempDir
+    Path tempDir;
+
+    private final BinaryWalRecordCodec codec = new BinaryWalRecordCodec(FileWalAdapterTest.EVENT_TYPES);
+
+    private FileWalConfig config() {
+        return new FileWalConfig(tempDir, FileWalConfig.Format.BINARY, FileWalConfig.CorruptionMode.STRICT,
+                FileWalConfig.DEFAULT_MAX_GROUP_SIZE, FileWalConfig.MIN_SEGMENT_SIZE);
+    }
+
+    private List<DomainEvent> writeEvents() {
+        var written = new ArrayList<DomainEvent>();
+        try (var wal = new FileWalAdapter(config(), FileWalAdapterTest.EVENT_TYPES)) {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                var event = FileWalAdapterTest.event("event " + i);
+                written.add(event);
+                wal.write(event);
+            }
+        }
+        return written;
+    }
+
+    private List<WalSegment> segments() throws IOException {
+        try (var log = WalLog.open(config(), codec)) {
+            return log.segments();
+        }
+    }
+
+    @Test
+    void replay_smallChunksAndManyDecoders_deliversEventsInOrderOnCallingThread() throws IOException {
+        var written = writeEvents();
+        var replayer = new WalReplayer(codec, FileWalConfig.CorruptionMode.STRICT, 4, 100);
+        var events = new ArrayList<DomainEvent>();
+        var caller = Thread.currentThread();
+
+        replayer.replay(segments(), 0, event -> {
+            assertSame(caller, Thread.currentThread());
+            events.add(event);
+        });
+
+        assertEquals(written, events);
+    }
+
+    @Test
+    void replay_afterSequenceNumber_skipsEarlierEvents() throws IOException {
+        var written = writeEvents();
+        var replayer = new WalReplayer(codec, FileWalConfig.CorruptionMode.STRICT, 2, 1000);
+        var events = new ArrayList<DomainEvent>();
+
+        replayer.replay(segments(), 123, events::add);
+
+        assertEquals(written.subList(123, EVENT_COUNT), events);
+    }
+
+    @Test
+    void replay_consumerThrows_stopsPipelineAndRethrows() throws IOException {
+        writeEvents();
+        var replayer = new WalReplayer(codec, FileWalConfig.CorruptionMode.STRICT, 2, 100);
+        var failure = new IllegalStateException("consumer failed");
+
+        var thrown = assertThrows(IllegalStateException.class, () -> replayer.replay(segments(), 0, event -> {
+            throw failure;
+        }));
+
+        assertSame(failure, thrown);
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().equals("wal-replay-reader")));
+    }
+
+    @Test
+    void replay_corruptRecord_failsInStrictModeAndIsSkippedInLenientMode() throws IOException {
+        var written = writeEvents();
+        var segments = segments();
+        // Flip a bit in the last byte of the first record of the second segment
+        var corrupted = segments.get(1);
+        try (var channel = FileChannel.open(corrupted.path(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(BinaryFrames.HEADER_SIZE);
+            channel.read(header, 0);
+            var lastByte = BinaryFrames.HEADER_SIZE + header.getInt(0) - 1;
+            var value = ByteBuffer.allocate(1);
+            channel.read(value, lastByte);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (value.get(0) ^ 0x01)}), lastByte);
+        }
+
+        var strict = new WalReplayer(codec, FileWalConfig.CorruptionMode.STRICT, 2, 100);
+        assertThrows(WalReadException.class, () -> strict.replay(segments, 0, event -> {
+        }));
+
+        var lenient = new WalReplayer(codec, FileWalConfig.CorruptionMode.LENIENT, 2, 100);
+        var events = new ArrayList<DomainEvent>();
+        lenient.replay(segments, 0, events::add);
+        var expected = new ArrayList<>(written);
+        expected.remove((int) corrupted.firstSequence() - 1);
+        assertEquals(expected, events);
+    }
+}
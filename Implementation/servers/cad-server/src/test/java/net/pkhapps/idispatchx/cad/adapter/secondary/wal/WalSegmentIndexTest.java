@@ -0,0 +1,74 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalSegmentIndexTest {
+
+    private static final long INTERVAL = WalSegmentIndex.INTERVAL;
+
+    @TempDir
+    Path tempDir;
+
+    private Path segment() {
+        return tempDir.resolve(WalSegment.fileName(1, "bin"));
+    }
+
+    private void writeIndex(long... sequenceOffsetPairs) throws IOException {
+        try (var index = WalSegmentIndex.create(segment())) {
+            for (int i = 0; i < sequenceOffsetPairs.length; i += 2) {
+                index.add(sequenceOffsetPairs[i], sequenceOffsetPairs[i + 1]);
+            }
+            index.flush();
+        }
+    }
+
+    @Test
+    void add_entriesCloserThanInterval_areSkipped() throws IOException {
+        writeIndex(10, 100, 20, INTERVAL, 30, INTERVAL + 100, 40, 2 * INTERVAL);
+
+        assertEquals(2 * 2 * Long.BYTES, Files.size(WalSegmentIndex.pathFor(segment())));
+    }
+
+    @Test
+    void find_returnsOffsetOfLastEntryNotPastStartingPoint() throws IOException {
+        writeIndex(20, INTERVAL, 40, 2 * INTERVAL, 60, 3 * INTERVAL);
+
+        assertEquals(0, WalSegmentIndex.find(segment(), 10, Long.MAX_VALUE));
+        assertEquals(INTERVAL, WalSegmentIndex.find(segment(), 19, Long.MAX_VALUE));
+        assertEquals(INTERVAL, WalSegmentIndex.find(segment(), 38, Long.MAX_VALUE));
+        assertEquals(2 * INTERVAL, WalSegmentIndex.find(segment(), 39, Long.MAX_VALUE));
+        assertEquals(3 * INTERVAL, WalSegmentIndex.find(segment(), 1000, Long.MAX_VALUE));
+    }
+
+    @Test
+    void find_ignoresEntriesBeyondReadLimit() throws IOException {
+        writeIndex(20, INTERVAL, 40, 2 * INTERVAL, 60, 3 * INTERVAL);
+
+        assertEquals(2 * INTERVAL, WalSegmentIndex.find(segment(), 1000, 3 * INTERVAL));
+    }
+
+    @Test
+    void find_missingIndex_returnsZero() {
+        assertEquals(0, WalSegmentIndex.find(segment(), 1000, Long.MAX_VALUE));
+    }
+
+    @Test
+    void open_discardsEntriesBeyondValidSize() throws IOException {
+        writeIndex(20, INTERVAL, 40, 2 * INTERVAL, 60, 3 * INTERVAL);
+
+        try (var index = WalSegmentIndex.open(segment(), 2 * INTERVAL + 1)) {
+            // The next entry is measured from the last kept entry
+            index.add(50, 3 * INTERVAL - 1);
+            index.flush();
+        }
+
+        assertEquals(2 * INTERVAL, WalSegmentIndex.find(segment(), 1000, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,40 @@
+package net.pkhapps.idispatchx.cad.adapter.secondary.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalSyncMarkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void read_returnsLastWrittenSequence() throws IOException {
+        try (var marker = WalSyncMarker.open(tempDir)) {
+            marker.write(5);
+            marker.write(42);
+        }
+
+        assertEquals(42, WalSyncMarker.read(tempDir));
+    }
+
+    @Test
+    void read_missingMarker_returnsMinusOne() {
+        assertEquals(-1, WalSyncMarker.read(tempDir));
+    }
+
+    @Test
+    void read_partiallyWrittenMarker_returnsMinusOne() throws IOException {
+        var content = ByteBuffer.allocate(2 * Long.BYTES).putLong(42).putLong(~41L).array();
+        Files.write(tempDir.resolve(WalSyncMarker.FILE_NAME), content);
+
+        assertEquals(-1, WalSyncMarker.read(tempDir));
+    }
+}
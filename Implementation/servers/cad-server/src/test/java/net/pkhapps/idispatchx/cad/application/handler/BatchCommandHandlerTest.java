@@ -0,0 +1,136 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import net.pkhapps.idispatchx.cad.application.handler.CommandHandlerTest.RecordingWalPort;
+import net.pkhapps.idispatchx.cad.application.handler.CommandHandlerTest.TestEvent;
+import net.pkhapps.idispatchx.cad.domain.command.Command;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalWriteException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCommandHandlerTest {
+
+    private EntityLockManager lockManager;
+    private BatchCountingWalPort walPort;
+    private List<String> dispatched;
+
+    @BeforeEach
+    void setUp() {
+        lockManager = new EntityLockManager();
+        walPort = new BatchCountingWalPort();
+        dispatched = new ArrayList<>();
+    }
+
+    @Test
+    void handle_writesAllEventsInOneBatchBeforeApplyingMutations() {
+        var handler = new DispatchHandler(walPort, lockManager, dispatched);
+        var units = List.of("RVS101", "RVS201", "RVS301");
+
+        var result = handler.handle(new DispatchCommand(CommandId.generate(), "incident-1", units));
+
+        assertEquals(1, walPort.batches);
+        assertEquals(4, walPort.writtenEvents.size());
+        assertEquals(List.of("RVS101", "RVS201", "RVS301", "incident-1"), dispatched);
+        assertEquals(4, result);
+    }
+
+    @Test
+    void handle_doesNotApplyAnyMutationIfWalWriteFails() {
+        walPort.failOnWrite = true;
+        var handler = new DispatchHandler(walPort, lockManager, dispatched);
+
+        assertThrows(WalWriteException.class, () -> handler.handle(
+                new DispatchCommand(CommandId.generate(), "incident-1", List.of("RVS101", "RVS201"))));
+
+        assertTrue(dispatched.isEmpty());
+    }
+
+    @Test
+    void handle_noPendingMutations_throwsWithoutWritingToWal() {
+        var handler = new DispatchHandler(walPort, lockManager, dispatched) {
+            @Override
+            protected List<PendingMutation<TestEvent>> prepareExecution(DispatchCommand command) {
+                return List.of();
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> handler.handle(
+                new DispatchCommand(CommandId.generate(), "incident-1", List.of())));
+
+        assertEquals(0, walPort.batches);
+    }
+
+    @Test
+    void handleAsync_completesWithResultAfterMutationsAreApplied() throws Exception {
+        var handler = new DispatchHandler(walPort, lockManager, dispatched);
+
+        var result = handler.handleAsync(new DispatchCommand(CommandId.generate(), "incident-1", List.of("RVS101")));
+
+        assertEquals(2, result.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("RVS101", "incident-1"), dispatched);
+    }
+
+    // --- Test doubles ---
+
+    record DispatchCommand(CommandId commandId, String incidentId, List<String> units) implements Command {
+    }
+
+    static class BatchCountingWalPort extends RecordingWalPort {
+        int batches = 0;
+
+        @Override
+        public SequenceNumber writeBatch(List<? extends DomainEvent> events) {
+            var sequenceNumber = super.writeBatch(events);
+            batches++;
+            return sequenceNumber;
+        }
+    }
+
+    static class DispatchHandler extends BatchCommandHandler<DispatchCommand, Integer> {
+        private final List<String> dispatched;
+
+        DispatchHandler(WalPort walPort, EntityLockManager lockManager, List<String> dispatched) {
+            super(walPort, lockManager);
+            this.dispatched = dispatched;
+        }
+
+        @Override
+        protected LockScope determineLockScope(DispatchCommand command) {
+            var keys = new ArrayList<LockKey>();
+            keys.add(new LockKey("incident", command.incidentId()));
+            command.units().forEach(unit -> keys.add(new LockKey("unit", unit)));
+            return new LockScope(keys);
+        }
+
+        @Override
+        protected List<PendingMutation<TestEvent>> prepareExecution(DispatchCommand command) {
+            var mutations = new ArrayList<PendingMutation<TestEvent>>();
+            for (var unit : command.units()) {
+                mutations.add(mutation(command, unit));
+            }
+            mutations.add(mutation(command, command.incidentId()));
+            return mutations;
+        }
+
+        private PendingMutation<TestEvent> mutation(DispatchCommand command, String targetId) {
+            var event = new TestEvent(EventId.generate(), Instant.now(), command.commandId(), targetId);
+            return new PendingMutation<>(event, () -> dispatched.add(targetId));
+        }
+
+        @Override
+        protected Integer buildResult(DispatchCommand command, List<DomainEvent> events) {
+            return events.size();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package net.pkhapps.idispatchx.cad.application.handler;
 
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
 import net.pkhapps.idispatchx.cad.domain.command.Command;
 import net.pkhapps.idispatchx.cad.domain.command.CommandId;
 import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
@@ -13,7 +14,9 @@ import org.junit.jupiter.api.Test;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -49,6 +52,32 @@ class CommandHandlerTest {
         assertInstanceOf(TestEvent.class, walPort.writtenEvents.getFirst());
     }
 
+    @Test
+    void handle_partitioned_runsOnPartitionThreadAndRethrowsFailures() throws Exception {
+        try (var partitions = new PartitionedExecutor(4)) {
+            var threads = new ArrayList<String>();
+            var handler = new TestCommandHandler(new RecordingWalPort() {
+                @Override
+                public SequenceNumber write(DomainEvent event) {
+                    threads.add(Thread.currentThread().getName());
+                    return super.write(event);
+                }
+            }, lockManager, mutationApplied, partitions);
+
+            assertEquals("test-123", handler.handle(new TestCommand(CommandId.generate(), "test-123")));
+            assertEquals("test-456", handler.handleAsync(new TestCommand(CommandId.generate(), "test-456"))
+                    .get(5, TimeUnit.SECONDS));
+
+            assertTrue(mutationApplied.get());
+            assertEquals(2, threads.size());
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("command-partition-")), threads.toString());
+
+            var failing = new TestCommandHandler(walPort, lockManager, new AtomicBoolean(), partitions);
+            walPort.failOnWrite = true;
+            assertThrows(WalWriteException.class, () -> failing.handle(new TestCommand(CommandId.generate(), "x")));
+        }
+    }
+
     @Test
     void handle_doesNotApplyMutationIfWalWriteFails() {
         walPort.failOnWrite = true;
@@ -127,6 +156,92 @@ class CommandHandlerTest {
         assertEquals(42, stateValue.get());
     }
 
+    @Test
+    void handle_recordsPhaseLatencies() {
+        var metricsRegistry = new MetricsRegistry();
+        var handler = new StateModifyingCommandHandler(new SlowWalPort(20), lockManager, stateValue,
+                metricsRegistry);
+
+        handler.handle(new TestCommand(CommandId.generate(), "test-123"));
+
+        var snapshot = metricsRegistry.snapshot();
+        assertEquals(1, snapshot.get("command.lock-wait").count());
+        assertEquals(1, snapshot.get("command.prepare").count());
+        assertTrue(snapshot.get("command.wal-write").max() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(snapshot.get("command.total").max() >= snapshot.get("command.wal-write").max());
+    }
+
+    @Test
+    void handleAsync_completesWithResultAfterMutationIsApplied() throws Exception {
+        var handler = new TestCommandHandler(walPort, lockManager, mutationApplied);
+
+        var result = handler.handleAsync(new TestCommand(CommandId.generate(), "test-123"));
+
+        assertEquals("test-123", result.get(5, TimeUnit.SECONDS));
+        assertTrue(mutationApplied.get());
+        assertEquals(1, walPort.writtenEvents.size());
+    }
+
+    @Test
+    void handleAsync_walWriteFails_completesExceptionallyWithoutApplyingMutation() {
+        walPort.failOnWrite = true;
+        var handler = new TestCommandHandler(walPort, lockManager, mutationApplied);
+
+        var result = handler.handleAsync(new TestCommand(CommandId.generate(), "test-123"));
+
+        var thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WalWriteException.class, thrown.getCause());
+        assertFalse(mutationApplied.get());
+    }
+
+    @Test
+    void handleAsync_differentAggregates_areInFlightInTheSameWalWindow() throws Exception {
+        var gatedWalPort = new GatedWalPort();
+        var handler = new StateModifyingCommandHandler(gatedWalPort, lockManager, stateValue);
+
+        var results = new ArrayList<CompletableFuture<String>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(handler.handleAsync(new TestCommand(CommandId.generate(), "target-" + i)));
+        }
+
+        assertTrue(gatedWalPort.awaitWaiting(8), "all commands should be waiting for the WAL");
+        assertEquals(0, stateValue.get());
+        assertTrue(results.stream().noneMatch(CompletableFuture::isDone));
+        gatedWalPort.open();
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(42, stateValue.get());
+        assertEquals(8, gatedWalPort.writtenEvents.size());
+    }
+
+    @Test
+    void handleAsync_sameAggregate_waitsForLockUntilPreviousCommandIsApplied() throws Exception {
+        var gatedWalPort = new GatedWalPort();
+        var handler = new StateModifyingCommandHandler(gatedWalPort, lockManager, stateValue);
+
+        var first = handler.handleAsync(new TestCommand(CommandId.generate(), "same-id"));
+        var second = handler.handleAsync(new TestCommand(CommandId.generate(), "same-id"));
+
+        assertTrue(gatedWalPort.awaitWaiting(1));
+        Thread.sleep(50);
+        assertEquals(1, gatedWalPort.waiting.get(), "second command should be waiting for the lock");
+        gatedWalPort.open();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, gatedWalPort.writtenEvents.size());
+    }
+
+    @Test
+    void handle_notifiesMutationListenersAfterWalWriteBeforeMutation() {
+        var notifications = new ArrayList<String>();
+        lockManager.addMutationListener((scope, sequenceNumber) -> notifications.add(
+                scope.keys().getFirst().id() + "@" + sequenceNumber.value() + ", applied=" + mutationApplied.get()));
+        var handler = new TestCommandHandler(walPort, lockManager, mutationApplied);
+
+        handler.handle(new TestCommand(CommandId.generate(), "test-123"));
+
+        assertEquals(List.of("test-123@1, applied=false"), notifications);
+    }
+
     // --- Test doubles ---
 
     record TestCommand(CommandId commandId, String targetId) implements Command {
@@ -182,6 +297,44 @@ class CommandHandlerTest {
         public SequenceNumber currentSequence() {
             return sequenceCounter == 0 ? SequenceNumber.start() : new SequenceNumber(sequenceCounter);
         }
+
+        @Override
+        public long bytesWritten() {
+            return 0;
+        }
+    }
+
+    /**
+     * Holds all writes until {@link #open()} is called, like a WAL waiting for a slow sync.
+     */
+    static class GatedWalPort extends RecordingWalPort {
+        final AtomicInteger waiting = new AtomicInteger();
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public SequenceNumber write(DomainEvent event) {
+            waiting.incrementAndGet();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                return super.write(event);
+            }
+        }
+
+        boolean awaitWaiting(int count) throws InterruptedException {
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (waiting.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            return waiting.get() >= count;
+        }
+
+        void open() {
+            gate.countDown();
+        }
     }
 
     static class SlowWalPort extends RecordingWalPort {
@@ -210,6 +363,12 @@ class CommandHandlerTest {
             this.mutationApplied = mutationApplied;
         }
 
+        TestCommandHandler(WalPort walPort, EntityLockManager lockManager, AtomicBoolean mutationApplied,
+                           PartitionedExecutor partitions) {
+            super(walPort, lockManager, new MetricsRegistry(), partitions);
+            this.mutationApplied = mutationApplied;
+        }
+
         @Override
         protected LockScope determineLockScope(TestCommand command) {
             return LockScope.of("test", command.targetId());
@@ -295,7 +454,12 @@ class CommandHandlerTest {
         private final AtomicInteger stateValue;
 
         StateModifyingCommandHandler(WalPort walPort, EntityLockManager lockManager, AtomicInteger stateValue) {
-            super(walPort, lockManager);
+            this(walPort, lockManager, stateValue, new MetricsRegistry());
+        }
+
+        StateModifyingCommandHandler(WalPort walPort, EntityLockManager lockManager, AtomicInteger stateValue,
+                                     MetricsRegistry metricsRegistry) {
+            super(walPort, lockManager, metricsRegistry);
             this.stateValue = stateValue;
         }
 
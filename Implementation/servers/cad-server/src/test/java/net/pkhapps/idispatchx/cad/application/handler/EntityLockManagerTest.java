@@ -1,8 +1,10 @@
 package net.pkhapps.idispatchx.cad.application.handler;
 
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -10,7 +12,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -66,9 +70,11 @@ class EntityLockManagerTest {
         var scope = LockScope.of("incident", "123");
         var executionOrder = Collections.synchronizedList(new ArrayList<String>());
         var latch = new CountDownLatch(2);
+        var thread1Locked = new CountDownLatch(1);
 
         var thread1 = new Thread(() -> {
             try (var handle = lockManager.acquire(scope)) {
+                thread1Locked.countDown();
                 executionOrder.add("thread1-start");
                 Thread.sleep(50); // Hold lock briefly
                 executionOrder.add("thread1-end");
@@ -81,7 +87,7 @@ class EntityLockManagerTest {
 
         var thread2 = new Thread(() -> {
             try {
-                Thread.sleep(10); // Ensure thread1 gets lock first
+                thread1Locked.await(); // Ensure thread1 gets lock first
                 try (var handle = lockManager.acquire(scope)) {
                     executionOrder.add("thread2-start");
                     executionOrder.add("thread2-end");
@@ -178,4 +184,278 @@ class EntityLockManagerTest {
             executor.shutdownNow();
         }
     }
+
+    @Test
+    void awaitCurrentHolders_waitsForHandlesAcquiredBeforeTheCall() throws Exception {
+        var acquired = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = new Thread(() -> {
+            try (var handle = lockManager.acquire(LockScope.of("incident", "123"))) {
+                acquired.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+
+        var waiter = new Thread(() -> {
+            try {
+                lockManager.awaitCurrentHolders();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiter.join(100);
+        assertTrue(waiter.isAlive(), "should wait for the handle acquired before the call");
+
+        // Handles acquired after the call are not waited for
+        try (var handle = lockManager.acquire(LockScope.of("incident", "456"))) {
+            release.countDown();
+            waiter.join(5000);
+            assertFalse(waiter.isAlive());
+        }
+    }
+
+    @Test
+    void awaitCurrentHolders_noHolders_returnsImmediately() throws Exception {
+        try (var handle = lockManager.acquire(LockScope.of("incident", "123"))) {
+            assertNotNull(handle);
+        }
+
+        lockManager.awaitCurrentHolders();
+        lockManager.awaitCurrentHolders();
+    }
+
+    @Test
+    void awaitCurrentHolders_afterInterruptedCall_stillWaitsForEarlierHandles() throws Exception {
+        var acquired = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = new Thread(() -> {
+            try (var handle = lockManager.acquire(LockScope.of("incident", "123"))) {
+                acquired.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+
+        var interrupted = new Thread(() -> assertThrows(InterruptedException.class,
+                lockManager::awaitCurrentHolders));
+        interrupted.start();
+        interrupted.join(100);
+        interrupted.interrupt();
+        interrupted.join(5000);
+        assertFalse(interrupted.isAlive());
+
+        var waiter = new Thread(() -> {
+            try {
+                lockManager.awaitCurrentHolders();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiter.join(100);
+        assertTrue(waiter.isAlive(), "should still wait for the handle acquired before the interrupted call");
+
+        release.countDown();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    void awaitCurrentHolders_underConcurrentCommands_returnsOnlyAfterEveryEarlierCommandFinished()
+            throws Exception {
+        var threads = 8;
+        var started = new AtomicLong();
+        var finished = new AtomicLong();
+        var stop = new AtomicBoolean();
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                var id = String.valueOf(t);
+                executor.submit(() -> {
+                    while (!stop.get()) {
+                        try (var handle = lockManager.acquire(LockScope.of("incident", id))) {
+                            started.incrementAndGet();
+                            Thread.onSpinWait();
+                            finished.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < 2_000; i++) {
+                var startedBefore = started.get();
+                lockManager.awaitCurrentHolders();
+                assertTrue(finished.get() >= startedBefore,
+                        "a command that started before the call was still running after it returned");
+            }
+        } finally {
+            stop.set(true);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void release_manyKeysOverTime_lockTableStaysEmpty() {
+        for (int i = 0; i < 10_000; i++) {
+            try (var handle = lockManager.acquire(LockScope.of(
+                    new LockKey("incident", "I" + i), new LockKey("unit", "U" + i)))) {
+                assertEquals(2, lockManager.lockTableSize());
+            }
+        }
+
+        assertEquals(0, lockManager.lockTableSize());
+    }
+
+    @Test
+    void release_sameKeyHeldReentrantly_keepsLockUntilLastRelease() {
+        var scope = LockScope.of("incident", "123");
+
+        try (var outer = lockManager.acquire(scope)) {
+            try (var inner = lockManager.acquire(scope)) {
+                assertEquals(1, lockManager.lockTableSize());
+            }
+            assertEquals(1, lockManager.lockTableSize());
+        }
+
+        assertEquals(0, lockManager.lockTableSize());
+    }
+
+    @Test
+    void release_whileOtherThreadWaits_handsOverSameLock() throws Exception {
+        var scope = LockScope.of("incident", "123");
+        var acquired = new CountDownLatch(1);
+        Thread waiter;
+        try (var handle = lockManager.acquire(scope)) {
+            waiter = new Thread(() -> {
+                try (var h = lockManager.acquire(scope)) {
+                    acquired.countDown();
+                }
+            });
+            waiter.start();
+            waiter.join(100);
+            assertTrue(waiter.isAlive(), "should wait for the lock");
+        }
+
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join(5000);
+        assertEquals(0, lockManager.lockTableSize());
+    }
+
+    @Test
+    void acquire_moreThanTwoKeys_locksAllAndReleasesAll() throws Exception {
+        var scope = LockScope.of(
+                new LockKey("unit", "U2"),
+                new LockKey("incident", "I1"),
+                new LockKey("unit", "U1"));
+
+        Thread other;
+        try (var handle = lockManager.acquire(scope)) {
+            assertEquals(3, lockManager.lockTableSize());
+            other = new Thread(() -> lockManager.acquire(LockScope.of("unit", "U1")).close());
+            other.start();
+            other.join(100);
+            assertTrue(other.isAlive(), "should wait for the lock");
+        }
+
+        other.join(5000);
+        assertFalse(other.isAlive());
+        assertEquals(0, lockManager.lockTableSize());
+    }
+
+    @Test
+    void lockScope_keysAreSortedAtConstruction() {
+        var scope = LockScope.of(
+                new LockKey("unit", "U2"),
+                new LockKey("incident", "I1"),
+                new LockKey("unit", "U1"));
+
+        assertEquals(List.of(new LockKey("incident", "I1"), new LockKey("unit", "U1"), new LockKey("unit", "U2")),
+                scope.keys());
+    }
+
+    @Test
+    void acquire_withTimeout_lockHeldTooLong_throwsRetriableTimeoutAndReleasesScope() throws Exception {
+        var timedManager = new EntityLockManager(new MetricsRegistry(), Duration.ofMillis(50));
+        var held = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = Thread.ofPlatform().name("holder").start(() -> {
+            try (var handle = timedManager.acquire(LockScope.of("unit", "U1"))) {
+                held.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        var e = assertThrows(LockTimeoutException.class, () -> timedManager.acquire(
+                LockScope.of(new LockKey("incident", "I1"), new LockKey("unit", "U1"))));
+
+        assertEquals(new LockKey("unit", "U1"), e.key());
+        assertEquals("holder", e.holder());
+        assertEquals(1, timedManager.lockTableSize());
+        release.countDown();
+        holder.join(5000);
+        assertEquals(0, timedManager.lockTableSize());
+        timedManager.awaitCurrentHolders();
+    }
+
+    @Test
+    void acquire_contended_recordsWaitAndHoldTimesPerTypeAndHotKeys() throws Exception {
+        var registry = new MetricsRegistry();
+        var manager = new EntityLockManager(registry);
+        var scope = LockScope.of("incident", "I1");
+        var waiter = new Thread(() -> manager.acquire(scope).close());
+        try (var handle = manager.acquire(scope)) {
+            waiter.start();
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(20);
+        }
+        waiter.join(5000);
+        manager.acquire(LockScope.of("unit", "U1")).close();
+
+        var snapshot = registry.snapshot();
+        assertEquals(1, snapshot.get("lock.wait.incident").count());
+        assertTrue(snapshot.get("lock.wait.incident").max() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(2, snapshot.get("lock.hold.incident").count());
+        assertEquals(1, snapshot.get("lock.hold.unit").count());
+        assertEquals(0, snapshot.get("lock.wait.unit").count(), "uncontended acquisitions are not recorded");
+        var hotKeys = manager.hotKeys(10);
+        assertEquals(1, hotKeys.size());
+        assertEquals(new LockKey("incident", "I1"), hotKeys.getFirst().key());
+        assertEquals(1, hotKeys.getFirst().contentions());
+
+        manager.resetHotKeys();
+
+        assertTrue(manager.hotKeys(10).isEmpty());
+    }
+
+    @Test
+    void heldLocks_reportsHolderThreadAndWaiters() throws Exception {
+        var scope = LockScope.of("incident", "I1");
+        try (var handle = lockManager.acquire(scope)) {
+            var waiter = new Thread(() -> lockManager.acquire(scope).close());
+            waiter.start();
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+
+            var held = lockManager.heldLocks();
+
+            assertEquals(1, held.size());
+            assertEquals(new LockKey("incident", "I1"), held.getFirst().key());
+            assertEquals(Thread.currentThread().getName(), held.getFirst().holder());
+            assertEquals(1, held.getFirst().waiting());
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackerTest {
+
+    @Test
+    void top_returnsMostContendedFirst() {
+        var tracker = new HotKeyTracker(4);
+        var a = new LockKey("incident", "A");
+        var b = new LockKey("incident", "B");
+        tracker.record(a, 10);
+        tracker.record(b, 20);
+        tracker.record(b, 30);
+
+        var top = tracker.top(10);
+
+        assertEquals(List.of(new HotLockKey(b, 2, Duration.ofNanos(50)), new HotLockKey(a, 1, Duration.ofNanos(10))),
+                top);
+        assertEquals(List.of(b), tracker.top(1).stream().map(HotLockKey::key).toList());
+    }
+
+    @Test
+    void record_full_replacesLeastContendedAndInheritsItsCount() {
+        var tracker = new HotKeyTracker(2);
+        var hot = new LockKey("incident", "hot");
+        var cold = new LockKey("unit", "cold");
+        var late = new LockKey("unit", "late");
+        for (int i = 0; i < 5; i++) {
+            tracker.record(hot, 1);
+        }
+        tracker.record(cold, 1);
+
+        tracker.record(late, 1);
+
+        var top = tracker.top(10);
+        assertEquals(List.of(hot, late), top.stream().map(HotLockKey::key).toList());
+        assertEquals(2, top.get(1).contentions());
+    }
+}
@@ -0,0 +1,167 @@
+package net.pkhapps.idispatchx.cad.application.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedExecutorTest {
+
+    private PartitionedExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new PartitionedExecutor(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void execute_sameKey_runsOnSamePartitionThread() {
+        var scope = LockScope.of("incident", "I1");
+
+        var first = executor.execute(scope, () -> Thread.currentThread().getName());
+        var second = executor.execute(scope, () -> Thread.currentThread().getName());
+
+        assertEquals(first, second);
+        assertEquals("command-partition-" + executor.partitionOf(new LockKey("incident", "I1")), first);
+    }
+
+    @Test
+    void execute_taskThrows_rethrowsException() {
+        var e = assertThrows(IllegalStateException.class, () -> executor.execute(LockScope.of("incident", "I1"),
+                () -> {
+                    throw new IllegalStateException("rejected");
+                }));
+
+        assertEquals("rejected", e.getMessage());
+    }
+
+    @Test
+    void execute_multiplePartitions_occupiesOtherPartitionsWhileRunning() throws Exception {
+        var first = keyOnPartition(0);
+        var second = keyOnPartition(1);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var multi = executor.submit(LockScope.of(first, second), () -> {
+            started.countDown();
+            await(release);
+            return Thread.currentThread().getName();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var single = executor.submit(LockScope.of(second.type(), second.id()), () -> "done");
+
+        Thread.sleep(50);
+        assertFalse(single.isDone(), "partition of the second key should be occupied");
+        release.countDown();
+
+        assertEquals("command-partition-0", multi.get(5, TimeUnit.SECONDS));
+        assertEquals("done", single.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_overlappingMultiPartitionScopes_doNotDeadlock() throws Exception {
+        var keys = new ArrayList<LockKey>();
+        for (int i = 0; i < 16; i++) {
+            keys.add(new LockKey("unit", "U" + i));
+        }
+        var counter = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 2_000; i++) {
+            var random = ThreadLocalRandom.current();
+            var scope = LockScope.of(keys.get(random.nextInt(keys.size())), keys.get(random.nextInt(keys.size())),
+                    keys.get(random.nextInt(keys.size())));
+            futures.add(executor.submit(scope, counter::incrementAndGet));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        assertEquals(2_000, counter.get());
+    }
+
+    @Test
+    void execute_fromOwnPartition_runsInline_fromOtherPartition_throws() {
+        var own = keyOnPartition(0);
+        var other = keyOnPartition(1);
+
+        var nested = executor.execute(LockScope.of(own.type(), own.id()),
+                () -> executor.execute(LockScope.of(own.type(), own.id()), () -> "inline"));
+        assertEquals("inline", nested);
+
+        assertThrows(IllegalStateException.class, () -> executor.execute(LockScope.of(own.type(), own.id()),
+                () -> executor.execute(LockScope.of(other.type(), other.id()), () -> "never")));
+    }
+
+    @Test
+    void close_runsQueuedCommandsAndRejectsNewOnes() throws Exception {
+        var release = new CountDownLatch(1);
+        var queued = List.of(
+                executor.submit(LockScope.of("incident", "I1"), () -> {
+                    await(release);
+                    return 1;
+                }),
+                executor.submit(LockScope.of(keyOnPartition(0), keyOnPartition(2)), () -> 2));
+
+        var closer = Thread.ofPlatform().start(executor::close);
+        Thread.sleep(50);
+        release.countDown();
+        closer.join(5000);
+
+        assertEquals(1, queued.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(2, queued.get(1).get(5, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(LockScope.of("incident", "I1"), () -> 3));
+    }
+
+    @Test
+    void close_interrupted_stillStopsThePartitions() throws Exception {
+        var release = new CountDownLatch(1);
+        var partitionThread = new AtomicReference<Thread>();
+        executor.submit(LockScope.of("incident", "I1"), () -> {
+            partitionThread.set(Thread.currentThread());
+            await(release);
+            return 1;
+        });
+
+        var closer = Thread.ofPlatform().start(executor::close);
+        Thread.sleep(50);
+        closer.interrupt();
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        release.countDown();
+
+        partitionThread.get().join(5000);
+        assertFalse(partitionThread.get().isAlive());
+    }
+
+    private LockKey keyOnPartition(int partition) {
+        for (int i = 0; ; i++) {
+            var key = new LockKey("unit", "U" + i);
+            if (executor.partitionOf(key) == partition) {
+                return key;
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
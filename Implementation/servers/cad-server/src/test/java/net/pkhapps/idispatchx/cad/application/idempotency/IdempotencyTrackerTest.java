@@ -0,0 +1,204 @@
+package net.pkhapps.idispatchx.cad.application.idempotency;
+
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyTrackerTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T12:00:00Z");
+
+    private IdempotencyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new IdempotencyTracker(Duration.ofMinutes(15), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void isProcessed_recordedCommand_returnsTrue() {
+        var commandId = CommandId.generate();
+
+        tracker.record(commandId, T0);
+
+        assertTrue(tracker.isProcessed(commandId));
+        assertFalse(tracker.isProcessed(CommandId.generate()));
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    void expire_afterRetention_forgetsCommand() {
+        var commandId = CommandId.generate();
+        tracker.record(commandId, T0);
+
+        tracker.expire(T0.plus(Duration.ofMinutes(15)).minusSeconds(1));
+        assertTrue(tracker.isProcessed(commandId));
+
+        tracker.expire(T0.plus(Duration.ofMinutes(15)));
+        assertFalse(tracker.isProcessed(commandId));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void copy_restoredIntoNewTracker_remembersCommandForRestOfRetention() {
+        var commandId = CommandId.generate();
+        tracker.record(commandId, T0);
+        tracker.record(CommandId.generate(), T0.plusSeconds(1));
+
+        var restored = new IdempotencyTracker(Duration.ofMinutes(15), Duration.ofSeconds(1));
+        for (var id : tracker.ids()) {
+            restored.restore(tracker.copy(id));
+        }
+
+        assertEquals(2, restored.size());
+        assertTrue(restored.isProcessed(commandId));
+        restored.expire(T0.plus(Duration.ofMinutes(15)).minusSeconds(1));
+        assertTrue(restored.isProcessed(commandId));
+        restored.expire(T0.plus(Duration.ofMinutes(15)));
+        assertFalse(restored.isProcessed(commandId));
+    }
+
+    @Test
+    void copy_afterRecordedAgain_returnsLatestRecordTime() {
+        var commandId = CommandId.generate();
+        tracker.record(commandId, T0);
+        tracker.record(commandId, T0.plusSeconds(30));
+
+        assertEquals(new ProcessedCommand(commandId, T0.plusSeconds(30)), tracker.copy(commandId.toString()));
+        assertNull(tracker.copy(CommandId.generate().toString()));
+    }
+
+    @Test
+    void restore_retentionPassed_isIgnored() {
+        tracker.record(CommandId.generate(), T0.plus(Duration.ofMinutes(20)));
+        var commandId = CommandId.generate();
+
+        tracker.restore(new ProcessedCommand(commandId, T0));
+
+        assertFalse(tracker.isProcessed(commandId));
+    }
+
+    @Test
+    void record_laterCommand_expiresEarlierCommands() {
+        var first = CommandId.generate();
+        var second = CommandId.generate();
+        tracker.record(first, T0);
+
+        tracker.record(second, T0.plus(Duration.ofMinutes(20)));
+
+        assertFalse(tracker.isProcessed(first));
+        assertTrue(tracker.isProcessed(second));
+    }
+
+    @Test
+    void record_sameCommandAgain_extendsRetention() {
+        var commandId = CommandId.generate();
+        tracker.record(commandId, T0);
+        tracker.record(commandId, T0.plus(Duration.ofMinutes(10)));
+
+        tracker.expire(T0.plus(Duration.ofMinutes(20)));
+        assertTrue(tracker.isProcessed(commandId));
+
+        tracker.expire(T0.plus(Duration.ofMinutes(25)));
+        assertFalse(tracker.isProcessed(commandId));
+    }
+
+    @Test
+    void record_alreadyExpired_isIgnored() {
+        tracker.record(CommandId.generate(), T0.plus(Duration.ofHours(1)));
+        var old = CommandId.generate();
+
+        tracker.record(old, T0);
+
+        assertFalse(tracker.isProcessed(old));
+    }
+
+    @Test
+    void record_replayedEvents_rebuildsProcessedCommands() {
+        var commandId = CommandId.generate();
+
+        tracker.record(new TestEvent(EventId.generate(), T0, commandId));
+        tracker.record(new TestEvent(EventId.generate(), T0.plusSeconds(1), commandId));
+        tracker.record(new TestEvent(EventId.generate(), T0.plusSeconds(2), null));
+
+        assertTrue(tracker.isProcessed(commandId));
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    void record_manyCommands_growsTableAndKeepsAll() {
+        var commandIds = new ArrayList<CommandId>();
+        for (int i = 0; i < 10_000; i++) {
+            var commandId = new CommandId(0, i);
+            commandIds.add(commandId);
+            tracker.record(commandId, T0.plusMillis(i * 10L));
+        }
+
+        assertEquals(10_000, tracker.size());
+        for (var commandId : commandIds) {
+            assertTrue(tracker.isProcessed(commandId), commandId.toString());
+        }
+    }
+
+    @Test
+    void record_expiringAndRecording_keepsOnlyRecentCommands() {
+        // Each command is remembered for 15 minutes, so the table is rebuilt several times over removed slots
+        for (int i = 0; i < 5_000; i++) {
+            tracker.record(new CommandId(0, i), T0.plusSeconds(i));
+        }
+
+        assertEquals(900, tracker.size());
+        assertFalse(tracker.isProcessed(new CommandId(0, 4099)));
+        assertTrue(tracker.isProcessed(new CommandId(0, 4100)));
+        assertTrue(tracker.isProcessed(new CommandId(0, 4999)));
+    }
+
+    @Test
+    void isProcessed_concurrentRecording_neverLosesRecordedCommand() throws Exception {
+        var recorded = CommandId.generate();
+        tracker.record(recorded, T0);
+        var stop = new AtomicBoolean();
+        var lost = new AtomicReference<Boolean>(false);
+        var reader = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                if (!tracker.isProcessed(recorded)) {
+                    lost.set(true);
+                }
+            }
+        });
+
+        for (int i = 0; i < 50_000; i++) {
+            tracker.record(new CommandId(0, i), T0);
+        }
+        stop.set(true);
+        reader.join(5000);
+
+        assertFalse(lost.get());
+    }
+
+    @Test
+    void constructor_tickShorterThanMillisecond_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdempotencyTracker(Duration.ofMinutes(1), Duration.ofNanos(1000)));
+    }
+
+    @Test
+    void constructor_retentionShorterThanTick_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdempotencyTracker(Duration.ofMillis(500), Duration.ofSeconds(1)));
+    }
+
+    record TestEvent(EventId eventId, Instant timestamp, @Nullable CommandId causedBy) implements DomainEvent {
+    }
+}
@@ -0,0 +1,110 @@
+package net.pkhapps.idispatchx.cad.application.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private TimingWheel<String> wheel;
+    private Map<String, Long> deadlines;
+    private List<String> expired;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel<>();
+        deadlines = new HashMap<>();
+        expired = new ArrayList<>();
+        // Starts the wheel at tick 1000
+        advance(1000);
+    }
+
+    private void add(String key, long deadline) {
+        deadlines.put(key, deadline);
+        wheel.add(key, deadline);
+    }
+
+    private void advance(long tick) {
+        wheel.advance(tick, key -> deadlines.getOrDefault(key, Long.MIN_VALUE), expired::add);
+    }
+
+    @Test
+    void advance_firesKeysAtTheirDeadline() {
+        add("soon", 1010);
+        add("later", 1000 + 64 * 64 + 5);
+
+        advance(1009);
+        assertEquals(List.of(), expired);
+
+        advance(1010);
+        assertEquals(List.of("soon"), expired);
+
+        advance(1000 + 64 * 64 + 4);
+        assertEquals(List.of("soon"), expired);
+
+        advance(1000 + 64 * 64 + 5);
+        assertEquals(List.of("soon", "later"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_everyLevel_firesAtExactTick() {
+        long[] offsets = {1, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, 262_145, 1_000_000};
+        for (var offset : offsets) {
+            add("key-" + offset, 1000 + offset);
+        }
+
+        for (var offset : offsets) {
+            advance(1000 + offset - 1);
+            assertFalse(expired.contains("key-" + offset), "early: " + offset);
+            advance(1000 + offset);
+            assertTrue(expired.contains("key-" + offset), "late: " + offset);
+        }
+    }
+
+    @Test
+    void advance_extendedDeadline_placesKeyAgain() {
+        add("key", 1010);
+        deadlines.put("key", 1100L);
+
+        advance(1099);
+        assertEquals(List.of(), expired);
+        assertEquals(1, wheel.size());
+
+        advance(1100);
+        assertEquals(List.of("key"), expired);
+    }
+
+    @Test
+    void advance_removedKey_isDropped() {
+        add("key", 1010);
+        deadlines.remove("key");
+
+        advance(2000);
+
+        assertEquals(List.of(), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void add_pastDeadline_firesAtNextTick() {
+        add("key", 500);
+
+        advance(1001);
+
+        assertEquals(List.of("key"), expired);
+    }
+
+    @Test
+    void advance_emptyWheel_jumpsToTick() {
+        advance(Long.MAX_VALUE / 2);
+
+        assertEquals(Long.MAX_VALUE / 2, wheel.currentTick());
+    }
+}
@@ -0,0 +1,52 @@
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramIntervalTest {
+
+    @Test
+    void next_reportsOnlyValuesSincePreviousCall() {
+        var histogram = new Histogram("ns");
+        histogram.record(1_000);
+        var interval = new HistogramInterval(histogram);
+        histogram.record(10);
+        histogram.record(20);
+
+        var first = interval.next();
+
+        assertEquals(2, first.count());
+        assertEquals(15, first.mean());
+        assertEquals(20, first.max());
+
+        histogram.record(30);
+
+        var second = interval.next();
+
+        assertEquals(1, second.count());
+        assertEquals(30, second.p99());
+    }
+
+    @Test
+    void next_nothingRecorded_returnsZeros() {
+        var interval = new HistogramInterval(new Histogram("ns"));
+
+        assertEquals(new HistogramSnapshot("ns", 0, 0, 0, 0, 0, 0), interval.next());
+    }
+
+    @Test
+    void next_histogramReset_reportsValuesSinceReset() {
+        var histogram = new Histogram("ns");
+        histogram.record(100);
+        histogram.record(100);
+        var interval = new HistogramInterval(histogram);
+        histogram.reset();
+        histogram.record(5);
+
+        var snapshot = interval.next();
+
+        assertEquals(1, snapshot.count());
+        assertEquals(5, snapshot.max());
+    }
+}
@@ -0,0 +1,89 @@
+package net.pkhapps.idispatchx.cad.application.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void snapshot_empty_returnsZeros() {
+        assertEquals(new HistogramSnapshot("ns", 0, 0, 0, 0, 0, 0), new Histogram("ns").snapshot());
+    }
+
+    @Test
+    void snapshot_smallValues_areExact() {
+        var histogram = new Histogram("requests");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        var snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count());
+        assertEquals(50, snapshot.mean());
+        assertEquals(50, snapshot.p50());
+        assertEquals(99, snapshot.p99());
+        assertEquals(100, snapshot.p999());
+        assertEquals(100, snapshot.max());
+    }
+
+    @Test
+    void snapshot_largeValues_areWithinRelativePrecision() {
+        var histogram = new Histogram("ns");
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        var snapshot = histogram.snapshot();
+
+        assertEquals(5_000_000, snapshot.p50(), 5_000_000 / 60.0);
+        assertEquals(9_900_000, snapshot.p99(), 9_900_000 / 60.0);
+        assertEquals(9_990_000, snapshot.p999(), 9_990_000 / 60.0);
+        assertEquals(10_000_000, snapshot.max());
+    }
+
+    @Test
+    void indexOf_coversWholeRangeInIncreasingOrder() {
+        long previousIndex = -1;
+        for (int bit = 0; bit < 63; bit++) {
+            var value = 1L << bit;
+            var index = Histogram.indexOf(value);
+            assertTrue(index > previousIndex, "index of " + value);
+            assertTrue(Histogram.highestValueAt(index) >= value);
+            previousIndex = index;
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueAt(Histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void record_concurrently_countsEveryValue() throws InterruptedException {
+        var histogram = new Histogram("ns");
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        histogram.record(i);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(80_000, histogram.snapshot().count());
+    }
+
+    @Test
+    void reset_clearsRecordedValues() {
+        var histogram = new Histogram("ns");
+        histogram.record(42);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.snapshot().count());
+    }
+}
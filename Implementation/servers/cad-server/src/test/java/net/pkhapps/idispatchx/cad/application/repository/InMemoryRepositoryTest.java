@@ -0,0 +1,112 @@
+package net.pkhapps.idispatchx.cad.application.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRepositoryTest {
+
+    private InMemoryRepository<MutableUnit, UnitView> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryRepository<>("unit", UnitView::of);
+    }
+
+    @Test
+    void save_publishesView() {
+        repository.save("RVS101", new MutableUnit("available", 0));
+
+        assertEquals(Optional.of(new UnitView("available", 0)), repository.findView("RVS101"));
+        assertTrue(repository.existsById("RVS101"));
+        assertEquals(1, repository.size());
+    }
+
+    @Test
+    void update_publishesNewViewAndLeavesPreviousViewUnchanged() {
+        repository.save("RVS101", new MutableUnit("available", 0));
+        var before = repository.findView("RVS101").orElseThrow();
+
+        repository.update("RVS101", unit -> unit.change("dispatched"));
+
+        assertEquals(new UnitView("available", 0), before);
+        assertEquals(Optional.of(new UnitView("dispatched", 1)), repository.findView("RVS101"));
+    }
+
+    @Test
+    void update_missingAggregate_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> repository.update("RVS101", unit -> unit.change("x")));
+    }
+
+    @Test
+    void get_changedWithoutSave_keepsPublishedView() {
+        repository.save("RVS101", new MutableUnit("available", 0));
+
+        repository.get("RVS101").change("dispatched");
+
+        assertEquals(Optional.of(new UnitView("available", 0)), repository.findView("RVS101"));
+    }
+
+    @Test
+    void remove_removesAggregateAndView() {
+        repository.save("RVS101", new MutableUnit("available", 0));
+        repository.save("RVS201", new MutableUnit("available", 0));
+
+        repository.remove("RVS101");
+
+        assertNull(repository.get("RVS101"));
+        assertEquals(Optional.empty(), repository.findView("RVS101"));
+        assertEquals(List.of(new UnitView("available", 0)), repository.views().toList());
+    }
+
+    @Test
+    void findView_concurrentUpdates_neverSeesHalfAppliedChange() throws Exception {
+        repository.save("RVS101", new MutableUnit("status-0", 0));
+        var stop = new AtomicBoolean();
+        var torn = new AtomicReference<UnitView>();
+        var reader = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                var view = repository.findView("RVS101").orElseThrow();
+                if (!view.status().equals("status-" + view.changes())) {
+                    torn.set(view);
+                }
+            }
+        });
+
+        for (int i = 1; i <= 100_000; i++) {
+            var status = "status-" + i;
+            repository.update("RVS101", unit -> unit.change(status));
+        }
+        stop.set(true);
+        reader.join(5000);
+
+        assertNull(torn.get());
+    }
+
+    static final class MutableUnit {
+        String status;
+        int changes;
+
+        MutableUnit(String status, int changes) {
+            this.status = status;
+            this.changes = changes;
+        }
+
+        void change(String newStatus) {
+            status = newStatus;
+            changes++;
+        }
+    }
+
+    record UnitView(String status, int changes) {
+        static UnitView of(MutableUnit unit) {
+            return new UnitView(unit.status, unit.changes);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.pkhapps.idispatchx.cad.application.repository;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryIndexTest {
+
+    private UnitRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new UnitRepository();
+    }
+
+    private static Set<String> callsigns(Stream<UnitView> views) {
+        return views.map(UnitView::callsign).collect(Collectors.toSet());
+    }
+
+    @Test
+    void find_returnsOnlyAggregatesWithKey() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", null));
+        repository.save("RVS201", new MutableUnit("RVS201", "Turku", null));
+        repository.save("RKA101", new MutableUnit("RKA101", "Kaarina", null));
+
+        assertEquals(Set.of("RVS101", "RVS201"), callsigns(repository.byStation.find("Turku")));
+        assertEquals(Set.of("RKA101"), callsigns(repository.byStation.find("Kaarina")));
+        assertEquals(2, repository.byStation.count("Turku"));
+        assertEquals(Set.of("Turku", "Kaarina"), repository.byStation.keys());
+    }
+
+    @Test
+    void update_movesAggregateToNewKey() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", null));
+
+        repository.update("RVS101", unit -> unit.incident = "incident-1");
+
+        assertEquals(Set.of("RVS101"), callsigns(repository.byIncident.find("incident-1")));
+        repository.update("RVS101", unit -> unit.incident = "incident-2");
+
+        assertEquals(0, repository.byIncident.count("incident-1"));
+        assertEquals(Set.of("incident-2"), repository.byIncident.keys());
+        assertEquals(List.of("incident-2"),
+                repository.byIncident.find("incident-2").map(UnitView::incident).toList());
+    }
+
+    @Test
+    void update_nullKey_removesAggregateFromIndex() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", "incident-1"));
+
+        repository.update("RVS101", unit -> unit.incident = null);
+
+        assertEquals(Set.of(), repository.byIncident.keys());
+    }
+
+    @Test
+    void update_unchangedKey_returnsLatestView() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", null));
+
+        repository.update("RVS101", unit -> unit.incident = "incident-1");
+
+        assertEquals(List.of("incident-1"), repository.byStation.find("Turku").map(UnitView::incident).toList());
+    }
+
+    @Test
+    void remove_removesAggregateFromIndexes() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", "incident-1"));
+        repository.save("RVS201", new MutableUnit("RVS201", "Turku", null));
+
+        repository.remove("RVS101");
+
+        assertEquals(Set.of("RVS201"), callsigns(repository.byStation.find("Turku")));
+        assertEquals(0, repository.byIncident.count("incident-1"));
+    }
+
+    @Test
+    void multiIndex_indexesAggregateUnderEveryKey() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", null));
+
+        assertEquals(Set.of("RVS101"), callsigns(repository.byCallsignPrefix.find("RVS")));
+        assertEquals(Set.of("RVS101"), callsigns(repository.byCallsignPrefix.find("RV")));
+        assertEquals(0, repository.byCallsignPrefix.count("RK"));
+    }
+
+    @Test
+    void addIndex_nonEmptyRepository_throwsIllegalStateException() {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", null));
+
+        assertThrows(IllegalStateException.class, () -> repository.addIndex(UnitView::station));
+    }
+
+    @Test
+    void find_concurrentMoves_neverReturnsViewWithOtherKey() throws Exception {
+        repository.save("RVS101", new MutableUnit("RVS101", "Turku", null));
+        var stop = new AtomicBoolean();
+        var mismatch = new AtomicReference<UnitView>();
+        var reader = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                repository.byIncident.find("incident-1")
+                        .filter(view -> !"incident-1".equals(view.incident()))
+                        .forEach(mismatch::set);
+            }
+        });
+
+        for (int i = 0; i < 50_000; i++) {
+            var incident = i % 2 == 0 ? "incident-1" : "incident-2";
+            repository.update("RVS101", unit -> unit.incident = incident);
+        }
+        stop.set(true);
+        reader.join(5000);
+
+        assertNull(mismatch.get());
+    }
+
+    static final class UnitRepository extends InMemoryRepository<MutableUnit, UnitView> {
+
+        final RepositoryIndex<String, UnitView> byStation = addIndex(UnitView::station);
+        final RepositoryIndex<String, UnitView> byIncident = addIndex(UnitView::incident);
+        final RepositoryIndex<String, UnitView> byCallsignPrefix = addMultiIndex(
+                view -> List.of(view.callsign().substring(0, 2), view.callsign().substring(0, 3)));
+
+        UnitRepository() {
+            super("unit", UnitView::of);
+        }
+    }
+
+    static final class MutableUnit {
+        final String callsign;
+        final String station;
+        @Nullable String incident;
+
+        MutableUnit(String callsign, String station, @Nullable String incident) {
+            this.callsign = callsign;
+            this.station = station;
+            this.incident = incident;
+        }
+    }
+
+    record UnitView(String callsign, String station, @Nullable String incident) {
+        static UnitView of(MutableUnit unit) {
+            return new UnitView(unit.callsign, unit.station, unit.incident);
+        }
+    }
+}
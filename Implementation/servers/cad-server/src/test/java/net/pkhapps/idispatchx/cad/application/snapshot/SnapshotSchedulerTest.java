@@ -0,0 +1,164 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import net.pkhapps.idispatchx.cad.application.handler.EntityLockManager;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotPort;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotSchedulerTest {
+
+    private static final Duration BUDGET = Duration.ofSeconds(10);
+
+    private StateCapturerTest.CountingWalPort walPort;
+    private RecordingSnapshotPort snapshotPort;
+    private MetricsRegistry metricsRegistry;
+    private long now;
+    private SnapshotScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        walPort = new StateCapturerTest.CountingWalPort();
+        snapshotPort = new RecordingSnapshotPort();
+        metricsRegistry = new MetricsRegistry();
+        var snapshotService = new SnapshotService(walPort, snapshotPort, new EntityLockManager(),
+                List.of(new StateCapturerTest.MapSource("unit")));
+        // 1000 entries or 1000 bytes per second, so the budget is 10 000 entries or bytes
+        var config = new SnapshotSchedulerConfig(BUDGET, 1_000_000, 1_000_000, Duration.ofSeconds(30),
+                Duration.ofHours(1), Duration.ofMillis(50), 1000, 1000);
+        scheduler = new SnapshotScheduler(snapshotService, walPort, metricsRegistry, config, () -> now);
+        scheduler.start(Optional.empty());
+        now = Duration.ofMinutes(1).toNanos();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void check_estimateBelowHalfOfBudget_doesNotSnapshot() throws Exception {
+        walPort.sequence.set(4_000);
+
+        assertFalse(scheduler.check());
+        assertTrue(snapshotPort.committed.isEmpty());
+    }
+
+    @Test
+    void check_estimateAboveHalfOfBudget_snapshots() throws Exception {
+        walPort.sequence.set(6_000);
+
+        assertTrue(scheduler.check());
+        assertEquals(List.of(new SequenceNumber(6_000)), snapshotPort.committed);
+        assertEquals(Duration.ZERO, scheduler.estimatedReplayTime());
+        assertEquals(1, metricsRegistry.snapshot().get("snapshot.duration").count());
+    }
+
+    @Test
+    void check_bytesDominateEstimate_snapshots() throws Exception {
+        walPort.sequence.set(10);
+        walPort.bytes.set(6_000);
+
+        assertTrue(scheduler.check());
+    }
+
+    @Test
+    void check_commandLatencyElevated_defersUntilBudgetForces() throws Exception {
+        var latency = metricsRegistry.timer("command.total");
+        walPort.sequence.set(6_000);
+        latency.record(TimeUnit.MILLISECONDS.toNanos(200));
+
+        assertFalse(scheduler.check());
+
+        walPort.sequence.set(8_000);
+        latency.record(TimeUnit.MILLISECONDS.toNanos(200));
+
+        assertTrue(scheduler.check());
+        assertEquals(List.of(new SequenceNumber(8_000)), snapshotPort.committed);
+    }
+
+    @Test
+    void check_commandLatencyBackToNormal_snapshots() throws Exception {
+        var latency = metricsRegistry.timer("command.total");
+        walPort.sequence.set(6_000);
+        latency.record(TimeUnit.MILLISECONDS.toNanos(200));
+        assertFalse(scheduler.check());
+
+        latency.record(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertTrue(scheduler.check());
+    }
+
+    @Test
+    void check_withinMinimumInterval_waitsUnlessForced() throws Exception {
+        walPort.sequence.set(6_000);
+        assertTrue(scheduler.check());
+
+        walPort.sequence.set(12_000);
+        now += Duration.ofSeconds(10).toNanos();
+
+        assertFalse(scheduler.check());
+
+        walPort.sequence.set(14_000);
+
+        assertTrue(scheduler.check());
+    }
+
+    @Test
+    void recordReplay_replacesEstimatedRate() throws Exception {
+        walPort.sequence.set(4_000);
+
+        scheduler.recordReplay(1_000, 0, Duration.ofSeconds(2));
+
+        assertEquals(Duration.ofSeconds(8), scheduler.estimatedReplayTime());
+        assertTrue(scheduler.check());
+    }
+
+    private static class RecordingSnapshotPort implements SnapshotPort {
+        final List<SequenceNumber> committed = new ArrayList<>();
+
+        @Override
+        public SnapshotWriter openSnapshotWriter() {
+            return new SnapshotWriter() {
+                @Override
+                public void write(Object aggregate) {
+                }
+
+                @Override
+                public void commit(SequenceNumber upToSequence) {
+                    committed.add(upToSequence);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public SnapshotWriter openDeltaSnapshotWriter(SequenceNumber previousSnapshot) {
+            return openSnapshotWriter();
+        }
+
+        @Override
+        public Optional<SequenceNumber> loadLatestSnapshot(Consumer<Object> consumer) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void purgeOlderSnapshots(SequenceNumber keepAfter) {
+        }
+    }
+}
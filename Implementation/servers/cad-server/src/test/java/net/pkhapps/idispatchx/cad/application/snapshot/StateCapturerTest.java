@@ -0,0 +1,382 @@
+package net.pkhapps.idispatchx.cad.application.snapshot;
+
+import net.pkhapps.idispatchx.cad.application.handler.CommandHandler;
+import net.pkhapps.idispatchx.cad.application.handler.EntityLockManager;
+import net.pkhapps.idispatchx.cad.application.handler.LockScope;
+import net.pkhapps.idispatchx.cad.application.handler.PendingMutation;
+import net.pkhapps.idispatchx.cad.application.idempotency.IdempotencyTracker;
+import net.pkhapps.idispatchx.cad.application.idempotency.ProcessedCommand;
+import net.pkhapps.idispatchx.cad.domain.command.Command;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.RemovedAggregate;
+import net.pkhapps.idispatchx.cad.port.secondary.snapshot.SnapshotWriteException;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateCapturerTest {
+
+    private EntityLockManager lockManager;
+    private CountingWalPort walPort;
+    private MapSource units;
+    private PutHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        lockManager = new EntityLockManager();
+        walPort = new CountingWalPort();
+        units = new MapSource("unit");
+        handler = new PutHandler(walPort, lockManager, units);
+    }
+
+    @Test
+    void capture_noConcurrentCommands_returnsAllAggregatesAtCurrentSequence() throws Exception {
+        handler.handle(put("RVS101", "available"));
+        handler.handle(put("RVS201", "dispatched"));
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+
+        var aggregates = new ArrayList<Object>();
+
+        var result = capturer.capture(aggregates::add);
+
+        assertEquals(new SequenceNumber(2), result.sequenceNumber());
+        assertEquals(2, result.aggregateCount());
+        assertEquals(List.of("RVS101=available", "RVS201=dispatched"), sorted(aggregates));
+    }
+
+    @Test
+    void capture_aggregateChangedDuringCapture_returnsStateAtCapturedSequence() throws Exception {
+        handler.handle(put("RVS101", "available"));
+        units.whileListing = () -> handle(put("RVS101", "dispatched"));
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+
+        var aggregates = new ArrayList<Object>();
+
+        var result = capturer.capture(aggregates::add);
+
+        assertEquals(new SequenceNumber(1), result.sequenceNumber());
+        assertEquals(List.of("RVS101=available"), aggregates);
+        assertEquals("dispatched", units.statuses.get("RVS101"));
+    }
+
+    @Test
+    void capture_aggregatesCreatedOrRemovedDuringCapture_returnsMembershipAtCapturedSequence() throws Exception {
+        handler.handle(put("RVS101", "available"));
+        handler.handle(put("RVS201", "available"));
+        units.whileListing = () -> {
+            handle(put("RVS301", "available"));
+            handle(put("RVS201", null));
+        };
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+
+        var aggregates = new ArrayList<Object>();
+
+        var result = capturer.capture(aggregates::add);
+
+        assertEquals(new SequenceNumber(2), result.sequenceNumber());
+        assertEquals(List.of("RVS101=available", "RVS201=available"), sorted(aggregates));
+    }
+
+    @Test
+    void capture_copyFailsInCommand_failsCaptureButAppliesMutation() throws Exception {
+        handler.handle(put("RVS101", "available"));
+        units.whileListing = () -> {
+            units.failCopy = true;
+            handle(put("RVS101", "dispatched"));
+        };
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+
+        assertThrows(SnapshotWriteException.class, () -> capturer.capture(aggregate -> {
+        }));
+        assertEquals("dispatched", units.statuses.get("RVS101"));
+    }
+
+    @Test
+    void capture_afterCapture_commandsDoNotCopy() throws Exception {
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+        capturer.capture(aggregate -> {
+        });
+        units.failCopy = true;
+
+        handler.handle(put("RVS101", "available"));
+
+        assertEquals("available", units.statuses.get("RVS101"));
+    }
+
+    @Test
+    void captureChanges_returnsOnlyAggregatesChangedSinceClearedCapture() throws Exception {
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+        handler.handle(put("RVS101", "available"));
+        handler.handle(put("RVS201", "available"));
+        handler.handle(put("RVS301", "available"));
+        capturer.clearChanges(capturer.capture(aggregate -> {
+        }));
+        handler.handle(put("RVS201", "dispatched"));
+        handler.handle(put("RVS301", null));
+        handler.handle(put("RVS401", "available"));
+
+        var aggregates = new ArrayList<Object>();
+
+        var result = capturer.captureChanges(aggregates::add);
+
+        assertEquals(new SequenceNumber(6), result.sequenceNumber());
+        assertEquals(3, result.aggregateCount());
+        assertEquals(3, aggregates.size());
+        assertTrue(aggregates.containsAll(List.of("RVS201=dispatched", "RVS401=available",
+                new RemovedAggregate("unit", "RVS301"))));
+    }
+
+    @Test
+    void captureChanges_sourceNotTrackingChanges_returnsAllOfItsAggregates() throws Exception {
+        var locations = new MapSource("unit-location") {
+            @Override
+            public boolean tracksChanges() {
+                return false;
+            }
+        };
+        locations.statuses.put("RVS101", "60.45,22.26");
+        locations.statuses.put("RVS201", "61.50,23.76");
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units, locations));
+        handler.handle(put("RVS101", "available"));
+        capturer.clearChanges(capturer.capture(aggregate -> {
+        }));
+        handler.handle(put("RVS201", "available"));
+
+        var aggregates = new ArrayList<Object>();
+
+        var result = capturer.captureChanges(aggregates::add);
+
+        assertEquals(3, result.aggregateCount());
+        assertEquals(List.of("RVS101=60.45,22.26", "RVS201=61.50,23.76", "RVS201=available"), sorted(aggregates));
+    }
+
+    @Test
+    void captureChanges_idempotencyTracker_includesEveryRememberedCommand() throws Exception {
+        var tracker = new IdempotencyTracker();
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units, tracker));
+        var commandId = CommandId.generate();
+        tracker.record(commandId, Instant.parse("2026-01-01T12:00:00Z"));
+        capturer.clearChanges(capturer.capture(aggregate -> {
+        }));
+
+        var aggregates = new ArrayList<Object>();
+
+        capturer.captureChanges(aggregates::add);
+
+        assertEquals(List.of(new ProcessedCommand(commandId, Instant.parse("2026-01-01T12:00:00Z"))), aggregates);
+    }
+
+    @Test
+    void captureChanges_notCleared_returnsChangesAgain() throws Exception {
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+        handler.handle(put("RVS101", "available"));
+        capturer.captureChanges(aggregate -> {
+        });
+
+        var aggregates = new ArrayList<Object>();
+        capturer.captureChanges(aggregates::add);
+
+        assertEquals(List.of("RVS101=available"), aggregates);
+    }
+
+    @Test
+    void captureChanges_aggregatesChangedDuringCapture_returnsChangesUpToCapturedSequence() throws Exception {
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+        handler.handle(put("RVS101", "available"));
+        handler.handle(put("RVS201", "available"));
+        capturer.clearChanges(capturer.capture(aggregate -> {
+        }));
+        handler.handle(put("RVS101", "dispatched"));
+        var aggregates = new ArrayList<Object>();
+        var commandsRun = new ArrayList<String>();
+
+        var result = capturer.captureChanges(aggregate -> {
+            if (commandsRun.isEmpty()) {
+                commandsRun.add("run");
+                handle(put("RVS201", "dispatched"));
+                handle(put("RVS201", "on scene"));
+            }
+            aggregates.add(aggregate);
+        });
+        capturer.clearChanges(result);
+
+        assertEquals(new SequenceNumber(3), result.sequenceNumber());
+        assertEquals(List.of("RVS101=dispatched"), aggregates);
+        var next = new ArrayList<Object>();
+        capturer.captureChanges(next::add);
+        assertEquals(List.of("RVS201=on scene"), next);
+    }
+
+    /**
+     * Handles the command on another thread while the capture is in progress, and waits for it to
+     * complete to show that the capture does not block commands.
+     */
+    private void handle(PutCommand command) {
+        try {
+            CompletableFuture.runAsync(() -> handler.handle(command)).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError("command did not complete during capture", e);
+        }
+    }
+
+    @Test
+    void capture_sinkCalledOutsideAggregateLocks() throws Exception {
+        handler.handle(put("RVS101", "available"));
+        var capturer = new StateCapturer(walPort, lockManager, List.of(units));
+
+        capturer.capture(aggregate -> handle(put("RVS101", "dispatched")));
+
+        assertEquals("dispatched", units.statuses.get("RVS101"));
+    }
+
+    private static List<String> sorted(List<Object> aggregates) {
+        return aggregates.stream().map(String.class::cast).sorted().toList();
+    }
+
+    static PutCommand put(String unitId, @Nullable String status) {
+        return new PutCommand(CommandId.generate(), unitId, status);
+    }
+
+    // --- Test doubles ---
+
+    record PutCommand(CommandId commandId, String unitId, @Nullable String status) implements Command {
+    }
+
+    record PutEvent(EventId eventId, Instant timestamp, CommandId causedBy) implements DomainEvent {
+    }
+
+    static class MapSource implements SnapshotSource<String> {
+        final Map<String, String> statuses = new ConcurrentHashMap<>();
+        private final String lockType;
+        Runnable whileListing = () -> {
+        };
+        volatile boolean failCopy = false;
+
+        MapSource(String lockType) {
+            this.lockType = lockType;
+        }
+
+        @Override
+        public String lockType() {
+            return lockType;
+        }
+
+        @Override
+        public Class<String> aggregateType() {
+            return String.class;
+        }
+
+        @Override
+        public Collection<String> ids() {
+            var ids = List.copyOf(statuses.keySet());
+            whileListing.run();
+            return ids;
+        }
+
+        @Override
+        public @Nullable String copy(String id) {
+            if (failCopy) {
+                throw new IllegalStateException("Simulated copy failure");
+            }
+            var status = statuses.get(id);
+            return status == null ? null : id + "=" + status;
+        }
+
+        @Override
+        public void restore(String aggregate) {
+            var separator = aggregate.indexOf('=');
+            statuses.put(aggregate.substring(0, separator), aggregate.substring(separator + 1));
+        }
+
+        @Override
+        public void remove(String id) {
+            statuses.remove(id);
+        }
+    }
+
+    static class PutHandler extends CommandHandler<PutCommand, Void> {
+        private final MapSource source;
+
+        PutHandler(WalPort walPort, EntityLockManager lockManager, MapSource source) {
+            super(walPort, lockManager);
+            this.source = source;
+        }
+
+        @Override
+        protected LockScope determineLockScope(PutCommand command) {
+            return LockScope.of(source.lockType(), command.unitId());
+        }
+
+        @Override
+        protected PendingMutation<PutEvent> prepareExecution(PutCommand command) {
+            var event = new PutEvent(EventId.generate(), Instant.now(), command.commandId());
+            return new PendingMutation<>(event, () -> {
+                if (command.status() == null) {
+                    source.statuses.remove(command.unitId());
+                } else {
+                    source.statuses.put(command.unitId(), command.status());
+                }
+            });
+        }
+
+        @Override
+        protected @Nullable Void buildResult(PutCommand command, DomainEvent event) {
+            return null;
+        }
+    }
+
+    static class CountingWalPort implements WalPort {
+        final AtomicLong sequence = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        public SequenceNumber write(DomainEvent event) {
+            return new SequenceNumber(sequence.incrementAndGet());
+        }
+
+        @Override
+        public SequenceNumber writeBatch(List<? extends DomainEvent> events) {
+            return new SequenceNumber(sequence.addAndGet(events.size()));
+        }
+
+        @Override
+        public void replayFrom(SequenceNumber from, Consumer<DomainEvent> consumer) {
+        }
+
+        @Override
+        public void replay(Consumer<DomainEvent> consumer) {
+        }
+
+        @Override
+        public void truncate(SequenceNumber upTo) {
+        }
+
+        @Override
+        public SequenceNumber currentSequence() {
+            var current = sequence.get();
+            return current == 0 ? SequenceNumber.start() : new SequenceNumber(current);
+        }
+
+        @Override
+        public long bytesWritten() {
+            return bytes.get();
+        }
+    }
+}
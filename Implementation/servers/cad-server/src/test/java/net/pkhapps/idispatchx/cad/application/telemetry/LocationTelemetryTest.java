@@ -0,0 +1,322 @@
+package net.pkhapps.idispatchx.cad.application.telemetry;
+
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import net.pkhapps.idispatchx.cad.domain.event.UnitLocationSampledEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.EpochMicros;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalWriteException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationTelemetryTest {
+
+    private static final long T0 = 1_767_268_800_000_000L;
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:30Z");
+    private static final LocationTelemetryConfig CONFIG = new LocationTelemetryConfig(Duration.ofSeconds(60),
+            Duration.ofSeconds(5), Duration.ofSeconds(10), 100);
+
+    private BatchRecordingWalPort walPort;
+    private AtomicLong nanoTime;
+    private AtomicReference<Instant> clock;
+    private LocationTelemetry telemetry;
+
+    @BeforeEach
+    void setUp() {
+        walPort = new BatchRecordingWalPort();
+        nanoTime = new AtomicLong(1_000 * SECOND);
+        clock = new AtomicReference<>(NOW);
+        telemetry = new LocationTelemetry(walPort, clock::get, CONFIG, nanoTime::get);
+    }
+
+    @Test
+    void report_storesLatestPositionWithoutWritingToWal() {
+        assertTrue(telemetry.report("unit-1", 60_450_000, 22_260_000, T0));
+        assertTrue(telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000));
+
+        assertEquals(Optional.of(new UnitPosition(60_451_000, 22_261_000, T0 + 10_000_000)),
+                telemetry.latest("unit-1"));
+        assertEquals(List.of(), walPort.batches);
+    }
+
+    @Test
+    void report_olderThanLatest_isIgnored() {
+        telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000);
+
+        assertFalse(telemetry.report("unit-1", 60_450_000, 22_260_000, T0));
+        assertFalse(telemetry.report("unit-1", 60_450_000, 22_260_000, T0 + 10_000_000));
+
+        assertEquals(60_451_000, telemetry.latest("unit-1").orElseThrow().latitude());
+    }
+
+    @Test
+    void report_outOfBounds_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> telemetry.report("unit-1", 0, 0, T0));
+        assertEquals(Optional.empty(), telemetry.latest("unit-1"));
+    }
+
+    @Test
+    void report_observedAtNotSet_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> telemetry.report("unit-1", 60_450_000, 22_260_000, EpochMicros.NONE));
+        assertEquals(Optional.empty(), telemetry.latest("unit-1"));
+    }
+
+    @Test
+    void report_farAheadOfClock_isClampedToMaxClockSkew() {
+        var maxAllowed = EpochMicros.of(NOW.plusSeconds(10));
+
+        assertTrue(telemetry.report("unit-1", 60_450_000, 22_260_000, Long.MAX_VALUE));
+        assertEquals(maxAllowed, telemetry.latest("unit-1").orElseThrow().observedAt());
+
+        // Later reports are not locked out for longer than the skew
+        clock.set(NOW.plusSeconds(11));
+        assertTrue(telemetry.report("unit-1", 60_451_000, 22_261_000, EpochMicros.of(NOW.plusSeconds(11))));
+        assertEquals(60_451_000, telemetry.latest("unit-1").orElseThrow().latitude());
+    }
+
+    @Test
+    void report_maxUnitsReached_rejectsNewUnitsUntilOneIsRemoved() {
+        var limited = new LocationTelemetry(walPort, clock::get, new LocationTelemetryConfig(Duration.ofSeconds(60),
+                Duration.ofSeconds(5), Duration.ofSeconds(10), 2), nanoTime::get);
+        limited.report("unit-1", 60_450_000, 22_260_000, T0);
+        limited.report("unit-2", 60_450_000, 22_260_000, T0);
+
+        assertFalse(limited.report("unit-3", 60_450_000, 22_260_000, T0));
+        assertEquals(Optional.empty(), limited.latest("unit-3"));
+        assertTrue(limited.report("unit-1", 60_451_000, 22_261_000, T0 + 1));
+
+        limited.remove("unit-2");
+        assertTrue(limited.report("unit-3", 60_450_000, 22_260_000, T0));
+    }
+
+    @Test
+    void flush_writesLatestPositionOfEveryUnitInOneBatch() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000);
+        telemetry.report("unit-2", 61_500_000, 23_760_000, T0);
+
+        assertEquals(2, telemetry.flush(false));
+
+        assertEquals(1, walPort.batches.size());
+        var events = walPort.batches.getFirst().stream()
+                .map(UnitLocationSampledEvent.class::cast)
+                .sorted((a, b) -> a.unitId().compareTo(b.unitId()))
+                .toList();
+        assertEquals("unit-1", events.get(0).unitId());
+        assertEquals(60_451_000, events.get(0).latitude());
+        assertEquals(T0 + 10_000_000, events.get(0).observedAt());
+        assertEquals("unit-2", events.get(1).unitId());
+        assertNull(events.get(0).causedBy());
+        assertEquals(NOW, events.get(0).timestamp());
+    }
+
+    @Test
+    void flush_unchangedPosition_isNotWrittenAgain() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        telemetry.flush(false);
+        nanoTime.addAndGet(120 * SECOND);
+
+        assertEquals(0, telemetry.flush(false));
+        assertEquals(1, walPort.batches.size());
+    }
+
+    @Test
+    void flush_withinSampleInterval_defersUntilIntervalHasPassed() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        telemetry.flush(false);
+
+        telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000);
+        nanoTime.addAndGet(59 * SECOND);
+        assertEquals(0, telemetry.flush(false));
+
+        nanoTime.addAndGet(SECOND);
+        assertEquals(1, telemetry.flush(false));
+    }
+
+    @Test
+    void flush_all_ignoresSampleInterval() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        telemetry.flush(false);
+        telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000);
+
+        assertEquals(1, telemetry.flush(true));
+    }
+
+    @Test
+    void flush_walFailure_retriesAtNextFlush() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        walPort.fail = true;
+
+        assertThrows(WalWriteException.class, () -> telemetry.flush(false));
+
+        walPort.fail = false;
+        assertEquals(1, telemetry.flush(false));
+    }
+
+    @Test
+    void peekUnsampled_markedSampled_isNotReturnedAgainAndSkipsNextFlush() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+
+        var position = telemetry.peekUnsampled("unit-1");
+        assertEquals(new UnitPosition(60_450_000, 22_260_000, T0), position);
+        telemetry.markSampled("unit-1", position);
+
+        assertNull(telemetry.peekUnsampled("unit-1"));
+        assertEquals(0, telemetry.flush(false));
+    }
+
+    @Test
+    void peekUnsampled_notMarkedSampled_isWrittenByNextFlush() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+
+        // The command that peeked the position failed before writing its event
+        assertNotNull(telemetry.peekUnsampled("unit-1"));
+
+        assertEquals(new UnitPosition(60_450_000, 22_260_000, T0), telemetry.peekUnsampled("unit-1"));
+        assertEquals(1, telemetry.flush(false));
+    }
+
+    @Test
+    void markSampled_olderThanWritten_isIgnored() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        var older = telemetry.peekUnsampled("unit-1");
+        telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000);
+        telemetry.flush(true);
+
+        telemetry.markSampled("unit-1", older);
+
+        assertNull(telemetry.peekUnsampled("unit-1"));
+    }
+
+    @Test
+    void peekUnsampled_unknownUnit_returnsNull() {
+        assertNull(telemetry.peekUnsampled("unit-1"));
+    }
+
+    @Test
+    void copy_returnsLatestLocationWhetherWrittenOrNot() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+        telemetry.flush(true);
+        telemetry.report("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000);
+
+        assertEquals(List.of("unit-1"), List.copyOf(telemetry.ids()));
+        assertEquals(new UnitLocation("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000), telemetry.copy("unit-1"));
+        assertNull(telemetry.copy("unit-2"));
+    }
+
+    @Test
+    void restore_storesLocationAsAlreadyWritten() {
+        telemetry.restore(new UnitLocation("unit-1", 60_450_000, 22_260_000, T0));
+
+        assertEquals(Optional.of(new UnitPosition(60_450_000, 22_260_000, T0)), telemetry.latest("unit-1"));
+        assertNull(telemetry.peekUnsampled("unit-1"));
+        assertEquals(0, telemetry.flush(true));
+    }
+
+    @Test
+    void apply_replayedSampleOlderThanRestoredLocation_isIgnored() {
+        telemetry.restore(new UnitLocation("unit-1", 60_451_000, 22_261_000, T0 + 10_000_000));
+
+        telemetry.apply(new UnitLocationSampledEvent(EventId.generate(), NOW, null, "unit-1",
+                60_450_000, 22_260_000, T0));
+
+        assertEquals(60_451_000, telemetry.latest("unit-1").orElseThrow().latitude());
+    }
+
+    @Test
+    void apply_replayedSampleNewerThanRestoredLocation_replacesIt() {
+        telemetry.restore(new UnitLocation("unit-1", 60_450_000, 22_260_000, T0));
+
+        telemetry.apply(new UnitLocationSampledEvent(EventId.generate(), NOW, null, "unit-1",
+                60_451_000, 22_261_000, T0 + 10_000_000));
+
+        assertEquals(new UnitPosition(60_451_000, 22_261_000, T0 + 10_000_000),
+                telemetry.latest("unit-1").orElseThrow());
+        assertEquals(0, telemetry.flush(true));
+    }
+
+    @Test
+    void remove_forgetsUnit() {
+        telemetry.report("unit-1", 60_450_000, 22_260_000, T0);
+
+        telemetry.remove("unit-1");
+
+        assertEquals(Optional.empty(), telemetry.latest("unit-1"));
+        assertEquals(0, telemetry.flush(true));
+    }
+
+    @Test
+    void report_concurrentReporters_keepsLatestObservation() throws Exception {
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            var offset = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = offset; i < 40_000; i += 4) {
+                    telemetry.report("unit-1", 60_000_000 + i, 22_000_000, T0 + i);
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(new UnitPosition(60_039_999, 22_000_000, T0 + 39_999), telemetry.latest("unit-1").orElseThrow());
+    }
+
+    static final class BatchRecordingWalPort implements WalPort {
+        final List<List<? extends DomainEvent>> batches = new ArrayList<>();
+        volatile boolean fail = false;
+        private long sequence = 0;
+
+        @Override
+        public synchronized SequenceNumber write(DomainEvent event) {
+            return writeBatch(List.of(event));
+        }
+
+        @Override
+        public synchronized SequenceNumber writeBatch(List<? extends DomainEvent> events) {
+            if (fail) {
+                throw new WalWriteException("Simulated WAL failure");
+            }
+            batches.add(List.copyOf(events));
+            sequence += events.size();
+            return new SequenceNumber(sequence);
+        }
+
+        @Override
+        public void replayFrom(SequenceNumber from, Consumer<DomainEvent> consumer) {
+        }
+
+        @Override
+        public void replay(Consumer<DomainEvent> consumer) {
+        }
+
+        @Override
+        public void truncate(SequenceNumber upTo) {
+        }
+
+        @Override
+        public synchronized SequenceNumber currentSequence() {
+            return sequence == 0 ? SequenceNumber.start() : new SequenceNumber(sequence);
+        }
+
+        @Override
+        public long bytesWritten() {
+            return 0;
+        }
+    }
+}
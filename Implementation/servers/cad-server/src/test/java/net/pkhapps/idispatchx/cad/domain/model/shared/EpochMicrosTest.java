@@ -0,0 +1,34 @@
+package net.pkhapps.idispatchx.cad.domain.model.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpochMicrosTest {
+
+    @Test
+    void of_toInstant_roundTripsMicroseconds() {
+        var instant = Instant.parse("2026-01-01T12:00:00.123456Z");
+
+        assertEquals(instant, EpochMicros.toInstant(EpochMicros.of(instant)));
+    }
+
+    @Test
+    void of_truncatesNanoseconds() {
+        assertEquals(1_000_001, EpochMicros.of(Instant.ofEpochSecond(1, 1_999)));
+    }
+
+    @Test
+    void of_beforeEpoch_roundTrips() {
+        var instant = Instant.parse("1960-06-01T00:00:00.000001Z");
+
+        assertEquals(instant, EpochMicros.toInstant(EpochMicros.of(instant)));
+    }
+
+    @Test
+    void toInstant_none_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> EpochMicros.toInstant(EpochMicros.NONE));
+    }
+}
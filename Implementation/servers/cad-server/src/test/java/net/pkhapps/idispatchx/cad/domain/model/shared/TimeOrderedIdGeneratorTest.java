@@ -0,0 +1,112 @@
+package net.pkhapps.idispatchx.cad.domain.model.shared;
+
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void generate_isVersion7WithVariant() {
+        var id = EventId.generate();
+        var uuid = UUID.fromString(id.toString());
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    void generate_isIncreasingAndUnique() {
+        var ids = new ArrayList<EventId>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(EventId.generate());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "not increasing at " + i);
+        }
+    }
+
+    @Test
+    void generate_concurrentThreads_neverRepeatsMostSignificantBits() throws Exception {
+        var generated = new ConcurrentLinkedQueue<Long>();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    generated.add(EventId.generate().mostSignificantBits());
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(200_000, new HashSet<>(generated).size());
+    }
+
+    @Test
+    void generate_storesGenerationTime() {
+        var before = System.currentTimeMillis();
+        var id = EventId.generate();
+        var after = System.currentTimeMillis();
+
+        var millis = TimeOrderedIdGenerator.epochMillis(id.mostSignificantBits());
+        // The counter may run slightly ahead of the clock after a burst
+        assertTrue(millis >= before && millis <= after + 1000, "generated at " + millis);
+    }
+
+    @Test
+    void nextMostSignificantBits_exhaustedCounter_carriesOverIntoTime() {
+        var future = System.currentTimeMillis() + 60_000;
+        var bits = new ArrayList<Long>();
+        for (int i = 0; i < 4097; i++) {
+            bits.add(TimeOrderedIdGenerator.nextMostSignificantBits(future));
+        }
+
+        assertEquals(future, TimeOrderedIdGenerator.epochMillis(bits.getFirst()));
+        assertEquals(future, TimeOrderedIdGenerator.epochMillis(bits.get(4095)));
+        assertEquals(future + 1, TimeOrderedIdGenerator.epochMillis(bits.getLast()));
+        assertEquals(0x7000L, bits.getLast() & 0xF000L);
+    }
+
+    @Test
+    void fromString_toString_roundTrips() {
+        var id = EventId.generate();
+
+        assertEquals(id, EventId.fromString(id.toString()));
+        assertEquals(36, id.toString().length());
+    }
+
+    @Test
+    void fromString_anyUuid_isAccepted() {
+        var uuid = UUID.randomUUID();
+
+        var id = EventId.fromString(uuid.toString());
+
+        assertEquals(uuid.getMostSignificantBits(), id.mostSignificantBits());
+        assertEquals(uuid.getLeastSignificantBits(), id.leastSignificantBits());
+    }
+
+    @Test
+    void fromString_notUuid_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> EventId.fromString("not-a-uuid"));
+        assertThrows(IllegalArgumentException.class, () -> EventId.fromString("1-1-1-1-1"));
+    }
+
+    @Test
+    void compareTo_ordersByUnsignedBits() {
+        var low = new EventId(0x7FFF_FFFF_FFFF_FFFFL, 0);
+        var high = new EventId(0x8000_0000_0000_0000L, 0);
+
+        assertTrue(low.compareTo(high) < 0);
+        assertEquals(List.of(low, high), new ArrayList<>(List.of(high, low)).stream().sorted().toList());
+    }
+}
@@ -0,0 +1,35 @@
+package net.pkhapps.idispatchx.cad.domain.model.unit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaffingTest {
+
+    @Test
+    void pack_unpack_roundTrips() {
+        for (var staffing : new Staffing[]{Staffing.of(0, 0, 0), Staffing.of(1, 1, 3), Staffing.of(99, 99, 999)}) {
+            assertEquals(staffing, Staffing.unpack(staffing.pack()));
+            assertTrue(staffing.pack() >= 0);
+        }
+    }
+
+    @Test
+    void of_outOfRange_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> Staffing.of(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> Staffing.of(100, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> Staffing.of(0, 100, 0));
+        assertThrows(IllegalArgumentException.class, () -> Staffing.of(0, 0, 1000));
+    }
+
+    @Test
+    void unpack_invalidValue_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> Staffing.unpack(-1));
+        assertThrows(IllegalArgumentException.class, () -> Staffing.unpack(1000));
+    }
+
+    @Test
+    void toString_usesPlusFormat() {
+        assertEquals("1+1+3", Staffing.of(1, 1, 3).toString());
+    }
+}
@@ -0,0 +1,46 @@
+package net.pkhapps.idispatchx.cad.domain.model.unit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static net.pkhapps.idispatchx.cad.domain.model.unit.UnitState.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitStateTest {
+
+    private static final Map<UnitState, Set<UnitState>> ALLOWED = Map.of(
+            UNAVAILABLE, EnumSet.of(AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION),
+            AVAILABLE_OVER_RADIO, EnumSet.of(ASSIGNED_RADIO, AVAILABLE_AT_STATION, UNAVAILABLE),
+            AVAILABLE_AT_STATION, EnumSet.of(ASSIGNED_STATION, AVAILABLE_OVER_RADIO, UNAVAILABLE),
+            ASSIGNED_RADIO, EnumSet.of(AVAILABLE_OVER_RADIO, DISPATCHING),
+            ASSIGNED_STATION, EnumSet.of(AVAILABLE_AT_STATION, DISPATCHING),
+            DISPATCHING, EnumSet.of(DISPATCHED, AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, UNAVAILABLE),
+            DISPATCHED, EnumSet.of(AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, EN_ROUTE, UNAVAILABLE),
+            EN_ROUTE, EnumSet.of(AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, ON_SCENE, UNAVAILABLE),
+            ON_SCENE, EnumSet.of(AVAILABLE_OVER_RADIO, AVAILABLE_AT_STATION, UNAVAILABLE));
+
+    @Test
+    void canTransitionTo_matchesSpecification() {
+        for (var from : UnitState.values()) {
+            for (var to : UnitState.values()) {
+                assertEquals(ALLOWED.get(from).contains(to), from.canTransitionTo(to), from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void unassigns_onlyAvailableAtStationAndUnavailable() {
+        assertEquals(EnumSet.of(AVAILABLE_AT_STATION, UNAVAILABLE),
+                EnumSet.copyOf(EnumSet.allOf(UnitState.class).stream().filter(UnitState::unassigns).toList()));
+    }
+
+    @Test
+    void ofOrdinal_returnsStateWithOrdinal() {
+        for (var state : UnitState.values()) {
+            assertSame(state, UnitState.ofOrdinal(state.ordinal()));
+        }
+    }
+}
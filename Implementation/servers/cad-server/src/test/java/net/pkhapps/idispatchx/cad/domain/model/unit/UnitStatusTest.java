@@ -0,0 +1,192 @@
+package net.pkhapps.idispatchx.cad.domain.model.unit;
+
+import net.pkhapps.idispatchx.cad.domain.model.shared.EpochMicros;
+import net.pkhapps.idispatchx.common.domain.model.Coordinates;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitStatusTest {
+
+    private static final long T0 = EpochMicros.of(Instant.parse("2026-01-01T12:00:00.123456Z"));
+
+    @Test
+    void create_isUnavailableWithoutStaffingCoordinatesOrAssignment() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        assertEquals(UnitState.UNAVAILABLE, status.state());
+        assertEquals(Instant.parse("2026-01-01T12:00:00.123456Z"), status.stateChangedAt());
+        assertFalse(status.hasStaffing());
+        assertNull(status.staffing());
+        assertFalse(status.hasCoordinates());
+        assertNull(status.coordinates());
+        assertNull(status.assignedIncidentId());
+        assertEquals(EpochMicros.NONE, status.assignedAtMicros());
+    }
+
+    @Test
+    void changeState_allowedTransition_updatesStateAndTimestamp() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 1);
+
+        assertEquals(UnitState.AVAILABLE_OVER_RADIO, status.state());
+        assertEquals(T0 + 1, status.stateChangedAtMicros());
+    }
+
+    @Test
+    void changeState_disallowedTransition_throwsIllegalStateException() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        assertThrows(IllegalStateException.class, () -> status.changeState(UnitState.ON_SCENE, T0 + 1));
+        assertEquals(UnitState.UNAVAILABLE, status.state());
+        assertEquals(T0, status.stateChangedAtMicros());
+    }
+
+    @Test
+    void assignTo_availableOverRadio_assignsAndChangesToAssignedRadio() {
+        var status = UnitStatus.create("unit-1", T0);
+        status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 1);
+
+        status.assignTo("incident-1", T0 + 2);
+
+        assertEquals(UnitState.ASSIGNED_RADIO, status.state());
+        assertEquals("incident-1", status.assignedIncidentId());
+        assertEquals(T0 + 2, status.assignedAtMicros());
+    }
+
+    @Test
+    void assignTo_notAvailable_throwsIllegalStateException() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        assertThrows(IllegalStateException.class, () -> status.assignTo("incident-1", T0 + 1));
+        assertNull(status.assignedIncidentId());
+    }
+
+    @Test
+    void unassign_assignedStation_returnsToAvailableAtStation() {
+        var status = UnitStatus.create("unit-1", T0);
+        status.changeState(UnitState.AVAILABLE_AT_STATION, T0 + 1);
+        status.assignTo("incident-1", T0 + 2);
+
+        status.unassign(T0 + 3);
+
+        assertEquals(UnitState.AVAILABLE_AT_STATION, status.state());
+        assertNull(status.assignedIncidentId());
+        assertEquals(EpochMicros.NONE, status.assignedAtMicros());
+    }
+
+    @Test
+    void changeState_toAssignedState_throwsIllegalArgumentException() {
+        var status = UnitStatus.create("unit-1", T0);
+        status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> status.changeState(UnitState.ASSIGNED_RADIO, T0 + 2));
+        assertEquals(UnitState.AVAILABLE_OVER_RADIO, status.state());
+        assertNull(status.assignedIncidentId());
+    }
+
+    @Test
+    void changeState_fromAssignedToAvailable_throwsIllegalStateException() {
+        var status = UnitStatus.create("unit-1", T0);
+        status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 1);
+        status.assignTo("incident-1", T0 + 2);
+
+        assertThrows(IllegalStateException.class,
+                () -> status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 3));
+        assertEquals(UnitState.ASSIGNED_RADIO, status.state());
+        assertEquals("incident-1", status.assignedIncidentId());
+        assertEquals(T0 + 2, status.assignedAtMicros());
+    }
+
+    @Test
+    void changeState_fromAssignedToDispatching_keepsAssignment() {
+        var status = UnitStatus.create("unit-1", T0);
+        status.changeState(UnitState.AVAILABLE_AT_STATION, T0 + 1);
+        status.assignTo("incident-1", T0 + 2);
+
+        status.changeState(UnitState.DISPATCHING, T0 + 3);
+
+        assertEquals(UnitState.DISPATCHING, status.state());
+        assertEquals("incident-1", status.assignedIncidentId());
+    }
+
+    @Test
+    void changeState_availableOverRadioWhileAssigned_keepsAssignment() {
+        var status = dispatched();
+
+        status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 10);
+
+        assertEquals("incident-1", status.assignedIncidentId());
+    }
+
+    @Test
+    void changeState_unavailable_clearsAssignment() {
+        var status = dispatched();
+
+        status.changeState(UnitState.UNAVAILABLE, T0 + 10);
+
+        assertNull(status.assignedIncidentId());
+        assertEquals(EpochMicros.NONE, status.assignedAtMicros());
+    }
+
+    private static UnitStatus dispatched() {
+        var status = UnitStatus.create("unit-1", T0);
+        status.changeState(UnitState.AVAILABLE_OVER_RADIO, T0 + 1);
+        status.assignTo("incident-1", T0 + 2);
+        status.changeState(UnitState.DISPATCHING, T0 + 3);
+        status.changeState(UnitState.DISPATCHED, T0 + 4);
+        return status;
+    }
+
+    @Test
+    void changeStaffing_storesStaffingAndTimestamp() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        status.changeStaffing(Staffing.of(1, 1, 3), T0 + 1);
+
+        assertEquals(Staffing.of(1, 1, 3), status.staffing());
+        assertEquals(T0 + 1, status.staffingChangedAtMicros());
+    }
+
+    @Test
+    void changeCoordinates_roundTripsSixDecimalPlaces() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        status.changeCoordinates(Coordinates.Epsg4326.of(60.451234, 22.266789), T0 + 1);
+
+        assertEquals(60_451_234, status.latitudeMicrodegrees());
+        assertEquals(22_266_789, status.longitudeMicrodegrees());
+        assertEquals(Coordinates.Epsg4326.of(60.451234, 22.266789), status.coordinates());
+        assertEquals(T0 + 1, status.coordinatesChangedAtMicros());
+    }
+
+    @Test
+    void changeCoordinates_outOfBounds_throwsIllegalArgumentException() {
+        var status = UnitStatus.create("unit-1", T0);
+
+        assertThrows(IllegalArgumentException.class, () -> status.changeCoordinates(58_839_999, 22_000_000, T0));
+        assertThrows(IllegalArgumentException.class, () -> status.changeCoordinates(60_000_000, 31_590_001, T0));
+        assertFalse(status.hasCoordinates());
+    }
+
+    @Test
+    void copy_isIndependentOfOriginal() {
+        var status = dispatched();
+        status.changeStaffing(Staffing.of(0, 1, 3), T0 + 5);
+
+        var copy = status.copy();
+        status.changeState(UnitState.UNAVAILABLE, T0 + 10);
+
+        assertEquals(UnitState.DISPATCHED, copy.state());
+        assertEquals("incident-1", copy.assignedIncidentId());
+        assertEquals(Staffing.of(0, 1, 3), copy.staffing());
+    }
+
+    @Test
+    void create_unsetTimestamp_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> UnitStatus.create("unit-1", EpochMicros.NONE));
+    }
+}
@@ -0,0 +1,43 @@
+package net.pkhapps.idispatchx.benchmarks;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.WalEventTypes;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.event.EventId;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+
+/**
+ * Domain event written by the benchmarks, shaped like a typical unit status change.
+ *
+ * @param eventId   the event ID
+ * @param timestamp the time of the event
+ * @param causedBy  the command that caused the event
+ * @param unitId    the unit whose status changed
+ * @param status    the new status
+ * @param latitude  the latitude of the unit
+ * @param longitude the longitude of the unit
+ */
+public record BenchmarkEvent(EventId eventId, Instant timestamp, @Nullable CommandId causedBy,
+                             String unitId, String status, double latitude, double longitude)
+        implements DomainEvent {
+
+    /**
+     * The event type registry containing only this event.
+     */
+    public static final WalEventTypes TYPES = WalEventTypes.builder()
+            .register(1, "benchmark", BenchmarkEvent.class)
+            .build();
+
+    /**
+     * Creates an event for the given unit with a fresh event and command ID.
+     *
+     * @param unitId the unit whose status changed
+     * @return the event
+     */
+    public static BenchmarkEvent create(String unitId) {
+        return new BenchmarkEvent(EventId.generate(), Instant.now(), CommandId.generate(), unitId,
+                "DISPATCHED", 60.1699, 24.9384);
+    }
+}
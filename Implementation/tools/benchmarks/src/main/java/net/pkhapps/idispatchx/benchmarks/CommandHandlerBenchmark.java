@@ -0,0 +1,203 @@
+package net.pkhapps.idispatchx.benchmarks;
+
+import net.pkhapps.idispatchx.cad.application.handler.CommandHandler;
+import net.pkhapps.idispatchx.cad.application.handler.EntityLockManager;
+import net.pkhapps.idispatchx.cad.application.handler.LockKey;
+import net.pkhapps.idispatchx.cad.application.handler.LockScope;
+import net.pkhapps.idispatchx.cad.application.handler.PartitionedExecutor;
+import net.pkhapps.idispatchx.cad.application.handler.PendingMutation;
+import net.pkhapps.idispatchx.cad.application.metrics.MetricsRegistry;
+import net.pkhapps.idispatchx.cad.domain.command.Command;
+import net.pkhapps.idispatchx.cad.domain.command.CommandId;
+import net.pkhapps.idispatchx.cad.domain.event.DomainEvent;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import net.pkhapps.idispatchx.cad.port.secondary.wal.WalPort;
+import org.jspecify.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Measures the overhead of {@link CommandHandler#handle(Command)} itself: locking, preparing, writing to
+ * the WAL and applying the mutation.
+ * <p>
+ * The WAL is an in-memory no-op so that the result shows the cost and scalability of the handler and
+ * {@link EntityLockManager} rather than that of the disk. With {@code DISJOINT} scopes every thread
+ * works on its own units, with {@code OVERLAPPING} scopes all threads contend for a small set of units
+ * and a shared incident, like dispatchers working on the same large incident. With {@code PARTITIONED}
+ * mode, the commands run on a {@link PartitionedExecutor} with one partition per core instead of on the
+ * benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandHandlerBenchmark {
+
+    private static final int OVERLAPPING_UNITS = 4;
+
+    public enum Scopes {
+        DISJOINT,
+        OVERLAPPING
+    }
+
+    public enum Execution {
+        LOCKS,
+        PARTITIONED
+    }
+
+    @Param({"DISJOINT", "OVERLAPPING"})
+    public Scopes scopes;
+
+    @Param({"LOCKS", "PARTITIONED"})
+    public Execution execution;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ChangeStatusHandler handler;
+    private @Nullable PartitionedExecutor partitions;
+
+    @Setup
+    public void setUp() {
+        partitions = execution == Execution.PARTITIONED
+                ? new PartitionedExecutor(Runtime.getRuntime().availableProcessors())
+                : null;
+        handler = new ChangeStatusHandler(new NoOpWalPort(), new EntityLockManager(), partitions);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (partitions != null) {
+            partitions.close();
+        }
+    }
+
+    /**
+     * Per-thread command source, so that each thread keeps to its own units in {@code DISJOINT} mode.
+     */
+    @State(Scope.Thread)
+    public static class Commands {
+
+        private int thread;
+        private long counter;
+
+        @Setup
+        public void setUp(CommandHandlerBenchmark benchmark) {
+            thread = benchmark.threadCounter.getAndIncrement();
+        }
+
+        ChangeStatusCommand next(Scopes scopes) {
+            var n = counter++;
+            return switch (scopes) {
+                case DISJOINT -> new ChangeStatusCommand(CommandId.generate(), "RVS" + thread + "-" + (n % 16), null);
+                case OVERLAPPING -> new ChangeStatusCommand(CommandId.generate(), "RVS" + (n % OVERLAPPING_UNITS),
+                        "incident-1");
+            };
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String handle1(Commands commands) {
+        return handler.handle(commands.next(scopes));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String handle8(Commands commands) {
+        return handler.handle(commands.next(scopes));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String handle64(Commands commands) {
+        return handler.handle(commands.next(scopes));
+    }
+
+    record ChangeStatusCommand(CommandId commandId, String unitId, @Nullable String incidentId) implements Command {
+    }
+
+    static final class ChangeStatusHandler extends CommandHandler<ChangeStatusCommand, String> {
+
+        private final ConcurrentHashMap<String, String> statuses = new ConcurrentHashMap<>();
+
+        ChangeStatusHandler(WalPort walPort, EntityLockManager lockManager, @Nullable PartitionedExecutor partitions) {
+            super(walPort, lockManager, new MetricsRegistry(), partitions);
+        }
+
+        @Override
+        protected LockScope determineLockScope(ChangeStatusCommand command) {
+            var unit = new LockKey("unit", command.unitId());
+            return command.incidentId() == null
+                    ? LockScope.of(unit)
+                    : LockScope.of(new LockKey("incident", command.incidentId()), unit);
+        }
+
+        @Override
+        protected PendingMutation<BenchmarkEvent> prepareExecution(ChangeStatusCommand command) {
+            var event = BenchmarkEvent.create(command.unitId());
+            return new PendingMutation<>(event, () -> statuses.put(event.unitId(), event.status()));
+        }
+
+        @Override
+        protected String buildResult(ChangeStatusCommand command, DomainEvent event) {
+            return command.unitId();
+        }
+    }
+
+    static final class NoOpWalPort implements WalPort {
+
+        private final AtomicLong sequence = new AtomicLong();
+
+        @Override
+        public SequenceNumber write(DomainEvent event) {
+            return new SequenceNumber(sequence.incrementAndGet());
+        }
+
+        @Override
+        public SequenceNumber writeBatch(List<? extends DomainEvent> events) {
+            return new SequenceNumber(sequence.addAndGet(events.size()));
+        }
+
+        @Override
+        public void replayFrom(SequenceNumber from, Consumer<DomainEvent> consumer) {
+        }
+
+        @Override
+        public void replay(Consumer<DomainEvent> consumer) {
+        }
+
+        @Override
+        public void truncate(SequenceNumber upTo) {
+        }
+
+        @Override
+        public SequenceNumber currentSequence() {
+            var current = sequence.get();
+            return current == 0 ? SequenceNumber.start() : new SequenceNumber(current);
+        }
+
+        @Override
+        public long bytesWritten() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.pkhapps.idispatchx.benchmarks;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalAdapter;
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalConfig;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures durable writes to the file WAL.
+ * <p>
+ * A single writer pays one sync per event, while concurrent writers share syncs through group commit, so
+ * comparing {@link #writeSingle()} with {@link #writeConcurrent()} shows how much group commit buys on the
+ * storage at hand. The {@code directory} parameter selects where the WAL is written, for example
+ * {@code -p directory=/dev/shm} for tmpfs (sync is nearly free, so the result is the CPU cost of the write
+ * path) or a directory on the production disk (the result is dominated by sync latency).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileWalWriteBenchmark {
+
+    @Param({"BINARY"})
+    public FileWalConfig.Format format;
+
+    /**
+     * The parent directory of the WAL directory, or {@code tmpdir} for the system temporary directory.
+     */
+    @Param({"tmpdir"})
+    public String directory;
+
+    @Param({"16"})
+    public int batchSize;
+
+    private Path walDirectory;
+    private FileWalAdapter wal;
+    private BenchmarkEvent event;
+    private List<BenchmarkEvent> batch;
+
+    @Setup
+    public void setUp() throws IOException {
+        var parent = directory.equals("tmpdir") ? Path.of(System.getProperty("java.io.tmpdir")) : Path.of(directory);
+        walDirectory = Files.createTempDirectory(parent, "wal-benchmark");
+        wal = new FileWalAdapter(new FileWalConfig(walDirectory, format, FileWalConfig.CorruptionMode.STRICT,
+                FileWalConfig.DEFAULT_MAX_GROUP_SIZE, FileWalConfig.DEFAULT_SEGMENT_SIZE), BenchmarkEvent.TYPES);
+        event = BenchmarkEvent.create("RVS101");
+        batch = IntStream.range(0, batchSize).mapToObj(i -> BenchmarkEvent.create("RVS" + i)).toList();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        wal.close();
+        try (Stream<Path> paths = Files.walk(walDirectory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SequenceNumber writeSingle() {
+        return wal.write(event);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public SequenceNumber writeConcurrent() {
+        return wal.write(event);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SequenceNumber writeBatch() {
+        return wal.writeBatch(batch);
+    }
+}
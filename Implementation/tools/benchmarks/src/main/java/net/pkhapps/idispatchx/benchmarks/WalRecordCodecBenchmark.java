@@ -0,0 +1,65 @@
+package net.pkhapps.idispatchx.benchmarks;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.storage.FrameOutputBuffer;
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalConfig;
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.WalRecord;
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.WalRecordCodec;
+import net.pkhapps.idispatchx.cad.domain.model.shared.SequenceNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of encoding and decoding a single WAL record in each format.
+ * <p>
+ * This is the CPU cost paid per event by the writer thread and by the replay decoders, without any I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalRecordCodecBenchmark {
+
+    @Param({"TEXT", "BINARY"})
+    public FileWalConfig.Format format;
+
+    private WalRecordCodec codec;
+    private WalRecord record;
+    private FrameOutputBuffer out;
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = WalRecordCodec.forFormat(format, BenchmarkEvent.TYPES);
+        record = new WalRecord(SequenceNumber.start(), BenchmarkEvent.create("RVS101"), true);
+        out = new FrameOutputBuffer(1024);
+        codec.encode(record, out);
+        frame = ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Benchmark
+    public FrameOutputBuffer encode() throws IOException {
+        out.reset();
+        codec.encode(record, out);
+        return out;
+    }
+
+    @Benchmark
+    public WalRecord decode() {
+        return codec.decode(frame.duplicate());
+    }
+}
@@ -0,0 +1,82 @@
+package net.pkhapps.idispatchx.benchmarks;
+
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalAdapter;
+import net.pkhapps.idispatchx.cad.adapter.secondary.wal.FileWalConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures replay throughput, which bounds how quickly the CAD Server can recover after a restart.
+ * <p>
+ * The WAL is written once per trial. Each invocation replays all of it, so the reported score is
+ * events per second. Replay reads from the page cache after the first iteration; drop the caches
+ * between runs to measure replay from a cold disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@OperationsPerInvocation(WalReplayBenchmark.EVENT_COUNT)
+public class WalReplayBenchmark {
+
+    static final int EVENT_COUNT = 200_000;
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"TEXT", "BINARY"})
+    public FileWalConfig.Format format;
+
+    private Path walDirectory;
+    private FileWalAdapter wal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        walDirectory = Files.createTempDirectory("wal-replay-benchmark");
+        wal = new FileWalAdapter(FileWalConfig.of(walDirectory, format), BenchmarkEvent.TYPES);
+        var batch = new ArrayList<BenchmarkEvent>(BATCH_SIZE);
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            batch.add(BenchmarkEvent.create("RVS" + (i % 500)));
+            if (batch.size() == BATCH_SIZE) {
+                wal.writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wal.close();
+        try (Stream<Path> paths = Files.walk(walDirectory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void replay(Blackhole blackhole) {
+        wal.replay(blackhole::consume);
+    }
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package net.pkhapps.idispatchx.benchmarks;
+
+import org.jspecify.annotations.NullMarked;